@@ -0,0 +1,144 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Projections x' * A * x of the graph operators used by the distortion measures onto the basis
+ * vectors x of graph1. The requested projections are computed together: the operators are applied
+ * from the adjacency matrices to blocks of basis vectors, once per basis vector, and each pair of
+ * basis vectors is visited once for all the projections.
+ */
+public class BasisProjections {
+
+  // Degrees of graph2, the G of the area-based measure.
+  public static final int DEGREES2 = 0;
+  // Adjacency matrix of graph2, N in visualize_map.
+  public static final int ADJACENCY2 = 1;
+  // Row sums of (M - N).^2, the diagonal of U of the E1 and E2 measures.
+  public static final int DIFFERENCE_DEGREES = 2;
+  // Off diagonal entries of (M - N).^2, U without its diagonal.
+  public static final int DIFFERENCE = 3;
+  // (degrees1 - degrees2).^2, the operator of the E3 and E4 measures.
+  public static final int DEGREES_DIFFERENCE = 4;
+  // Degrees of graph1, the metric of the E1 and E4 measures.
+  public static final int DEGREES1 = 5;
+  // Number of projections.
+  public static final int PROJECTIONS_NUMBER = 6;
+  // Number of basis vectors applied together to the operators.
+  private static final int BLOCK_SIZE = 16;
+
+  // Basis vectors as rows.
+  private double[][] x;
+  // Eigenvalues of the basis vectors.
+  private double[] eigenvalues;
+  // Projections by index, null if not requested.
+  private double[][][] projections = new double[PROJECTIONS_NUMBER][][];
+
+  /**
+   * Constructor computes the requested projections.
+   *
+   * @param x basis vectors as rows.
+   * @param eigenvalues eigenvalues of the basis vectors.
+   * @param adjacency1 graph1 adjacency matrix, M in visualize_map.
+   * @param adjacency2 graph2 adjacency matrix.
+   * @param requested whether each projection is needed, by index.
+   */
+  public BasisProjections(double[][] x, double[] eigenvalues, SparseMatrix adjacency1,
+      SparseMatrix adjacency2, boolean[] requested) {
+    this.x = x;
+    this.eigenvalues = eigenvalues;
+    int n = adjacency1.getSize();
+    double[] degrees1 = adjacency1.getRowSums();
+    double[] degrees2 = adjacency2.getRowSums();
+    // Each projection is a diagonal or a sparse operator applied from the adjacency matrices.
+    BlockOperator[] operators = new BlockOperator[PROJECTIONS_NUMBER];
+    operators[DEGREES2] = new DiagonalOperator(degrees2);
+    operators[ADJACENCY2] = adjacency2;
+    if (requested[DIFFERENCE_DEGREES] || requested[DIFFERENCE]) {
+      DifferenceOperator difference = new DifferenceOperator(adjacency1, adjacency2);
+      operators[DIFFERENCE_DEGREES] = new DiagonalOperator(difference.getRowSums());
+      operators[DIFFERENCE] = difference;
+    }
+    double[] degreesDifference = new double[n];
+    for (int i = 0; i < n; i++) {
+      double difference = degrees1[i] - degrees2[i];
+      degreesDifference[i] = difference * difference;
+    }
+    operators[DEGREES_DIFFERENCE] = new DiagonalOperator(degreesDifference);
+    operators[DEGREES1] = new DiagonalOperator(degrees1);
+    int count = 0;
+    int[] indexes = new int[PROJECTIONS_NUMBER];
+    for (int projection = 0; projection < PROJECTIONS_NUMBER; projection++) {
+      if (requested[projection]) {
+        indexes[count++] = projection;
+      }
+    }
+    int size = x.length;
+    double[][][] results = new double[count][size][size];
+    // Products of the operators with the current block of basis vectors.
+    double[][][] products = new double[count][Math.min(BLOCK_SIZE, size)][n];
+    double[] sums = new double[count];
+    for (int from = 0; from < size; from += BLOCK_SIZE) {
+      int to = Math.min(size, from + BLOCK_SIZE);
+      double[][] block = new double[to - from][];
+      System.arraycopy(x, from, block, 0, to - from);
+      for (int q = 0; q < count; q++) {
+        // The last block may be shorter, its products go to the first rows.
+        operators[indexes[q]].applyBlock(block, Arrays.copyOf(products[q], to - from));
+      }
+      for (int j = from; j < to; j++) {
+        // The operators are symmetric, so only the upper triangle is computed.
+        for (int i = 0; i <= j; i++) {
+          double[] xi = x[i];
+          for (int q = 0; q < count; q++) {
+            sums[q] = 0;
+          }
+          for (int p = 0; p < n; p++) {
+            double value = xi[p];
+            for (int q = 0; q < count; q++) {
+              sums[q] += value * products[q][j - from][p];
+            }
+          }
+          for (int q = 0; q < count; q++) {
+            results[q][i][j] = sums[q];
+            results[q][j][i] = sums[q];
+          }
+        }
+      }
+    }
+    for (int q = 0; q < count; q++) {
+      projections[indexes[q]] = results[q];
+    }
+  }
+
+  /**
+   * Get a projection.
+   *
+   * @param projection index of the projection.
+   * @return projection x' * A * x.
+   */
+  public double[][] get(int projection) {
+    if (projections[projection] == null) {
+      throw new IllegalStateException("Projection " + projection + " was not requested");
+    }
+    return projections[projection];
+  }
+
+  /**
+   * Get the basis vectors.
+   *
+   * @return basis vectors as rows.
+   */
+  public double[][] getVectors() {
+    return x;
+  }
+
+  /**
+   * Get the eigenvalues of the basis vectors.
+   *
+   * @return eigenvalues.
+   */
+  public double[] getEigenvalues() {
+    return eigenvalues;
+  }
+}
@@ -0,0 +1,112 @@
+package server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+/**
+ * Keeps, for each measure, the run with the highest sum of the measure over its regions, and prints
+ * these best runs to the console when closed. The regions are also forwarded to another sink, e.g.
+ * a CSV or binary file receiving all the runs.
+ */
+public class BestRunEvaluationSink implements EvaluationSink {
+
+  // Stream to print the best runs to.
+  private PrintStream out;
+  // Whether a later run with the same sum replaces the best run.
+  private boolean replaceOnTie;
+  // Sink receiving all the runs, or null.
+  private EvaluationSink downstream;
+  // Format of the printed values.
+  private DecimalFormat format = new DecimalFormat("#.###");
+  // Current run, or null if no run is started.
+  private Run current;
+  // Best run of each measure, or null if no run reached a non negative sum.
+  private Run[] bestRuns = new Run[RegionEvaluator.MEASURES_NUMBER];
+  // Sum of each measure over the regions of its best run.
+  private double[] bestSums = new double[RegionEvaluator.MEASURES_NUMBER];
+
+  /**
+   * Constructor.
+   *
+   * @param out stream to print the best runs to.
+   * @param replaceOnTie whether a later run with the same sum replaces the best run.
+   * @param downstream sink receiving all the runs, or null. It is not closed with this sink.
+   */
+  public BestRunEvaluationSink(PrintStream out, boolean replaceOnTie, EvaluationSink downstream) {
+    this.out = out;
+    this.replaceOnTie = replaceOnTie;
+    this.downstream = downstream;
+  }
+
+  @Override
+  public void startRun(String label) throws IOException {
+    current = new Run(label);
+    if (downstream != null) {
+      downstream.startRun(label);
+    }
+  }
+
+  @Override
+  public void writeRegion(int region, double[] measures) throws IOException {
+    current.regions.add(region);
+    current.measures.add(measures.clone());
+    if (downstream != null) {
+      downstream.writeRegion(region, measures);
+    }
+  }
+
+  @Override
+  public void endRun() throws IOException {
+    for (int i = 0; i < bestSums.length; i++) {
+      double sum = 0;
+      for (double[] measures : current.measures) {
+        sum += measures[i];
+      }
+      // If the current evaluation measures are better, store them.
+      if (sum > bestSums[i] || (replaceOnTie && sum == bestSums[i])) {
+        bestSums[i] = sum;
+        bestRuns[i] = current;
+      }
+    }
+    current = null;
+    if (downstream != null) {
+      downstream.endRun();
+    }
+  }
+
+  /**
+   * Print the best run of each measure.
+   */
+  @Override
+  public void close() {
+    for (int i = 0; i < bestRuns.length; i++) {
+      Run run = bestRuns[i];
+      out.println("===========================" + (run == null ? "" : run.label)
+          + "======================");
+      StringBuilder builder = new StringBuilder();
+      if (run != null) {
+        for (int r = 0; r < run.regions.size(); r++) {
+          builder.append("\nR").append(run.regions.get(r)).append('=')
+              .append(format.format(run.measures.get(r)[i]));
+        }
+      }
+      out.println(builder);
+      out.println("==================================================");
+    }
+  }
+
+  /**
+   * Regions and evaluation measures of a run.
+   */
+  private static class Run {
+    private String label;
+    private ArrayList<Integer> regions = new ArrayList<Integer>();
+    private ArrayList<double[]> measures = new ArrayList<double[]>();
+
+    Run(String label) {
+      this.label = label;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams the evaluation measures to a compact binary file written with DataOutputStream. The file
+ * starts with the MAGIC int and the number of measures per region, followed by records, each one
+ * starting with a tag byte:
+ * <ul>
+ * <li>RUN_TAG followed by the run label in modified UTF-8,</li>
+ * <li>REGION_TAG followed by the region number as an int and its measures as doubles,</li>
+ * <li>END_TAG closing the current run.</li>
+ * </ul>
+ */
+public class BinaryEvaluationSink implements EvaluationSink {
+
+  // First int of the file.
+  public static final int MAGIC = 0x45564c31;
+  // Record tags.
+  public static final byte RUN_TAG = 'R';
+  public static final byte REGION_TAG = 'M';
+  public static final byte END_TAG = 'E';
+
+  // Stream of the records.
+  private DataOutputStream output;
+
+  /**
+   * Constructor creates the binary file and writes its header.
+   *
+   * @param file path of the binary file.
+   * @throws IOException
+   */
+  public BinaryEvaluationSink(String file) throws IOException {
+    this(new FileOutputStream(file));
+  }
+
+  /**
+   * Constructor writes the header to the given stream.
+   *
+   * @param stream to write the records to, closed with the sink.
+   * @throws IOException
+   */
+  public BinaryEvaluationSink(OutputStream stream) throws IOException {
+    output = new DataOutputStream(new BufferedOutputStream(stream));
+    output.writeInt(MAGIC);
+    output.writeInt(RegionEvaluator.MEASURES_NUMBER);
+  }
+
+  @Override
+  public void startRun(String label) throws IOException {
+    output.writeByte(RUN_TAG);
+    output.writeUTF(label);
+  }
+
+  @Override
+  public void writeRegion(int region, double[] measures) throws IOException {
+    output.writeByte(REGION_TAG);
+    output.writeInt(region);
+    for (int i = 0; i < RegionEvaluator.MEASURES_NUMBER; i++) {
+      output.writeDouble(measures[i]);
+    }
+  }
+
+  @Override
+  public void endRun() throws IOException {
+    output.writeByte(END_TAG);
+    output.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    output.close();
+  }
+}
@@ -0,0 +1,92 @@
+package server;
+
+/**
+ * Symmetric operator over the nodes of a graph computed row by row from the adjacency store, so it
+ * is applied to a block of vectors without building its matrix. The rows of large block products
+ * are split across threads, in chunks of about the same work.
+ */
+public abstract class BlockOperator implements LinearOperator {
+
+  // Min work of a block product, in entries times vectors, before its rows are split across
+  // threads.
+  private static final long PARALLEL_WORK = 1 << 20;
+
+  @Override
+  public void apply(double[] x, double[] y) {
+    applyRows(new double[][] {x}, new double[][] {y}, 0, getSize());
+  }
+
+  /**
+   * Apply the operator to a block of vectors, y[c] = A x[c] for each vector c.
+   *
+   * @param x vectors to apply the operator to, as rows.
+   * @param y vectors receiving the products, as rows, they don't alias x.
+   */
+  public void applyBlock(final double[][] x, final double[][] y) {
+    int size = getSize();
+    int[] work = getRowsWork();
+    long total = work == null ? size : work[size];
+    int threadsNumber = Runtime.getRuntime().availableProcessors();
+    if (threadsNumber <= 1 || total * x.length < PARALLEL_WORK) {
+      applyRows(x, y, 0, size);
+      return;
+    }
+    Thread[] threads = new Thread[threadsNumber - 1];
+    int[] bounds = new int[threadsNumber + 1];
+    for (int t = 1, i = 0; t < threadsNumber; t++) {
+      long target = total * t / threadsNumber;
+      while (i < size && (work == null ? i : work[i]) < target) {
+        i++;
+      }
+      bounds[t] = i;
+    }
+    bounds[threadsNumber] = size;
+    for (int t = 0; t < threads.length; t++) {
+      final int from = bounds[t + 1];
+      final int to = bounds[t + 2];
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          applyRows(x, y, from, to);
+        }
+      });
+      threads[t].start();
+    }
+    // The current thread computes the first chunk.
+    applyRows(x, y, 0, bounds[1]);
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Get the cumulative work of the rows, e.g. the row offsets of the adjacency entries they read,
+   * to split the rows in chunks of the same work.
+   *
+   * @return work before each row, of length size + 1, or null if the rows have the same work.
+   */
+  protected int[] getRowsWork() {
+    return null;
+  }
+
+  /**
+   * Compute the rows in [from, to) of the products of the operator with a block of vectors.
+   *
+   * @param x vectors to apply the operator to, as rows.
+   * @param y vectors receiving the products, only their rows in [from, to) are written.
+   * @param from first row.
+   * @param to row after the last one.
+   */
+  protected abstract void applyRows(double[][] x, double[][] y, int from, int to);
+}
@@ -0,0 +1,65 @@
+package server;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+/**
+ * Prints each run to the console once it ends, grouped by measure, where each measure is printed
+ * as its title followed by one "R&lt;region&gt;=&lt;value&gt;" line per region.
+ */
+public class ConsoleEvaluationSink implements EvaluationSink {
+
+  // Titles of the evaluation measures, in the order of RegionEvaluator.
+  private static final String[] MEASURE_TITLES = {"Within graph 1", "Within graph 2",
+      "Within min graph 1,2", "Degree graph 1", "Degree graph 2", "Degree min graph 1,2"};
+
+  // Stream to print the runs to.
+  private PrintStream out;
+  // Format of the printed values.
+  private DecimalFormat format = new DecimalFormat("#.###");
+  // Region numbers of the current run.
+  private ArrayList<Integer> regions = new ArrayList<Integer>();
+  // Evaluation measures of the regions of the current run.
+  private ArrayList<double[]> measures = new ArrayList<double[]>();
+
+  /**
+   * Constructor.
+   *
+   * @param out stream to print the runs to.
+   */
+  public ConsoleEvaluationSink(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void startRun(String label) {
+    regions.clear();
+    measures.clear();
+  }
+
+  @Override
+  public void writeRegion(int region, double[] measures) {
+    regions.add(region);
+    this.measures.add(measures.clone());
+  }
+
+  @Override
+  public void endRun() {
+    for (int i = 0; i < MEASURE_TITLES.length; i++) {
+      StringBuilder builder = new StringBuilder(MEASURE_TITLES[i]);
+      for (int r = 0; r < regions.size(); r++) {
+        builder.append("\nR").append(regions.get(r)).append('=')
+            .append(format.format(measures.get(r)[i]));
+      }
+      out.println(builder);
+    }
+    regions.clear();
+    measures.clear();
+  }
+
+  @Override
+  public void close() {
+    out.flush();
+  }
+}
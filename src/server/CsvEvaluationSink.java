@@ -0,0 +1,78 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams the evaluation measures to a CSV file with one row per region and measure, in the format
+ * run,region,measure,value. The values are written with full precision.
+ */
+public class CsvEvaluationSink implements EvaluationSink {
+
+  // Writer of the CSV rows.
+  private Writer writer;
+  // Label of the current run, quoted if needed.
+  private String run = "";
+
+  /**
+   * Constructor creates the CSV file and writes its header.
+   *
+   * @param file path of the CSV file.
+   * @throws IOException
+   */
+  public CsvEvaluationSink(String file) throws IOException {
+    this(new BufferedWriter(new FileWriter(file)));
+  }
+
+  /**
+   * Constructor writes the CSV header to the given writer.
+   *
+   * @param writer to write the CSV rows to, closed with the sink.
+   * @throws IOException
+   */
+  public CsvEvaluationSink(Writer writer) throws IOException {
+    this.writer = writer;
+    writer.write("run,region,measure,value\n");
+  }
+
+  @Override
+  public void startRun(String label) throws IOException {
+    run = quote(label);
+  }
+
+  @Override
+  public void writeRegion(int region, double[] measures) throws IOException {
+    for (int i = 0; i < measures.length; i++) {
+      writer.write(run);
+      writer.write(',');
+      writer.write(Integer.toString(region));
+      writer.write(',');
+      writer.write(MEASURE_NAMES[i]);
+      writer.write(',');
+      writer.write(Double.toString(measures[i]));
+      writer.write('\n');
+    }
+  }
+
+  @Override
+  public void endRun() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  /**
+   * Quote a CSV field if it contains a separator, a quote or a line break.
+   */
+  private static String quote(String field) {
+    if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+      return field;
+    }
+    return "\"" + field.replace("\"", "\"\"") + "\"";
+  }
+}
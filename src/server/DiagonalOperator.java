@@ -0,0 +1,46 @@
+package server;
+
+/**
+ * Diagonal operator over the nodes of a graph, e.g. the degrees G of the area-based measure or the
+ * squared degree differences (degrees1 - degrees2).^2 of the E3 and E4 measures, applied as a
+ * product by its weights.
+ */
+public class DiagonalOperator extends BlockOperator {
+
+  // Diagonal of the operator.
+  private double[] weights;
+
+  /**
+   * Constructor.
+   *
+   * @param weights diagonal of the operator.
+   */
+  public DiagonalOperator(double[] weights) {
+    this.weights = weights;
+  }
+
+  /**
+   * Get the diagonal of the operator.
+   *
+   * @return weights.
+   */
+  public double[] getWeights() {
+    return weights;
+  }
+
+  @Override
+  public int getSize() {
+    return weights.length;
+  }
+
+  @Override
+  protected void applyRows(double[][] x, double[][] y, int from, int to) {
+    for (int c = 0; c < x.length; c++) {
+      double[] vector = x[c];
+      double[] product = y[c];
+      for (int i = from; i < to; i++) {
+        product[i] = weights[i] * vector[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package server;
+
+/**
+ * Off diagonal entries of (M - N).^2, the U operator of the E1 and E2 measures without its
+ * diagonal, where M and N are the adjacency matrices of graph1 and graph2. Each row is computed by
+ * merging the sorted rows of M and N, so U is never built.
+ */
+public class DifferenceOperator extends BlockOperator {
+
+  // Adjacency matrices of graph1 and graph2.
+  private SparseMatrix adjacency1;
+  private SparseMatrix adjacency2;
+  // Sum of the row offsets of the two adjacency matrices, the work of the rows.
+  private int[] work;
+
+  /**
+   * Constructor.
+   *
+   * @param adjacency1 graph1 adjacency matrix, M in visualize_map.
+   * @param adjacency2 graph2 adjacency matrix, N in visualize_map, of the same size.
+   */
+  public DifferenceOperator(SparseMatrix adjacency1, SparseMatrix adjacency2) {
+    this.adjacency1 = adjacency1;
+    this.adjacency2 = adjacency2;
+    int n = adjacency1.getSize();
+    work = new int[n + 1];
+    for (int i = 0; i <= n; i++) {
+      work[i] = adjacency1.getOffsets()[i] + adjacency2.getOffsets()[i];
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return adjacency1.getSize();
+  }
+
+  /**
+   * Get the row sums of (M - N).^2 with its diagonal, the diagonal of U.
+   *
+   * @return row sums.
+   */
+  public double[] getRowSums() {
+    int n = adjacency1.getSize();
+    double[] sums = new double[n];
+    double[][] rows = new double[][] {sums};
+    for (int i = 0; i < n; i++) {
+      merge(i, null, rows, true);
+    }
+    return sums;
+  }
+
+  @Override
+  protected int[] getRowsWork() {
+    return work;
+  }
+
+  @Override
+  protected void applyRows(double[][] x, double[][] y, int from, int to) {
+    for (int i = from; i < to; i++) {
+      merge(i, x, y, false);
+    }
+  }
+
+  /**
+   * Merge the sorted rows i of M and N, and store in row i of each y[c] the sum of the squared
+   * differences times x[c] at their columns, or the plain sum with its diagonal if sums is set.
+   */
+  private void merge(int i, double[][] x, double[][] y, boolean sums) {
+    int[] offsets1 = adjacency1.getOffsets();
+    int[] columns1 = adjacency1.getColumns();
+    double[] values1 = adjacency1.getValues();
+    int[] offsets2 = adjacency2.getOffsets();
+    int[] columns2 = adjacency2.getColumns();
+    double[] values2 = adjacency2.getValues();
+    int vectorsNumber = y.length;
+    for (int c = 0; c < vectorsNumber; c++) {
+      y[c][i] = 0;
+    }
+    int p1 = offsets1[i];
+    int p2 = offsets2[i];
+    while (p1 < offsets1[i + 1] || p2 < offsets2[i + 1]) {
+      int column1 = p1 < offsets1[i + 1] ? columns1[p1] : Integer.MAX_VALUE;
+      int column2 = p2 < offsets2[i + 1] ? columns2[p2] : Integer.MAX_VALUE;
+      int column = Math.min(column1, column2);
+      double difference =
+          (column1 == column ? values1[p1++] : 0) - (column2 == column ? values2[p2++] : 0);
+      if (sums) {
+        y[0][i] += difference * difference;
+      } else if (column != i) {
+        for (int c = 0; c < vectorsNumber; c++) {
+          y[c][i] += difference * difference * x[c][column];
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package server;
+
+import java.util.HashMap;
+
+/**
+ * Distortion values of several configurations of visualize_map computed on a pair of graphs with
+ * one MATLAB call, by k and measure. It isn't changed once created, so the runs reading it see the
+ * values of the graphs they were computed on.
+ */
+public class DistortionBatch {
+
+  // Edges of graph1 and graph2 the values were computed on.
+  private final double[][] graph1;
+  private final double[][] graph2;
+  // Distortion values by k and measure.
+  private final HashMap<String, double[]> distortionValues;
+
+  /**
+   * Constructor.
+   *
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param distortionValues distortion values by k and measure, as returned by getKey.
+   */
+  public DistortionBatch(double[][] graph1, double[][] graph2,
+      HashMap<String, double[]> distortionValues) {
+    this.graph1 = graph1;
+    this.graph2 = graph2;
+    this.distortionValues = new HashMap<String, double[]>(distortionValues);
+  }
+
+  /**
+   * Get the key of a configuration.
+   *
+   * @param k number of eigenvectors of graph1.
+   * @param measure distortion measure.
+   * @return key of the configuration.
+   */
+  public static String getKey(int k, String measure) {
+    return k + "," + measure;
+  }
+
+  /**
+   * Get the distortion values of a configuration on the given graphs. The graphs are compared by
+   * reference, as the batch is computed for the graphs of one evaluation.
+   *
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param k number of eigenvectors of graph1.
+   * @param measure distortion measure.
+   * @return distortion values, or null if the batch is of other graphs or hasn't the
+   *         configuration.
+   */
+  public double[] getDistortionValues(double[][] graph1, double[][] graph2, int k,
+      String measure) {
+    if (graph1 != this.graph1 || graph2 != this.graph2) {
+      return null;
+    }
+    return distortionValues.get(getKey(k, measure));
+  }
+}
@@ -0,0 +1,144 @@
+package server;
+
+/**
+ * Distortion measures of visualize_map. Each measure is the eigenproblem of a graph2 operator
+ * projected onto the graph1 basis, with an optional metric, assembled from the projections of
+ * BasisProjections so the measures of a graph pair share them.
+ */
+public enum DistortionMeasure {
+  // e1' * G * e1, with G the degrees of graph2.
+  AREA_BASED("area-based", BasisProjections.DEGREES2) {
+    @Override
+    double[][] getOperator(BasisProjections projections) {
+      return projections.get(BasisProjections.DEGREES2);
+    }
+  },
+  // e1' * L2 * e1 with the graph1 eigenvalues as metric.
+  CONFORMAL_BASED("conformal-based", BasisProjections.DEGREES2, BasisProjections.ADJACENCY2) {
+    @Override
+    double[][] getOperator(BasisProjections projections) {
+      return add(projections.get(BasisProjections.DEGREES2),
+          projections.get(BasisProjections.ADJACENCY2), -1);
+    }
+
+    @Override
+    double[][] getMetric(BasisProjections projections) {
+      double[] eigenvalues = projections.getEigenvalues();
+      double[][] metric = new double[eigenvalues.length][eigenvalues.length];
+      for (int i = 0; i < eigenvalues.length; i++) {
+        metric[i][i] = eigenvalues[i];
+      }
+      return metric;
+    }
+  },
+  // e1' * U * e1 with U = (M - N).^2 and its row sums on the diagonal, and the graph1 degrees as
+  // metric.
+  E1("E1", BasisProjections.DIFFERENCE_DEGREES, BasisProjections.DIFFERENCE,
+      BasisProjections.DEGREES1) {
+    @Override
+    double[][] getOperator(BasisProjections projections) {
+      return add(projections.get(BasisProjections.DIFFERENCE_DEGREES),
+          projections.get(BasisProjections.DIFFERENCE), 1);
+    }
+
+    @Override
+    double[][] getMetric(BasisProjections projections) {
+      return projections.get(BasisProjections.DEGREES1);
+    }
+  },
+  // e1' * U * e1 with the off diagonal entries of U negated.
+  E2("E2", BasisProjections.DIFFERENCE_DEGREES, BasisProjections.DIFFERENCE) {
+    @Override
+    double[][] getOperator(BasisProjections projections) {
+      return add(projections.get(BasisProjections.DIFFERENCE_DEGREES),
+          projections.get(BasisProjections.DIFFERENCE), -1);
+    }
+  },
+  // e1' * diag((degrees1 - degrees2).^2) * e1.
+  E3("E3", BasisProjections.DEGREES_DIFFERENCE) {
+    @Override
+    double[][] getOperator(BasisProjections projections) {
+      return projections.get(BasisProjections.DEGREES_DIFFERENCE);
+    }
+  },
+  // E3 with the graph1 degrees as metric.
+  E4("E4", BasisProjections.DEGREES_DIFFERENCE, BasisProjections.DEGREES1) {
+    @Override
+    double[][] getOperator(BasisProjections projections) {
+      return projections.get(BasisProjections.DEGREES_DIFFERENCE);
+    }
+
+    @Override
+    double[][] getMetric(BasisProjections projections) {
+      return projections.get(BasisProjections.DEGREES1);
+    }
+  };
+
+  // Name of the measure in visualize_map.
+  private String name;
+  // Indexes of the projections of the operator and metric.
+  private int[] projections;
+
+  DistortionMeasure(String name, int... projections) {
+    this.name = name;
+    this.projections = projections;
+  }
+
+  /**
+   * Get the name of the measure.
+   *
+   * @return name as passed to visualize_map.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the projections needed by the measure.
+   *
+   * @return indexes of the projections in BasisProjections.
+   */
+  public int[] getProjections() {
+    return projections;
+  }
+
+  /**
+   * Get the measure of a name, ignoring case as visualize_map callers do.
+   *
+   * @param name name of the measure.
+   * @return distortion measure.
+   */
+  public static DistortionMeasure fromName(String name) {
+    for (DistortionMeasure measure : values()) {
+      if (measure.name.equalsIgnoreCase(name)) {
+        return measure;
+      }
+    }
+    throw new IllegalArgumentException("Unknown distortion measure " + name);
+  }
+
+  /**
+   * Projected operator of the eigenproblem.
+   */
+  abstract double[][] getOperator(BasisProjections projections);
+
+  /**
+   * Projected metric of the eigenproblem, or null for a standard eigenproblem.
+   */
+  double[][] getMetric(BasisProjections projections) {
+    return null;
+  }
+
+  /**
+   * Sum a + sign * b of two projections.
+   */
+  private static double[][] add(double[][] a, double[][] b, double sign) {
+    double[][] sum = new double[a.length][a.length];
+    for (int i = 0; i < a.length; i++) {
+      for (int j = 0; j < a.length; j++) {
+        sum[i][j] = a[i][j] + sign * b[i][j];
+      }
+    }
+    return sum;
+  }
+}
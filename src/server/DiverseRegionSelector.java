@@ -0,0 +1,149 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Greedy non-maximum suppression over regions offered from the best to the worst. A region is
+ * selected only if its Jaccard similarity with every region selected before is at most maxJaccard,
+ * so the returned top regions are not near duplicates around the same hotspot. Each node keeps a
+ * bitmap of the selected regions containing it, so the overlaps of a candidate with all the
+ * selected regions are counted in one pass over its nodes instead of comparing node sets.
+ *
+ * @param <T> node type of the regions.
+ */
+public class DiverseRegionSelector<T> {
+
+  // Max number of regions to select.
+  private int regionNumber;
+  // Max Jaccard similarity allowed between two selected regions, 1 or more disables the check.
+  private double maxJaccard;
+  // Number of 64 bit words of each node bitmap.
+  private int words;
+  // Bitmaps of the selected regions containing each node, words values per node.
+  private long[] owners;
+  // Index of each node object, used when the regions are given as node collections.
+  private HashMap<T, Integer> indices;
+  // Number of nodes of each selected region.
+  private int[] selectedSizes;
+  // Number of selected regions.
+  private int selectedNumber;
+  // Number of common nodes between the current candidate and each selected region.
+  private int[] intersections;
+  // Buffer used to convert a node collection into indices.
+  private int[] membersBuffer;
+
+  /**
+   * Constructor.
+   *
+   * @param regionNumber max number of regions to select.
+   * @param maxJaccard max Jaccard similarity allowed between two selected regions.
+   */
+  public DiverseRegionSelector(int regionNumber, double maxJaccard) {
+    this.regionNumber = Math.max(0, regionNumber);
+    this.maxJaccard = maxJaccard;
+    words = Math.max(1, (this.regionNumber + 63) / 64);
+    owners = new long[64 * words];
+    indices = new HashMap<T, Integer>();
+    selectedSizes = new int[this.regionNumber];
+    intersections = new int[this.regionNumber];
+    membersBuffer = new int[16];
+  }
+
+  /**
+   * Check whether the overlap check is enabled.
+   *
+   * @return true if maxJaccard is lower than 1.
+   */
+  public boolean isEnabled() {
+    return maxJaccard < 1;
+  }
+
+  /**
+   * Offer a region given as a collection of nodes.
+   *
+   * @param region nodes of the region.
+   * @return true if the region is selected.
+   */
+  public boolean offer(Collection<T> region) {
+    if (!isEnabled()) {
+      return true;
+    }
+    if (membersBuffer.length < region.size()) {
+      membersBuffer = new int[Math.max(region.size(), membersBuffer.length * 2)];
+    }
+    int membersNumber = 0;
+    for (T node : region) {
+      Integer index = indices.get(node);
+      if (index == null) {
+        index = indices.size();
+        indices.put(node, index);
+      }
+      membersBuffer[membersNumber++] = index;
+    }
+    return offer(membersBuffer, membersNumber);
+  }
+
+  /**
+   * Offer a region given as node indices. A selector must be offered either node collections or
+   * node indices, not both.
+   *
+   * @param members buffer containing the indices of the region nodes, without duplicates.
+   * @param membersNumber number of valid members in the buffer.
+   * @return true if the region is selected.
+   */
+  public boolean offer(int[] members, int membersNumber) {
+    if (!isEnabled()) {
+      return true;
+    }
+    if (selectedNumber == regionNumber) {
+      return false;
+    }
+    int maxIndex = -1;
+    for (int i = 0; i < membersNumber; i++) {
+      maxIndex = Math.max(maxIndex, members[i]);
+    }
+    if ((long) (maxIndex + 1) * words > owners.length) {
+      owners = Arrays.copyOf(owners, Math.max((maxIndex + 1) * words, owners.length * 2));
+    }
+    // Count the common nodes with each selected region from the node bitmaps.
+    Arrays.fill(intersections, 0, selectedNumber, 0);
+    for (int i = 0; i < membersNumber; i++) {
+      int offset = members[i] * words;
+      for (int w = 0; w < words; w++) {
+        long bits = owners[offset + w];
+        while (bits != 0) {
+          intersections[w * 64 + Long.numberOfTrailingZeros(bits)]++;
+          bits &= bits - 1;
+        }
+      }
+    }
+    for (int r = 0; r < selectedNumber; r++) {
+      if (intersections[r] == 0) {
+        continue;
+      }
+      double union = membersNumber + selectedSizes[r] - intersections[r];
+      if (intersections[r] / union > maxJaccard) {
+        return false;
+      }
+    }
+    // Select the region and mark its nodes.
+    int word = selectedNumber / 64;
+    long bit = 1L << (selectedNumber % 64);
+    for (int i = 0; i < membersNumber; i++) {
+      owners[members[i] * words + word] |= bit;
+    }
+    selectedSizes[selectedNumber++] = membersNumber;
+    return true;
+  }
+
+  /**
+   * Get the number of selected regions.
+   *
+   * @return number of selected regions.
+   */
+  public int size() {
+    return selectedNumber;
+  }
+}
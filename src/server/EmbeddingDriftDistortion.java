@@ -0,0 +1,109 @@
+package server;
+
+import java.util.Random;
+
+/**
+ * Distortion measure comparing FastRP embeddings of the nodes in the two graphs (Chen et al.
+ * 2019), without any spectrum. A very sparse random projection R, entries sqrt(3) times +1 or -1
+ * with probability 1/6 each and 0 otherwise, is propagated through the transition matrix D^-1 A of
+ * each graph, each propagation normalized to unit rows, and the embedding of a node is the sum of
+ * its normalized rows. The degree scaling cancels in the normalization, so the products are A x.
+ * Both graphs start from the same R, so a node whose neighborhood didn't change gets the same
+ * embedding, and its distortion value is the squared distance between its two embeddings. The
+ * products are run on the adjacency store, split across threads by BlockOperator.applyBlock, so
+ * the time is iterations x edges x dimensions and the memory nodes x dimensions.
+ */
+public class EmbeddingDriftDistortion {
+
+  // Name of the measure, selectable alongside the measures of visualize_map.
+  public static final String NAME = "embedding-drift";
+  // Sparsity of the random projection, one entry in SPARSITY is not zero.
+  private static final int SPARSITY = 3;
+
+  // Adjacency matrices of graph1 and graph2.
+  private SparseMatrix adjacency1;
+  private SparseMatrix adjacency2;
+
+  /**
+   * Constructor.
+   *
+   * @param adjacency1 symmetric adjacency matrix of graph1.
+   * @param adjacency2 symmetric adjacency matrix of graph2, of the same size.
+   */
+  public EmbeddingDriftDistortion(SparseMatrix adjacency1, SparseMatrix adjacency2) {
+    this.adjacency1 = adjacency1;
+    this.adjacency2 = adjacency2;
+  }
+
+  /**
+   * Compute the distortion values of the nodes for the embeddings of 1 to r propagations, so the
+   * first vectors show the changes of the direct neighborhoods and the next ones the changes of
+   * larger areas.
+   *
+   * @param dimensions number of dimensions of the embeddings, the relative error of the distances
+   *        decreases as its inverse square root.
+   * @param r number of distortion vectors to return.
+   * @return distortion values stacked column wise as nodesNumber x r.
+   */
+  public double[] getDistortionValues(int dimensions, int r) {
+    int n = adjacency1.getSize();
+    // Propagated projections of each graph, the current and the next one.
+    double[][] current1 = new double[dimensions][n];
+    double[][] current2 = new double[dimensions][n];
+    double[][] next1 = new double[dimensions][n];
+    double[][] next2 = new double[dimensions][n];
+    // Difference of the embeddings of the two graphs, the sums of the normalized propagations.
+    double[][] drift = new double[dimensions][n];
+    // Seeded to get the same results for the same input.
+    Random random = new Random(1);
+    double entry = Math.sqrt(SPARSITY);
+    for (int d = 0; d < dimensions; d++) {
+      for (int i = 0; i < n; i++) {
+        int draw = random.nextInt(2 * SPARSITY);
+        current1[d][i] = draw == 0 ? entry : draw == 1 ? -entry : 0;
+      }
+      System.arraycopy(current1[d], 0, current2[d], 0, n);
+    }
+    double[] values = new double[n * r];
+    for (int c = 0; c < r; c++) {
+      adjacency1.applyBlock(current1, next1);
+      adjacency2.applyBlock(current2, next2);
+      normalize(next1);
+      normalize(next2);
+      for (int d = 0; d < dimensions; d++) {
+        for (int i = 0; i < n; i++) {
+          drift[d][i] += next1[d][i] - next2[d][i];
+          values[c * n + i] += drift[d][i] * drift[d][i];
+        }
+      }
+      double[][] swap = current1;
+      current1 = next1;
+      next1 = swap;
+      swap = current2;
+      current2 = next2;
+      next2 = swap;
+    }
+    return values;
+  }
+
+  /**
+   * Scale each node to a unit row over the dimensions. The rows of the nodes without edges stay
+   * zero.
+   */
+  private static void normalize(double[][] vectors) {
+    int n = vectors[0].length;
+    double[] norms = new double[n];
+    for (double[] vector : vectors) {
+      for (int i = 0; i < n; i++) {
+        norms[i] += vector[i] * vector[i];
+      }
+    }
+    for (double[] vector : vectors) {
+      for (int i = 0; i < n; i++) {
+        if (norms[i] > 0) {
+          vector[i] /= Math.sqrt(norms[i]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the evaluation measures of the regions as they are computed, one run at a time. A run is
+ * a set of regions evaluated together, e.g. the regions of one method or of one value of k and
+ * threshold, and each region is written as its MEASURES_NUMBER evaluation measures in the order of
+ * RegionEvaluator.
+ */
+public interface EvaluationSink extends Closeable {
+
+  // Names of the evaluation measures, in the order of RegionEvaluator.
+  String[] MEASURE_NAMES = {"change_over_edges_graph1", "change_over_edges_graph2",
+      "change_over_edges_min", "change_over_degree_graph1", "change_over_degree_graph2",
+      "change_over_degree_min"};
+
+  /**
+   * Start a new run. The regions written until the next call belong to this run.
+   *
+   * @param label identifying the run.
+   * @throws IOException
+   */
+  void startRun(String label) throws IOException;
+
+  /**
+   * Write the evaluation measures of a region of the current run.
+   *
+   * @param region number of the region within the run.
+   * @param measures MEASURES_NUMBER evaluation measures of the region.
+   * @throws IOException
+   */
+  void writeRegion(int region, double[] measures) throws IOException;
+
+  /**
+   * End the current run. A run that is started again before it is ended is incomplete, and sinks
+   * may drop it.
+   *
+   * @throws IOException
+   */
+  void endRun() throws IOException;
+}
@@ -1,13 +1,16 @@
 package server;
 
 import java.io.IOException;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Locale;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
@@ -31,6 +34,10 @@ public class GraphCalculator {
   private HashMap<Integer, double[][]> bestMeasures;
   // The threshold that achieves the best evaluation measures for each method.
   private HashMap<Integer, double[]> thresholdsUsed;
+  // Sink receiving the evaluation measures of evaluateEdges.
+  private EvaluationSink evaluationSink;
+  // Indexed snapshot of the graphs, built on demand and reset whenever they change.
+  private IndexedGraphPair<Node> graphPair;
 
   /**
    * Constructor initializes the values by setting the minDelta to a maximum value maxDelta to a
@@ -43,6 +50,39 @@ public class GraphCalculator {
     maxDelta = Double.MIN_VALUE;
     bestMeasures = new HashMap<Integer, double[][]>();
     thresholdsUsed = new HashMap<Integer, double[]>();
+    evaluationSink = new ConsoleEvaluationSink(System.out);
+  }
+
+  /**
+   * Get the sink receiving the evaluation measures of evaluateEdges.
+   * 
+   * @return evaluation sink.
+   */
+  public EvaluationSink getEvaluationSink() {
+    return evaluationSink;
+  }
+
+  /**
+   * Set the sink receiving the evaluation measures of evaluateEdges, by default they are printed
+   * to the console.
+   * 
+   * @param evaluationSink evaluation sink.
+   */
+  public void setEvaluationSink(EvaluationSink evaluationSink) {
+    this.evaluationSink = evaluationSink;
+  }
+
+  /**
+   * Get the indexed snapshot of graph1 and graph2, built once for the current graphs and deltas and
+   * shared by the evaluations and the searches until they change.
+   * 
+   * @return indexed graph pair.
+   */
+  public IndexedGraphPair<Node> getGraphPair() {
+    if (graphPair == null) {
+      graphPair = IndexedGraphPair.fromGraphCalculator(this);
+    }
+    return graphPair;
   }
 
   /**
@@ -61,6 +101,7 @@ public class GraphCalculator {
    */
   public void setGraph1(HashMap<Node, HashMap<Node, Integer>> graph1) {
     this.graph1 = graph1;
+    graphPair = null;
   }
 
   /**
@@ -79,6 +120,7 @@ public class GraphCalculator {
    */
   public void setGraph2(HashMap<Node, HashMap<Node, Integer>> graph2) {
     this.graph2 = graph2;
+    graphPair = null;
   }
 
   /**
@@ -97,6 +139,7 @@ public class GraphCalculator {
    */
   public void setNodeMapping1(HashMap<String, Node> nodeMapping1) {
     this.nodeMapping1 = nodeMapping1;
+    graphPair = null;
   }
 
   /**
@@ -115,6 +158,7 @@ public class GraphCalculator {
    */
   public void setNodeMapping2(HashMap<String, Node> nodeMapping2) {
     this.nodeMapping2 = nodeMapping2;
+    graphPair = null;
   }
 
   /**
@@ -171,6 +215,7 @@ public class GraphCalculator {
     reader2.readGraph(inputFile2);
     graph2 = reader2.getGraph();
     nodeMapping2 = reader2.getNodeMapping();
+    graphPair = null;
   }
 
   /**
@@ -191,6 +236,7 @@ public class GraphCalculator {
     reader2.loadGraphArray(graph2Array);
     graph2 = reader2.getGraph();
     nodeMapping2 = reader2.getNodeMapping();
+    graphPair = null;
   }
 
   /**
@@ -230,6 +276,8 @@ public class GraphCalculator {
    * its edges in graph 1 and its edges in graph 2.
    */
   public void calculateDeltaGraph() {
+    // The deltas are part of the indexed snapshot.
+    graphPair = null;
     for (Node node1 : graph1.keySet()) {
       HashMap<Node, Integer> node1NeighborsInGraph1 = graph1.get(node1);
       if(node1NeighborsInGraph1 == null) {
@@ -287,6 +335,7 @@ public class GraphCalculator {
    * @param numberOfNodes number of nodes in the graph.
    */
   public void removeNodesBelowThreshold(double step, int numberOfNodes) {
+    graphPair = null;
     HashSet<Node> graph1Nodes = new HashSet<Node>();
     // get graph1 nodes.
     graph1Nodes.addAll(graph1.keySet());
@@ -527,6 +576,10 @@ public class GraphCalculator {
    */
   public double[] evaluate(ArrayList<HashSet<Node>> regions) {
     double[] changeValues = new double[regions.size()];
+    // Truncate the printed values to three decimals, with a decimal point in any locale.
+    DecimalFormat format =
+        new DecimalFormat("0.0##", DecimalFormatSymbols.getInstance(Locale.ROOT));
+    format.setRoundingMode(RoundingMode.DOWN);
     int index = 0;
     for (HashSet<Node> region : regions) {
       double changeValue = 0.0;
@@ -536,10 +589,7 @@ public class GraphCalculator {
       System.out.println("Region size  = " + region.size());
       changeValue = changeValue / region.size();
       changeValues[index++] = changeValue;
-      String changeValueString = changeValue + "";
-      String[] splits = changeValueString.split("\\.");
-      changeValueString = splits[0] + "." + splits[1].substring(0, Math.min(3, splits[1].length()));
-      System.out.println("R" + index + " = " + changeValueString);
+      System.out.println("R" + index + " = " + format.format(changeValue));
     }
     return changeValues;
   }
@@ -556,48 +606,24 @@ public class GraphCalculator {
   public double[][] evaluatetThreshoding(ArrayList<HashSet<Node>> regions, int methodID,
       double threshold) {
     // Six evaluation measures for each region.
-    double[][] changeValues = new double[regions.size()][6];
-    int index = 0;
-    for (HashSet<Node> region : regions) { // Calculate evaluation measures for each region.
-      double changeValue = 0.0; // Sum of change values of the nodes in the region.
-      double edgesWithinRegionInGraph1 = 0.0; // Number of edges in the region in graph1.
-      double edgesWithinRegionInGraph2 = 0.0; // Number of edges in the region in graph2.
-      double nodesDegreeInGraph1 = 0.0; // Sum of node degrees of nodes in the region in graph1.
-      double nodesDegreeInGraph2 = 0.0; // Sum of node degrees of nodes in the region in graph2.
-      for (Node node : region) {
-        HashMap<Node, Integer> node1Neighbors = graph1.get(nodeMapping1.get(node.getId()));
-        HashMap<Node, Integer> node2Neighbors = graph2.get(nodeMapping2.get(node.getId()));
-        nodesDegreeInGraph1 += node1Neighbors.size();
-        nodesDegreeInGraph2 += node2Neighbors.size();
-        for (Node node1Neighbor : node1Neighbors.keySet()) {
-          if (region.contains(nodeMapping2.get(node1Neighbor.getId()))) {
-            edgesWithinRegionInGraph1++;
-          }
-        }
-        for (Node node2Neighbor : node2Neighbors.keySet()) {
-          if (region.contains(node2Neighbor)) {
-            edgesWithinRegionInGraph2++;
-          }
-        }
-        changeValue += node.getDistortionValue();
-      }
-      // Calculate the evaluation measures and store them.
-      changeValues[index][0] = changeValue / Math.max(1, edgesWithinRegionInGraph1);
-      changeValues[index][1] = changeValue / Math.max(1, edgesWithinRegionInGraph2);
-      changeValues[index][2] =
-          changeValue
-              / Math.min(Math.max(1, edgesWithinRegionInGraph1),
-                  Math.max(1, edgesWithinRegionInGraph2));
-      changeValues[index][3] = changeValue / Math.max(1, nodesDegreeInGraph1);
-      changeValues[index][4] = changeValue / Math.max(1, nodesDegreeInGraph2);
-      changeValues[index][5] =
-          changeValue
-              / Math.min(Math.max(1, nodesDegreeInGraph1), Math.max(1, nodesDegreeInGraph2));
-      index++;
-    }
+    double[][] changeValues = evaluateMeasures(regions);
+    updateBestThresholdingValues(changeValues, methodID, threshold);
+    return changeValues;
+  }
+
+  /**
+   * Keep the evaluation measures of this threshold for the measures where they are better than the
+   * ones of the previous thresholds.
+   * 
+   * @param changeValues six evaluation measures for each region.
+   * @param methodID id of the method we are evaluating.
+   * @param threshold used when we run the method.
+   */
+  public void updateBestThresholdingValues(double[][] changeValues, int methodID,
+      double threshold) {
     double[][] bestChangeValues = bestMeasures.get(methodID);
     if (bestChangeValues == null) {
-      bestChangeValues = new double[regions.size()][6];
+      bestChangeValues = new double[changeValues.length][6];
     }
     double[] bestThreshold = thresholdsUsed.get(methodID);
     if (bestThreshold == null) {
@@ -605,7 +631,7 @@ public class GraphCalculator {
     }
     // Compare whether the current evaluation measures are better than the previous ones, using
     // different threshold.
-    for (index = 0; index < bestChangeValues[0].length; index++) {
+    for (int index = 0; index < bestChangeValues[0].length; index++) {
       double currentSum = sumArray(getColumn(changeValues, index));
       double bestSum = sumArray(getColumn(bestChangeValues, index));
       if (currentSum > bestSum) { // The current measures are better, store them.
@@ -619,7 +645,6 @@ public class GraphCalculator {
     // Store the new updated measures.
     bestMeasures.put(methodID, bestChangeValues);
     thresholdsUsed.put(methodID, bestThreshold);
-    return changeValues;
   }
 
   /**
@@ -671,92 +696,49 @@ public class GraphCalculator {
   }
 
   /**
-   * Calculates the distortion evaluation metric for the given regions.
+   * Calculates the distortion evaluation metric for the given regions and writes them to the
+   * evaluation sink as one run.
    * 
    * @param regions to evaluate.
+   * @param label identifying the run in the evaluation sink.
    * @return double[][] array of the same size as the region, containing the distortion measures for
    *         each region.
+   * @throws IOException
    */
-  public double[][] evaluateEdges(ArrayList<HashSet<Node>> regions) {
-    double[][] changeValues = new double[regions.size()][6];
+  public double[][] evaluateEdges(ArrayList<HashSet<Node>> regions, String label)
+      throws IOException {
+    double[][] changeValues = evaluateMeasures(regions);
+    evaluationSink.startRun(label);
+    for (int index = 0; index < changeValues.length; index++) {
+      evaluationSink.writeRegion(index, changeValues[index]);
+    }
+    evaluationSink.endRun();
+    return changeValues;
+  }
+
+  /**
+   * Calculate the six evaluation measures of the given regions over the current graphs, with a
+   * single RegionEvaluator pass over the indexed graphs instead of HashMap lookups per neighbor.
+   * 
+   * @param regions to evaluate, given as graph2 nodes.
+   * @return six evaluation measures for each region.
+   */
+  private double[][] evaluateMeasures(ArrayList<HashSet<Node>> regions) {
+    IndexedGraphPair<Node> graphPair = getGraphPair();
+    int[][] regionsIndices = new int[regions.size()][];
     int index = 0;
-    // Strings to print.
-    String changeOverEdgesWithinRegionInGraph1Result = "";
-    String changeOverEdgesWithinRegionInGraph2Result = "";
-    String changeOverEdgesWithinRegionInMinGraphResult = "";
-    String changeOverNodesDegreeInGraph1Result = "";
-    String changeOverNodesDegreeInGraph2Result = "";
-    String changeOverNodesDegreeInMinGraphResult = "";
     for (HashSet<Node> region : regions) {
-      double changeValue = 0.0; // Sum of change values of the nodes in the region.
-      double edgesWithinRegionInGraph1 = 0.0; // Number of edges in the region in graph1.
-      double edgesWithinRegionInGraph2 = 0.0; // Number of edges in the region in graph2.
-      double nodesDegreeInGraph1 = 0.0; // Sum of node degrees of nodes in the region in graph1.
-      double nodesDegreeInGraph2 = 0.0; // Sum of node degrees of nodes in the region in graph2.
-      for (Node node : region) { // for each node in the region.
-        HashMap<Node, Integer> node1Neighbors = graph1.get(nodeMapping1.get(node.getId()));
-        HashMap<Node, Integer> node2Neighbors = graph2.get(nodeMapping2.get(node.getId()));
-        nodesDegreeInGraph1 += node1Neighbors.size();
-        nodesDegreeInGraph2 += node2Neighbors.size();
-        for (Node node1Neighbor : node1Neighbors.keySet()) {
-          if (region.contains(nodeMapping2.get(node1Neighbor.getId()))) {
-            edgesWithinRegionInGraph1++;
-          }
-        }
-        for (Node node2Neighbor : node2Neighbors.keySet()) {
-          if (region.contains(node2Neighbor)) {
-            edgesWithinRegionInGraph2++;
-          }
+      int[] members = new int[region.size()];
+      int membersNumber = 0;
+      for (Node node : region) {
+        int member = graphPair.getIndex(nodeMapping2.get(node.getId()));
+        if (member >= 0) {
+          members[membersNumber++] = member;
         }
-        changeValue += node.getDistortionValue();
       }
-      // Store change values.
-      changeValues[index][0] = changeValue / Math.max(1, edgesWithinRegionInGraph1);
-      changeValues[index][1] = changeValue / Math.max(1, edgesWithinRegionInGraph2);
-      changeValues[index][2] =
-          changeValue
-              / Math.min(Math.max(1, edgesWithinRegionInGraph1),
-                  Math.max(1, edgesWithinRegionInGraph2));
-      changeValues[index][3] = changeValue / Math.max(1, nodesDegreeInGraph1);
-      changeValues[index][4] = changeValue / Math.max(1, nodesDegreeInGraph2);
-      changeValues[index][5] =
-          changeValue
-              / Math.min(Math.max(1, nodesDegreeInGraph1), Math.max(1, nodesDegreeInGraph2));
-      // Add the result to the string formating that will be printed at the end.
-      changeOverEdgesWithinRegionInGraph1Result =
-          changeOverEdgesWithinRegionInGraph1Result + "\nR" + index + "="
-              + getString(changeValues[index][0]);
-      changeOverEdgesWithinRegionInGraph2Result =
-          changeOverEdgesWithinRegionInGraph2Result + "\nR" + index + "="
-              + getString(changeValues[index][1]);
-      changeOverEdgesWithinRegionInMinGraphResult =
-          changeOverEdgesWithinRegionInMinGraphResult + "\nR" + index + "="
-              + getString(changeValues[index][2]);
-      changeOverNodesDegreeInGraph1Result =
-          changeOverNodesDegreeInGraph1Result + "\nR" + index + "="
-              + getString(changeValues[index][3]);
-      changeOverNodesDegreeInGraph2Result =
-          changeOverNodesDegreeInGraph2Result + "\nR" + index + "="
-              + getString(changeValues[index][4]);
-      changeOverNodesDegreeInMinGraphResult =
-          changeOverNodesDegreeInMinGraphResult + "\nR" + index + "="
-              + getString(changeValues[index][5]);
-      index++;
+      regionsIndices[index++] = Arrays.copyOf(members, membersNumber);
     }
-    // Print the evaluation results.
-    System.out.print("Within graph 1");
-    System.out.println(changeOverEdgesWithinRegionInGraph1Result);
-    System.out.print("Within graph 2");
-    System.out.println(changeOverEdgesWithinRegionInGraph2Result);
-    System.out.print("Within min graph 1,2");
-    System.out.println(changeOverEdgesWithinRegionInMinGraphResult);
-    System.out.print("Degree graph 1");
-    System.out.println(changeOverNodesDegreeInGraph1Result);
-    System.out.print("Degree graph 2");
-    System.out.println(changeOverNodesDegreeInGraph2Result);
-    System.out.print("Degree min graph 1,2");
-    System.out.println(changeOverNodesDegreeInMinGraphResult);
-    return changeValues;
+    return new RegionEvaluator(graphPair).evaluate(regionsIndices);
   }
 
   public String getString(double value) {
@@ -0,0 +1,204 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * One level of coarsening of a graph pair by heavy edge matching on the shared node ids, as in
+ * the multilevel graph partitioners. The nodes are visited in a random order and each unmatched
+ * node is matched with the unmatched neighbor of the heaviest edge, summing its weights in graph1
+ * and graph2, so the two graphs are coarsened with the same aggregates. The coarse graphs have one
+ * node for each matched pair or unmatched node, and the weights of the edges between the
+ * aggregates are summed, the edges within an aggregate becoming self loops, so the weighted
+ * degrees are kept. The time and memory are linear in the number of edges.
+ */
+public class GraphCoarsening {
+
+  // Adjacency matrices of the fine graph1 and graph2.
+  private SparseMatrix adjacency1;
+  private SparseMatrix adjacency2;
+  // Coarse node of each fine node.
+  private int[] aggregates;
+  // Number of coarse nodes.
+  private int coarseSize;
+  // Adjacency matrices of the coarse graph1 and graph2.
+  private SparseMatrix coarseAdjacency1;
+  private SparseMatrix coarseAdjacency2;
+
+  /**
+   * Constructor coarsens the graphs.
+   *
+   * @param adjacency1 symmetric adjacency matrix of graph1.
+   * @param adjacency2 symmetric adjacency matrix of graph2, of the same size.
+   * @param random random generator of the order of the nodes.
+   */
+  public GraphCoarsening(SparseMatrix adjacency1, SparseMatrix adjacency2, Random random) {
+    this.adjacency1 = adjacency1;
+    this.adjacency2 = adjacency2;
+    int n = adjacency1.getSize();
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      int j = random.nextInt(i + 1);
+      order[i] = order[j];
+      order[j] = i;
+    }
+    aggregates = new int[n];
+    Arrays.fill(aggregates, -1);
+    coarseSize = 0;
+    for (int i : order) {
+      if (aggregates[i] >= 0) {
+        continue;
+      }
+      int match = getHeaviestUnmatched(i);
+      aggregates[i] = coarseSize;
+      if (match >= 0) {
+        aggregates[match] = coarseSize;
+      }
+      coarseSize++;
+    }
+    // Fine nodes of each coarse node, in CSR format.
+    int[] memberOffsets = new int[coarseSize + 1];
+    for (int i = 0; i < n; i++) {
+      memberOffsets[aggregates[i] + 1]++;
+    }
+    for (int c = 0; c < coarseSize; c++) {
+      memberOffsets[c + 1] += memberOffsets[c];
+    }
+    int[] members = new int[n];
+    int[] next = Arrays.copyOf(memberOffsets, coarseSize);
+    for (int i = 0; i < n; i++) {
+      members[next[aggregates[i]]++] = i;
+    }
+    coarseAdjacency1 = coarsen(adjacency1, memberOffsets, members);
+    coarseAdjacency2 = coarsen(adjacency2, memberOffsets, members);
+  }
+
+  /**
+   * Get the coarse node of each fine node.
+   *
+   * @return coarse node index by fine node index.
+   */
+  public int[] getAggregates() {
+    return aggregates;
+  }
+
+  /**
+   * Get the number of coarse nodes.
+   *
+   * @return number of coarse nodes.
+   */
+  public int getCoarseSize() {
+    return coarseSize;
+  }
+
+  /**
+   * Get the fine graph1 adjacency matrix.
+   *
+   * @return fine graph1 adjacency matrix.
+   */
+  public SparseMatrix getAdjacency1() {
+    return adjacency1;
+  }
+
+  /**
+   * Get the coarse graph1 adjacency matrix.
+   *
+   * @return coarse graph1 adjacency matrix.
+   */
+  public SparseMatrix getCoarseAdjacency1() {
+    return coarseAdjacency1;
+  }
+
+  /**
+   * Get the coarse graph2 adjacency matrix.
+   *
+   * @return coarse graph2 adjacency matrix.
+   */
+  public SparseMatrix getCoarseAdjacency2() {
+    return coarseAdjacency2;
+  }
+
+  /**
+   * Interpolate coarse vectors to the fine nodes, each fine node taking the value of its coarse
+   * node.
+   *
+   * @param vectors vectors over the coarse nodes, as rows.
+   * @return vectors over the fine nodes, as rows.
+   */
+  public double[][] interpolate(double[][] vectors) {
+    double[][] interpolated = new double[vectors.length][aggregates.length];
+    for (int c = 0; c < vectors.length; c++) {
+      for (int i = 0; i < aggregates.length; i++) {
+        interpolated[c][i] = vectors[c][aggregates[i]];
+      }
+    }
+    return interpolated;
+  }
+
+  /**
+   * Unmatched neighbor of node i with the heaviest edge in graph1 plus graph2, or -1 if all its
+   * neighbors are matched.
+   */
+  private int getHeaviestUnmatched(int i) {
+    int[] offsets1 = adjacency1.getOffsets();
+    int[] columns1 = adjacency1.getColumns();
+    double[] values1 = adjacency1.getValues();
+    int[] offsets2 = adjacency2.getOffsets();
+    int[] columns2 = adjacency2.getColumns();
+    double[] values2 = adjacency2.getValues();
+    int match = -1;
+    double heaviest = 0;
+    int p1 = offsets1[i];
+    int p2 = offsets2[i];
+    // Merge the two sorted rows.
+    while (p1 < offsets1[i + 1] || p2 < offsets2[i + 1]) {
+      int column1 = p1 < offsets1[i + 1] ? columns1[p1] : Integer.MAX_VALUE;
+      int column2 = p2 < offsets2[i + 1] ? columns2[p2] : Integer.MAX_VALUE;
+      int column = Math.min(column1, column2);
+      double weight =
+          (column1 == column ? values1[p1++] : 0) + (column2 == column ? values2[p2++] : 0);
+      if (column != i && aggregates[column] < 0 && weight > heaviest) {
+        heaviest = weight;
+        match = column;
+      }
+    }
+    return match;
+  }
+
+  /**
+   * Coarse adjacency matrix summing the weights of the fine edges between the aggregates.
+   */
+  private SparseMatrix coarsen(SparseMatrix adjacency, int[] memberOffsets, int[] members) {
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    int[] coarseOffsets = new int[coarseSize + 1];
+    int[] coarseColumns = new int[columns.length];
+    double[] coarseValues = new double[columns.length];
+    // Position of each coarse column in the current coarse row, valid if at least rowStart.
+    int[] positions = new int[coarseSize];
+    Arrays.fill(positions, -1);
+    int entries = 0;
+    for (int c = 0; c < coarseSize; c++) {
+      int rowStart = entries;
+      for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+        int i = members[m];
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+          int column = aggregates[columns[p]];
+          if (positions[column] >= rowStart) {
+            coarseValues[positions[column]] += values[p];
+          } else {
+            positions[column] = entries;
+            coarseColumns[entries] = column;
+            coarseValues[entries++] = values[p];
+          }
+        }
+      }
+      SparseMatrix.sortRow(coarseColumns, coarseValues, rowStart, entries);
+      coarseOffsets[c + 1] = entries;
+    }
+    return new SparseMatrix(coarseSize, coarseOffsets,
+        Arrays.copyOf(coarseColumns, entries),
+        Arrays.copyOf(coarseValues, entries));
+  }
+}
@@ -0,0 +1,164 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Regions of the nodes labeled as changed by a graph cut of graph1, the Java port of run_GCMex.m.
+ * As there, the cost of the unchanged label of a node is its distortion value normalized between 0
+ * and 1, the cost of the changed label is the complement, and the pairwise costs are on the graph1
+ * edges. Each connected component of changed nodes in graph1 is a region, scored by the sum of the
+ * distortion values of its nodes.
+ */
+public class GraphCutRegionSelector {
+
+  // Label of the unchanged nodes, the initial label of all the nodes.
+  public static final int UNCHANGED = 0;
+  // Label of the changed nodes.
+  public static final int CHANGED = 1;
+
+  // Number of nodes of the graphs.
+  private int nodesNumber;
+  // Adjacency matrices of graph1 and graph2.
+  private SparseMatrix adjacency1;
+  private SparseMatrix adjacency2;
+  // Graph cut over the graph1 edges.
+  private GraphCutSegmenter segmenter;
+  // Label of each node from the last segmentation, or null.
+  private int[] labels = null;
+
+  /**
+   * Constructor.
+   *
+   * @param graph1 graph1 edges where each index has from node id, to node id and edge value.
+   * @param graph2 graph2 edges.
+   */
+  public GraphCutRegionSelector(double[][] graph1, double[][] graph2) {
+    nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
+    adjacency1 = SparseMatrix.fromEdges(graph1, nodesNumber);
+    adjacency2 = SparseMatrix.fromEdges(graph2, nodesNumber);
+    segmenter = new GraphCutSegmenter(adjacency1);
+  }
+
+  /**
+   * Set the cost of a graph1 edge of weight 1 between a changed and an unchanged node.
+   *
+   * @param smoothness cost of the edge, 0 thresholds the normalized distortion values at 0.5.
+   */
+  public void setSmoothness(double smoothness) {
+    segmenter.setSmoothness(smoothness);
+  }
+
+  /**
+   * Get the labels of the last segmentation.
+   *
+   * @return UNCHANGED or CHANGED for each node by index, or null before getRegions.
+   */
+  public int[] getLabels() {
+    return labels;
+  }
+
+  /**
+   * Segment the nodes and get the regions of changed nodes.
+   *
+   * @param distortionValues distortion values of the nodes, as returned by visualize_map. Only the
+   *        first distortion vector is used, as in run_GCMex.
+   * @return regions with their graph1 and graph2 edges, in decreasing score order, or an empty list
+   *         if there are no distortion values, e.g. when k exceeds the number of nodes.
+   */
+  public ArrayList<RegionResult> getRegions(double[] distortionValues) {
+    if (distortionValues.length < nodesNumber) {
+      labels = null;
+      return new ArrayList<RegionResult>();
+    }
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < nodesNumber; i++) {
+      min = Math.min(min, distortionValues[i]);
+      max = Math.max(max, distortionValues[i]);
+    }
+    double[][] unary = new double[2][nodesNumber];
+    for (int i = 0; i < nodesNumber; i++) {
+      unary[UNCHANGED][i] = max > min ? (distortionValues[i] - min) / (max - min) : 0;
+      unary[CHANGED][i] = 1 - unary[UNCHANGED][i];
+    }
+    labels = segmenter.segment(unary, new int[nodesNumber]);
+
+    ArrayList<RegionResult> regions = new ArrayList<RegionResult>();
+    int[] offsets = adjacency1.getOffsets();
+    int[] columns = adjacency1.getColumns();
+    // Region of each node, -1 if it isn't in a region yet.
+    int[] regionOf = new int[nodesNumber];
+    Arrays.fill(regionOf, -1);
+    int[] queue = new int[nodesNumber];
+    for (int seed = 0; seed < nodesNumber; seed++) {
+      if (labels[seed] != CHANGED || regionOf[seed] >= 0) {
+        continue;
+      }
+      // Breadth first search of the changed nodes connected to the seed.
+      int size = 0;
+      queue[size++] = seed;
+      regionOf[seed] = regions.size();
+      double score = 0;
+      for (int head = 0; head < size; head++) {
+        int i = queue[head];
+        score += distortionValues[i];
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+          int j = columns[p];
+          if (labels[j] == CHANGED && regionOf[j] < 0) {
+            regionOf[j] = regions.size();
+            queue[size++] = j;
+          }
+        }
+      }
+      int[] vertices = new int[size];
+      for (int v = 0; v < size; v++) {
+        vertices[v] = queue[v] + 1;
+      }
+      RegionResult region =
+          new RegionResult(vertices, getEdges(adjacency2, queue, size, regionOf), score);
+      region.setEdges1(getEdges(adjacency1, queue, size, regionOf));
+      regions.add(region);
+    }
+    Collections.sort(regions, new Comparator<RegionResult>() {
+      @Override
+      public int compare(RegionResult region1, RegionResult region2) {
+        return Double.compare(region2.getScore(), region1.getScore());
+      }
+    });
+    return regions;
+  }
+
+  /**
+   * Edges of a graph between the nodes of a region, in both directions, as (source, destination)
+   * id pairs.
+   */
+  private static int[] getEdges(SparseMatrix adjacency, int[] members, int size, int[] regionOf) {
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    int region = regionOf[members[0]];
+    int count = 0;
+    for (int m = 0; m < size; m++) {
+      int i = members[m];
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        if (regionOf[columns[p]] == region && columns[p] != i) {
+          count++;
+        }
+      }
+    }
+    int[] edges = new int[2 * count];
+    count = 0;
+    for (int m = 0; m < size; m++) {
+      int i = members[m];
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        if (regionOf[columns[p]] == region && columns[p] != i) {
+          edges[count++] = i + 1;
+          edges[count++] = columns[p] + 1;
+        }
+      }
+    }
+    return edges;
+  }
+}
@@ -0,0 +1,179 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Graph cut labeling of the nodes, a Java port of the alpha-expansion of GCMex. The energy of a
+ * labeling is the sum of the unary cost of the label of each node, plus the smoothness times the
+ * weight of each edge whose nodes have different labels, the Potts model. Each expansion move lets
+ * every node either keep its label or switch to a label alpha, and the best move is a min cut
+ * computed by MaxFlowGraph. The moves are repeated over all the labels until none decreases the energy.
+ */
+public class GraphCutSegmenter {
+
+  // Default Potts cost of an edge of weight 1 with different labels.
+  public static final double DEFAULT_SMOOTHNESS = 0.1;
+  // Max number of cycles over the labels.
+  private static final int MAX_CYCLES = 100;
+
+  // Edges between the nodes, each edge is counted once from the upper triangle.
+  private SparseMatrix adjacency;
+  // Potts cost of an edge of weight 1 with different labels.
+  private double smoothness = DEFAULT_SMOOTHNESS;
+  // Graph of the expansion moves, reused between the moves.
+  private MaxFlowGraph graph = null;
+  // Number of expansion moves done by the last segmentation.
+  private int moves = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param adjacency symmetric adjacency matrix of the nodes, the edge values are the weights.
+   */
+  public GraphCutSegmenter(SparseMatrix adjacency) {
+    this.adjacency = adjacency;
+  }
+
+  /**
+   * Set the Potts cost of an edge of weight 1 with different labels.
+   *
+   * @param smoothness Potts cost, 0 labels each node by its unary costs only.
+   */
+  public void setSmoothness(double smoothness) {
+    this.smoothness = smoothness;
+  }
+
+  /**
+   * Get the number of expansion moves done by the last segmentation.
+   *
+   * @return number of moves.
+   */
+  public int getMoves() {
+    return moves;
+  }
+
+  /**
+   * Label the nodes by alpha-expansion, starting from the given labels.
+   *
+   * @param unary cost of each label for each node, as labels x nodes.
+   * @param labels initial label of each node, from 0 to the number of labels - 1.
+   * @return labels minimizing the energy locally.
+   */
+  public int[] segment(double[][] unary, int[] labels) {
+    labels = Arrays.copyOf(labels, labels.length);
+    moves = 0;
+    double energy = getEnergy(unary, labels);
+    for (int cycle = 0; cycle < MAX_CYCLES; cycle++) {
+      boolean decreased = false;
+      for (int alpha = 0; alpha < unary.length; alpha++) {
+        int[] expanded = expand(unary, labels, alpha);
+        moves++;
+        double expandedEnergy = getEnergy(unary, expanded);
+        if (expandedEnergy < energy) {
+          labels = expanded;
+          energy = expandedEnergy;
+          decreased = true;
+        }
+      }
+      if (!decreased) {
+        break;
+      }
+    }
+    return labels;
+  }
+
+  /**
+   * Energy of a labeling.
+   *
+   * @param unary cost of each label for each node, as labels x nodes.
+   * @param labels label of each node.
+   * @return sum of the unary costs and the Potts costs of the edges.
+   */
+  public double getEnergy(double[][] unary, int[] labels) {
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    double energy = 0;
+    for (int i = 0; i < labels.length; i++) {
+      energy += unary[labels[i]][i];
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        if (columns[p] > i && labels[columns[p]] != labels[i]) {
+          energy += smoothness * values[p];
+        }
+      }
+    }
+    return energy;
+  }
+
+  /**
+   * Best expansion move of alpha, where the nodes in the source segment keep their label and the
+   * nodes in the sink segment switch to alpha. The nodes already labeled alpha are left out.
+   */
+  private int[] expand(double[][] unary, int[] labels, int alpha) {
+    int n = labels.length;
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    if (graph == null) {
+      graph = new MaxFlowGraph(n, offsets[n] / 2);
+    } else {
+      graph.reset();
+    }
+    for (int i = 0; i < n; i++) {
+      if (labels[i] == alpha) {
+        continue;
+      }
+      // Keeping the label cuts the sink capacity, switching to alpha the source one.
+      addTerm(graph, i, unary[labels[i]][i], unary[alpha][i]);
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        int j = columns[p];
+        double weight = smoothness * values[p];
+        if (labels[j] == alpha) {
+          // Only keeping the label of i separates it from j.
+          addTerm(graph, i, weight, 0);
+        } else if (j > i) {
+          // Potts costs of keeping both labels, keeping only one of them, or switching both.
+          double keep = labels[i] != labels[j] ? weight : 0;
+          addTerm(graph, i, keep, weight, weight, 0, j);
+        }
+      }
+    }
+    graph.maxFlow();
+    int[] expanded = Arrays.copyOf(labels, n);
+    for (int i = 0; i < n; i++) {
+      if (labels[i] != alpha && !graph.isSource(i)) {
+        expanded[i] = alpha;
+      }
+    }
+    return expanded;
+  }
+
+  /**
+   * Add to a move graph the cost of node i keeping its label, cost0, or switching to alpha, cost1.
+   */
+  static void addTerm(MaxFlowGraph graph, int i, double cost0, double cost1) {
+    graph.addTerminalCapacities(i, cost1, cost0);
+  }
+
+  /**
+   * Add to a move graph the pairwise cost of nodes i and j: a when both keep their label, b when
+   * only i keeps it, c when only j keeps it, and d when both switch to alpha. The cost must be
+   * regular, a + d <= b + c, as the Potts costs of an expansion move are.
+   */
+  static void addTerm(MaxFlowGraph graph, int i, double a, double b, double c, double d, int j) {
+    graph.addTerminalCapacities(i, d, a);
+    b -= a;
+    c -= d;
+    if (b < 0) {
+      graph.addTerminalCapacities(i, 0, b);
+      graph.addTerminalCapacities(j, 0, -b);
+      graph.addEdge(i, j, 0, b + c);
+    } else if (c < 0) {
+      graph.addTerminalCapacities(i, 0, -c);
+      graph.addTerminalCapacities(j, 0, c);
+      graph.addEdge(i, j, b + c, 0);
+    } else {
+      graph.addEdge(i, j, b, c);
+    }
+  }
+}
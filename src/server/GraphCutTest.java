@@ -0,0 +1,233 @@
+package server;
+
+import java.util.Random;
+
+/**
+ * Tests of the graph cut segmentation, run with java server.GraphCutTest. The max flow of
+ * MaxFlowGraph is checked against a brute force min cut on small random graphs, with negative
+ * terminal capacities and with the pairwise terms of the expansion moves, and the segmentation is
+ * checked to never increase the energy of its initial labels.
+ */
+public class GraphCutTest {
+
+  // Number of random graphs of each test.
+  private static final int TRIALS = 500;
+  // Max number of nodes of the brute force graphs.
+  private static final int MAX_NODES = 10;
+  // Max difference between the max flow and the brute force min cut.
+  private static final double TOLERANCE = 1e-9;
+
+  /**
+   * Check that the max flow is the min cut, with terminal capacities of both signs.
+   */
+  static void testMaxFlow() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < TRIALS; trial++) {
+      int n = 1 + random.nextInt(MAX_NODES);
+      MaxFlowGraph graph = new MaxFlowGraph(n, 1);
+      // Capacities cut when each node ends in the sink segment, or in the source one.
+      double[][] terminal = new double[2][n];
+      double[][] capacities = new double[n][n];
+      for (int i = 0; i < n; i++) {
+        // Several calls per node, some with negative capacities.
+        for (int t = random.nextInt(3); t >= 0; t--) {
+          double source = 2 * random.nextDouble() - 0.5;
+          double sink = 2 * random.nextDouble() - 0.5;
+          graph.addTerminalCapacities(i, source, sink);
+          terminal[0][i] += source;
+          terminal[1][i] += sink;
+        }
+      }
+      int edgesNumber = random.nextInt(n * n + 1);
+      for (int e = 0; e < edgesNumber; e++) {
+        int i = random.nextInt(n);
+        int j = random.nextInt(n);
+        if (i != j) {
+          double capacity = random.nextInt(4) == 0 ? 0 : random.nextDouble();
+          double reverseCapacity = random.nextInt(4) == 0 ? 0 : random.nextDouble();
+          graph.addEdge(i, j, capacity, reverseCapacity);
+          capacities[i][j] += capacity;
+          capacities[j][i] += reverseCapacity;
+        }
+      }
+      double flow = graph.maxFlow();
+      double minCut = Double.POSITIVE_INFINITY;
+      for (int cut = 0; cut < 1 << n; cut++) {
+        minCut = Math.min(minCut, getCut(terminal, capacities, cut));
+      }
+      check(Math.abs(flow - minCut) <= TOLERANCE, "max flow " + flow + " differs from min cut "
+          + minCut + " in trial " + trial);
+      double cut = getCut(terminal, capacities, getSinkSegment(graph, n));
+      check(Math.abs(cut - minCut) <= TOLERANCE, "the segments cut " + cut + " instead of "
+          + minCut + " in trial " + trial);
+    }
+  }
+
+  /**
+   * Capacity of a cut, the bits of the cut being the nodes in the sink segment.
+   */
+  private static double getCut(double[][] terminal, double[][] capacities, int cut) {
+    int n = capacities.length;
+    double capacity = 0;
+    for (int i = 0; i < n; i++) {
+      boolean sink = (cut >> i & 1) == 1;
+      capacity += sink ? terminal[0][i] : terminal[1][i];
+      for (int j = 0; j < n; j++) {
+        if (!sink && (cut >> j & 1) == 1) {
+          capacity += capacities[i][j];
+        }
+      }
+    }
+    return capacity;
+  }
+
+  /**
+   * Nodes in the sink segment of the min cut of a graph, as the bits of an int.
+   */
+  private static int getSinkSegment(MaxFlowGraph graph, int n) {
+    int cut = 0;
+    for (int i = 0; i < n; i++) {
+      if (!graph.isSource(i)) {
+        cut |= 1 << i;
+      }
+    }
+    return cut;
+  }
+
+  /**
+   * Check that the max flow of the unary and regular pairwise terms of the expansion moves is the
+   * min energy, including the pairwise terms that add negative terminal capacities.
+   */
+  static void testTerms() {
+    Random random = new Random(2);
+    int negativeTerms = 0;
+    for (int trial = 0; trial < TRIALS; trial++) {
+      int n = 2 + random.nextInt(MAX_NODES - 1);
+      MaxFlowGraph graph = new MaxFlowGraph(n, 1);
+      // Cost of each node keeping its label or switching, and of each pair.
+      double[][] unary = new double[2][n];
+      double[][][] pairwise = new double[n][n][];
+      for (int i = 0; i < n; i++) {
+        unary[0][i] = 2 * random.nextDouble() - 1;
+        unary[1][i] = 2 * random.nextDouble() - 1;
+        GraphCutSegmenter.addTerm(graph, i, unary[0][i], unary[1][i]);
+      }
+      for (int i = 0; i < n; i++) {
+        for (int j = i + 1; j < n; j++) {
+          if (random.nextBoolean()) {
+            double a = 2 * random.nextDouble() - 1;
+            double b = 2 * random.nextDouble() - 1;
+            double c = 2 * random.nextDouble() - 1;
+            // Regular cost, a + d <= b + c.
+            double d = b + c - a - random.nextDouble();
+            if (b < a || c < d) {
+              negativeTerms++;
+            }
+            GraphCutSegmenter.addTerm(graph, i, a, b, c, d, j);
+            pairwise[i][j] = new double[] {a, b, c, d};
+          }
+        }
+      }
+      double flow = graph.maxFlow();
+      double minEnergy = Double.POSITIVE_INFINITY;
+      for (int switched = 0; switched < 1 << n; switched++) {
+        minEnergy = Math.min(minEnergy, getEnergy(unary, pairwise, switched));
+      }
+      check(Math.abs(flow - minEnergy) <= TOLERANCE, "max flow " + flow
+          + " differs from min energy " + minEnergy + " in trial " + trial);
+      double energy = getEnergy(unary, pairwise, getSinkSegment(graph, n));
+      check(Math.abs(energy - minEnergy) <= TOLERANCE, "the move has energy " + energy
+          + " instead of " + minEnergy + " in trial " + trial);
+    }
+    check(negativeTerms > 0, "no pairwise term adds negative terminal capacities");
+  }
+
+  /**
+   * Energy of a move, the bits of switched being the nodes switching to alpha.
+   */
+  private static double getEnergy(double[][] unary, double[][][] pairwise, int switched) {
+    int n = unary[0].length;
+    double energy = 0;
+    for (int i = 0; i < n; i++) {
+      int xi = switched >> i & 1;
+      energy += unary[xi][i];
+      for (int j = i + 1; j < n; j++) {
+        if (pairwise[i][j] != null) {
+          energy += pairwise[i][j][2 * xi + (switched >> j & 1)];
+        }
+      }
+    }
+    return energy;
+  }
+
+  /**
+   * Check that the segmentation never increases the energy of the initial labels, with negative
+   * unary costs, and that no single node can change its label to decrease the energy.
+   */
+  static void testSegment() {
+    Random random = new Random(3);
+    for (int trial = 0; trial < TRIALS; trial++) {
+      int n = 2 + random.nextInt(4 * MAX_NODES);
+      int labelsNumber = 2 + random.nextInt(4);
+      double[][] edges = new double[2 * n * 3][];
+      int count = 0;
+      for (int e = 0; e < 3 * n; e++) {
+        int i = random.nextInt(n);
+        int j = random.nextInt(n);
+        if (i != j) {
+          double weight = random.nextDouble();
+          edges[count++] = new double[] {i + 1, j + 1, weight};
+          edges[count++] = new double[] {j + 1, i + 1, weight};
+        }
+      }
+      double[][] graph = new double[count][];
+      System.arraycopy(edges, 0, graph, 0, count);
+      GraphCutSegmenter segmenter = new GraphCutSegmenter(SparseMatrix.fromEdges(graph, n));
+      segmenter.setSmoothness(random.nextDouble());
+      double[][] unary = new double[labelsNumber][n];
+      for (int l = 0; l < labelsNumber; l++) {
+        for (int i = 0; i < n; i++) {
+          unary[l][i] = 2 * random.nextDouble() - 1;
+        }
+      }
+      int[] labels = new int[n];
+      for (int i = 0; i < n; i++) {
+        labels[i] = random.nextInt(labelsNumber);
+      }
+      double initialEnergy = segmenter.getEnergy(unary, labels);
+      int[] segmented = segmenter.segment(unary, labels);
+      double energy = segmenter.getEnergy(unary, segmented);
+      check(energy <= initialEnergy + TOLERANCE, "the segmentation increases the energy from "
+          + initialEnergy + " to " + energy + " in trial " + trial);
+      for (int i = 0; i < n; i++) {
+        int label = segmented[i];
+        for (int l = 0; l < labelsNumber; l++) {
+          segmented[i] = l;
+          check(segmenter.getEnergy(unary, segmented) >= energy - TOLERANCE, "node " + i
+              + " can switch to label " + l + " in trial " + trial);
+        }
+        segmented[i] = label;
+      }
+    }
+  }
+
+  /**
+   * Fail the test with a message if a condition doesn't hold.
+   */
+  static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new AssertionError(message);
+    }
+  }
+
+  /**
+   *
+   * @param args argument sent to the program.
+   */
+  public static void main(String[] args) {
+    testMaxFlow();
+    testTerms();
+    testSegment();
+    System.out.println("GraphCutTest passed");
+  }
+}
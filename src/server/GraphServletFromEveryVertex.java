@@ -8,8 +8,10 @@ import java.io.PrintWriter;
 import java.net.URISyntaxException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -19,10 +21,7 @@ import javax.servlet.http.HttpServletResponse;
 import matlabcontrol.MatlabConnectionException;
 import matlabcontrol.MatlabInvocationException;
 import matlabcontrol.MatlabProxy;
-import matlabcontrol.MatlabProxyFactory;
 import matlabcontrol.MatlabProxyFactoryOptions;
-import matlabcontrol.extensions.MatlabNumericArray;
-import matlabcontrol.extensions.MatlabTypeConverter;
 
 /**
  * Servlet implementation class GraphServlet to handle the user request to color the graph with
@@ -34,12 +33,19 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   private static final String GRAPH1_PARAMATER_KEY = "graph1file";
   // graph2 parameter key name.
   private static final String GRAPH2_PARAMATER_KEY = "graph2file";
+  // Max Jaccard similarity parameter key name.
+  private static final String MAX_JACCARD_PARAMATER_KEY = "maxJaccard";
   // Number of regions to calculate.
   private static int REGION_NUM = 10;
   // Max number of nodes per region.
   private static int MAX_NODES = 16;
+  // Numbers of nodes per region of the region size evaluations, evaluated together from one
+  // traversal per seed.
+  private static int[] REGION_SIZES = {MAX_NODES};
   // Select the highest region from each one of the singular vectors.
   private static int REGION_SELECTOR = 10;
+  // Max Jaccard similarity allowed between returned regions, 1 allows any overlap.
+  private static double MAX_JACCARD = 1.0;
   // MATLAB file to run.
   private static String MATLAB_FILE = "server/matlab/visualize_map.m";
   // Remove nodes with delta change below this threshold.
@@ -48,30 +54,32 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   private static int BIASEDK = 5;
   // basepath for storing the two graphs.
   private static String basePath = "";
-  // proxy used to run MATLAB code.
-  private static MatlabProxy proxy = null;
-  // graph1 edges values.
-  private static double[][] graph1 = null;
-  // graph2 edges values.
-  private static double[][] graph2 = null;
-  // Store previous parameters to re-use the results.
-  private static double[][] prevGraph1 = null;
-  private static double[][] prevGraph2 = null;
-  private static int prevK = 0;
-  private static String prevMeasure = "";
-  private static String[] prevNodesColors = null;
-  private double[] prevNodesDistortionValues = null;
-  // Number of nodes in the graph.
-  private static int nodesNumber = 0;
+  // Number of MATLAB sessions running the spectral method concurrently.
+  private static int matlabSessionsNumber = Integer.getInteger("matlab.sessions", 1);
+  // MATLAB sessions used to run MATLAB code, each with the graphs kept in its workspace.
+  private static MatlabSessionPool sessions = null;
+  // Java spectral engine replacing visualize_map, or null to run it in MATLAB.
+  private static SpectralEngine spectralEngine = null;
+  // Last run of the spectral method, to re-use its results for the other regions of the same
+  // graphs and parameters.
+  private static SpectralRun lastRun = null;
+  // Distortion values of the last batch, or null.
+  private DistortionBatch batch = null;
+  // Sink receiving the evaluation measures of all the runs of the evaluations, or null.
+  private EvaluationSink evaluationSink = null;
 
   /**
-   * Servlet constructor initializes the MATLAB proxy and sets the MATLAB path.
+   * Servlet constructor initializes the MATLAB proxy and sets the MATLAB path, or uses the Java
+   * spectral engine without starting MATLAB if the spectral.engine system property is java.
    * 
    * @throws MatlabConnectionException
    * @throws URISyntaxException.
    */
   public GraphServletFromEveryVertex() throws MatlabConnectionException, URISyntaxException {
     super();
+    if (spectralEngine == null && "java".equalsIgnoreCase(System.getProperty("spectral.engine"))) {
+      setSpectralEngine(GraphServlet.createSpectralEngine());
+    }
     runMatlabCode();
   }
 	/**
@@ -97,11 +105,14 @@ public class GraphServletFromEveryVertex extends HttpServlet {
 	 */
 	public void runMatlabCodeFromCMD(String MATLABPath)
 			throws MatlabConnectionException, URISyntaxException {
-		if (proxy == null) { // Initialize MATLAB proxy.
+		if (spectralEngine != null) {
+			return;
+		}
+		if (sessions == null) { // Initialize MATLAB sessions.
 			MatlabProxyFactoryOptions options = new MatlabProxyFactoryOptions.Builder()
 					.setUsePreviouslyControlledSession(true).setHidden(true)
 					.setMatlabLocation(null).build();
-			proxy = new MatlabProxyFactory(options).getProxy();
+			sessions = new MatlabSessionPool(options, matlabSessionsNumber);
 		}
 		System.out.println("MATLAB PATH = " + MATLABPath);
 		// Set the basepath to the MATLAB code path.
@@ -124,11 +135,14 @@ public class GraphServletFromEveryVertex extends HttpServlet {
    * @throws URISyntaxException.
    */
   public void runMatlabCode() throws MatlabConnectionException, URISyntaxException {
-    if (proxy == null) { // Initialize MATLAB proxy.
+    if (spectralEngine != null) {
+      return;
+    }
+    if (sessions == null) { // Initialize MATLAB sessions.
       MatlabProxyFactoryOptions options =
           new MatlabProxyFactoryOptions.Builder().setUsePreviouslyControlledSession(true)
               .setHidden(true).setMatlabLocation(null).build();
-      proxy = new MatlabProxyFactory(options).getProxy();
+      sessions = new MatlabSessionPool(options, matlabSessionsNumber);
     }
     String[] matlabFields = MATLAB_FILE.split("/");
     String matlabFilename = matlabFields[2];
@@ -164,10 +178,6 @@ public class GraphServletFromEveryVertex extends HttpServlet {
       graph[index][0] = Integer.parseInt(nodes[0]);
       graph[index][1] = Integer.parseInt(nodes[1]);
       graph[index][2] = Integer.parseInt(nodes[2]);
-      // Set the number of nodes equal to the max node id,
-      // as the nodes are numbered from 1 to nodesNumber.
-      nodesNumber = (int) Math.max(nodesNumber, graph[index][0]);
-      nodesNumber = (int) Math.max(nodesNumber, graph[index][1]);
       index++;
     }
     return graph;
@@ -197,10 +207,6 @@ public class GraphServletFromEveryVertex extends HttpServlet {
       graph[index][0] = Integer.parseInt(nodes[0]);
       graph[index][1] = Integer.parseInt(nodes[1]);
       graph[index][2] = Integer.parseInt(nodes[2]);
-      // Set the number of nodes equal to the max node id,
-      // as the nodes are numbered from 1 to nodesNumber.
-      nodesNumber = (int) Math.max(nodesNumber, graph[index][0]);
-      nodesNumber = (int) Math.max(nodesNumber, graph[index][1]);
       index++;
     }
     return graph;
@@ -225,81 +231,251 @@ public class GraphServletFromEveryVertex extends HttpServlet {
     return true;
   }
 
+  /**
+   * Get the last run of the spectral method.
+   * 
+   * @return last run, or null.
+   */
+  private static synchronized SpectralRun getLastRun() {
+    return lastRun;
+  }
+
+  /**
+   * Set the last run of the spectral method, replacing the previous one with its graphs and
+   * results.
+   * 
+   * @param run last run.
+   */
+  private static synchronized void setLastRun(SpectralRun run) {
+    lastRun = run;
+  }
+
+  /**
+   * Get the distortion values of the last batch.
+   * 
+   * @return last batch, or null.
+   */
+  private synchronized DistortionBatch getBatch() {
+    return batch;
+  }
+
+  /**
+   * Set the distortion values of the last batch.
+   * 
+   * @param batch last batch, or null.
+   */
+  private synchronized void setBatch(DistortionBatch batch) {
+    this.batch = batch;
+  }
+
+  /**
+   * Run the spectral method.
+   * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param matlabParameters used to run the spectral method.
+   * @return nodes distortion values and colors, and the selected region.
+   * @throws MatlabInvocationException
+   */
+  public SpectralResult runSpectralMethod(double[][] graph1, double[][] graph2,
+      String[] matlabParameters, double threshold) throws MatlabInvocationException {
+    return runSpectralMethod(graph1, graph2, matlabParameters, threshold, MAX_JACCARD);
+  }
+
   /**
    * Run the spectral method.
    * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
    * @param matlabParameters used to run the spectral method.
-   * @return ArrayList of nodes colors, graph1 region and graph2 region.
+   * @param maxJaccard max Jaccard similarity allowed between the regions.
+   * @return nodes distortion values and colors, and the selected region.
    * @throws MatlabInvocationException
    */
-  public ArrayList<String[]> runSpectralMethod(String[] matlabParameters, double threshold)
+  public SpectralResult runSpectralMethod(double[][] graph1, double[][] graph2,
+      String[] matlabParameters, double threshold, double maxJaccard)
       throws MatlabInvocationException {
-    // Add code path to the MATLAB environment.
-    proxy.eval("addpath('" + basePath + "')");
-    // Store the graphs in the MATLAB format.
-    MatlabTypeConverter processor = new MatlabTypeConverter(proxy);
-    processor.setNumericArray("G1", new MatlabNumericArray(graph1, null));
-    processor.setNumericArray("G2", new MatlabNumericArray(graph2, null));
     int k = Integer.parseInt(matlabParameters[2]);
-    // Run the visualize_map code.
-    proxy.eval("[nodes_colors, nodes_values] = visualize_map(G1,G2," + k + "," + REGION_NUM + ",'"
-        + matlabParameters[3] + "');");
+    SpectralResult result = computeDistortionValues(graph1, graph2, k, matlabParameters[3]);
     int selectedRegionNumber = Integer.parseInt(matlabParameters[4]);
-    // MATLAB codes return nodes_colors and nodesDistortionValues
-    // as 1D array by stacking the 2D matrix column wise.
-    String[] nodesColors = (String[]) proxy.getVariable("nodes_colors");
-    double[] nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
-    prevNodesDistortionValues = nodesDistortionValues;
+    // The nodes distortion values are stacked column wise.
+    double[] nodesDistortionValues = result.getNodesDistortionValues();
     ArrayList<SpectralMethodRegionSelector> regions =
-        getRegion(nodesDistortionValues, selectedRegionNumber, threshold);
+        getRegion(graph1, graph2, nodesDistortionValues, selectedRegionNumber, threshold);
     SpectralMethodRegionSelector regionsGraph1 = regions.get(0);
     SpectralMethodRegionSelector regionsGraph2 = regions.get(1);
+    regionsGraph2.setMaxJaccard(maxJaccard);
+    // Index both graphs once for the selection and the mapping.
+    IndexedGraphPair<SpectralNode> graphPair =
+        regionsGraph2.getGraphPair(regionsGraph1.getGraph(), regionsGraph1.getNodeMapping());
     // Select top-region_num from graph2 results.
-    HashMap<Integer, String[]> graph2Results =
-        regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2);
+    HashMap<Integer, RegionResult> graph2Results =
+        regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2, graphPair);
     // Select from graph1 same nodes as graph2 but with their new edges
     // in graph1.
-    HashMap<Integer, String[]> graph1Results =
-        regionsGraph1.getMapping(graph2Results, regionsGraph1.getGraph(), regionsGraph2.getGraph(),
-            regionsGraph2.getNodeMapping(), REGION_SELECTOR);
+    HashMap<Integer, RegionResult> graph1Results =
+        regionsGraph1.getMapping(graph2Results, graphPair, regionsGraph2.getNodeMapping(),
+            REGION_SELECTOR);
     // Select the region specified by the user.
-    String[] graph1ResultsRegion = graph1Results.get(REGION_SELECTOR);
-    String[] graph2ResultsRegion = graph2Results.get(REGION_SELECTOR);
-    // Store the result in the graphsColors array list.
-    ArrayList<String[]> graphsColors = new ArrayList<String[]>();
-    graphsColors.add(nodesColors);
-    graphsColors.add(graph1ResultsRegion);
-    graphsColors.add(graph2ResultsRegion);
-    return graphsColors;
+    return result.withRegion(graph1Results.get(REGION_SELECTOR));
   }
 
   /**
    * Run the spectral method.
    * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
    * @param matlabParameters used to run the spectral method.
-   * @return ArrayList of nodes colors, graph1 region and graph2 region.
+   * @return nodes distortion values and colors, with the error estimate of approximate values.
    * @throws MatlabInvocationException
    */
-  public ArrayList<String[]> runSpectralMethodForThresholding(String[] matlabParameters,
-      double threshold) throws MatlabInvocationException {
-    // Add code path to the MATLAB environment.
-    proxy.eval("addpath('" + basePath + "')");
-    // Store the graphs in the MATLAB format.
-    MatlabTypeConverter processor = new MatlabTypeConverter(proxy);
-    processor.setNumericArray("G1", new MatlabNumericArray(graph1, null));
-    processor.setNumericArray("G2", new MatlabNumericArray(graph2, null));
+  public SpectralResult runSpectralMethodForThresholding(double[][] graph1, double[][] graph2,
+      String[] matlabParameters, double threshold) throws MatlabInvocationException {
     int k = Integer.parseInt(matlabParameters[2]);
-    // Run the visualize_map code.
-    proxy.eval("[nodes_colors, nodes_values] = visualize_map(G1,G2," + k + "," + REGION_NUM + ",'"
-        + matlabParameters[3] + "');");
-    // MATLAB codes return nodes_colors and nodesDistortionValues
-    // as 1D array by stacking the 2D matrix column wise.
-    String[] nodesColors = (String[]) proxy.getVariable("nodes_colors");
-    double[] nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
-    prevNodesDistortionValues = nodesDistortionValues;
-    ArrayList<String[]> graphsColors = new ArrayList<String[]>();
-    graphsColors.add(nodesColors);
-    return graphsColors;
+    return computeDistortionValues(graph1, graph2, k, matlabParameters[3]);
+  }
+
+  /**
+   * Compute the nodes distortion values and colors with visualize_map, in MATLAB or with the Java
+   * spectral engine if one is set.
+   * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param k number of eigenvectors of graph1.
+   * @param measure distortion measure.
+   * @return nodes distortion values, stacked column wise, and colors.
+   * @throws MatlabInvocationException
+   */
+  private SpectralResult computeDistortionValues(double[][] graph1, double[][] graph2, int k,
+      String measure) throws MatlabInvocationException {
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
+    double[] nodesDistortionValues;
+    if (spectralEngine != null) {
+      double errorEstimate;
+      // The error estimate is read with the run it belongs to.
+      synchronized (spectralEngine) {
+        nodesDistortionValues =
+            spectralEngine.getDistortionValues(graph1, graph2, k, REGION_NUM, measure);
+        errorEstimate = spectralEngine.getLastErrorEstimate();
+      }
+      return new SpectralResult(nodesDistortionValues,
+          new NodesColors(nodesDistortionValues, nodesNumber), errorEstimate);
+    }
+    // Use the last batch if it has a result for these graphs, a failed run is repeated
+    // to throw its exception.
+    DistortionBatch lastBatch = getBatch();
+    if (lastBatch != null) {
+      double[] batchValues = lastBatch.getDistortionValues(graph1, graph2, k, measure);
+      if (batchValues != null && batchValues.length > 0) {
+        return new SpectralResult(batchValues, new NodesColors(batchValues, nodesNumber));
+      }
+    }
+    // Run on an idle MATLAB session, waiting for one if all are busy.
+    MatlabWorkspace session = sessions.checkout();
+    try {
+      MatlabProxy proxy = session.getProxy();
+      // Add code path to the MATLAB environment.
+      session.addPath(basePath);
+      // Send the graphs unless they are in the workspace of the session from a previous run.
+      String graphs = session.putGraphPair(graph1, graph2);
+      // Run the visualize_map code on the prepared graphs.
+      proxy.eval("nodes_values = visualize_map_prepared(" + graphs + "," + k + "," + REGION_NUM
+          + ",'" + measure + "');");
+      // MATLAB codes return nodesDistortionValues as 1D array by stacking the 2D matrix column
+      // wise.
+      nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
+    } finally {
+      sessions.checkin(session);
+    }
+    // The colors are mapped here rather than sent by MATLAB as strings.
+    return new SpectralResult(nodesDistortionValues,
+        new NodesColors(nodesDistortionValues, nodesNumber));
+  }
+
+  /**
+   * Compute the distortion values of several configurations of visualize_map with one MATLAB call,
+   * which sends the graphs once and returns all the distortion values in one array. The next runs
+   * of these configurations on the same graphs use the batch results. Nothing is done with the
+   * Java spectral engine, which keeps the graph1 basis between runs.
+   * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param ks k value of each configuration.
+   * @param measures distortion measure of each configuration.
+   * @throws MatlabInvocationException
+   */
+  public void computeDistortionValuesBatch(double[][] graph1, double[][] graph2, int[] ks,
+      String[] measures) throws MatlabInvocationException {
+    setBatch(null);
+    if (spectralEngine != null || ks.length == 0) {
+      return;
+    }
+    StringBuilder ksList = new StringBuilder();
+    StringBuilder measuresList = new StringBuilder();
+    for (int i = 0; i < ks.length; i++) {
+      ksList.append(i == 0 ? "" : " ").append(ks[i]);
+      measuresList.append(i == 0 ? "'" : ",'").append(measures[i]).append("'");
+    }
+    double[] batchValues;
+    // Run on an idle MATLAB session, waiting for one if all are busy.
+    MatlabWorkspace session = sessions.checkout();
+    try {
+      MatlabProxy proxy = session.getProxy();
+      // Add code path to the MATLAB environment.
+      session.addPath(basePath);
+      // Send the graphs unless they are in the workspace of the session from a previous run.
+      String graphs = session.putGraphPair(graph1, graph2);
+      // Run the visualize_map_batch code.
+      proxy.eval("batch_values = visualize_map_batch(" + graphs + ",[" + ksList + "],"
+          + REGION_NUM + ",{" + measuresList + "});");
+      // batch_values holds the number of configurations, the number of values of each one, then
+      // their values.
+      batchValues = (double[]) proxy.getVariable("batch_values");
+    } finally {
+      sessions.checkin(session);
+    }
+    HashMap<String, double[]> batchDistortionValues = new HashMap<String, double[]>();
+    int offset = 1 + ks.length;
+    for (int i = 0; i < ks.length; i++) {
+      int length = (int) batchValues[1 + i];
+      double[] values = new double[length];
+      System.arraycopy(batchValues, offset, values, 0, length);
+      offset += length;
+      batchDistortionValues.put(DistortionBatch.getKey(ks[i], measures[i]), values);
+    }
+    setBatch(new DistortionBatch(graph1, graph2, batchDistortionValues));
+  }
+
+  /**
+   * Compute the distortion values of several k values with one MATLAB call.
+   * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param ks k values.
+   * @param measure distortion measure.
+   * @throws MatlabInvocationException
+   */
+  public void computeDistortionValuesBatch(double[][] graph1, double[][] graph2, int[] ks,
+      String measure) throws MatlabInvocationException {
+    String[] measures = new String[ks.length];
+    Arrays.fill(measures, measure);
+    computeDistortionValuesBatch(graph1, graph2, ks, measures);
+  }
+
+  /**
+   * Get the k values of a sweep.
+   * 
+   * @param from first k value.
+   * @param to last k value, included.
+   * @param step step between the k values.
+   * @return k values.
+   */
+  private static int[] getSweep(int from, int to, int step) {
+    int[] ks = new int[Math.max(0, (to - from) / step + 1)];
+    for (int i = 0; i < ks.length; i++) {
+      ks[i] = from + i * step;
+    }
+    return ks;
   }
 
   public double[][] copyGraph(double[][] graph) {
@@ -315,15 +491,18 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   /**
    * Get region given the nodes distortion values and the selected region number.
    * 
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
    * @param nodesDistortionValues distortion values of the nodes.
    * @param selectedRegionNumber selected region number.
    * @return the selected region in graph1 and graph2.
    */
-  public ArrayList<SpectralMethodRegionSelector> getRegion(double[] nodesDistortionValues,
-      int selectedRegionNumber, double step) {
+  public ArrayList<SpectralMethodRegionSelector> getRegion(double[][] graph1, double[][] graph2,
+      double[] nodesDistortionValues, int selectedRegionNumber, double step) {
     if (nodesDistortionValues.length == 0) {
       return null;
     }
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
     double[] nodesDistortionSelected = new double[nodesNumber];
     for (int i = 0; i < nodesNumber; i++) { // Store the distortion value of the corresponding
                                             // singular vector.
@@ -353,17 +532,37 @@ public class GraphServletFromEveryVertex extends HttpServlet {
    */
   protected void doPost(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    nodesNumber = 0;
     PrintWriter out = response.getWriter();
     String parameters = "";
     Enumeration<String> keys = request.getParameterNames();
     int index = 0;
     String[] toolParameters = new String[5];
+    // Graphs of this request, not shared with the concurrent requests.
+    double[][] graph1 = null;
+    double[][] graph2 = null;
+    // Max Jaccard similarity of the regions unless the request sets one.
+    double maxJaccard = MAX_JACCARD;
     // Loop over each send parameter and add them to MATLAB parameter array.
     while (keys.hasMoreElements()) {
       String key = (String) keys.nextElement();
       // Get parameters in the request.
       parameters = request.getParameter(key);
+      if (key.equalsIgnoreCase(MAX_JACCARD_PARAMATER_KEY)) {
+        // Read by name, so it doesn't shift the positional parameters.
+        if (parameters != null && parameters.length() > 0) {
+          try {
+            maxJaccard = Double.parseDouble(parameters.trim());
+          } catch (NumberFormatException ex) {
+            maxJaccard = Double.NaN;
+          }
+          if (!(maxJaccard >= 0 && maxJaccard <= 1)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                "Invalid max Jaccard similarity: " + parameters);
+            return;
+          }
+        }
+        continue;
+      }
       if (key.equalsIgnoreCase(GRAPH1_PARAMATER_KEY)) { // First graph.
         graph1 = loadGraph(parameters); // Load data to graph1.
       } else if (key.equalsIgnoreCase(GRAPH2_PARAMATER_KEY)) { // Second graph.
@@ -373,11 +572,14 @@ public class GraphServletFromEveryVertex extends HttpServlet {
       }
       index++;
     }
+    // The nodes are numbered from 1 to the max node id.
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
     String methodName = toolParameters[3];
     if (methodName.compareToIgnoreCase("Top-changing-vertices-BFS") == 0
         || methodName.compareToIgnoreCase("Top-changing-vertices-BFSBiased") == 0
         || methodName.compareToIgnoreCase("Top-changing-vertices-BFSPQ") == 0) {
       TopChangingVerticesCalculator calculator = new TopChangingVerticesCalculator();
+      calculator.setMaxJaccard(maxJaccard);
       ArrayList<ArrayList<String>> regions = null;
       if (methodName.compareToIgnoreCase("Top-changing-vertices-BFS") == 0) {
         regions =
@@ -418,6 +620,7 @@ public class GraphServletFromEveryVertex extends HttpServlet {
         || methodName.compareToIgnoreCase("Top-changing-regions-BFSPQ") == 0) {
       TopChangingVerticesExhaustiveCalculator calculator =
           new TopChangingVerticesExhaustiveCalculator();
+      calculator.setMaxJaccard(maxJaccard);
       ArrayList<ArrayList<String>> regions = null;
       if (methodName.compareToIgnoreCase("Top-changing-regions-BFS") == 0) {
         regions =
@@ -456,6 +659,7 @@ public class GraphServletFromEveryVertex extends HttpServlet {
     } else if (methodName.compareToIgnoreCase("Max-changin-radius") == 0
         || methodName.compareToIgnoreCase("Max-changin-radius-regionSize") == 0) {
       MaxChangingRadiusCalculator calculator = new MaxChangingRadiusCalculator();
+      calculator.setMaxJaccard(maxJaccard);
       ArrayList<ArrayList<String>> regions = null;
       if (methodName.compareToIgnoreCase("Max-changin-radius") == 0) {
         regions =
@@ -491,47 +695,53 @@ public class GraphServletFromEveryVertex extends HttpServlet {
         || (methodName.compareToIgnoreCase("conformal-based") == 0)) {
       try {
 
-        if (compareGraphs(graph1, prevGraph1) && compareGraphs(graph2, prevGraph2)
-            && prevK == Integer.parseInt(toolParameters[2])
-            && prevMeasure.equalsIgnoreCase(toolParameters[3])) {
+        // Read the last run once, so it can't be replaced by a concurrent request while it is used.
+        SpectralRun run = getLastRun();
+        if (run != null && compareGraphs(graph1, run.getGraph1())
+            && compareGraphs(graph2, run.getGraph2())
+            && run.getK() == Integer.parseInt(toolParameters[2])
+            && run.getMeasure().equalsIgnoreCase(toolParameters[3])) {
           // If same graph with same parameters but different regions,
           // re-use previous results.
+          SpectralResult prevResult = run.getResult();
           int selectedRegionNumber = Integer.parseInt(toolParameters[4]);
-          ArrayList<SpectralMethodRegionSelector> regions =
-              getRegion(prevNodesDistortionValues, selectedRegionNumber, DEFAULT_THRESHOLD);
+          ArrayList<SpectralMethodRegionSelector> regions = getRegion(graph1, graph2,
+              prevResult.getNodesDistortionValues(), selectedRegionNumber, DEFAULT_THRESHOLD);
           SpectralMethodRegionSelector regionsGraph1 = regions.get(0);
           SpectralMethodRegionSelector regionsGraph2 = regions.get(1);
+          regionsGraph2.setMaxJaccard(maxJaccard);
+          // Index both graphs once for the selection and the mapping.
+          IndexedGraphPair<SpectralNode> graphPair =
+              regionsGraph2.getGraphPair(regionsGraph1.getGraph(), regionsGraph1.getNodeMapping());
           // Select top-region_num from graph2 results.
-          HashMap<Integer, String[]> graph2Results =
-              regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2);
+          HashMap<Integer, RegionResult> graph2Results =
+              regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2, graphPair);
           // Select from graph1 same nodes as graph2 but with their new edges
           // in graph1.
-          HashMap<Integer, String[]> graph1Results =
-              regionsGraph1.getMapping(graph2Results, regionsGraph1.getGraph(),
-                  regionsGraph2.getGraph(), regionsGraph2.getNodeMapping(), REGION_SELECTOR);
+          HashMap<Integer, RegionResult> graph1Results =
+              regionsGraph1.getMapping(graph2Results, graphPair, regionsGraph2.getNodeMapping(),
+                  REGION_SELECTOR);
           // Select the region specified by the user.
-          String[] graph1ResultsRegion = graph1Results.get(REGION_SELECTOR);
-          String[] graph2ResultsRegion = graph2Results.get(REGION_SELECTOR);
+          RegionResult region = graph1Results.get(REGION_SELECTOR);
           for (int i = 0; i < nodesNumber; i++) {
             // Get the nodes colors.
-            out.print(prevNodesColors[(selectedRegionNumber - 1) * nodesNumber + i] + ",");
+            out.print(prevResult.getNodesColors().get((selectedRegionNumber - 1) * nodesNumber + i)
+                + ",");
           }
           // Write selected regions to the response.
           out.print("_");
-          for (int i = 0; i < graph1ResultsRegion.length; i++) {
-            // Get the nodes colors.
-            out.print(graph1ResultsRegion[i] + "-");
-          }
+          out.print(RegionResult.formatEdges(region.getEdges1()));
           out.print("_");
-          for (int i = 0; i < graph2ResultsRegion.length; i++) {
-            out.print(graph2ResultsRegion[i] + "-"); // Get the nodes
-            // colors.
-          }
+          out.print(RegionResult.formatEdges(region.getEdges2()));
+          // Write the error estimate of approximate distortion values.
+          out.print("_" + prevResult.getErrorEstimate());
           return;
         }
-        ArrayList<String[]> graphColors = runSpectralMethod(toolParameters, DEFAULT_THRESHOLD);
-        String[] nodesColors = graphColors.get(0);
-        if (nodesColors.length == 0) {
+        SpectralResult result =
+            runSpectralMethod(graph1, graph2, toolParameters, DEFAULT_THRESHOLD, maxJaccard);
+        RegionResult region = result.getRegion();
+        NodesColors nodesColors = result.getNodesColors();
+        if (nodesColors.getLength() == 0) {
           System.out.println("Emptry color array!");
           System.exit(0);
         } else {
@@ -540,33 +750,29 @@ public class GraphServletFromEveryVertex extends HttpServlet {
             // Get the nodes colors.
             if (i <= 2000) {
               System.out.println(i + " "
-                  + nodesColors[(selectedRegionNumber - 1) * nodesNumber + i] + " "
-                  + prevNodesDistortionValues[(selectedRegionNumber - 1) * nodesNumber + i]);
+                  + nodesColors.get((selectedRegionNumber - 1) * nodesNumber + i) + " "
+                  + result.getNodesDistortionValues()[(selectedRegionNumber - 1) * nodesNumber
+                      + i]);
             }
-            out.print(nodesColors[(selectedRegionNumber - 1) * nodesNumber + i] + ",");
+            out.print(nodesColors.get((selectedRegionNumber - 1) * nodesNumber + i) + ",");
           }
           // Write selected regions to the response.
           out.print("_");
-          String[] graph1ResultsRegion = graphColors.get(1);
-          for (int i = 0; i < graph1ResultsRegion.length; i++) {
-            out.print(graph1ResultsRegion[i] + "-"); // Get the nodes
-            // colors.
-          }
+          out.print(RegionResult.formatEdges(region.getEdges1()));
           out.print("_");
-          String[] graph2ResultsRegion = graphColors.get(2);
-          for (int i = 0; i < graph2ResultsRegion.length; i++) {
-            out.print(graph2ResultsRegion[i] + "-"); // Get the nodes colors.
-          }
+          out.print(RegionResult.formatEdges(region.getEdges2()));
+          // Write the error estimate of approximate distortion values.
+          out.print("_" + result.getErrorEstimate());
           // Store the current results for checking next time.
-          prevGraph1 = graph1;
-          prevGraph2 = graph2;
-          prevK = Integer.parseInt(toolParameters[2]);
-          prevMeasure = toolParameters[3];
-          prevNodesColors = nodesColors;
+          setLastRun(new SpectralRun(graph1, graph2, Integer.parseInt(toolParameters[2]),
+              toolParameters[3], result));
         }
         // proxy.disconnect();
       } catch (MatlabInvocationException ex) {
         out.println(ex.getMessage());
+      } catch (IllegalStateException ex) {
+        // No MATLAB session is available.
+        out.println(ex.getMessage());
       }
     }
     out.close();
@@ -590,9 +796,12 @@ public class GraphServletFromEveryVertex extends HttpServlet {
     String maxResult = ""; // Max distortion value string format.
     BufferedReader reader1 = new BufferedReader(new FileReader(inputFile1));
     BufferedReader reader2 = new BufferedReader(new FileReader(inputFile2));
-    graph1 = loadGraph(reader1.readLine());
-    graph2 = loadGraph(reader2.readLine());
+    double[][] graph1 = loadGraph(reader1.readLine());
+    double[][] graph2 = loadGraph(reader2.readLine());
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
     runMatlabCode();
+    // Compute the distortion values of all the k values in one MATLAB call.
+    computeDistortionValuesBatch(graph1, graph2, getSweep(12, 500, 2), "conformal-based");
     for (int k = 12; k <= 500; k += 2) { // Loop over k values to choose the best one.
       try {
         System.out.println("============" + k + "==============");
@@ -601,10 +810,12 @@ public class GraphServletFromEveryVertex extends HttpServlet {
         matlabParameters[3] = "conformal-based";
         matlabParameters[4] = 1 + "";
         // Run the spectral method with the matlabParameters settings.
-        runSpectralMethod(matlabParameters, DEFAULT_THRESHOLD);
+        SpectralResult spectralResult =
+            runSpectralMethod(graph1, graph2, matlabParameters, DEFAULT_THRESHOLD);
+        GraphServlet.printErrorEstimate(k, spectralResult);
         double distortionSum = 0;
         String result = "";
-        double[] nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
+        double[] nodesDistortionValues = spectralResult.getNodesDistortionValues();
         for (int selectedRegionNumber = 1; selectedRegionNumber <= 10; selectedRegionNumber++) { // Get
                                                                                                  // top
                                                                                                  // 10
@@ -614,16 +825,19 @@ public class GraphServletFromEveryVertex extends HttpServlet {
             nodesDistortionSelected[i] =
                 nodesDistortionValues[(selectedRegionNumber - 1) * nodesNumber + i];
           }
-          ArrayList<SpectralMethodRegionSelector> regions =
-              getRegion(nodesDistortionValues, selectedRegionNumber, DEFAULT_THRESHOLD);
+          ArrayList<SpectralMethodRegionSelector> regions = getRegion(graph1, graph2,
+              nodesDistortionValues, selectedRegionNumber, DEFAULT_THRESHOLD);
           SpectralMethodRegionSelector regionsGraph1 = regions.get(0);
           SpectralMethodRegionSelector regionsGraph2 = regions.get(1);
-          HashMap<Integer, String[]> graph2Results =
-              regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2);
+          // Index both graphs once for the selection and the mapping.
+          IndexedGraphPair<SpectralNode> graphPair =
+              regionsGraph2.getGraphPair(regionsGraph1.getGraph(), regionsGraph1.getNodeMapping());
+          HashMap<Integer, RegionResult> graph2Results =
+              regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2, graphPair);
           // Select from graph1 same nodes as graph2 but with their new edges
           // in graph1.
-          regionsGraph1.getMapping(graph2Results, regionsGraph1.getGraph(),
-              regionsGraph2.getGraph(), regionsGraph2.getNodeMapping(), REGION_SELECTOR);
+          regionsGraph1.getMapping(graph2Results, graphPair, regionsGraph2.getNodeMapping(),
+              REGION_SELECTOR);
           distortionSum += regionsGraph1.getRegionChangeValue();
           String valueString = regionsGraph1.getRegionChangeValue() + "";
           String[] splits = valueString.split("\\.");
@@ -660,76 +874,90 @@ public class GraphServletFromEveryVertex extends HttpServlet {
    */
   public void runEvaluationsWithRespectToRegionSize(String inputFile1, String inputFile2)
       throws IOException, URISyntaxException, MatlabInvocationException, MatlabConnectionException {
-    double[] maxEvaluationMeasures = new double[6]; // Six evaluation measures.
-    String[] maxEvaluationMeasuresString = new String[6]; // Evaluation measures string format.
-    int[] maxEvaluationMeasuresK = new int[6]; // Value of k at the maximum evaluation measures.
+    // Best runs of each evaluation measure for each region size, all runs are also streamed to the
+    // evaluation sink.
+    BestRunEvaluationSink[] evaluationSummaries = getEvaluationSummaries(false);
     BufferedReader reader1 = new BufferedReader(new FileReader(inputFile1));
     BufferedReader reader2 = new BufferedReader(new FileReader(inputFile2));
-    graph1 = loadGraph(reader1.readLine());
-    graph2 = loadGraph(reader2.readLine());
+    double[][] graph1 = loadGraph(reader1.readLine());
+    double[][] graph2 = loadGraph(reader2.readLine());
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
+    // The graphs are the same for all k values, only the distortion values change.
+    SpectralRegionEngine regionEngine =
+        new SpectralRegionEngine(copyGraph(graph1), copyGraph(graph2), nodesNumber);
     runMatlabCode();
+    // Compute the distortion values of all the k values in one MATLAB call.
+    computeDistortionValuesBatch(graph1, graph2, getSweep(12, 500, 2), "conformal-based");
     for (int k = 12; k <= 500; k += 2) { // Loop over k values to choose the best one.
       try {
         System.out.println("============" + k + "==============");
-        double[] evaluationMeasuresSum = new double[6];
-        String[] currentEvaluationMeasuresString = new String[6];
-        for (int i = 0; i < currentEvaluationMeasuresString.length; i++) {
-          currentEvaluationMeasuresString[i] = "";
-        }
         String[] matlabParameters = new String[5];
         matlabParameters[2] = k + "";
         matlabParameters[3] = "conformal-based";
         matlabParameters[4] = 1 + "";
-        runSpectralMethod(matlabParameters, DEFAULT_THRESHOLD);
-        double[] nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
-        for (int selectedRegionNumber = 1; selectedRegionNumber <= 10; selectedRegionNumber++) {
-          double[] nodesDistortionSelected = new double[nodesNumber];
-          for (int i = 0; i < nodesNumber; i++) {
-            nodesDistortionSelected[i] =
-                nodesDistortionValues[(selectedRegionNumber - 1) * nodesNumber + i];
-          }
-          ArrayList<SpectralMethodRegionSelector> regions =
-              getRegion(nodesDistortionValues, selectedRegionNumber, DEFAULT_THRESHOLD);
-          SpectralMethodRegionSelector regionsGraph1 = regions.get(0);
-          SpectralMethodRegionSelector regionsGraph2 = regions.get(1);
-          HashMap<Integer, String[]> graph2Results =
-              regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, 2);
-          // Select from graph1 same nodes as graph2 but with their new edges
-          // in graph1.
-          regionsGraph1.getMapping(graph2Results, regionsGraph1.getGraph(),
-              regionsGraph2.getGraph(), regionsGraph2.getNodeMapping(), REGION_SELECTOR);
-          double[] currentEvaluationMeasures = regionsGraph1.getEvaluationMeasures();
-          for (int i = 0; i < evaluationMeasuresSum.length; i++) {
-            evaluationMeasuresSum[i] += currentEvaluationMeasures[i];
-            currentEvaluationMeasuresString[i] =
-                currentEvaluationMeasuresString[i] + "\nR" + selectedRegionNumber + "="
-                    + getString(currentEvaluationMeasures[i]);
-          }
-        }
-        for (int i = 0; i < evaluationMeasuresSum.length; i++) {
-          // If the current evaluation measures are better, store them.
-          if (evaluationMeasuresSum[i] > maxEvaluationMeasures[i]) {
-            maxEvaluationMeasures[i] = evaluationMeasuresSum[i];
-            maxEvaluationMeasuresK[i] = k;
-            maxEvaluationMeasuresString[i] = currentEvaluationMeasuresString[i];
-          }
-        }
+        SpectralResult result =
+            runSpectralMethod(graph1, graph2, matlabParameters, DEFAULT_THRESHOLD);
+        GraphServlet.printErrorEstimate(k, result);
+        double[] nodesDistortionValues = result.getNodesDistortionValues();
+        // Singular vectors returned for this k, at most 10.
+        int vectorsNumber = Math.min(10, nodesDistortionValues.length / nodesNumber);
+        List<HashMap<Integer, HashMap<Integer, RegionResult>>> vectorsRegions =
+            regionEngine.getAllMappedRegions(nodesDistortionValues, vectorsNumber,
+                DEFAULT_THRESHOLD, REGION_SELECTOR, REGION_SIZES, 2);
+        writeRuns(evaluationSummaries, Integer.toString(k), vectorsRegions);
       } catch (MatlabInvocationException ex) {
         // If K exceeds the number of nodes in the graph, Matlab code throws an exception.
         continue;
       }
     }
     // Print the best results.
-    for (int i = 0; i < maxEvaluationMeasuresString.length; i++) {
-      System.out.println("===========================" + maxEvaluationMeasuresK[i]
-          + "===========================");
-      System.out.println(maxEvaluationMeasuresString[i]);
-      System.out.println("==================================================");
+    for (BestRunEvaluationSink evaluationSummary : evaluationSummaries) {
+      evaluationSummary.close();
     }
     reader1.close();
     reader2.close();
   }
 
+  /**
+   * Create the best run summaries of the region sizes, printing the best runs of each size and
+   * streaming all the runs to the evaluation sink.
+   * 
+   * @param replaceOnTie whether a later run with the same sum replaces the best run.
+   * @return summary of each region size, in the order of REGION_SIZES.
+   */
+  private BestRunEvaluationSink[] getEvaluationSummaries(boolean replaceOnTie) {
+    BestRunEvaluationSink[] evaluationSummaries = new BestRunEvaluationSink[REGION_SIZES.length];
+    for (int s = 0; s < evaluationSummaries.length; s++) {
+      evaluationSummaries[s] = new BestRunEvaluationSink(System.out, replaceOnTie, evaluationSink);
+    }
+    return evaluationSummaries;
+  }
+
+  /**
+   * Write the run of each region size to its summary. The run is ended only if it has the regions
+   * of 10 singular vectors.
+   * 
+   * @param evaluationSummaries summary of each region size, in the order of REGION_SIZES.
+   * @param label of the run, the region size is appended to it.
+   * @param vectorsRegions mapped regions of each singular vector and region size.
+   * @throws IOException
+   */
+  private static void writeRuns(BestRunEvaluationSink[] evaluationSummaries, String label,
+      List<HashMap<Integer, HashMap<Integer, RegionResult>>> vectorsRegions) throws IOException {
+    for (int s = 0; s < REGION_SIZES.length; s++) {
+      evaluationSummaries[s].startRun(label + "," + REGION_SIZES[s]);
+      for (int selectedRegionNumber = 1; selectedRegionNumber <= vectorsRegions.size();
+          selectedRegionNumber++) {
+        evaluationSummaries[s].writeRegion(selectedRegionNumber,
+            SpectralRegionEngine.getEvaluationMeasures(
+                vectorsRegions.get(selectedRegionNumber - 1).get(REGION_SIZES[s])));
+      }
+      if (vectorsRegions.size() == 10) {
+        evaluationSummaries[s].endRun();
+      }
+    }
+  }
+
   public void runEvaluationsWithRespectToRegionSizeWithThresholdingAllBFSs(String inputFile1,
       String inputFile2, double step, String method) throws IOException, URISyntaxException,
       MatlabInvocationException, MatlabConnectionException {
@@ -754,79 +982,47 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   public void runEvaluationsWithRespectToRegionSizeWithThresholding(String inputFile1,
       String inputFile2, double step, String method, int bfsSelection) throws IOException,
       URISyntaxException, MatlabInvocationException, MatlabConnectionException {
-    double[] maxEvaluationMeasures = new double[6]; // Six evaluation measures.
-    String[] maxEvaluationMeasuresString = new String[6]; // Evaluation measures string format.
-    int[] maxEvaluationMeasuresK = new int[6]; // Value of k at the maximum evaluation measures.
-    double[] maxEvaluationMeasuresThreshold = new double[6]; // Value of threshold at the maximum
-                                                             // evaluation measures.
+    // Best runs of each evaluation measure for each region size, all runs are also streamed to the
+    // evaluation sink.
+    BestRunEvaluationSink[] evaluationSummaries = getEvaluationSummaries(true);
     BufferedReader reader1 = new BufferedReader(new FileReader(inputFile1));
     BufferedReader reader2 = new BufferedReader(new FileReader(inputFile2));
     runMatlabCode();
     double threshold = 0;
     double maxThreshold = 1;
-    graph1 = loadGraph(reader1.readLine());
-    graph2 = loadGraph(reader2.readLine());
+    double[][] graph1 = loadGraph(reader1.readLine());
+    double[][] graph2 = loadGraph(reader2.readLine());
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
+    // The graphs are the same for all k values, only the distortion values change.
+    SpectralRegionEngine regionEngine =
+        new SpectralRegionEngine(copyGraph(graph1), copyGraph(graph2), nodesNumber);
+    // Compute the distortion values of all the k values in one MATLAB call.
+    computeDistortionValuesBatch(graph1, graph2, getSweep(12, Math.min(400, nodesNumber), 10),
+        method);
     while (threshold < maxThreshold) {
       System.out.println(threshold);
-      Loop: for (int k = 12; k <= Math.min(400, nodesNumber); k += 10) { // Loop over k values to
+      for (int k = 12; k <= Math.min(400, nodesNumber); k += 10) { // Loop over k values to
         // choose the best one.
         //System.out.println(k);
         try {
-          double[] evaluationMeasuresSum = new double[6];
-          String[] currentEvaluationMeasuresString = new String[6];
-          for (int i = 0; i < currentEvaluationMeasuresString.length; i++) {
-            currentEvaluationMeasuresString[i] = "";
-          }
           String[] matlabParameters = new String[5];
           matlabParameters[2] = k + "";
           matlabParameters[3] = method;
           matlabParameters[4] = 1 + "";
-          runSpectralMethodForThresholding(matlabParameters, threshold);
-          double[] nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
+          SpectralResult result =
+              runSpectralMethodForThresholding(graph1, graph2, matlabParameters, threshold);
+          GraphServlet.printErrorEstimate(k, result);
+          double[] nodesDistortionValues = result.getNodesDistortionValues();
           if (nodesDistortionValues.length == 0) {
             System.out.println("Returned distortions are empty! " + k);
             continue;
           }
-          for (int selectedRegionNumber = 1; selectedRegionNumber <= 10; selectedRegionNumber++) {
-            double[] nodesDistortionSelected = new double[nodesNumber];
-            for (int i = 0; i < nodesNumber; i++) {
-              if ((selectedRegionNumber - 1) * nodesNumber + i >= nodesDistortionValues.length) {
-                continue Loop;
-              }
-              nodesDistortionSelected[i] =
-                  nodesDistortionValues[(selectedRegionNumber - 1) * nodesNumber + i];
-            }
-            ArrayList<SpectralMethodRegionSelector> regions =
-                getRegion(nodesDistortionValues, selectedRegionNumber, threshold);
-            SpectralMethodRegionSelector regionsGraph1 = regions.get(0);
-            SpectralMethodRegionSelector regionsGraph2 = regions.get(1);
-            HashMap<Integer, String[]> graph2Results =
-                regionsGraph2.getRegions(REGION_SELECTOR, MAX_NODES, bfsSelection);
-            // Select from graph1 same nodes as graph2 but with their new edges
-            // in graph1.
-            regionsGraph1.getMapping(graph2Results, regionsGraph1.getGraph(),
-                regionsGraph2.getGraph(), regionsGraph2.getNodeMapping(), REGION_SELECTOR);
-            double[] currentEvaluationMeasures = regionsGraph1.getEvaluationMeasures();
-            if (currentEvaluationMeasures == null) {
-              System.out.println("Null evaluation measure " + k);
-              continue Loop;
-            }
-            for (int i = 0; i < evaluationMeasuresSum.length; i++) {
-              evaluationMeasuresSum[i] += currentEvaluationMeasures[i];
-              currentEvaluationMeasuresString[i] =
-                  currentEvaluationMeasuresString[i] + "\nR" + selectedRegionNumber + "="
-                      + getString(currentEvaluationMeasures[i]);
-            }
-          }
-          for (int i = 0; i < evaluationMeasuresSum.length; i++) {
-            // If the current evaluation measures are better, store them.
-            if (evaluationMeasuresSum[i] >= maxEvaluationMeasures[i]) {
-              maxEvaluationMeasures[i] = evaluationMeasuresSum[i];
-              maxEvaluationMeasuresK[i] = k;
-              maxEvaluationMeasuresString[i] = currentEvaluationMeasuresString[i];
-              maxEvaluationMeasuresThreshold[i] = threshold;
-            }
-          }
+          // Singular vectors returned for this k, at most 10.
+          int vectorsNumber = Math.min(10, nodesDistortionValues.length / nodesNumber);
+          List<HashMap<Integer, HashMap<Integer, RegionResult>>> vectorsRegions =
+              regionEngine.getAllMappedRegions(nodesDistortionValues, vectorsNumber,
+                  threshold, REGION_SELECTOR, REGION_SIZES, bfsSelection);
+          writeRuns(evaluationSummaries, k + "," + threshold, vectorsRegions);
         } catch (MatlabInvocationException ex) {
           // If K exceeds the number of nodes in the graph, Matlab code throws an exception.
           System.out.println("Error in Matlab " + ex.getMessage());
@@ -836,11 +1032,8 @@ public class GraphServletFromEveryVertex extends HttpServlet {
       threshold += step;
     }
     // Print the best results.
-    for (int i = 0; i < maxEvaluationMeasuresString.length; i++) {
-      System.out.println("===========================" + maxEvaluationMeasuresK[i] + ","
-          + maxEvaluationMeasuresThreshold[i] + "======================");
-      System.out.println(maxEvaluationMeasuresString[i]);
-      System.out.println("==================================================");
+    for (BestRunEvaluationSink evaluationSummary : evaluationSummaries) {
+      evaluationSummary.close();
     }
     reader1.close();
     reader2.close();
@@ -861,20 +1054,22 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   public void runEvaluationsWithRespectToRegionSizeWithThresholdingExhaustiveSearch(
       String inputFile1, String inputFile2, double step, String method) throws IOException,
       URISyntaxException, MatlabInvocationException, MatlabConnectionException {
-    double[] maxEvaluationMeasures = new double[6]; // Six evaluation measures.
-    String[] maxEvaluationMeasuresString = new String[6]; // Evaluation measures string format.
-    int[] maxEvaluationMeasuresK = new int[6]; // Value of k at the maximum evaluation measures.
-    double[] maxEvaluationMeasuresThreshold = new double[6]; // Value of threshold at the maximum
-                                                             // evaluation measures.
+    // Best runs of each evaluation measure, all runs are also streamed to the evaluation sink.
+    BestRunEvaluationSink evaluationSummary =
+        new BestRunEvaluationSink(System.out, false, evaluationSink);
     BufferedReader reader1 = new BufferedReader(new FileReader(inputFile1));
     BufferedReader reader2 = new BufferedReader(new FileReader(inputFile2));
     runMatlabCodeFromCMD(GraphServletFromEveryVertex.MATLAB_FILE);
     double threshold = 0;
     double maxThreshold = 1;
-    graph1 = loadGraph(reader1.readLine());
-    graph2 = loadGraph(reader2.readLine());
+    double[][] graph1 = loadGraph(reader1.readLine());
+    double[][] graph2 = loadGraph(reader2.readLine());
+    int nodesNumber = SpectralEngine.getNodesNumber(graph1, graph2);
     SpectralMethodRegionSelector regionsGraph1Overall = null;
     SpectralMethodRegionSelector regionsGraph2Overall = null;
+    // Compute the distortion values of all the k values in one MATLAB call.
+    computeDistortionValuesBatch(graph1, graph2, getSweep(12, Math.min(400, nodesNumber), 10),
+        method);
     while (threshold < maxThreshold) {
       System.out.println(threshold);
       Loop: for (int k = 12; k <= Math.min(400, nodesNumber); k += 10) { // Loop over k values
@@ -882,24 +1077,20 @@ public class GraphServletFromEveryVertex extends HttpServlet {
         // choose the best one.
         System.out.println(k);
         try {
-          double[] evaluationMeasuresSum = new double[6];
-          String[] currentEvaluationMeasuresString = new String[6];
-          for (int i = 0; i < currentEvaluationMeasuresString.length; i++) {
-            currentEvaluationMeasuresString[i] = "";
-          }
+          evaluationSummary.startRun(k + "," + threshold + "," + MAX_NODES);
           String[] matlabParameters = new String[5];
           matlabParameters[2] = k + "";
           matlabParameters[3] = method;
           matlabParameters[4] = 1 + "";
-          runSpectralMethodForThresholding(matlabParameters, threshold);
-          double[] nodesDistortionValues = (double[]) proxy.getVariable("nodes_values");
+          SpectralResult result =
+              runSpectralMethodForThresholding(graph1, graph2, matlabParameters, threshold);
+          GraphServlet.printErrorEstimate(k, result);
+          double[] nodesDistortionValues = result.getNodesDistortionValues();
           if (nodesDistortionValues.length == 0) {
             System.out.println("Returned distortions are empty! " + k);
             continue;
           }
-          HashMap<Double, String[]> graph2Results = new HashMap<Double, String[]>();
-          HashMap<Double, Double> graph2ResultsMapping = new HashMap<Double, Double>();
-          Double regionID = 1.0;
+          ArrayList<RegionResult> graph2Results = new ArrayList<RegionResult>();
           for (int selectedRegionNumber = 1; selectedRegionNumber <= 10; selectedRegionNumber++) {
             double[] nodesDistortionSelected = new double[nodesNumber];
             for (int i = 0; i < nodesNumber; i++) {
@@ -909,30 +1100,24 @@ public class GraphServletFromEveryVertex extends HttpServlet {
               nodesDistortionSelected[i] =
                   nodesDistortionValues[(selectedRegionNumber - 1) * nodesNumber + i];
             }
-            ArrayList<SpectralMethodRegionSelector> regions =
-                getRegion(nodesDistortionValues, selectedRegionNumber, threshold);
+            ArrayList<SpectralMethodRegionSelector> regions = getRegion(graph1, graph2,
+                nodesDistortionValues, selectedRegionNumber, threshold);
             SpectralMethodRegionSelector regionsGraph1 = regions.get(0);
             SpectralMethodRegionSelector regionsGraph2 = regions.get(1);
             if (threshold == 0) {
               regionsGraph1Overall = regionsGraph1;
               regionsGraph2Overall = regionsGraph2;
             }
-            HashMap<String, String[]> graph2ResultsTmp =
-                regionsGraph2.getRegionsExhastiveSearch(REGION_SELECTOR, MAX_NODES,
-                    regionsGraph1.getGraph(), regionsGraph2.getGraph(),
-                    regionsGraph1.getNodeMapping(), regionsGraph2.getNodeMapping());
-            for (String region : graph2ResultsTmp.keySet()) {
-              String[] regionSplit = region.split(" ");
-              graph2ResultsMapping.put(regionID, Double.parseDouble(regionSplit[1]));
-              graph2Results.put(regionID++, graph2ResultsTmp.get(region));
-            }
+            graph2Results.addAll(regionsGraph2.getRegionsExhastiveSearch(REGION_SELECTOR,
+                MAX_NODES, regionsGraph1.getGraph(), regionsGraph2.getGraph(),
+                regionsGraph1.getNodeMapping(), regionsGraph2.getNodeMapping()));
           }
           // Select from graph1 same nodes as graph2 but with their new edges
           // in graph1.
           regionsGraph1Overall.getMappingExhastiveSearch(graph2Results,
               regionsGraph1Overall.getGraph(), regionsGraph2Overall.getGraph(),
               regionsGraph2Overall.getNodeMapping(), regionsGraph1Overall.getNodeMapping(),
-              REGION_SELECTOR, graph2ResultsMapping);
+              REGION_SELECTOR);
           ArrayList<Double[]> evaluationMeasures = regionsGraph1Overall.getRegionMeasures();
           int selectedRegionNumber = 1;
           for (Double[] currentEvaluationMeasures : evaluationMeasures) {
@@ -940,23 +1125,14 @@ public class GraphServletFromEveryVertex extends HttpServlet {
               System.out.println("Null evaluation measure " + k);
               continue Loop;
             }
-            for (int i = 0; i < evaluationMeasuresSum.length; i++) {
-              evaluationMeasuresSum[i] += currentEvaluationMeasures[i];
-              currentEvaluationMeasuresString[i] =
-                  currentEvaluationMeasuresString[i] + "\nR" + selectedRegionNumber + "="
-                      + getString(currentEvaluationMeasures[i]);
+            double[] measures = new double[currentEvaluationMeasures.length];
+            for (int i = 0; i < measures.length; i++) {
+              measures[i] = currentEvaluationMeasures[i];
             }
+            evaluationSummary.writeRegion(selectedRegionNumber, measures);
             selectedRegionNumber++;
           }
-          for (int i = 0; i < evaluationMeasuresSum.length; i++) {
-            // If the current evaluation measures are better, store them.
-            if (evaluationMeasuresSum[i] > maxEvaluationMeasures[i]) {
-              maxEvaluationMeasures[i] = evaluationMeasuresSum[i];
-              maxEvaluationMeasuresK[i] = k;
-              maxEvaluationMeasuresString[i] = currentEvaluationMeasuresString[i];
-              maxEvaluationMeasuresThreshold[i] = threshold;
-            }
-          }
+          evaluationSummary.endRun();
         } catch (MatlabInvocationException ex) {
           // If K exceeds the number of nodes in the graph, Matlab code throws an exception.
           System.out.println("Error in Matlab " + ex.getMessage());
@@ -966,12 +1142,7 @@ public class GraphServletFromEveryVertex extends HttpServlet {
       threshold += step;
     }
     // Print the best results.
-    for (int i = 0; i < maxEvaluationMeasuresString.length; i++) {
-      System.out.println("===========================" + maxEvaluationMeasuresK[i] + ","
-          + maxEvaluationMeasuresThreshold[i] + "======================");
-      System.out.println(maxEvaluationMeasuresString[i]);
-      System.out.println("==================================================");
-    }
+    evaluationSummary.close();
     reader1.close();
     reader2.close();
   }
@@ -995,6 +1166,36 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {}
 
+  /**
+   * Set the sink receiving the evaluation measures of all the runs of the evaluations, on top of
+   * the best runs printed to the console.
+   * 
+   * @param evaluationSink evaluation sink, or null.
+   */
+  public void setEvaluationSink(EvaluationSink evaluationSink) {
+    this.evaluationSink = evaluationSink;
+  }
+
+  /**
+   * Set the Java spectral engine computing the nodes distortion values instead of MATLAB. It must
+   * be set before the servlet is constructed so MATLAB isn't started.
+   * 
+   * @param engine spectral engine, or null to use MATLAB.
+   */
+  public static void setSpectralEngine(SpectralEngine engine) {
+    spectralEngine = engine;
+  }
+
+  /**
+   * Set the number of MATLAB sessions running the spectral method of concurrent requests, 1 unless
+   * set by the matlab.sessions system property. It must be set before the servlet is constructed.
+   * 
+   * @param number number of MATLAB sessions.
+   */
+  public static void setMatlabSessionsNumber(int number) {
+    matlabSessionsNumber = number;
+  }
+
   /**
    * 
    * @param args argument sent to the program.
@@ -1006,7 +1207,7 @@ public class GraphServletFromEveryVertex extends HttpServlet {
   public static void main(String[] args) throws MatlabInvocationException,
       MatlabConnectionException, URISyntaxException, IOException {
     if(args.length < 5) {
-      System.out.println("Java -jar spectralMethodWithThresholdingExhaustiveSearch.jar graph1File graph2File energyFunction regionsNumber nodesNumPerRegion MatlabFile");
+      System.out.println("Java -jar spectralMethodWithThresholdingExhaustiveSearch.jar graph1File graph2File energyFunction regionsNumber nodesNumPerRegion[,nodesNumPerRegion...] MatlabFile|java [reportFile]");
       return; 
     }
     // Scanner scanner = new Scanner(System.in);
@@ -1018,11 +1219,31 @@ public class GraphServletFromEveryVertex extends HttpServlet {
     double step = 0.1;
     String method = args[2];
     GraphServletFromEveryVertex.REGION_NUM = Integer.parseInt(args[3]);
-    GraphServletFromEveryVertex.MAX_NODES = Integer.parseInt(args[4]);
+    // The region size evaluations take a comma separated list of sizes.
+    GraphServletFromEveryVertex.REGION_SIZES = GraphServlet.getRegionSizes(args[4]);
     //GraphServlet.BIASEDK = Integer.parseInt(args[5]);
+    // Compute the distortion values in Java instead of MATLAB.
+    if (args[5].equals("java")) {
+      SpectralEngine engine = GraphServlet.createSpectralEngine();
+      // The evaluations sweep k up to 400 on the same graph1.
+      engine.setMaxK(400);
+      GraphServletFromEveryVertex.setSpectralEngine(engine);
+    }
     GraphServletFromEveryVertex servlet = new GraphServletFromEveryVertex(args[5]);
-    servlet.runEvaluationsWithRespectToRegionSizeWithThresholdingExhaustiveSearch(inputFile1,
-     inputFile2, step, method);
+    // Stream all the evaluation runs to a CSV or binary report.
+    if (args.length > 6) {
+      servlet.setEvaluationSink(args[6].endsWith(".csv") ? new CsvEvaluationSink(args[6])
+          : new BinaryEvaluationSink(args[6]));
+    }
+    // The exhaustive search grows the regions of one size at a time.
+    for (int size : GraphServletFromEveryVertex.REGION_SIZES) {
+      GraphServletFromEveryVertex.MAX_NODES = size;
+      servlet.runEvaluationsWithRespectToRegionSizeWithThresholdingExhaustiveSearch(inputFile1,
+          inputFile2, step, method);
+    }
+    if (servlet.evaluationSink != null) {
+      servlet.evaluationSink.close();
+    }
     //servlet.runEvaluationsWithRespectToRegionSizeWithThresholdingAllBFSs(inputFile1, inputFile2, step,
       //  method);
     // scanner.close();
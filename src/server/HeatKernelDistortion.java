@@ -0,0 +1,164 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Distortion measure comparing the heat kernels exp(-t L) of the two graphs, without any
+ * eigendecomposition. L is the normalized Laplacian S^-1 L S^-1 of each graph with S = (D + I)^1/2,
+ * as in the F*L1 problem of visualize_map, whose spectrum is in [0, 2). The kernels are applied to
+ * random +-1 probe vectors through their Chebyshev expansion on [0, 2], and the distortion value of
+ * a node is the mean square of the difference of the two diffused probes there, an estimate of the
+ * squared norm of its row of exp(-t L1) - exp(-t L2). The expansions of all the times share the
+ * same Chebyshev vectors, so the cost is the products of the operators of both graphs with the
+ * probes, run in parallel by BlockOperator.applyBlock, for the degree of the largest time. The
+ * probes are processed in blocks, so the memory is linear in the number of nodes.
+ */
+public class HeatKernelDistortion {
+
+  // Name of the measure, selectable alongside the measures of visualize_map.
+  public static final String NAME = "heat-kernel";
+  // Diffusion time of the first distortion vector, each next vector doubles it.
+  private static final double FIRST_TIME = 1;
+  // Chebyshev coefficients below this fraction of the first one are dropped.
+  private static final double TOLERANCE = 1e-8;
+  // Number of probe vectors applied together to the operators.
+  private static final int BLOCK_SIZE = 16;
+
+  // Adjacency matrices of graph1 and graph2.
+  private SparseMatrix adjacency1;
+  private SparseMatrix adjacency2;
+
+  /**
+   * Constructor.
+   *
+   * @param adjacency1 symmetric adjacency matrix of graph1.
+   * @param adjacency2 symmetric adjacency matrix of graph2, of the same size.
+   */
+  public HeatKernelDistortion(SparseMatrix adjacency1, SparseMatrix adjacency2) {
+    this.adjacency1 = adjacency1;
+    this.adjacency2 = adjacency2;
+  }
+
+  /**
+   * Compute the distortion values of the nodes at r diffusion times, from FIRST_TIME doubling at
+   * each distortion vector, so the first vectors show the local changes and the next ones the
+   * changes of larger areas.
+   *
+   * @param probesNumber number of probe vectors, the variance of the estimate decreases as its
+   *        inverse.
+   * @param r number of distortion vectors to return.
+   * @return distortion values stacked column wise as nodesNumber x r.
+   */
+  public double[] getDistortionValues(int probesNumber, int r) {
+    int n = adjacency1.getSize();
+    double[][] coefficients = new double[r][];
+    int degree = 0;
+    for (int c = 0; c < r; c++) {
+      coefficients[c] = getCoefficients(FIRST_TIME * Math.pow(2, c));
+      degree = Math.max(degree, coefficients[c].length - 1);
+    }
+    NormalizedLaplacianOperator laplacian1 = getLaplacian(adjacency1);
+    NormalizedLaplacianOperator laplacian2 = getLaplacian(adjacency2);
+    double[] values = new double[n * r];
+    // Seeded to get the same results for the same input.
+    Random random = new Random(1);
+    for (int from = 0; from < probesNumber; from += BLOCK_SIZE) {
+      int size = Math.min(BLOCK_SIZE, probesNumber - from);
+      // Differences exp(-t L1) p - exp(-t L2) p of each time.
+      double[][][] differences = new double[r][size][n];
+      // Chebyshev vectors T_j(L - I) p of each graph, the previous and the current degree.
+      double[][] previous1 = new double[size][n];
+      double[][] previous2 = new double[size][n];
+      double[][] current1 = new double[size][n];
+      double[][] current2 = new double[size][n];
+      double[][] products1 = new double[size][n];
+      double[][] products2 = new double[size][n];
+      for (int p = 0; p < size; p++) {
+        for (int i = 0; i < n; i++) {
+          current1[p][i] = random.nextBoolean() ? 1 : -1;
+        }
+        System.arraycopy(current1[p], 0, current2[p], 0, n);
+      }
+      // T_0 is the same for both graphs, so it doesn't add to the differences.
+      for (int j = 1; j <= degree; j++) {
+        laplacian1.applyBlock(current1, products1);
+        laplacian2.applyBlock(current2, products2);
+        for (int p = 0; p < size; p++) {
+          double[] swap1 = previous1[p];
+          double[] swap2 = previous2[p];
+          for (int i = 0; i < n; i++) {
+            // T_1 = Y p and T_j+1 = 2 Y T_j - T_j-1, with Y = L - I.
+            double next1 = products1[p][i] - current1[p][i];
+            double next2 = products2[p][i] - current2[p][i];
+            if (j > 1) {
+              next1 = 2 * next1 - previous1[p][i];
+              next2 = 2 * next2 - previous2[p][i];
+            }
+            swap1[i] = next1;
+            swap2[i] = next2;
+          }
+          previous1[p] = current1[p];
+          previous2[p] = current2[p];
+          current1[p] = swap1;
+          current2[p] = swap2;
+          for (int c = 0; c < r; c++) {
+            if (j < coefficients[c].length) {
+              double coefficient = coefficients[c][j];
+              double[] difference = differences[c][p];
+              for (int i = 0; i < n; i++) {
+                difference[i] += coefficient * (swap1[i] - swap2[i]);
+              }
+            }
+          }
+        }
+      }
+      for (int c = 0; c < r; c++) {
+        for (int p = 0; p < size; p++) {
+          double[] difference = differences[c][p];
+          for (int i = 0; i < n; i++) {
+            values[c * n + i] += difference[i] * difference[i] / probesNumber;
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Normalized Laplacian S^-1 L S^-1 of a graph, with S = (D + I)^1/2.
+   */
+  private static NormalizedLaplacianOperator getLaplacian(SparseMatrix adjacency) {
+    double[] degrees = adjacency.getRowSums();
+    double[] scale = new double[degrees.length];
+    for (int i = 0; i < degrees.length; i++) {
+      scale[i] = Math.sqrt(degrees[i] + 1);
+    }
+    return new NormalizedLaplacianOperator(adjacency, degrees, scale);
+  }
+
+  /**
+   * Chebyshev coefficients of exp(-t x) on [0, 2], as a function of y = x - 1 in [-1, 1], computed
+   * by Chebyshev-Gauss quadrature and truncated at TOLERANCE. The first coefficient is halved, so
+   * the expansion is the plain sum of the coefficients times T_j(y).
+   */
+  private static double[] getCoefficients(double t) {
+    // The coefficients e^-t I_j(t) decay about as exp(-j^2 / 2t), so they fall below TOLERANCE
+    // near 6 sqrt(t), well within the nodes of the quadrature.
+    int nodesNumber = 4 * (int) Math.ceil(t) + 64;
+    double[] coefficients = new double[nodesNumber];
+    for (int m = 0; m < nodesNumber; m++) {
+      double angle = Math.PI * (m + 0.5) / nodesNumber;
+      double value = Math.exp(-t * (1 + Math.cos(angle)));
+      for (int j = 0; j < nodesNumber; j++) {
+        coefficients[j] += 2 * value * Math.cos(j * angle) / nodesNumber;
+      }
+    }
+    coefficients[0] /= 2;
+    int degree = nodesNumber - 1;
+    while (degree > 0 && Math.abs(coefficients[degree]) < TOLERANCE * coefficients[0]) {
+      degree--;
+    }
+    return Arrays.copyOf(coefficients, degree + 1);
+  }
+}
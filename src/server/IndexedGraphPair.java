@@ -0,0 +1,497 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Snapshot of graph1 and graph2 over a shared integer index space. Every node of graph2 gets an
+ * index, and the adjacency of both graphs is stored in compressed arrays over these indices, so
+ * that the traversal and scoring loops don't need any HashMap or node mapping lookups.
+ *
+ * @param <T> node type of the underlying graphs.
+ */
+public class IndexedGraphPair<T> {
+
+  // Nodes of graph2 in index order.
+  private ArrayList<T> nodes;
+  // Mapping between the node object and its index.
+  private HashMap<T, Integer> indices;
+  // Indices of the seed nodes (nodes having an adjacency list in graph2) in iteration order.
+  private int[] seeds;
+  // Offsets of each node neighbors in neighbors1, graph1 adjacency over the shared indices.
+  private int[] offsets1;
+  // Graph1 neighbors of each node, neighbors that don't exist in graph2 are dropped.
+  private int[] neighbors1;
+  // Offsets of each node neighbors in neighbors2.
+  private int[] offsets2;
+  // Graph2 neighbors of each node.
+  private int[] neighbors2;
+  // Reverse adjacency of graph1 and graph2, the nodes having each node as neighbor, in the same
+  // format. They are the adjacency arrays themselves when the graph is symmetric.
+  private int[] reverseOffsets1;
+  private int[] reverseNeighbors1;
+  private int[] reverseOffsets2;
+  private int[] reverseNeighbors2;
+  // Degree of each node in graph1, including neighbors that don't exist in graph2.
+  private int[] degrees1;
+  // Degree of each node in graph2.
+  private int[] degrees2;
+  // Value used to order the nodes in biased BFS and BFS with priority queue.
+  private double[] priorities;
+  // Delta change of each node, summed when scoring a region.
+  private double[] deltas;
+
+  /**
+   * Constructor creates the node index, which is then populated by the factory methods.
+   *
+   * @param expectedNodesNumber expected number of indexed nodes.
+   */
+  private IndexedGraphPair(int expectedNodesNumber) {
+    nodes = new ArrayList<T>(expectedNodesNumber);
+    indices = new HashMap<T, Integer>(expectedNodesNumber * 2);
+  }
+
+  /**
+   * Constructor shares all the arrays of another graph pair.
+   *
+   * @param graphPair to share the arrays of.
+   */
+  private IndexedGraphPair(IndexedGraphPair<T> graphPair) {
+    nodes = graphPair.nodes;
+    indices = graphPair.indices;
+    seeds = graphPair.seeds;
+    offsets1 = graphPair.offsets1;
+    neighbors1 = graphPair.neighbors1;
+    offsets2 = graphPair.offsets2;
+    neighbors2 = graphPair.neighbors2;
+    reverseOffsets1 = graphPair.reverseOffsets1;
+    reverseNeighbors1 = graphPair.reverseNeighbors1;
+    reverseOffsets2 = graphPair.reverseOffsets2;
+    reverseNeighbors2 = graphPair.reverseNeighbors2;
+    degrees1 = graphPair.degrees1;
+    degrees2 = graphPair.degrees2;
+    priorities = graphPair.priorities;
+    deltas = graphPair.deltas;
+  }
+
+  /**
+   * Allocate the per node arrays once all the nodes are indexed.
+   */
+  private void allocateArrays() {
+    int nodesNumber = nodes.size();
+    offsets1 = new int[nodesNumber + 1];
+    offsets2 = new int[nodesNumber + 1];
+    degrees1 = new int[nodesNumber];
+    degrees2 = new int[nodesNumber];
+    priorities = new double[nodesNumber];
+    deltas = new double[nodesNumber];
+  }
+
+  /**
+   * Build the indexed snapshot of the graphs loaded in the graph calculator. Seeds follow the
+   * iteration order of graph2, which is the order used by the calculators, and both the priority
+   * and the delta of a node are its distortion value.
+   *
+   * @param graphCalculator containing graph1, graph2 and their node mappings.
+   * @return indexed graph pair.
+   */
+  public static IndexedGraphPair<Node> fromGraphCalculator(GraphCalculator graphCalculator) {
+    HashMap<Node, HashMap<Node, Integer>> graph1 = graphCalculator.getGraph1();
+    HashMap<Node, HashMap<Node, Integer>> graph2 = graphCalculator.getGraph2();
+    HashMap<String, Node> nodeMapping1 = graphCalculator.getNodeMapping1();
+    HashMap<String, Node> nodeMapping2 = graphCalculator.getNodeMapping2();
+    IndexedGraphPair<Node> graphPair =
+        new IndexedGraphPair<Node>(Math.max(graph2.size(), nodeMapping2.size()));
+    // Seeds first, so that seed i has index i.
+    for (Node node : graph2.keySet()) {
+      graphPair.addNode(node);
+    }
+    graphPair.seeds = new int[graph2.size()];
+    for (int i = 0; i < graphPair.seeds.length; i++) {
+      graphPair.seeds[i] = i;
+    }
+    // Nodes that only appear as neighbors in graph2.
+    for (Node node : nodeMapping2.values()) {
+      if (!graphPair.indices.containsKey(node)) {
+        graphPair.addNode(node);
+      }
+    }
+    graphPair.allocateArrays();
+    int nodesNumber = graphPair.nodes.size();
+    IntList neighbors1 = new IntList();
+    IntList neighbors2 = new IntList();
+    for (int i = 0; i < nodesNumber; i++) {
+      Node node = graphPair.nodes.get(i);
+      graphPair.priorities[i] = node.getDistortionValue();
+      graphPair.deltas[i] = node.getDistortionValue();
+      Node node1 = nodeMapping1.get(node.getId());
+      HashMap<Node, Integer> node1Neighbors = node1 == null ? null : graph1.get(node1);
+      if (node1Neighbors != null) {
+        graphPair.degrees1[i] = node1Neighbors.size();
+        for (Node neighbor : node1Neighbors.keySet()) {
+          Integer neighborIndex = graphPair.indices.get(nodeMapping2.get(neighbor.getId()));
+          if (neighborIndex != null) {
+            neighbors1.add(neighborIndex);
+          }
+        }
+      }
+      graphPair.offsets1[i + 1] = neighbors1.size();
+      HashMap<Node, Integer> node2Neighbors = graph2.get(node);
+      if (node2Neighbors != null) {
+        graphPair.degrees2[i] = node2Neighbors.size();
+        for (Node neighbor : node2Neighbors.keySet()) {
+          Integer neighborIndex = graphPair.indices.get(neighbor);
+          if (neighborIndex != null) {
+            neighbors2.add(neighborIndex);
+          }
+        }
+      }
+      graphPair.offsets2[i + 1] = neighbors2.size();
+    }
+    graphPair.neighbors1 = neighbors1.toArray();
+    graphPair.neighbors2 = neighbors2.toArray();
+    graphPair.buildReverseAdjacency();
+    return graphPair;
+  }
+
+  /**
+   * Build the indexed snapshot of a pair of spectral graphs, where the nodes of both graphs are
+   * matched by id. Seeds follow the given order, the priority of a node is its distortion value and
+   * its delta is the delta change set by SpectralMethodRegionSelector.calculateDeltaGraph.
+   *
+   * @param graph1 adjacency list of graph1.
+   * @param nodeMapping1 mapping between node ids and graph1 node objects.
+   * @param graph2 adjacency list of graph2, the regions are grown on this graph.
+   * @param nodeMapping2 mapping between node ids and graph2 node objects.
+   * @param seedsOrder graph2 nodes to start the regions from, in the order to try them.
+   * @return indexed graph pair.
+   */
+  public static IndexedGraphPair<SpectralNode> fromSpectralGraphs(
+      HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph1,
+      HashMap<Integer, SpectralNode> nodeMapping1,
+      HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph2,
+      HashMap<Integer, SpectralNode> nodeMapping2, List<SpectralNode> seedsOrder) {
+    IndexedGraphPair<SpectralNode> graphPair = new IndexedGraphPair<SpectralNode>(graph2.size());
+    // Seeds first, so that seed i has index i.
+    for (SpectralNode node : seedsOrder) {
+      if (graph2.containsKey(node) && !graphPair.indices.containsKey(node)) {
+        graphPair.addNode(node);
+      }
+    }
+    graphPair.seeds = new int[graphPair.nodes.size()];
+    for (int i = 0; i < graphPair.seeds.length; i++) {
+      graphPair.seeds[i] = i;
+    }
+    for (SpectralNode node : graph2.keySet()) {
+      if (!graphPair.indices.containsKey(node)) {
+        graphPair.addNode(node);
+      }
+    }
+    graphPair.allocateArrays();
+    int nodesNumber = graphPair.nodes.size();
+    IntList neighbors1 = new IntList();
+    IntList neighbors2 = new IntList();
+    for (int i = 0; i < nodesNumber; i++) {
+      SpectralNode node = graphPair.nodes.get(i);
+      graphPair.priorities[i] = node.getDistortionValue();
+      graphPair.deltas[i] = node.getDelta();
+      SpectralNode node1 = nodeMapping1.get(node.getId());
+      HashMap<SpectralNode, Integer> node1Neighbors = node1 == null ? null : graph1.get(node1);
+      if (node1Neighbors != null) {
+        graphPair.degrees1[i] = node1Neighbors.size();
+        for (SpectralNode neighbor : node1Neighbors.keySet()) {
+          SpectralNode neighbor2 = nodeMapping2.get(neighbor.getId());
+          Integer neighborIndex = neighbor2 == null ? null : graphPair.indices.get(neighbor2);
+          if (neighborIndex != null) {
+            neighbors1.add(neighborIndex);
+          }
+        }
+      }
+      graphPair.offsets1[i + 1] = neighbors1.size();
+      HashMap<SpectralNode, Integer> node2Neighbors = graph2.get(node);
+      graphPair.degrees2[i] = node2Neighbors.size();
+      for (SpectralNode neighbor : node2Neighbors.keySet()) {
+        Integer neighborIndex = graphPair.indices.get(neighbor);
+        if (neighborIndex != null) {
+          neighbors2.add(neighborIndex);
+        }
+      }
+      graphPair.offsets2[i + 1] = neighbors2.size();
+    }
+    graphPair.neighbors1 = neighbors1.toArray();
+    graphPair.neighbors2 = neighbors2.toArray();
+    graphPair.buildReverseAdjacency();
+    return graphPair;
+  }
+
+  /**
+   * Build the reverse adjacency of both graphs. The graphs read from the files aren't checked to be
+   * symmetric, so the edges within a region are counted with their actual reverse edges.
+   */
+  private void buildReverseAdjacency() {
+    int[][] reverse = getReverseAdjacency(offsets1, neighbors1);
+    reverseOffsets1 = reverse[0];
+    reverseNeighbors1 = reverse[1];
+    reverse = getReverseAdjacency(offsets2, neighbors2);
+    reverseOffsets2 = reverse[0];
+    reverseNeighbors2 = reverse[1];
+  }
+
+  /**
+   * Reverse adjacency of a graph, or the adjacency itself if every edge has its reverse edge.
+   *
+   * @return reverse offsets and reverse neighbors.
+   */
+  private static int[][] getReverseAdjacency(int[] offsets, int[] neighbors) {
+    int nodesNumber = offsets.length - 1;
+    int[] reverseOffsets = new int[nodesNumber + 1];
+    for (int neighbor : neighbors) {
+      reverseOffsets[neighbor + 1]++;
+    }
+    for (int i = 0; i < nodesNumber; i++) {
+      reverseOffsets[i + 1] += reverseOffsets[i];
+    }
+    int[] reverseNeighbors = new int[neighbors.length];
+    int[] next = new int[nodesNumber];
+    System.arraycopy(reverseOffsets, 0, next, 0, nodesNumber);
+    for (int i = 0; i < nodesNumber; i++) {
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        reverseNeighbors[next[neighbors[p]]++] = i;
+      }
+    }
+    // The graph is symmetric if each row has the same neighbors in both adjacencies, the neighbors
+    // of a row being distinct. The neighbors of row i are marked with i + 1.
+    int[] marks = new int[nodesNumber];
+    boolean symmetric = true;
+    for (int i = 0; i < nodesNumber && symmetric; i++) {
+      symmetric = offsets[i + 1] - offsets[i] == reverseOffsets[i + 1] - reverseOffsets[i];
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        marks[neighbors[p]] = i + 1;
+      }
+      for (int p = reverseOffsets[i]; p < reverseOffsets[i + 1] && symmetric; p++) {
+        symmetric = marks[reverseNeighbors[p]] == i + 1;
+      }
+    }
+    if (symmetric) {
+      return new int[][] {offsets, neighbors};
+    }
+    return new int[][] {reverseOffsets, reverseNeighbors};
+  }
+
+  /**
+   * Create a view of this graph pair with other priorities and seeds, e.g. the distortion values of
+   * another singular vector. The nodes, adjacency, degrees and deltas are shared with this graph
+   * pair, so the view is cheap to create and must be treated as read only.
+   *
+   * @param priorities value of each node used to order the traversals.
+   * @param seeds indices of the nodes to start the regions from, in the order to try them.
+   * @return graph pair view.
+   */
+  public IndexedGraphPair<T> withPriorities(double[] priorities, int[] seeds) {
+    IndexedGraphPair<T> graphPair = new IndexedGraphPair<T>(this);
+    graphPair.priorities = priorities;
+    graphPair.seeds = seeds;
+    return graphPair;
+  }
+
+  /**
+   * Add a node to the index.
+   *
+   * @param node to add.
+   */
+  private void addNode(T node) {
+    indices.put(node, nodes.size());
+    nodes.add(node);
+  }
+
+  /**
+   * Get the number of indexed nodes.
+   *
+   * @return number of indexed nodes.
+   */
+  public int getNodesNumber() {
+    return nodes.size();
+  }
+
+  /**
+   * Get the node object of an index.
+   *
+   * @param index of the node.
+   * @return node object.
+   */
+  public T getNode(int index) {
+    return nodes.get(index);
+  }
+
+  /**
+   * Get the index of a node object.
+   *
+   * @param node object.
+   * @return index of the node, or -1 if the node is not indexed.
+   */
+  public int getIndex(T node) {
+    Integer index = indices.get(node);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Get the seed nodes indices.
+   *
+   * @return seed nodes indices in iteration order.
+   */
+  public int[] getSeeds() {
+    return seeds;
+  }
+
+  /**
+   * Get graph1 adjacency offsets.
+   *
+   * @return graph1 adjacency offsets.
+   */
+  public int[] getOffsets1() {
+    return offsets1;
+  }
+
+  /**
+   * Get graph1 adjacency.
+   *
+   * @return graph1 neighbors indices.
+   */
+  public int[] getNeighbors1() {
+    return neighbors1;
+  }
+
+  /**
+   * Get graph2 adjacency offsets.
+   *
+   * @return graph2 adjacency offsets.
+   */
+  public int[] getOffsets2() {
+    return offsets2;
+  }
+
+  /**
+   * Get graph2 adjacency.
+   *
+   * @return graph2 neighbors indices.
+   */
+  public int[] getNeighbors2() {
+    return neighbors2;
+  }
+
+  /**
+   * Get graph1 reverse adjacency offsets.
+   *
+   * @return graph1 reverse adjacency offsets, the graph1 offsets if graph1 is symmetric.
+   */
+  public int[] getReverseOffsets1() {
+    return reverseOffsets1;
+  }
+
+  /**
+   * Get graph1 reverse adjacency.
+   *
+   * @return indices of the nodes having each node as graph1 neighbor, the graph1 neighbors if
+   *         graph1 is symmetric.
+   */
+  public int[] getReverseNeighbors1() {
+    return reverseNeighbors1;
+  }
+
+  /**
+   * Get graph2 reverse adjacency offsets.
+   *
+   * @return graph2 reverse adjacency offsets, the graph2 offsets if graph2 is symmetric.
+   */
+  public int[] getReverseOffsets2() {
+    return reverseOffsets2;
+  }
+
+  /**
+   * Get graph2 reverse adjacency.
+   *
+   * @return indices of the nodes having each node as graph2 neighbor, the graph2 neighbors if
+   *         graph2 is symmetric.
+   */
+  public int[] getReverseNeighbors2() {
+    return reverseNeighbors2;
+  }
+
+  /**
+   * Get node degrees in graph1.
+   *
+   * @return node degrees in graph1.
+   */
+  public int[] getDegrees1() {
+    return degrees1;
+  }
+
+  /**
+   * Get node degrees in graph2.
+   *
+   * @return node degrees in graph2.
+   */
+  public int[] getDegrees2() {
+    return degrees2;
+  }
+
+  /**
+   * Get the traversal priorities of the nodes.
+   *
+   * @return traversal priorities.
+   */
+  public double[] getPriorities() {
+    return priorities;
+  }
+
+  /**
+   * Get the delta change of the nodes.
+   *
+   * @return delta changes.
+   */
+  public double[] getDeltas() {
+    return deltas;
+  }
+
+  /**
+   * Convert region members given as indices back to node objects.
+   *
+   * @param members indices of the region nodes.
+   * @return ArrayList of the region nodes.
+   */
+  public ArrayList<T> toNodes(int[] members) {
+    ArrayList<T> regionNodes = new ArrayList<T>(members.length);
+    for (int member : members) {
+      regionNodes.add(nodes.get(member));
+    }
+    return regionNodes;
+  }
+
+  /**
+   * Growable int array used while building the compressed adjacency.
+   */
+  static class IntList {
+    private int[] values = new int[16];
+    private int size = 0;
+
+    void add(int value) {
+      if (size == values.length) {
+        int[] newValues = new int[values.length * 2];
+        System.arraycopy(values, 0, newValues, 0, size);
+        values = newValues;
+      }
+      values[size++] = value;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      int[] array = new int[size];
+      System.arraycopy(values, 0, array, 0, size);
+      return array;
+    }
+  }
+}
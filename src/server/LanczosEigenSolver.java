@@ -0,0 +1,346 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Computes the smallest eigenpairs of a symmetric operator with the thick restarted Lanczos method
+ * (Krylov-Schur restarts, Stewart 2001), keeping the Lanczos vectors fully reorthogonalized. Known
+ * eigenvectors, e.g. the null space of a Laplacian, can be deflated so the solver only searches
+ * their orthogonal complement.
+ */
+public class LanczosEigenSolver {
+
+  // Default max residual norm of the returned eigenpairs.
+  private static final double DEFAULT_TOLERANCE = 1e-10;
+  // Default max number of restarts.
+  private static final int DEFAULT_MAX_RESTARTS = 500;
+
+  // Operator to compute the eigenpairs of.
+  private LinearOperator operator;
+  // Orthonormal vectors removed from the search space, or null.
+  private double[][] deflation;
+  // Max residual norm of the returned eigenpairs, relative to the largest Ritz value.
+  private double tolerance = DEFAULT_TOLERANCE;
+  // Max number of restarts, the current Ritz pairs are returned if they didn't converge.
+  private int maxRestarts = DEFAULT_MAX_RESTARTS;
+  // Random generator of the starting vectors, seeded to get the same results for the same input.
+  private Random random = new Random(1);
+  // Eigenvalues of the last solve, in increasing order.
+  private double[] eigenvalues;
+  // Eigenvectors of the last solve, as rows.
+  private double[][] eigenvectors;
+  // Vectors spanning the starting subspace, or null to start from a random vector.
+  private double[][] startVectors = null;
+  // Number of restarts of the last solve.
+  private int restarts;
+  // Number of operator products of the last solve.
+  private int products;
+
+  /**
+   * Constructor.
+   *
+   * @param operator symmetric operator.
+   * @param deflation orthonormal vectors to exclude from the search space, or null. They must span
+   *        an invariant subspace of the operator.
+   */
+  public LanczosEigenSolver(LinearOperator operator, double[][] deflation) {
+    this.operator = operator;
+    this.deflation = deflation == null ? new double[0][] : deflation;
+  }
+
+  /**
+   * Set the max residual norm of the returned eigenpairs.
+   *
+   * @param tolerance max residual norm, relative to the largest Ritz value.
+   */
+  public void setTolerance(double tolerance) {
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Set the max number of restarts.
+   *
+   * @param maxRestarts max number of restarts.
+   */
+  public void setMaxRestarts(int maxRestarts) {
+    this.maxRestarts = maxRestarts;
+  }
+
+  /**
+   * Set the vectors spanning the starting subspace of the next solves, e.g. the eigenvectors of a
+   * slightly different operator. The Ritz pairs of the subspace are returned if they are within the
+   * tolerance, otherwise the solver starts from the sum of the Ritz vectors.
+   *
+   * @param startVectors vectors of the size of the operator, or null to start from a random vector.
+   */
+  public void setStartVectors(double[][] startVectors) {
+    this.startVectors = startVectors;
+  }
+
+  /**
+   * Compute the smallest eigenpairs of the operator in the complement of the deflated vectors.
+   *
+   * @param count number of eigenpairs, below the size of the complement.
+   * @param basisSize number of Lanczos vectors kept between restarts, above count and at most the
+   *        size of the complement.
+   */
+  public void solve(int count, int basisSize) {
+    int n = operator.getSize();
+    int m = basisSize;
+    double[][] v = new double[m + 1][];
+    double[][] h = new double[m][m];
+    double[] w = new double[n];
+    products = 0;
+    restarts = 0;
+    double[] start = null;
+    if (startVectors != null) {
+      start = rayleighRitz(count);
+      if (start == null) {
+        return;
+      }
+    }
+    v[0] = start != null ? start : randomVector(v, 0);
+    int kept = 0;
+    double beta = 0;
+    double[] theta = null;
+    double[][] y = null;
+    for (restarts = 0;; restarts++) {
+      // Extend the basis to m vectors.
+      for (int j = kept; j < m; j++) {
+        operator.apply(v[j], w);
+        products++;
+        orthogonalize(w, v, j + 1, h, j);
+        // The deflated directions come last, so the basis doesn't bring them back.
+        orthogonalize(w, deflation, deflation.length, null, 0);
+        beta = norm(w);
+        double scale = Math.max(Math.abs(h[j][j]), 1.0);
+        if (beta <= 1e-12 * scale) {
+          // The basis spans an invariant subspace, continue from a new direction.
+          v[j + 1] = randomVector(v, j + 1);
+          beta = 0;
+        } else {
+          v[j + 1] = new double[n];
+          for (int i = 0; i < n; i++) {
+            v[j + 1][i] = w[i] / beta;
+          }
+        }
+      }
+      // Ritz pairs of the projected matrix, whose upper triangle is filled.
+      double[][] projected = new double[m][m];
+      for (int j = 0; j < m; j++) {
+        for (int i = 0; i <= j; i++) {
+          projected[i][j] = h[i][j];
+          projected[j][i] = h[i][j];
+        }
+      }
+      SymmetricEigenDecomposition decomposition = new SymmetricEigenDecomposition(projected);
+      theta = decomposition.getEigenvalues();
+      y = decomposition.getEigenvectors();
+      double norm = Math.max(Math.abs(theta[0]), Math.abs(theta[m - 1]));
+      boolean converged = true;
+      for (int i = 0; i < count && converged; i++) {
+        converged = Math.abs(beta * y[i][m - 1]) <= tolerance * Math.max(norm, 1e-300);
+      }
+      if (converged || restarts >= maxRestarts) {
+        break;
+      }
+      // Restart from the smallest Ritz vectors and the residual direction.
+      kept = Math.min(count + (m - count) / 2, m - 1);
+      double[][] ritz = combine(v, y, kept, n);
+      for (int i = 0; i < m; i++) {
+        Arrays.fill(h[i], 0);
+      }
+      for (int i = 0; i < kept; i++) {
+        v[i] = ritz[i];
+        h[i][i] = theta[i];
+      }
+      v[kept] = v[m];
+      for (int i = kept + 1; i <= m; i++) {
+        v[i] = null;
+      }
+    }
+    eigenvalues = new double[count];
+    System.arraycopy(theta, 0, eigenvalues, 0, count);
+    eigenvectors = combine(v, y, count, n);
+  }
+
+  /**
+   * Get the eigenvalues of the last solve.
+   *
+   * @return eigenvalues in increasing order.
+   */
+  public double[] getEigenvalues() {
+    return eigenvalues;
+  }
+
+  /**
+   * Get the eigenvectors of the last solve.
+   *
+   * @return orthonormal eigenvectors as rows, in the order of the eigenvalues.
+   */
+  public double[][] getEigenvectors() {
+    return eigenvectors;
+  }
+
+  /**
+   * Get the number of restarts of the last solve.
+   *
+   * @return number of restarts.
+   */
+  public int getRestarts() {
+    return restarts;
+  }
+
+  /**
+   * Get the number of operator products of the last solve.
+   *
+   * @return number of products.
+   */
+  public int getProducts() {
+    return products;
+  }
+
+  /**
+   * Rayleigh-Ritz projection on the start vectors. If the count smallest Ritz pairs are within the
+   * tolerance they are the result of the solve and null is returned, otherwise the unit sum of
+   * their Ritz vectors is returned, or a random vector if the start vectors span less than count
+   * directions out of the deflated ones.
+   */
+  private double[] rayleighRitz(int count) {
+    int n = operator.getSize();
+    double[][] q = new double[startVectors.length][];
+    int s = 0;
+    for (double[] startVector : startVectors) {
+      double[] vector = Arrays.copyOf(startVector, n);
+      double length = norm(vector);
+      orthogonalize(vector, deflation, deflation.length, null, 0);
+      orthogonalize(vector, q, s, null, 0);
+      double norm = norm(vector);
+      if (norm > 1e-8 * length) {
+        for (int i = 0; i < n; i++) {
+          vector[i] /= norm;
+        }
+        q[s++] = vector;
+      }
+    }
+    if (s < count) {
+      return randomVector(null, 0);
+    }
+    double[][] products = new double[s][n];
+    double[][] projected = new double[s][s];
+    for (int j = 0; j < s; j++) {
+      operator.apply(q[j], products[j]);
+      this.products++;
+      for (int i = 0; i <= j; i++) {
+        double dot = 0;
+        for (int p = 0; p < n; p++) {
+          dot += q[i][p] * products[j][p];
+        }
+        projected[i][j] = dot;
+        projected[j][i] = dot;
+      }
+    }
+    SymmetricEigenDecomposition decomposition = new SymmetricEigenDecomposition(projected);
+    double[] theta = decomposition.getEigenvalues();
+    double[][] y = decomposition.getEigenvectors();
+    double[][] ritz = combine(q, y, count, n);
+    double[][] images = combine(products, y, count, n);
+    double norm = Math.max(Math.abs(theta[0]), Math.abs(theta[s - 1]));
+    boolean converged = true;
+    double[] sum = new double[n];
+    for (int i = 0; i < count; i++) {
+      // Residual A x - theta x of the Ritz vector x.
+      for (int p = 0; p < n; p++) {
+        images[i][p] -= theta[i] * ritz[i][p];
+        sum[p] += ritz[i][p];
+      }
+      converged &= norm(images[i]) <= tolerance * Math.max(norm, 1e-300);
+    }
+    if (converged) {
+      eigenvalues = Arrays.copyOf(theta, count);
+      eigenvectors = ritz;
+      return null;
+    }
+    double length = norm(sum);
+    for (int p = 0; p < n; p++) {
+      sum[p] /= length;
+    }
+    return sum;
+  }
+
+  /**
+   * Ritz vectors sum_j y[i][j] * v[j] of the first count Ritz pairs.
+   */
+  private static double[][] combine(double[][] v, double[][] y, int count, int n) {
+    int m = y.length;
+    double[][] ritz = new double[count][n];
+    for (int i = 0; i < count; i++) {
+      double[] vector = ritz[i];
+      for (int j = 0; j < m; j++) {
+        double coefficient = y[i][j];
+        double[] basis = v[j];
+        for (int p = 0; p < n; p++) {
+          vector[p] += coefficient * basis[p];
+        }
+      }
+    }
+    return ritz;
+  }
+
+  /**
+   * Random unit vector orthogonal to the deflated vectors and to the first count basis vectors.
+   */
+  private double[] randomVector(double[][] v, int count) {
+    int n = operator.getSize();
+    double[] vector = new double[n];
+    while (true) {
+      for (int i = 0; i < n; i++) {
+        vector[i] = random.nextDouble() - 0.5;
+      }
+      orthogonalize(vector, v, count, null, 0);
+      orthogonalize(vector, deflation, deflation.length, null, 0);
+      double norm = norm(vector);
+      if (norm > 1e-8) {
+        for (int i = 0; i < n; i++) {
+          vector[i] /= norm;
+        }
+        return vector;
+      }
+    }
+  }
+
+  /**
+   * Remove from w its components along the first count vectors, with two passes of modified
+   * Gram-Schmidt. The removed components are added to column j of h if h isn't null.
+   */
+  private static void orthogonalize(double[] w, double[][] vectors, int count, double[][] h,
+      int j) {
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < count; i++) {
+        double[] vector = vectors[i];
+        double dot = 0;
+        for (int p = 0; p < w.length; p++) {
+          dot += vector[p] * w[p];
+        }
+        for (int p = 0; p < w.length; p++) {
+          w[p] -= dot * vector[p];
+        }
+        if (h != null) {
+          h[i][j] += dot;
+        }
+      }
+    }
+  }
+
+  /**
+   * Euclidean norm of a vector.
+   */
+  private static double norm(double[] vector) {
+    double sum = 0;
+    for (double value : vector) {
+      sum += value * value;
+    }
+    return Math.sqrt(sum);
+  }
+}
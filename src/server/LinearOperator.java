@@ -0,0 +1,23 @@
+package server;
+
+/**
+ * Symmetric linear operator over the nodes of a graph, applied to vectors by the iterative
+ * eigensolvers without building the matrix.
+ */
+public interface LinearOperator {
+
+  /**
+   * Get the number of rows and columns of the operator.
+   *
+   * @return size of the operator.
+   */
+  int getSize();
+
+  /**
+   * Apply the operator to a vector.
+   *
+   * @param x vector to apply the operator to.
+   * @param y vector receiving the product, it doesn't alias x.
+   */
+  void apply(double[] x, double[] y);
+}
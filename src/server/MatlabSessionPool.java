@@ -0,0 +1,130 @@
+package server;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import matlabcontrol.MatlabConnectionException;
+import matlabcontrol.MatlabProxyFactory;
+import matlabcontrol.MatlabProxyFactoryOptions;
+
+/**
+ * Bounded pool of MATLAB sessions, so the spectral runs of concurrent requests don't wait for
+ * each other in one MATLAB process. A run checks out an idle session, uses its proxy and
+ * workspace, and returns it. When all the sessions are busy, checkout waits until one is returned
+ * or the timeout elapses. A session whose proxy is disconnected, e.g. because MATLAB was closed,
+ * is dropped and replaced by a new session on its next checkout.
+ */
+public class MatlabSessionPool {
+
+  // Default time to wait for an idle session.
+  public static final long DEFAULT_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+  // Factory of the proxies of the sessions.
+  private MatlabProxyFactory factory;
+  // Max number of sessions.
+  private int size;
+  // Time to wait for an idle session.
+  private long timeoutMillis;
+  // Idle sessions, the most recently returned first, so a few sessions keep the warm workspaces.
+  private LinkedBlockingDeque<MatlabWorkspace> idle = new LinkedBlockingDeque<MatlabWorkspace>();
+  // One permit for each session that isn't checked out.
+  private Semaphore permits;
+
+  /**
+   * Constructor starts the sessions.
+   *
+   * @param options options of the MATLAB sessions.
+   * @param size max number of sessions, at least 1.
+   * @throws MatlabConnectionException
+   */
+  public MatlabSessionPool(MatlabProxyFactoryOptions options, int size)
+      throws MatlabConnectionException {
+    this(options, size, DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Constructor starts the sessions.
+   *
+   * @param options options of the MATLAB sessions.
+   * @param size max number of sessions, at least 1.
+   * @param timeoutMillis time to wait for an idle session.
+   * @throws MatlabConnectionException
+   */
+  public MatlabSessionPool(MatlabProxyFactoryOptions options, int size, long timeoutMillis)
+      throws MatlabConnectionException {
+    this.factory = new MatlabProxyFactory(options);
+    this.size = Math.max(1, size);
+    this.timeoutMillis = timeoutMillis;
+    this.permits = new Semaphore(this.size, true);
+    for (int i = 0; i < this.size; i++) {
+      idle.addLast(new MatlabWorkspace(factory.getProxy()));
+    }
+  }
+
+  /**
+   * Get the max number of sessions.
+   *
+   * @return number of sessions.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Check out an idle session, waiting for one to be returned if all are busy. The session must be
+   * returned with checkin once the run is done.
+   *
+   * @return session with its proxy and workspace.
+   * @throws IllegalStateException if no session is idle within the timeout, or a disconnected
+   *         session can't be replaced.
+   */
+  public MatlabWorkspace checkout() {
+    try {
+      if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new IllegalStateException("All the " + size + " MATLAB sessions are busy after "
+            + timeoutMillis + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a MATLAB session");
+    }
+    MatlabWorkspace session = idle.pollFirst();
+    // Health check, the session of a closed MATLAB is replaced.
+    while (session != null && !session.getProxy().isConnected()) {
+      session = idle.pollFirst();
+    }
+    if (session == null) {
+      try {
+        session = new MatlabWorkspace(factory.getProxy());
+      } catch (MatlabConnectionException e) {
+        permits.release();
+        throw new IllegalStateException("Error in starting a MATLAB session " + e.getMessage());
+      }
+    }
+    return session;
+  }
+
+  /**
+   * Return a checked out session to the pool.
+   *
+   * @param session session returned by checkout.
+   */
+  public void checkin(MatlabWorkspace session) {
+    // A disconnected session is dropped here, and replaced on a later checkout.
+    if (session.getProxy().isConnected()) {
+      idle.addFirst(session);
+    }
+    permits.release();
+  }
+
+  /**
+   * Disconnect the idle sessions, leaving MATLAB running so they can be reused by a new pool.
+   */
+  public void disconnect() {
+    MatlabWorkspace session;
+    while ((session = idle.pollFirst()) != null) {
+      session.getProxy().disconnect();
+    }
+  }
+}
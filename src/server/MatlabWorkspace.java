@@ -0,0 +1,192 @@
+package server;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabProxy;
+
+/**
+ * Graphs kept in the MATLAB workspace between the runs of visualize_map, so repeated runs on the
+ * same graphs only send their parameters. Each graph is stored once as G_hash, where the hash is
+ * computed from its edges, and each pair of graphs as P_hash1_hash2, the struct of the sparse
+ * operators built by visualize_map_prepare. The edges are sent as three flat columns. The least
+ * recently used variables are cleared once there are more than the max number of variables.
+ */
+public class MatlabWorkspace {
+
+  // Default max number of graph and graph pair variables.
+  public static final int DEFAULT_MAX_VARIABLES = 16;
+  // Number of hex characters of the hashes in the variable names.
+  private static final int HASH_LENGTH = 16;
+
+  // Proxy of the MATLAB session holding the workspace.
+  private MatlabProxy proxy;
+  // Max number of graph and graph pair variables, at least 3.
+  private int maxVariables;
+  // Code path added to the MATLAB environment, or null.
+  private String path = null;
+  // Variables in the workspace, from the least to the most recently used.
+  private LinkedHashSet<String> variables = new LinkedHashSet<String>();
+
+  /**
+   * Constructor.
+   *
+   * @param proxy proxy of the MATLAB session.
+   */
+  public MatlabWorkspace(MatlabProxy proxy) {
+    this(proxy, DEFAULT_MAX_VARIABLES);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param proxy proxy of the MATLAB session.
+   * @param maxVariables max number of graph and graph pair variables, at least 3.
+   */
+  public MatlabWorkspace(MatlabProxy proxy, int maxVariables) {
+    this.proxy = proxy;
+    this.maxVariables = Math.max(3, maxVariables);
+  }
+
+  /**
+   * Get the proxy of the MATLAB session.
+   *
+   * @return proxy.
+   */
+  public MatlabProxy getProxy() {
+    return proxy;
+  }
+
+  /**
+   * Add the code path to the MATLAB environment, if it isn't the last added path.
+   *
+   * @param path code path.
+   * @throws MatlabInvocationException
+   */
+  public synchronized void addPath(String path) throws MatlabInvocationException {
+    if (!path.equals(this.path)) {
+      proxy.eval("addpath('" + path + "')");
+      this.path = path;
+    }
+  }
+
+  /**
+   * Store a graph in the workspace if it isn't there yet.
+   *
+   * @param graph graph edges where each index has from node id, to node id and edge value. Rows
+   *        with a node id below 1, left empty by loadGraph, are skipped.
+   * @return name of the E x 3 variable holding the edges.
+   * @throws MatlabInvocationException
+   */
+  public synchronized String putGraph(double[][] graph) throws MatlabInvocationException {
+    return putGraph(graph, getHash(graph));
+  }
+
+  /**
+   * Store a pair of graphs and their operators in the workspace if they aren't there yet. The
+   * struct doesn't depend on the graph variables, which are only sent to build it.
+   *
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @return name of the struct returned by visualize_map_prepare for the graphs.
+   * @throws MatlabInvocationException
+   */
+  public synchronized String putGraphPair(double[][] graph1, double[][] graph2)
+      throws MatlabInvocationException {
+    String hash1 = getHash(graph1);
+    String hash2 = getHash(graph2);
+    String name = "P_" + hash1 + "_" + hash2;
+    if (!touch(name)) {
+      String name1 = putGraph(graph1, hash1);
+      String name2 = putGraph(graph2, hash2);
+      proxy.eval(name + " = visualize_map_prepare(" + name1 + "," + name2 + ");");
+      variables.add(name);
+      evict();
+    }
+    return name;
+  }
+
+  /**
+   * Store a graph with the given hash in the workspace if it isn't there yet.
+   */
+  private String putGraph(double[][] graph, String hash) throws MatlabInvocationException {
+    String name = "G_" + hash;
+    if (!touch(name)) {
+      int edges = 0;
+      for (double[] edge : graph) {
+        if (edge[0] >= 1 && edge[1] >= 1) {
+          edges++;
+        }
+      }
+      double[] from = new double[edges];
+      double[] to = new double[edges];
+      double[] values = new double[edges];
+      edges = 0;
+      for (double[] edge : graph) {
+        if (edge[0] >= 1 && edge[1] >= 1) {
+          from[edges] = edge[0];
+          to[edges] = edge[1];
+          values[edges++] = edge[2];
+        }
+      }
+      proxy.setVariable("graph_from", from);
+      proxy.setVariable("graph_to", to);
+      proxy.setVariable("graph_values", values);
+      proxy.eval(name + " = [graph_from(:), graph_to(:), graph_values(:)]; "
+          + "clear graph_from graph_to graph_values;");
+      variables.add(name);
+      evict();
+    }
+    return name;
+  }
+
+  /**
+   * Clear all the graph variables from the workspace.
+   *
+   * @throws MatlabInvocationException
+   */
+  public synchronized void clear() throws MatlabInvocationException {
+    if (variables.isEmpty()) {
+      return;
+    }
+    StringBuilder names = new StringBuilder("clear");
+    for (String name : variables) {
+      names.append(' ').append(name);
+    }
+    proxy.eval(names + ";");
+    variables.clear();
+  }
+
+  /**
+   * Hash of the edges of a graph used in the variable names.
+   */
+  private static String getHash(double[][] graph) {
+    return SpectralBasisCache.getKey(graph, 0).substring(0, HASH_LENGTH);
+  }
+
+  /**
+   * Mark a variable as the most recently used one.
+   *
+   * @return whether the variable is in the workspace.
+   */
+  private boolean touch(String name) {
+    if (!variables.remove(name)) {
+      return false;
+    }
+    variables.add(name);
+    return true;
+  }
+
+  /**
+   * Clear the least recently used variables beyond the max number of variables.
+   */
+  private void evict() throws MatlabInvocationException {
+    Iterator<String> iterator = variables.iterator();
+    while (variables.size() > maxVariables) {
+      String name = iterator.next();
+      iterator.remove();
+      proxy.eval("clear " + name + ";");
+    }
+  }
+}
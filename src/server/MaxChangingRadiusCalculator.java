@@ -14,6 +14,8 @@ public class MaxChangingRadiusCalculator {
   private String inputFile1;
   // Input file for graph2.
   private String inputFile2;
+  // Max Jaccard similarity allowed between the returned regions, 1 allows any overlap.
+  private double maxJaccard = 1.0;
 
   public MaxChangingRadiusCalculator(String inputFile1, String inputFile2) throws IOException {
     this.inputFile1 = inputFile1;
@@ -25,10 +27,30 @@ public class MaxChangingRadiusCalculator {
     graphCalculator = new GraphCalculator();
   }
 
+  /**
+   * Get the max Jaccard similarity allowed between the returned regions.
+   * 
+   * @return max Jaccard similarity.
+   */
+  public double getMaxJaccard() {
+    return maxJaccard;
+  }
+
+  /**
+   * Set the max Jaccard similarity allowed between the returned regions. Use a value lower than 1
+   * to return diverse regions instead of near duplicates of the top region.
+   * 
+   * @param maxJaccard max Jaccard similarity.
+   */
+  public void setMaxJaccard(double maxJaccard) {
+    this.maxJaccard = maxJaccard;
+  }
+
   /**
    * Get the most distorted regions by starting BFS until reaching a specific radius, then finally
    * choose the regions that has the top distortion values. The distortion measure is based on the
-   * sum of the delta changes of the nodes in the region.
+   * sum of the delta changes of the nodes in the region. If maxJaccard is lower than 1, a region
+   * overlapping a higher region more than maxJaccard is skipped.
    * 
    * @param regionNumber number of regions to return.
    * @param nodesPerRegion at least nodes per region.
@@ -70,10 +92,16 @@ public class MaxChangingRadiusCalculator {
     // Sort the regions based on their distortion values from the highest to the smallest.
     Arrays.sort(regions);
     ArrayList<HashSet<Node>> highestDistortionRegions = new ArrayList<HashSet<Node>>();
-    for (int i = 0; i < regionNumber; i++) {
+    DiverseRegionSelector<Node> selector = new DiverseRegionSelector<Node>(regionNumber, maxJaccard);
+    // Skipped overlapping regions are replaced by lower ones.
+    int candidatesNumber = selector.isEnabled() ? regions.length : regionNumber;
+    for (int i = 0; i < candidatesNumber && highestDistortionRegions.size() < regionNumber; i++) {
       if (regions[i].getNodes().size() < nodesPerRegion) {
         continue;
       }
+      if (!selector.offer(regions[i].getNodes())) {
+        continue;
+      }
       highestDistortionRegions.add(regions[i].getNodes());
     }
     return highestDistortionRegions;
@@ -83,7 +111,8 @@ public class MaxChangingRadiusCalculator {
    * Get the most distorted regions by starting BFS until reaching a specific radius, then finally
    * choose the regions that has the top distortion values. The distortion measure is based on the
    * sum of the delta changes of the nodes in the region divided by the minimum number of edges in
-   * the region in graph1 and graph2.
+   * the region in graph1 and graph2. If maxJaccard is lower than 1, a region overlapping a higher
+   * region more than maxJaccard is skipped.
    * 
    * @param regionNumber number of regions to return.
    * @param nodesPerRegion at least nodes per region.
@@ -150,10 +179,14 @@ public class MaxChangingRadiusCalculator {
     // Sort the regions based on their distortion values from the highest to the smallest.
     Arrays.sort(regions);
     ArrayList<HashSet<Node>> highestDistortionRegions = new ArrayList<HashSet<Node>>();
+    DiverseRegionSelector<Node> selector = new DiverseRegionSelector<Node>(regionNumber, maxJaccard);
     for (int i = 0; i < graph2.size(); i++) {
       if (regions[i].getNodes().size() < nodesPerRegion) {
         continue;
       }
+      if (!selector.offer(regions[i].getNodes())) {
+        continue;
+      }
       highestDistortionRegions.add(regions[i].getNodes());
       if (highestDistortionRegions.size() == regionNumber) {
         break;
@@ -178,12 +211,13 @@ public class MaxChangingRadiusCalculator {
     System.out.println("Max Changing Raduis");
     ArrayList<HashSet<Node>> maxChangingRadiusRegions =
         getTopChangingRadius(regionNumber, nodesNumPerRegion);
-    graphCalculator.evaluateEdges(maxChangingRadiusRegions);
+    graphCalculator.evaluateEdges(maxChangingRadiusRegions, "MaxChangingRadius");
     System.out.println("========================================");
     System.out.println("Max Changing Radius While accounting for Region Size");
     ArrayList<HashSet<Node>> maxChangingRadiusWithRegionSizeRegions =
         getTopChangingRadiusWithRegionSize(regionNumber, nodesNumPerRegion);
-    graphCalculator.evaluateEdges(maxChangingRadiusWithRegionSizeRegions);
+    graphCalculator.evaluateEdges(maxChangingRadiusWithRegionSizeRegions,
+        "MaxChangingRadiusWithRegionSize");
   }
 
   /**
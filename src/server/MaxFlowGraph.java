@@ -0,0 +1,436 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Boykov-Kolmogorov max-flow on a graph with terminal source and sink, a Java port of maxflow.cpp
+ * of GCMex. Two search trees grow from the terminals over the residual arcs until they touch, the
+ * path found is augmented, and the nodes cut from the trees by the saturated arcs are adopted by a
+ * new parent or freed. The nodes and arcs are stored in arrays, the two arcs of an edge at
+ * consecutive indexes, so a graph can be reset and refilled without allocations.
+ */
+public class MaxFlowGraph {
+
+  // Parent of a node connected to its terminal.
+  private static final int TERMINAL = -2;
+  // Parent of a node cut from its tree.
+  private static final int ORPHAN = -3;
+  // Parent of a free node.
+  private static final int NONE = -1;
+  // Infinite distance to the terminal.
+  private static final int INFINITE_DISTANCE = Integer.MAX_VALUE;
+
+  // Number of nodes.
+  private int nodesNumber;
+  // First arc leaving each node, or NONE.
+  private int[] first;
+  // Residual capacity from the source if positive, or to the sink if negative.
+  private double[] terminalCapacities;
+  // Arc to the parent of each node in its tree, TERMINAL, ORPHAN or NONE.
+  private int[] parents;
+  // Next node in the active queue, the node itself if it is the last one, or NONE.
+  private int[] nextActive;
+  // Time when the distance to the terminal was computed.
+  private int[] times;
+  // Distance to the terminal.
+  private int[] distances;
+  // Whether each node is in the sink tree.
+  private boolean[] sinkTree;
+  // Number of arcs, twice the number of edges.
+  private int arcsNumber = 0;
+  // Node each arc points to.
+  private int[] heads;
+  // Next arc leaving the same node, or NONE.
+  private int[] nextArcs;
+  // Residual capacity of each arc, the reverse arc of arc a being a ^ 1.
+  private double[] capacities;
+  // Active queues, nodes are added to the second queue and read from the first one.
+  private int[] queueFirst = new int[2];
+  private int[] queueLast = new int[2];
+  // Orphans to adopt, in a circular queue as each node is at most once in it.
+  private int[] orphans;
+  private int orphansFirst = 0;
+  private int orphansNumber = 0;
+  // Current time of the distances.
+  private int time = 0;
+  // Flow pushed from the terminal capacities of the nodes and by augmentation.
+  private double flow = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param nodesNumber number of nodes.
+   * @param edgesNumber expected number of edges, the arrays grow if more are added.
+   */
+  public MaxFlowGraph(int nodesNumber, int edgesNumber) {
+    this.nodesNumber = nodesNumber;
+    first = new int[nodesNumber];
+    terminalCapacities = new double[nodesNumber];
+    parents = new int[nodesNumber];
+    nextActive = new int[nodesNumber];
+    times = new int[nodesNumber];
+    distances = new int[nodesNumber];
+    sinkTree = new boolean[nodesNumber];
+    orphans = new int[nodesNumber];
+    heads = new int[2 * Math.max(1, edgesNumber)];
+    nextArcs = new int[heads.length];
+    capacities = new double[heads.length];
+    reset();
+  }
+
+  /**
+   * Remove all the edges and terminal capacities, keeping the arrays.
+   */
+  public void reset() {
+    Arrays.fill(first, NONE);
+    Arrays.fill(terminalCapacities, 0);
+    arcsNumber = 0;
+    flow = 0;
+  }
+
+  /**
+   * Add capacities between a node and the terminals. Only their difference is kept, the common
+   * part is always cut and added to the flow.
+   *
+   * @param i node index.
+   * @param source capacity from the source, cut if the node ends in the sink segment.
+   * @param sink capacity to the sink, cut if the node ends in the source segment.
+   */
+  public void addTerminalCapacities(int i, double source, double sink) {
+    double capacity = terminalCapacities[i];
+    if (capacity > 0) {
+      source += capacity;
+    } else {
+      sink -= capacity;
+    }
+    flow += Math.min(source, sink);
+    terminalCapacities[i] = source - sink;
+  }
+
+  /**
+   * Add an edge between two nodes.
+   *
+   * @param i first node index.
+   * @param j second node index.
+   * @param capacity capacity from i to j, cut if i ends in the source segment and j in the sink one.
+   * @param reverseCapacity capacity from j to i.
+   */
+  public void addEdge(int i, int j, double capacity, double reverseCapacity) {
+    if (arcsNumber == heads.length) {
+      heads = Arrays.copyOf(heads, 2 * arcsNumber);
+      nextArcs = Arrays.copyOf(nextArcs, 2 * arcsNumber);
+      capacities = Arrays.copyOf(capacities, 2 * arcsNumber);
+    }
+    int a = arcsNumber;
+    heads[a] = j;
+    nextArcs[a] = first[i];
+    capacities[a] = capacity;
+    first[i] = a;
+    heads[a + 1] = i;
+    nextArcs[a + 1] = first[j];
+    capacities[a + 1] = reverseCapacity;
+    first[j] = a + 1;
+    arcsNumber += 2;
+  }
+
+  /**
+   * Compute the max flow, the capacity of the min cut between the source and the sink.
+   *
+   * @return max flow.
+   */
+  public double maxFlow() {
+    initialize();
+    int current = NONE;
+    while (true) {
+      int i = current;
+      if (i != NONE) {
+        nextActive[i] = NONE;
+        if (parents[i] == NONE) {
+          i = NONE;
+        }
+      }
+      if (i == NONE) {
+        i = nextActive();
+        if (i == NONE) {
+          break;
+        }
+      }
+      // Grow the tree of i, until an arc reaches the other tree.
+      int middle = NONE;
+      if (!sinkTree[i]) {
+        for (int a = first[i]; a != NONE; a = nextArcs[a]) {
+          if (capacities[a] > 0) {
+            int j = heads[a];
+            if (parents[j] == NONE) {
+              sinkTree[j] = false;
+              addChild(i, j, a ^ 1);
+            } else if (sinkTree[j]) {
+              middle = a;
+              break;
+            } else if (times[j] <= times[i] && distances[j] > distances[i]) {
+              // Make the path from j to the source shorter.
+              parents[j] = a ^ 1;
+              times[j] = times[i];
+              distances[j] = distances[i] + 1;
+            }
+          }
+        }
+      } else {
+        for (int a = first[i]; a != NONE; a = nextArcs[a]) {
+          if (capacities[a ^ 1] > 0) {
+            int j = heads[a];
+            if (parents[j] == NONE) {
+              sinkTree[j] = true;
+              addChild(i, j, a ^ 1);
+            } else if (!sinkTree[j]) {
+              middle = a ^ 1;
+              break;
+            } else if (times[j] <= times[i] && distances[j] > distances[i]) {
+              // Make the path from j to the sink shorter.
+              parents[j] = a ^ 1;
+              times[j] = times[i];
+              distances[j] = distances[i] + 1;
+            }
+          }
+        }
+      }
+      time++;
+      if (middle != NONE) {
+        // Keep i active, its other arcs may reach the other tree too.
+        nextActive[i] = i;
+        current = i;
+        augment(middle);
+        adoptOrphans();
+      } else {
+        current = NONE;
+      }
+    }
+    return flow;
+  }
+
+  /**
+   * Whether a node is in the source segment of the min cut computed by maxFlow.
+   *
+   * @param i node index.
+   * @return true for the source segment, false for the sink one.
+   */
+  public boolean isSource(int i) {
+    return parents[i] != NONE && !sinkTree[i];
+  }
+
+  /**
+   * Start the trees with the nodes connected to the terminals.
+   */
+  private void initialize() {
+    queueFirst[0] = queueLast[0] = NONE;
+    queueFirst[1] = queueLast[1] = NONE;
+    orphansFirst = 0;
+    orphansNumber = 0;
+    time = 0;
+    for (int i = 0; i < nodesNumber; i++) {
+      nextActive[i] = NONE;
+      times[i] = 0;
+      if (terminalCapacities[i] != 0) {
+        sinkTree[i] = terminalCapacities[i] < 0;
+        parents[i] = TERMINAL;
+        distances[i] = 1;
+        setActive(i);
+      } else {
+        parents[i] = NONE;
+      }
+    }
+  }
+
+  /**
+   * Add a free node j to the tree of i, with the given arc to i as parent.
+   */
+  private void addChild(int i, int j, int parent) {
+    parents[j] = parent;
+    times[j] = times[i];
+    distances[j] = distances[i] + 1;
+    setActive(j);
+  }
+
+  /**
+   * Add a node to the end of the active queue if it isn't in it.
+   */
+  private void setActive(int i) {
+    if (nextActive[i] == NONE) {
+      if (queueLast[1] != NONE) {
+        nextActive[queueLast[1]] = i;
+      } else {
+        queueFirst[1] = i;
+      }
+      queueLast[1] = i;
+      nextActive[i] = i;
+    }
+  }
+
+  /**
+   * Remove the next active node from the queue, skipping the nodes freed since they were added.
+   *
+   * @return node index, or NONE if there are no active nodes.
+   */
+  private int nextActive() {
+    while (true) {
+      int i = queueFirst[0];
+      if (i == NONE) {
+        queueFirst[0] = i = queueFirst[1];
+        queueLast[0] = queueLast[1];
+        queueFirst[1] = NONE;
+        queueLast[1] = NONE;
+        if (i == NONE) {
+          return NONE;
+        }
+      }
+      if (nextActive[i] == i) {
+        queueFirst[0] = queueLast[0] = NONE;
+      } else {
+        queueFirst[0] = nextActive[i];
+      }
+      nextActive[i] = NONE;
+      if (parents[i] != NONE) {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Push the bottleneck capacity along the path from the source to the sink through an arc from
+   * the source tree to the sink tree, and queue the nodes whose parent arc is saturated.
+   */
+  private void augment(int middle) {
+    double bottleneck = capacities[middle];
+    int i;
+    for (i = heads[middle ^ 1]; parents[i] != TERMINAL; i = heads[parents[i]]) {
+      bottleneck = Math.min(bottleneck, capacities[parents[i] ^ 1]);
+    }
+    bottleneck = Math.min(bottleneck, terminalCapacities[i]);
+    for (i = heads[middle]; parents[i] != TERMINAL; i = heads[parents[i]]) {
+      bottleneck = Math.min(bottleneck, capacities[parents[i]]);
+    }
+    bottleneck = Math.min(bottleneck, -terminalCapacities[i]);
+
+    capacities[middle ^ 1] += bottleneck;
+    capacities[middle] -= bottleneck;
+    for (i = heads[middle ^ 1]; parents[i] != TERMINAL;) {
+      int a = parents[i];
+      capacities[a] += bottleneck;
+      capacities[a ^ 1] -= bottleneck;
+      int parent = heads[a];
+      if (capacities[a ^ 1] == 0) {
+        addOrphan(i);
+      }
+      i = parent;
+    }
+    terminalCapacities[i] -= bottleneck;
+    if (terminalCapacities[i] == 0) {
+      addOrphan(i);
+    }
+    for (i = heads[middle]; parents[i] != TERMINAL;) {
+      int a = parents[i];
+      capacities[a ^ 1] += bottleneck;
+      capacities[a] -= bottleneck;
+      int parent = heads[a];
+      if (capacities[a] == 0) {
+        addOrphan(i);
+      }
+      i = parent;
+    }
+    terminalCapacities[i] += bottleneck;
+    if (terminalCapacities[i] == 0) {
+      addOrphan(i);
+    }
+    flow += bottleneck;
+  }
+
+  /**
+   * Cut a node from its tree and queue it for adoption.
+   */
+  private void addOrphan(int i) {
+    parents[i] = ORPHAN;
+    orphans[(orphansFirst + orphansNumber++) % nodesNumber] = i;
+  }
+
+  /**
+   * Find a new parent in the same tree for each orphan, or free it and its children.
+   */
+  private void adoptOrphans() {
+    while (orphansNumber > 0) {
+      int i = orphans[orphansFirst];
+      orphansFirst = (orphansFirst + 1) % nodesNumber;
+      orphansNumber--;
+      processOrphan(i, sinkTree[i]);
+    }
+  }
+
+  /**
+   * Adopt an orphan by the neighbor with a residual arc to it whose path to the terminal is the
+   * shortest, or free it.
+   */
+  private void processOrphan(int i, boolean sink) {
+    int parent = NONE;
+    int minDistance = INFINITE_DISTANCE;
+    for (int a0 = first[i]; a0 != NONE; a0 = nextArcs[a0]) {
+      // The residual arc toward i for the source tree, from i for the sink tree.
+      if (capacities[sink ? a0 : a0 ^ 1] == 0) {
+        continue;
+      }
+      int j = heads[a0];
+      if (sinkTree[j] != sink || parents[j] == NONE) {
+        continue;
+      }
+      // Check that j originates from the terminal.
+      int distance = 0;
+      while (true) {
+        if (times[j] == time) {
+          distance += distances[j];
+          break;
+        }
+        int a = parents[j];
+        distance++;
+        if (a == TERMINAL) {
+          times[j] = time;
+          distances[j] = 1;
+          break;
+        }
+        if (a == ORPHAN) {
+          distance = INFINITE_DISTANCE;
+          break;
+        }
+        j = heads[a];
+      }
+      if (distance < INFINITE_DISTANCE) {
+        if (distance < minDistance) {
+          parent = a0;
+          minDistance = distance;
+        }
+        // Mark the distances along the path.
+        for (j = heads[a0]; times[j] != time; j = heads[parents[j]]) {
+          times[j] = time;
+          distances[j] = distance--;
+        }
+      }
+    }
+    parents[i] = parent;
+    if (parent != NONE) {
+      times[i] = time;
+      distances[i] = minDistance + 1;
+      return;
+    }
+    // No parent is found, the neighbors in the tree become active and the children orphans.
+    times[i] = 0;
+    for (int a0 = first[i]; a0 != NONE; a0 = nextArcs[a0]) {
+      int j = heads[a0];
+      int a = parents[j];
+      if (sinkTree[j] == sink && a != NONE) {
+        if (capacities[sink ? a0 : a0 ^ 1] > 0) {
+          setActive(j);
+        }
+        if (a != TERMINAL && a != ORPHAN && heads[a] == i) {
+          addOrphan(j);
+        }
+      }
+    }
+  }
+}
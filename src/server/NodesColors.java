@@ -0,0 +1,126 @@
+package server;
+
+/**
+ * Colors of the nodes for each distortion vector, as nodes_colors returned by visualize_map: the
+ * distortion values of each vector are scaled between their min and max into one of the
+ * COLORS_NUMBER colors of the jet colormap. Only the index of the color of each node is stored,
+ * and the hex colors are looked up for the nodes written to the response.
+ */
+public class NodesColors {
+
+  // Number of colors of the jet colormap used to color the nodes.
+  public static final int COLORS_NUMBER = 100;
+  // Hex colors of jet(COLORS_NUMBER).
+  private static final String[] JET_COLORS = getJetColors(COLORS_NUMBER);
+
+  // Index of the color of each node in JET_COLORS, stacked column wise as nodesNumber x r.
+  private byte[] indexes;
+
+  /**
+   * Constructor scales the distortion values into the colors.
+   *
+   * @param distortionValues distortion values stacked column wise as nodesNumber x r.
+   * @param nodesNumber number of nodes.
+   */
+  public NodesColors(double[] distortionValues, int nodesNumber) {
+    indexes = new byte[distortionValues.length];
+    for (int from = 0; from < distortionValues.length; from += nodesNumber) {
+      int to = Math.min(from + nodesNumber, distortionValues.length);
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = from; i < to; i++) {
+        min = Math.min(min, distortionValues[i]);
+        max = Math.max(max, distortionValues[i]);
+      }
+      double range = max - min;
+      for (int i = from; i < to; i++) {
+        // Same rounding as visualize_map, with NaN and the values out of range on the ends.
+        double position = Math.ceil((distortionValues[i] - min) / range * COLORS_NUMBER);
+        int color;
+        if (position > COLORS_NUMBER || Double.isNaN(position)) {
+          color = COLORS_NUMBER;
+        } else if (position <= 0) {
+          color = 1;
+        } else {
+          color = (int) position;
+        }
+        indexes[i] = (byte) (color - 1);
+      }
+    }
+  }
+
+  /**
+   * Get the number of colors, nodesNumber x r.
+   *
+   * @return number of colors.
+   */
+  public int getLength() {
+    return indexes.length;
+  }
+
+  /**
+   * Get the index of a color in the jet colormap.
+   *
+   * @param i index of the node color, stacked column wise.
+   * @return color index from 0 to COLORS_NUMBER - 1.
+   */
+  public int getIndex(int i) {
+    return indexes[i];
+  }
+
+  /**
+   * Get a hex color.
+   *
+   * @param i index of the node color, stacked column wise.
+   * @return hex color as converted by rgb2hex.
+   */
+  public String get(int i) {
+    return JET_COLORS[indexes[i]];
+  }
+
+  /**
+   * Hex colors of MATLAB's jet(size) colormap, as converted by rgb2hex.
+   */
+  private static String[] getJetColors(int size) {
+    int n = (size + 3) / 4;
+    int length = 3 * n - 1;
+    double[] u = new double[length];
+    for (int i = 0; i < length; i++) {
+      if (i < n) {
+        u[i] = (i + 1) / (double) n;
+      } else if (i < 2 * n - 1) {
+        u[i] = 1;
+      } else {
+        u[i] = (3 * n - 1 - i) / (double) n;
+      }
+    }
+    int offset = (n + 1) / 2 - (size % 4 == 1 ? 1 : 0);
+    double[][] rgb = new double[size][3];
+    int blueSkipped = 0;
+    for (int i = 0; i < length; i++) {
+      int g = offset + i + 1;
+      if (g <= size) {
+        rgb[g - 1][1] = u[i];
+      }
+      if (g + n <= size) {
+        rgb[g + n - 1][0] = u[i];
+      }
+      if (g - n < 1) {
+        blueSkipped++;
+      }
+    }
+    for (int i = blueSkipped; i < length; i++) {
+      int b = offset + i + 1 - n;
+      if (b <= size) {
+        rgb[b - 1][2] = u[i];
+      }
+    }
+    String[] colors = new String[size];
+    for (int i = 0; i < size; i++) {
+      colors[i] =
+          String.format("#%02X%02X%02X", Math.round(rgb[i][0] * 255), Math.round(rgb[i][1] * 255),
+              Math.round(rgb[i][2] * 255));
+    }
+    return colors;
+  }
+}
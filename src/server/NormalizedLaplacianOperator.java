@@ -0,0 +1,167 @@
+package server;
+
+/**
+ * Degree normalized Laplacian S^-1 (D - A) S^-1 of a graph, applied from its adjacency matrix A
+ * without building the Laplacian. D is the diagonal of the weighted degrees and S a diagonal
+ * scaling, e.g. (D + I)^1/2 for the F*L1 problem of visualize_map or D^1/2 for the symmetric
+ * normalized Laplacian. The degree of a row is added in column order, so the products are the same
+ * as with the Laplacian matrix. A single product reuses a work vector, so an operator isn't shared
+ * between threads, while block products split their rows across threads.
+ */
+public class NormalizedLaplacianOperator extends BlockOperator {
+
+  // Adjacency matrix of the graph.
+  private SparseMatrix adjacency;
+  // Diagonal of S.
+  private double[] scale;
+  // Diagonal of D - A, the degree less the self loop of each node.
+  private double[] diagonal;
+  // Position of the diagonal in the entries of each row, the first entry with a column not below
+  // the row. The entry there is skipped if it is the self loop.
+  private int[] diagonalPositions;
+  // Work vector of S^-1 x.
+  private double[] scaled = null;
+
+  /**
+   * Constructor.
+   *
+   * @param adjacency symmetric adjacency matrix of the graph.
+   * @param degrees row sums of the adjacency matrix.
+   * @param scale diagonal of S, without zeros.
+   */
+  public NormalizedLaplacianOperator(SparseMatrix adjacency, double[] degrees, double[] scale) {
+    this.adjacency = adjacency;
+    this.scale = scale;
+    int n = adjacency.getSize();
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    diagonal = new double[n];
+    diagonalPositions = new int[n];
+    for (int i = 0; i < n; i++) {
+      int p = offsets[i];
+      while (p < offsets[i + 1] && columns[p] < i) {
+        p++;
+      }
+      diagonalPositions[i] = p;
+      diagonal[i] = degrees[i];
+      if (p < offsets[i + 1] && columns[p] == i) {
+        diagonal[i] -= values[p];
+      }
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return adjacency.getSize();
+  }
+
+  /**
+   * Get the entries of the operator as a dense matrix, for the dense solver of small graphs.
+   *
+   * @return matrix of the operator.
+   */
+  public double[][] toDense() {
+    int n = adjacency.getSize();
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    double[][] matrix = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        if (columns[p] != i) {
+          matrix[i][columns[p]] = -values[p] / (scale[i] * scale[columns[p]]);
+        }
+      }
+      matrix[i][i] = diagonal[i] / (scale[i] * scale[i]);
+    }
+    return matrix;
+  }
+
+  @Override
+  public void apply(double[] x, double[] y) {
+    int n = adjacency.getSize();
+    if (scaled == null) {
+      scaled = new double[n];
+    }
+    for (int i = 0; i < n; i++) {
+      scaled[i] = x[i] / scale[i];
+    }
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    for (int i = 0; i < n; i++) {
+      double sum = 0;
+      int position = diagonalPositions[i];
+      for (int p = offsets[i]; p < position; p++) {
+        sum += -values[p] * scaled[columns[p]];
+      }
+      sum += diagonal[i] * scaled[i];
+      if (position < offsets[i + 1] && columns[position] == i) {
+        position++;
+      }
+      for (int p = position; p < offsets[i + 1]; p++) {
+        sum += -values[p] * scaled[columns[p]];
+      }
+      y[i] = sum / scale[i];
+    }
+  }
+
+  @Override
+  public void applyBlock(double[][] x, double[][] y) {
+    int n = adjacency.getSize();
+    double[][] block = new double[x.length][n];
+    for (int c = 0; c < x.length; c++) {
+      for (int i = 0; i < n; i++) {
+        block[c][i] = x[c][i] / scale[i];
+      }
+    }
+    super.applyBlock(block, y);
+  }
+
+  @Override
+  protected int[] getRowsWork() {
+    return adjacency.getOffsets();
+  }
+
+  /**
+   * Compute the rows in [from, to) of the products, given the vectors S^-1 x.
+   */
+  @Override
+  protected void applyRows(double[][] x, double[][] y, int from, int to) {
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    int vectorsNumber = x.length;
+    double[] sums = new double[vectorsNumber];
+    for (int i = from; i < to; i++) {
+      int position = diagonalPositions[i];
+      for (int c = 0; c < vectorsNumber; c++) {
+        sums[c] = 0;
+      }
+      for (int p = offsets[i]; p < position; p++) {
+        double value = -values[p];
+        int column = columns[p];
+        for (int c = 0; c < vectorsNumber; c++) {
+          sums[c] += value * x[c][column];
+        }
+      }
+      for (int c = 0; c < vectorsNumber; c++) {
+        sums[c] += diagonal[i] * x[c][i];
+      }
+      if (position < offsets[i + 1] && columns[position] == i) {
+        position++;
+      }
+      for (int p = position; p < offsets[i + 1]; p++) {
+        double value = -values[p];
+        int column = columns[p];
+        for (int c = 0; c < vectorsNumber; c++) {
+          sums[c] += value * x[c][column];
+        }
+      }
+      for (int c = 0; c < vectorsNumber; c++) {
+        y[c][i] = sums[c] / scale[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package server;
+
+import java.util.Random;
+
+/**
+ * Computes approximations of the smallest eigenpairs of a symmetric operator with randomized
+ * subspace iteration (Halko, Martinsson and Tropp 2011). A block of random vectors, count plus an
+ * oversampling, is multiplied at each power iteration by a Chebyshev polynomial of A which damps
+ * the eigenvalues between the largest Ritz value of the block and the bound of the spectrum, as in
+ * Chebyshev filtered subspace iteration (Zhou and Saad 2007), then orthonormalized and rotated to
+ * its Ritz vectors. The plain power of shift - A converges too slowly at the low end of a Laplacian
+ * spectrum. The Ritz pairs of the final block are returned with their residual norms, the error
+ * estimate of the approximation. The cost is a fixed number of block products, run in parallel by
+ * BlockOperator.applyBlock, instead of depending on the convergence of the eigenpairs.
+ */
+public class RandomizedEigenSolver {
+
+  // Default number of extra vectors of the block.
+  public static final int DEFAULT_OVERSAMPLING = 10;
+  // Default number of power iterations.
+  public static final int DEFAULT_POWER_ITERATIONS = 4;
+  // Degree of the polynomial filter applied at each power iteration.
+  private static final int FILTER_DEGREE = 10;
+
+  // Operator to compute the eigenpairs of.
+  private BlockOperator operator;
+  // Orthonormal vectors removed from the search space, or null.
+  private double[][] deflation;
+  // Upper bound of the eigenvalues of the operator.
+  private double shift;
+  // Number of extra vectors of the block.
+  private int oversampling = DEFAULT_OVERSAMPLING;
+  // Number of power iterations.
+  private int powerIterations = DEFAULT_POWER_ITERATIONS;
+  // Random generator of the starting block, seeded to get the same results for the same input.
+  private Random random = new Random(1);
+  // Eigenvalues of the last solve, in increasing order.
+  private double[] eigenvalues;
+  // Eigenvectors of the last solve, as rows.
+  private double[][] eigenvectors;
+  // Residual norms |A x - lambda x| of the eigenpairs of the last solve.
+  private double[] residuals;
+
+  /**
+   * Constructor.
+   *
+   * @param operator symmetric operator.
+   * @param deflation orthonormal vectors to exclude from the search space, or null. They must span
+   *        an invariant subspace of the operator.
+   * @param shift upper bound of the eigenvalues of the operator.
+   */
+  public RandomizedEigenSolver(BlockOperator operator, double[][] deflation, double shift) {
+    this.operator = operator;
+    this.deflation = deflation == null ? new double[0][] : deflation;
+    this.shift = shift;
+  }
+
+  /**
+   * Set the number of extra vectors of the block, which improve the accuracy of the last wanted
+   * eigenpairs.
+   *
+   * @param oversampling number of extra vectors.
+   */
+  public void setOversampling(int oversampling) {
+    this.oversampling = oversampling;
+  }
+
+  /**
+   * Set the number of power iterations, each one FILTER_DEGREE + 1 block products.
+   *
+   * @param powerIterations number of power iterations.
+   */
+  public void setPowerIterations(int powerIterations) {
+    this.powerIterations = powerIterations;
+  }
+
+  /**
+   * Compute approximations of the smallest eigenpairs of the operator in the complement of the
+   * deflated vectors.
+   *
+   * @param count number of eigenpairs, below the size of the complement.
+   */
+  public void solve(int count) {
+    int n = operator.getSize();
+    int size = Math.max(count, Math.min(count + oversampling, n - deflation.length));
+    double[][] q = new double[size][n];
+    for (double[] vector : q) {
+      for (int i = 0; i < n; i++) {
+        vector[i] = random.nextDouble() - 0.5;
+      }
+    }
+    orthonormalize(q);
+    double[][] products = new double[size][n];
+    double[] theta = rayleighRitz(q, products);
+    double[][] previous = new double[size][n];
+    double[][] next = new double[size][n];
+    for (int iteration = 0; iteration < powerIterations; iteration++) {
+      // Chebyshev polynomial of degree FILTER_DEGREE of A, small on [cutoff, shift], the
+      // eigenvalues above the block, and growing fast below cutoff.
+      double cutoff = theta[size - 1];
+      if (cutoff >= shift) {
+        break;
+      }
+      double half = (shift - cutoff) / 2;
+      double center = (shift + cutoff) / 2;
+      for (int c = 0; c < size; c++) {
+        double[] swap = previous[c];
+        previous[c] = q[c];
+        q[c] = swap;
+        for (int i = 0; i < n; i++) {
+          q[c][i] = (products[c][i] - center * previous[c][i]) / half;
+        }
+      }
+      for (int degree = 2; degree <= FILTER_DEGREE; degree++) {
+        operator.applyBlock(q, products);
+        for (int c = 0; c < size; c++) {
+          for (int i = 0; i < n; i++) {
+            next[c][i] = 2 * (products[c][i] - center * q[c][i]) / half - previous[c][i];
+          }
+          double[] swap = previous[c];
+          previous[c] = q[c];
+          q[c] = next[c];
+          next[c] = swap;
+        }
+      }
+      orthonormalize(q);
+      theta = rayleighRitz(q, products);
+    }
+    eigenvalues = new double[count];
+    eigenvectors = new double[count][];
+    residuals = new double[count];
+    for (int c = 0; c < count; c++) {
+      eigenvalues[c] = theta[c];
+      eigenvectors[c] = q[c];
+      double sum = 0;
+      for (int i = 0; i < n; i++) {
+        double residual = products[c][i] - theta[c] * q[c][i];
+        sum += residual * residual;
+      }
+      residuals[c] = Math.sqrt(sum);
+    }
+  }
+
+  /**
+   * Get the eigenvalues of the last solve.
+   *
+   * @return eigenvalues in increasing order.
+   */
+  public double[] getEigenvalues() {
+    return eigenvalues;
+  }
+
+  /**
+   * Get the eigenvectors of the last solve.
+   *
+   * @return orthonormal eigenvectors as rows, in the order of the eigenvalues.
+   */
+  public double[][] getEigenvectors() {
+    return eigenvectors;
+  }
+
+  /**
+   * Get the residual norms |A x - lambda x| of the eigenpairs of the last solve. An eigenvalue is
+   * within its residual norm of an eigenvalue of the operator, and the angle between an eigenvector
+   * and the eigenspace is about the residual norm over the gap to the other eigenvalues.
+   *
+   * @return residual norms, in the order of the eigenvalues.
+   */
+  public double[] getResiduals() {
+    return residuals;
+  }
+
+  /**
+   * Rayleigh-Ritz projection of the operator on the orthonormal vectors q, which are replaced by
+   * the Ritz vectors, with their products by the operator stored in products.
+   *
+   * @return Ritz values in increasing order.
+   */
+  private double[] rayleighRitz(double[][] q, double[][] products) {
+    int n = operator.getSize();
+    int size = q.length;
+    operator.applyBlock(q, products);
+    double[][] projected = new double[size][size];
+    for (int j = 0; j < size; j++) {
+      for (int i = 0; i <= j; i++) {
+        double dot = 0;
+        for (int p = 0; p < n; p++) {
+          dot += q[i][p] * products[j][p];
+        }
+        projected[i][j] = dot;
+        projected[j][i] = dot;
+      }
+    }
+    SymmetricEigenDecomposition decomposition = new SymmetricEigenDecomposition(projected);
+    double[][] y = decomposition.getEigenvectors();
+    // Rotate the vectors and their products, a row of nodes at a time.
+    double[] vectorsRow = new double[size];
+    double[] productsRow = new double[size];
+    for (int i = 0; i < n; i++) {
+      for (int c = 0; c < size; c++) {
+        double value = 0;
+        double image = 0;
+        for (int j = 0; j < size; j++) {
+          value += y[c][j] * q[j][i];
+          image += y[c][j] * products[j][i];
+        }
+        vectorsRow[c] = value;
+        productsRow[c] = image;
+      }
+      for (int c = 0; c < size; c++) {
+        q[c][i] = vectorsRow[c];
+        products[c][i] = productsRow[c];
+      }
+    }
+    return decomposition.getEigenvalues();
+  }
+
+  /**
+   * Orthonormalize the vectors, and their complement of the deflated vectors, with two passes of
+   * modified Gram-Schmidt. A vector which vanishes is replaced by a random one.
+   */
+  private void orthonormalize(double[][] vectors) {
+    int n = operator.getSize();
+    for (int c = 0; c < vectors.length; c++) {
+      double[] vector = vectors[c];
+      double length = norm(vector);
+      while (true) {
+        orthogonalize(vector, deflation, deflation.length);
+        orthogonalize(vector, vectors, c);
+        double norm = norm(vector);
+        if (norm > 1e-10 * length) {
+          for (int i = 0; i < n; i++) {
+            vector[i] /= norm;
+          }
+          break;
+        }
+        for (int i = 0; i < n; i++) {
+          vector[i] = random.nextDouble() - 0.5;
+        }
+        length = norm(vector);
+      }
+    }
+  }
+
+  /**
+   * Remove from w its components along the first count vectors, with two passes of modified
+   * Gram-Schmidt.
+   */
+  private static void orthogonalize(double[] w, double[][] vectors, int count) {
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < count; i++) {
+        double[] vector = vectors[i];
+        double dot = 0;
+        for (int p = 0; p < w.length; p++) {
+          dot += vector[p] * w[p];
+        }
+        for (int p = 0; p < w.length; p++) {
+          w[p] -= dot * vector[p];
+        }
+      }
+    }
+  }
+
+  /**
+   * Euclidean norm of a vector.
+   */
+  private static double norm(double[] vector) {
+    double sum = 0;
+    for (double value : vector) {
+      sum += value * value;
+    }
+    return Math.sqrt(sum);
+  }
+}
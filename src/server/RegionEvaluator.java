@@ -0,0 +1,178 @@
+package server;
+
+/**
+ * Computes the six evaluation measures of a batch of regions given as node indices of an indexed
+ * graph pair. For each region, the change value is the sum of the delta changes of its nodes, and
+ * the measures are the change value divided by:
+ * <ol>
+ * <li>the number of edges within the region in graph1,</li>
+ * <li>the number of edges within the region in graph2,</li>
+ * <li>the minimum of the two,</li>
+ * <li>the sum of the node degrees in graph1,</li>
+ * <li>the sum of the node degrees in graph2,</li>
+ * <li>the minimum of the two.</li>
+ * </ol>
+ * The region members are marked in a membership bitmap reused across the regions, so the edges
+ * within a region are counted in one pass over the adjacency of its members. Large batches are
+ * split across threads, each one with its own bitmap.
+ */
+public class RegionEvaluator {
+
+  // Number of evaluation measures of each region.
+  public static final int MEASURES_NUMBER = 6;
+  // Min number of adjacency entries to scan before the regions are evaluated in parallel.
+  private static final long PARALLEL_WORK = 1 << 16;
+
+  // Graph pair the regions belong to.
+  private IndexedGraphPair<?> graphPair;
+  // Node degrees in graph1 and graph2 used in the degree measures.
+  private int[] degrees1;
+  private int[] degrees2;
+
+  /**
+   * Constructor using the degrees of the graph pair.
+   *
+   * @param graphPair the regions belong to.
+   */
+  public RegionEvaluator(IndexedGraphPair<?> graphPair) {
+    this(graphPair, graphPair.getDegrees1(), graphPair.getDegrees2());
+  }
+
+  /**
+   * Constructor using the given degrees, e.g. the degrees without the masked nodes.
+   *
+   * @param graphPair the regions belong to.
+   * @param degrees1 node degrees in graph1.
+   * @param degrees2 node degrees in graph2.
+   */
+  public RegionEvaluator(IndexedGraphPair<?> graphPair, int[] degrees1, int[] degrees2) {
+    this.graphPair = graphPair;
+    this.degrees1 = degrees1;
+    this.degrees2 = degrees2;
+  }
+
+  /**
+   * Calculate the six evaluation measures of each region.
+   *
+   * @param regions to evaluate, each one given as the indices of its nodes without duplicates.
+   * @return MEASURES_NUMBER evaluation measures for each region, in the order of the regions.
+   */
+  public double[][] evaluate(final int[][] regions) {
+    final double[][] changeValues = new double[regions.length][MEASURES_NUMBER];
+    int threadsNumber = Math.min(Runtime.getRuntime().availableProcessors(), regions.length);
+    if (threadsNumber <= 1 || getWork(regions) < PARALLEL_WORK) {
+      evaluate(regions, 0, regions.length, newBitmap(), changeValues);
+      return changeValues;
+    }
+    Thread[] threads = new Thread[threadsNumber - 1];
+    int chunk = (regions.length + threadsNumber - 1) / threadsNumber;
+    for (int t = 0; t < threads.length; t++) {
+      final int from = Math.min(regions.length, (t + 1) * chunk);
+      final int to = Math.min(regions.length, from + chunk);
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          evaluate(regions, from, to, newBitmap(), changeValues);
+        }
+      });
+      threads[t].start();
+    }
+    // The current thread evaluates the first chunk.
+    evaluate(regions, 0, Math.min(regions.length, chunk), newBitmap(), changeValues);
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return changeValues;
+  }
+
+  /**
+   * Calculate the evaluation measures of the regions in [from, to).
+   */
+  private void evaluate(int[][] regions, int from, int to, long[] bitmap,
+      double[][] changeValues) {
+    int[] offsets1 = graphPair.getOffsets1();
+    int[] neighbors1 = graphPair.getNeighbors1();
+    int[] offsets2 = graphPair.getOffsets2();
+    int[] neighbors2 = graphPair.getNeighbors2();
+    double[] deltas = graphPair.getDeltas();
+    for (int r = from; r < to; r++) {
+      int[] members = regions[r];
+      for (int member : members) {
+        bitmap[member >>> 6] |= 1L << member;
+      }
+      double changeValue = 0.0; // Sum of change values of the nodes in the region.
+      double edgesWithinRegionInGraph1 = 0.0; // Number of edges in the region in graph1.
+      double edgesWithinRegionInGraph2 = 0.0; // Number of edges in the region in graph2.
+      double nodesDegreeInGraph1 = 0.0; // Sum of node degrees of nodes in the region in graph1.
+      double nodesDegreeInGraph2 = 0.0; // Sum of node degrees of nodes in the region in graph2.
+      for (int member : members) {
+        nodesDegreeInGraph1 += degrees1[member];
+        nodesDegreeInGraph2 += degrees2[member];
+        for (int i = offsets1[member]; i < offsets1[member + 1]; i++) {
+          int neighbor = neighbors1[i];
+          if ((bitmap[neighbor >>> 6] & (1L << neighbor)) != 0) {
+            edgesWithinRegionInGraph1++;
+          }
+        }
+        for (int i = offsets2[member]; i < offsets2[member + 1]; i++) {
+          int neighbor = neighbors2[i];
+          if ((bitmap[neighbor >>> 6] & (1L << neighbor)) != 0) {
+            edgesWithinRegionInGraph2++;
+          }
+        }
+        changeValue += deltas[member];
+      }
+      for (int member : members) {
+        bitmap[member >>> 6] = 0;
+      }
+      double[] measures = changeValues[r];
+      measures[0] = changeValue / Math.max(1, edgesWithinRegionInGraph1);
+      measures[1] = changeValue / Math.max(1, edgesWithinRegionInGraph2);
+      measures[2] =
+          changeValue
+              / Math.min(Math.max(1, edgesWithinRegionInGraph1),
+                  Math.max(1, edgesWithinRegionInGraph2));
+      measures[3] = changeValue / Math.max(1, nodesDegreeInGraph1);
+      measures[4] = changeValue / Math.max(1, nodesDegreeInGraph2);
+      measures[5] =
+          changeValue
+              / Math.min(Math.max(1, nodesDegreeInGraph1), Math.max(1, nodesDegreeInGraph2));
+    }
+  }
+
+  /**
+   * Estimate the work of evaluating the regions as the number of adjacency entries to scan.
+   */
+  private long getWork(int[][] regions) {
+    int[] offsets1 = graphPair.getOffsets1();
+    int[] offsets2 = graphPair.getOffsets2();
+    long work = 0;
+    for (int[] members : regions) {
+      for (int member : members) {
+        work += offsets1[member + 1] - offsets1[member] + offsets2[member + 1] - offsets2[member];
+      }
+      if (work >= PARALLEL_WORK) {
+        break;
+      }
+    }
+    return work;
+  }
+
+  /**
+   * Allocate an empty membership bitmap over the node indices.
+   */
+  private long[] newBitmap() {
+    return new long[(graphPair.getNodesNumber() + 63) >>> 6];
+  }
+}
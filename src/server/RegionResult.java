@@ -0,0 +1,114 @@
+package server;
+
+/**
+ * Region returned by the spectral region selector. The vertices are node ids, and the edges within
+ * the region are stored as consecutive (source, destination) node id pairs, in both directions as
+ * they are drawn by the client. The graph1 edges and the evaluation measures are set when the region
+ * is mapped to graph1.
+ */
+public class RegionResult {
+
+  // Ids of the region nodes.
+  private int[] vertices;
+  // Edges within the region in graph1, null until the region is mapped to graph1.
+  private int[] edges1;
+  // Edges within the region in graph2.
+  private int[] edges2;
+  // Score used to rank the region.
+  private double score;
+  // Six evaluation measures of the region, null until the region is mapped to graph1.
+  private double[] measures;
+
+  /**
+   * Constructor.
+   *
+   * @param vertices ids of the region nodes.
+   * @param edges2 edges within the region in graph2 as (source, destination) id pairs.
+   * @param score used to rank the region.
+   */
+  public RegionResult(int[] vertices, int[] edges2, double score) {
+    this.vertices = vertices;
+    this.edges2 = edges2;
+    this.score = score;
+  }
+
+  /**
+   * Get the region nodes.
+   *
+   * @return ids of the region nodes.
+   */
+  public int[] getVertices() {
+    return vertices;
+  }
+
+  /**
+   * Get the edges within the region in graph1.
+   *
+   * @return (source, destination) id pairs, or null if the region is not mapped to graph1.
+   */
+  public int[] getEdges1() {
+    return edges1;
+  }
+
+  /**
+   * Set the edges within the region in graph1.
+   *
+   * @param edges1 (source, destination) id pairs.
+   */
+  public void setEdges1(int[] edges1) {
+    this.edges1 = edges1;
+  }
+
+  /**
+   * Get the edges within the region in graph2.
+   *
+   * @return (source, destination) id pairs.
+   */
+  public int[] getEdges2() {
+    return edges2;
+  }
+
+  /**
+   * Get the score used to rank the region.
+   *
+   * @return score of the region.
+   */
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * Get the six evaluation measures of the region.
+   *
+   * @return evaluation measures, or null if the region is not mapped to graph1.
+   */
+  public double[] getMeasures() {
+    return measures;
+  }
+
+  /**
+   * Set the six evaluation measures of the region.
+   *
+   * @param measures evaluation measures.
+   */
+  public void setMeasures(double[] measures) {
+    this.measures = measures;
+  }
+
+  /**
+   * Format edges in the response format, where each edge is written as "source,destination-".
+   *
+   * @param edges (source, destination) id pairs, null is formatted as no edges.
+   * @return formatted edges.
+   */
+  public static String formatEdges(int[] edges) {
+    if (edges == null) {
+      return "";
+    }
+    StringBuilder builder = new StringBuilder(edges.length * 4);
+    for (int i = 0; i + 1 < edges.length; i += 2) {
+      builder.append(edges[i]).append(',').append(edges[i + 1]).append('-');
+    }
+    return builder.toString();
+  }
+}
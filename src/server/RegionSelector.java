@@ -20,6 +20,8 @@ public class RegionSelector {
   // and used in getRegions for sorting SpectralNodes
   // based on their distortion values.
   private ArrayList<SpectralNode> SpectralNodesList = null;
+  // Max Jaccard similarity allowed between the returned regions, 1 allows any overlap.
+  private double maxJaccard = 1.0;
 
   /**
    * RegionSelector constructor which loads the SpectralNodes and their distortion values and convert the
@@ -168,6 +170,8 @@ public class RegionSelector {
     Collections.sort(SpectralNodesList);
     // SpectralNodes selected in any region.
     HashSet<SpectralNode> selectedSpectralNodes = new HashSet<SpectralNode>();
+    DiverseRegionSelector<SpectralNode> selector =
+        new DiverseRegionSelector<SpectralNode>(regionNum, maxJaccard);
     int index = 1; // Index of current region.
     for (int i = 0; i < SpectralNodesList.size(); i++) {
       SpectralNode SpectralNode = SpectralNodesList.get(i);
@@ -193,6 +197,9 @@ public class RegionSelector {
       String[] edges = convertGraphToArray(bfsGraph);
       if(edges.length == 0)
         continue;
+      if (!selector.offer(bfsGraph.keySet())) { // Too similar to a selected region.
+        continue;
+      }
       regions.put(index, edges);
       index++;
       selectedSpectralNodes.addAll(bfsGraph.keySet());
@@ -251,4 +258,14 @@ public class RegionSelector {
     return graph;
   }
 
+  /**
+   * Set the max Jaccard similarity allowed between the regions returned by getRegions, on top of
+   * the overlapping threshold.
+   * 
+   * @param maxJaccard max Jaccard similarity.
+   */
+  public void setMaxJaccard(double maxJaccard) {
+    this.maxJaccard = maxJaccard;
+  }
+
 }
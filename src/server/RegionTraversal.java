@@ -0,0 +1,433 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Grows regions from seed nodes over an indexed graph pair with BFS, biased BFS or BFS with
+ * priority queue. The visited marks, queue, priority queue and neighbor sort buffer are allocated
+ * once and reused for every traversal, so running many traversals back to back (e.g. one per seed
+ * and per traversal method) doesn't allocate anything per traversal. An instance is not thread
+ * safe, use one instance per thread.
+ */
+public class RegionTraversal {
+
+  // Graph pair to traverse, the traversal follows graph2 edges.
+  private IndexedGraphPair<?> graphPair;
+  // foundStamps[i] == foundStamp means node i was discovered in the current traversal.
+  private int[] foundStamps;
+  private int foundStamp;
+  // memberStamps[i] == memberStamp means node i is a member of the current region.
+  private int[] memberStamps;
+  private int memberStamp;
+  // Queue used by BFS and biased BFS.
+  private int[] queue;
+  // Queue used by BFS with priority queue, the higher the priority the earlier the poll.
+  private PriorityQueue<Integer> priorityQueue;
+  // Buffer used to sort the neighbors of a node in biased BFS.
+  private Integer[] neighborBuffer;
+  // Comparator ordering nodes from the highest priority to the lowest.
+  private Comparator<Integer> priorityComparator;
+  // Members of the current region in admission order.
+  private int[] members;
+  private int membersNumber;
+  // Nodes discovered by the current traversal in discovery order, including the members.
+  private int[] found;
+  private int foundNumber;
+  // masked[i] == true means node i is hidden from the traversals, e.g. removed by a threshold.
+  private boolean[] masked;
+  // Region sums along the admission order, where index i holds the sums of the region made of the
+  // first i + 1 admitted members. A traversal admits the same first members whatever its size
+  // limit, so these are the sums of the regions of every smaller size.
+  // Sum of the delta changes of the members.
+  private double[] prefixDeltas;
+  // Number of edges within the region in graph1 and graph2, counted in both directions.
+  private int[] prefixEdges1;
+  private int[] prefixEdges2;
+  // Sum of the degrees of the members in graph1 and graph2.
+  private int[] prefixDegrees1;
+  private int[] prefixDegrees2;
+
+  /**
+   * Constructor allocates the scratch buffers for the given graph pair.
+   *
+   * @param graphPair to traverse.
+   */
+  public RegionTraversal(IndexedGraphPair<?> graphPair) {
+    this.graphPair = graphPair;
+    int nodesNumber = graphPair.getNodesNumber();
+    foundStamps = new int[nodesNumber];
+    memberStamps = new int[nodesNumber];
+    queue = new int[nodesNumber];
+    members = new int[nodesNumber];
+    found = new int[nodesNumber];
+    masked = new boolean[nodesNumber];
+    prefixDeltas = new double[nodesNumber];
+    prefixEdges1 = new int[nodesNumber];
+    prefixEdges2 = new int[nodesNumber];
+    prefixDegrees1 = new int[nodesNumber];
+    prefixDegrees2 = new int[nodesNumber];
+    int[] offsets2 = graphPair.getOffsets2();
+    int maxDegree = 0;
+    for (int i = 0; i < nodesNumber; i++) {
+      maxDegree = Math.max(maxDegree, offsets2[i + 1] - offsets2[i]);
+    }
+    neighborBuffer = new Integer[maxDegree];
+    final double[] priorities = graphPair.getPriorities();
+    priorityComparator = new Comparator<Integer>() {
+      @Override
+      public int compare(Integer node1, Integer node2) {
+        // Same ordering as Node.compareTo, from the highest value to the lowest.
+        double priority1 = priorities[node1];
+        double priority2 = priorities[node2];
+        if (priority1 > priority2) {
+          return -1;
+        } else if (priority1 == priority2) {
+          return 0;
+        } else {
+          return 1;
+        }
+      }
+    };
+    priorityQueue = new PriorityQueue<Integer>(11, priorityComparator);
+  }
+
+  /**
+   * Grow a region from the seed until it contains maxNodes nodes or no more nodes can be reached.
+   * The admission order is the same as the one of the corresponding GraphCalculator methods, and
+   * the first s members are the region a traversal limited to s nodes would return.
+   *
+   * @param seed index of the node to start from.
+   * @param maxNodes max number of nodes in the region.
+   * @param traversalMethod BFS, biased BFS or BFS with priority queue.
+   * @param biasedk number of top distorted neighbors to expand in biased BFS.
+   * @return number of nodes in the region.
+   */
+  public int traverse(int seed, int maxNodes, TraversalMethods traversalMethod, int biasedk) {
+    nextFoundStamp();
+    nextMemberStamp();
+    membersNumber = 0;
+    foundNumber = 0;
+    switch (traversalMethod) {
+      case BFS:
+        bfs(seed, maxNodes, Integer.MAX_VALUE, false);
+        break;
+      case BiasedBFS:
+        bfs(seed, maxNodes, biasedk, true);
+        break;
+      case BFSPriorityQueue:
+        bfsPriorityQueue(seed, maxNodes);
+        break;
+    }
+    return membersNumber;
+  }
+
+  /**
+   * BFS and biased BFS. The biased BFS sorts the neighbors of each polled node from the highest
+   * priority to the lowest and only adds the first biasedk undiscovered ones.
+   */
+  private void bfs(int seed, int maxNodes, int biasedk, boolean biased) {
+    int[] offsets2 = graphPair.getOffsets2();
+    int[] neighbors2 = graphPair.getNeighbors2();
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = seed;
+    discover(seed);
+    while (head < tail) {
+      int node = queue[head++];
+      admit(node);
+      if (membersNumber == maxNodes) {
+        break;
+      }
+      int start = offsets2[node];
+      int end = offsets2[node + 1];
+      if (!biased) {
+        for (int i = start; i < end; i++) {
+          int neighbor = neighbors2[i];
+          if (foundStamps[neighbor] != foundStamp && !masked[neighbor]) {
+            discover(neighbor);
+            queue[tail++] = neighbor;
+          }
+        }
+        continue;
+      }
+      int degree = 0;
+      for (int i = start; i < end; i++) {
+        if (!masked[neighbors2[i]]) {
+          neighborBuffer[degree++] = neighbors2[i];
+        }
+      }
+      // Stable sort, ties keep the adjacency order as Arrays.sort on the Node array does.
+      Arrays.sort(neighborBuffer, 0, degree, priorityComparator);
+      int addedCount = 0;
+      for (int i = 0; i < degree; i++) {
+        int neighbor = neighborBuffer[i];
+        if (foundStamps[neighbor] != foundStamp) {
+          discover(neighbor);
+          queue[tail++] = neighbor;
+          addedCount++;
+          if (addedCount == biasedk) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * BFS with priority queue, where the node with the highest priority is polled first.
+   */
+  private void bfsPriorityQueue(int seed, int maxNodes) {
+    int[] offsets2 = graphPair.getOffsets2();
+    int[] neighbors2 = graphPair.getNeighbors2();
+    priorityQueue.clear();
+    priorityQueue.add(seed);
+    discover(seed);
+    while (!priorityQueue.isEmpty()) {
+      int node = priorityQueue.poll();
+      admit(node);
+      if (membersNumber == maxNodes) {
+        break;
+      }
+      for (int i = offsets2[node]; i < offsets2[node + 1]; i++) {
+        int neighbor = neighbors2[i];
+        if (foundStamps[neighbor] != foundStamp && !masked[neighbor]) {
+          discover(neighbor);
+          priorityQueue.add(neighbor);
+        }
+      }
+    }
+  }
+
+  /**
+   * Mark a node as discovered by the current traversal.
+   *
+   * @param node to mark.
+   */
+  private void discover(int node) {
+    foundStamps[node] = foundStamp;
+    found[foundNumber++] = node;
+  }
+
+  /**
+   * Add a node to the current region and record the sums of the new region. The edges between the
+   * node and the previous members are found by scanning its neighbors against the membership marks
+   * once, so the score is ready as soon as the last member is admitted.
+   *
+   * @param node to add.
+   */
+  private void admit(int node) {
+    int previous = membersNumber - 1;
+    members[membersNumber++] = node;
+    memberStamps[node] = memberStamp;
+    int current = previous + 1;
+    boolean first = previous < 0;
+    prefixDeltas[current] = (first ? 0 : prefixDeltas[previous]) + graphPair.getDeltas()[node];
+    prefixDegrees1[current] = (first ? 0 : prefixDegrees1[previous]) + graphPair.getDegrees1()[node];
+    prefixDegrees2[current] = (first ? 0 : prefixDegrees2[previous]) + graphPair.getDegrees2()[node];
+    prefixEdges1[current] = (first ? 0 : prefixEdges1[previous])
+        + countMemberEdges(node, graphPair.getOffsets1(), graphPair.getNeighbors1(),
+            graphPair.getReverseOffsets1(), graphPair.getReverseNeighbors1());
+    prefixEdges2[current] = (first ? 0 : prefixEdges2[previous])
+        + countMemberEdges(node, graphPair.getOffsets2(), graphPair.getNeighbors2(),
+            graphPair.getReverseOffsets2(), graphPair.getReverseNeighbors2());
+  }
+
+  /**
+   * Count the edges between a newly admitted node and the region members, in both directions as
+   * they would be counted by walking the adjacency of every member: the edges from the node to the
+   * members, including a self loop, and the edges from the other members to the node. A symmetric
+   * graph has the adjacency as reverse adjacency, and each edge then stands for both directions.
+   */
+  private int countMemberEdges(int node, int[] offsets, int[] neighbors, int[] reverseOffsets,
+      int[] reverseNeighbors) {
+    int count = 0;
+    boolean symmetric = reverseNeighbors == neighbors;
+    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+      int neighbor = neighbors[i];
+      if (memberStamps[neighbor] == memberStamp) {
+        count += neighbor == node || !symmetric ? 1 : 2;
+      }
+    }
+    if (!symmetric) {
+      for (int i = reverseOffsets[node]; i < reverseOffsets[node + 1]; i++) {
+        int neighbor = reverseNeighbors[i];
+        if (memberStamps[neighbor] == memberStamp && neighbor != node) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Score the current region as the sum of the delta changes of its nodes divided by the minimum
+   * number of edges within the region in graph1 and graph2.
+   *
+   * @return score of the current region.
+   */
+  public double scoreRegion() {
+    return scoreRegion(membersNumber);
+  }
+
+  /**
+   * Score the region made of the first size members of the current region.
+   *
+   * @param size number of first members, between 1 and getMembersNumber().
+   * @return score of the region.
+   */
+  public double scoreRegion(int size) {
+    return prefixDeltas[size - 1]
+        / Math.min(Math.max(1, prefixEdges1[size - 1]), Math.max(1, prefixEdges2[size - 1]));
+  }
+
+  /**
+   * Get the sum of the delta changes of the first size members.
+   *
+   * @param size number of first members, between 1 and getMembersNumber().
+   * @return sum of the delta changes.
+   */
+  public double getRegionDelta(int size) {
+    return prefixDeltas[size - 1];
+  }
+
+  /**
+   * Get the number of edges within the first size members in graph1, counted in both directions.
+   *
+   * @param size number of first members, between 1 and getMembersNumber().
+   * @return number of edges within the region in graph1.
+   */
+  public int getRegionEdges1(int size) {
+    return prefixEdges1[size - 1];
+  }
+
+  /**
+   * Get the number of edges within the first size members in graph2, counted in both directions.
+   *
+   * @param size number of first members, between 1 and getMembersNumber().
+   * @return number of edges within the region in graph2.
+   */
+  public int getRegionEdges2(int size) {
+    return prefixEdges2[size - 1];
+  }
+
+  /**
+   * Get the sum of the graph1 degrees of the first size members.
+   *
+   * @param size number of first members, between 1 and getMembersNumber().
+   * @return sum of the graph1 degrees.
+   */
+  public int getRegionDegrees1(int size) {
+    return prefixDegrees1[size - 1];
+  }
+
+  /**
+   * Get the sum of the graph2 degrees of the first size members.
+   *
+   * @param size number of first members, between 1 and getMembersNumber().
+   * @return sum of the graph2 degrees.
+   */
+  public int getRegionDegrees2(int size) {
+    return prefixDegrees2[size - 1];
+  }
+
+  /**
+   * Get the members of the current region in admission order. The array is a scratch buffer that
+   * is overwritten by the next traversal, only the first getMembersNumber() values are valid.
+   *
+   * @return members of the current region.
+   */
+  public int[] getMembers() {
+    return members;
+  }
+
+  /**
+   * Get the number of members of the current region.
+   *
+   * @return number of members of the current region.
+   */
+  public int getMembersNumber() {
+    return membersNumber;
+  }
+
+  /**
+   * Get a copy of the members of the current region.
+   *
+   * @return members of the current region in admission order.
+   */
+  public int[] copyMembers() {
+    return Arrays.copyOf(members, membersNumber);
+  }
+
+  /**
+   * Get the nodes discovered by the current traversal. The traversal result only depends on the
+   * edges of these nodes, so masking a node that is not in this list gives the same region. The
+   * array is a scratch buffer, only the first getFoundNumber() values are valid.
+   *
+   * @return nodes discovered by the current traversal.
+   */
+  public int[] getFound() {
+    return found;
+  }
+
+  /**
+   * Get the number of nodes discovered by the current traversal.
+   *
+   * @return number of discovered nodes.
+   */
+  public int getFoundNumber() {
+    return foundNumber;
+  }
+
+  /**
+   * Get the comparator ordering node indices from the highest priority to the lowest, with the same
+   * ties as SpectralNode.compareTo.
+   *
+   * @return priority comparator.
+   */
+  public Comparator<Integer> getPriorityComparator() {
+    return priorityComparator;
+  }
+
+  /**
+   * Hide a node from the next traversals, or show it again. Masked nodes are never discovered, as
+   * if they and their edges were removed from graph2.
+   *
+   * @param node to mask or unmask.
+   * @param isMasked true to hide the node.
+   */
+  public void setMasked(int node, boolean isMasked) {
+    masked[node] = isMasked;
+  }
+
+  /**
+   * Check whether a node is masked.
+   *
+   * @param node to check.
+   * @return true if the node is hidden from the traversals.
+   */
+  public boolean isMasked(int node) {
+    return masked[node];
+  }
+
+  /**
+   * Move to the next discovery mark, clearing the marks when the counter wraps around.
+   */
+  private void nextFoundStamp() {
+    if (++foundStamp == Integer.MAX_VALUE) {
+      Arrays.fill(foundStamps, 0);
+      foundStamp = 1;
+    }
+  }
+
+  /**
+   * Move to the next membership mark, clearing the marks when the counter wraps around.
+   */
+  private void nextMemberStamp() {
+    if (++memberStamp == Integer.MAX_VALUE) {
+      Arrays.fill(memberStamps, 0);
+      memberStamp = 1;
+    }
+  }
+}
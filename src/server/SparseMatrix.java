@@ -0,0 +1,197 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Square sparse matrix in compressed sparse row format, built from the edges of a graph in the
+ * node1,node2,edgeValue format as MATLAB's sparse(G(:,1), G(:,2), G(:,3), n, n), where the values
+ * of repeated edges are summed.
+ */
+public class SparseMatrix extends BlockOperator {
+
+  // Number of rows and columns.
+  private int size;
+  // Row i has its entries in positions offsets[i] to offsets[i + 1] - 1.
+  private int[] offsets;
+  // Column of each entry, increasing within a row.
+  private int[] columns;
+  // Value of each entry.
+  private double[] values;
+
+  /**
+   * Constructor.
+   *
+   * @param size number of rows and columns.
+   * @param offsets row offsets, of length size + 1.
+   * @param columns column of each entry.
+   * @param values value of each entry.
+   */
+  public SparseMatrix(int size, int[] offsets, int[] columns, double[] values) {
+    this.size = size;
+    this.offsets = offsets;
+    this.columns = columns;
+    this.values = values;
+  }
+
+  /**
+   * Build the adjacency matrix of a graph. The node ids start from 1, and rows with a node id below
+   * 1, left empty by loadGraph, are skipped.
+   *
+   * @param graph graph edges where each index has from node id, to node id and edge value.
+   * @param size number of nodes, at least the max node id.
+   * @return adjacency matrix of the graph.
+   */
+  public static SparseMatrix fromEdges(double[][] graph, int size) {
+    int[] offsets = new int[size + 1];
+    for (double[] edge : graph) {
+      if (edge[0] >= 1 && edge[1] >= 1) {
+        offsets[(int) edge[0]]++;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] columns = new int[offsets[size]];
+    double[] values = new double[offsets[size]];
+    int[] next = Arrays.copyOf(offsets, size);
+    for (double[] edge : graph) {
+      if (edge[0] >= 1 && edge[1] >= 1) {
+        int position = next[(int) edge[0] - 1]++;
+        columns[position] = (int) edge[1] - 1;
+        values[position] = edge[2];
+      }
+    }
+    // Sort the entries of each row by column and sum the repeated edges.
+    int[] compactOffsets = new int[size + 1];
+    int entries = 0;
+    for (int i = 0; i < size; i++) {
+      sortRow(columns, values, offsets[i], offsets[i + 1]);
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        if (entries > compactOffsets[i] && columns[entries - 1] == columns[p]) {
+          values[entries - 1] += values[p];
+        } else {
+          columns[entries] = columns[p];
+          values[entries] = values[p];
+          entries++;
+        }
+      }
+      compactOffsets[i + 1] = entries;
+    }
+    return new SparseMatrix(size, compactOffsets, Arrays.copyOf(columns, entries),
+        Arrays.copyOf(values, entries));
+  }
+
+  /**
+   * Sort the entries in positions from to to - 1 by column.
+   */
+  static void sortRow(int[] columns, double[] values, int from, int to) {
+    if (to - from > 32) {
+      // Sort long rows by keys holding the column and the position in the row.
+      long[] keys = new long[to - from];
+      for (int p = from; p < to; p++) {
+        keys[p - from] = ((long) columns[p] << 32) | (p - from);
+      }
+      Arrays.sort(keys);
+      double[] rowValues = Arrays.copyOfRange(values, from, to);
+      for (int p = from; p < to; p++) {
+        columns[p] = (int) (keys[p - from] >>> 32);
+        values[p] = rowValues[(int) keys[p - from]];
+      }
+      return;
+    }
+    for (int p = from + 1; p < to; p++) {
+      int column = columns[p];
+      double value = values[p];
+      int q = p - 1;
+      while (q >= from && columns[q] > column) {
+        columns[q + 1] = columns[q];
+        values[q + 1] = values[q];
+        q--;
+      }
+      columns[q + 1] = column;
+      values[q + 1] = value;
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public void apply(double[] x, double[] y) {
+    for (int i = 0; i < size; i++) {
+      double sum = 0;
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        sum += values[p] * x[columns[p]];
+      }
+      y[i] = sum;
+    }
+  }
+
+  @Override
+  protected int[] getRowsWork() {
+    return offsets;
+  }
+
+  @Override
+  protected void applyRows(double[][] x, double[][] y, int from, int to) {
+    int vectorsNumber = x.length;
+    double[] sums = new double[vectorsNumber];
+    for (int i = from; i < to; i++) {
+      Arrays.fill(sums, 0);
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        double value = values[p];
+        int column = columns[p];
+        for (int c = 0; c < vectorsNumber; c++) {
+          sums[c] += value * x[c][column];
+        }
+      }
+      for (int c = 0; c < vectorsNumber; c++) {
+        y[c][i] = sums[c];
+      }
+    }
+  }
+
+  /**
+   * Get the sum of each row, the weighted degree of each node.
+   *
+   * @return row sums.
+   */
+  public double[] getRowSums() {
+    double[] sums = new double[size];
+    for (int i = 0; i < size; i++) {
+      for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+        sums[i] += values[p];
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * Get the row offsets.
+   *
+   * @return row offsets, of length size + 1.
+   */
+  public int[] getOffsets() {
+    return offsets;
+  }
+
+  /**
+   * Get the column of each entry.
+   *
+   * @return columns.
+   */
+  public int[] getColumns() {
+    return columns;
+  }
+
+  /**
+   * Get the value of each entry.
+   *
+   * @return values.
+   */
+  public double[] getValues() {
+    return values;
+  }
+}
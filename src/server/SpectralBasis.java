@@ -0,0 +1,116 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Smallest eigenpairs of F*L1, where L1 is the Laplacian of graph1 and F the diagonal matrix of
+ * 1/(degree+1), computed by visualize_map as e1 and v1. The eigenvectors have unit norm.
+ */
+public class SpectralBasis {
+
+  // Eigenvalues in increasing order.
+  private double[] eigenvalues;
+  // Eigenvectors as rows, in the order of the eigenvalues.
+  private double[][] vectors;
+  // Largest residual norm of the eigenpairs, 0 if they were computed to the solver tolerance.
+  private double errorEstimate;
+
+  /**
+   * Constructor.
+   *
+   * @param eigenvalues eigenvalues in increasing order.
+   * @param vectors eigenvectors as rows, in the order of the eigenvalues.
+   */
+  public SpectralBasis(double[] eigenvalues, double[][] vectors) {
+    this(eigenvalues, vectors, 0);
+  }
+
+  /**
+   * Constructor of an approximate basis.
+   *
+   * @param eigenvalues eigenvalues in increasing order.
+   * @param vectors eigenvectors as rows, in the order of the eigenvalues.
+   * @param errorEstimate largest residual norm of the eigenpairs.
+   */
+  public SpectralBasis(double[] eigenvalues, double[][] vectors, double errorEstimate) {
+    this.eigenvalues = eigenvalues;
+    this.vectors = vectors;
+    this.errorEstimate = errorEstimate;
+  }
+
+  /**
+   * Get the number of eigenpairs.
+   *
+   * @return number of eigenpairs.
+   */
+  public int getSize() {
+    return eigenvalues.length;
+  }
+
+  /**
+   * Get the number of nodes.
+   *
+   * @return length of the eigenvectors.
+   */
+  public int getNodesNumber() {
+    return vectors.length == 0 ? 0 : vectors[0].length;
+  }
+
+  /**
+   * Get the eigenvalues.
+   *
+   * @return eigenvalues in increasing order.
+   */
+  public double[] getEigenvalues() {
+    return eigenvalues;
+  }
+
+  /**
+   * Get the eigenvectors.
+   *
+   * @return eigenvectors as rows, in the order of the eigenvalues.
+   */
+  public double[][] getVectors() {
+    return vectors;
+  }
+
+  /**
+   * Get the error estimate of the basis.
+   *
+   * @return largest residual norm of the eigenpairs, 0 if the basis wasn't approximated.
+   */
+  public double getErrorEstimate() {
+    return errorEstimate;
+  }
+
+  /**
+   * Get the basis of the first eigenpairs, which is the basis computed for a smaller k. The
+   * eigenvectors are shared with this basis, and the error estimate is kept as a bound.
+   *
+   * @param k number of eigenpairs, at most the size of this basis.
+   * @return basis of the k smallest eigenpairs.
+   */
+  public SpectralBasis getPrefix(int k) {
+    if (k == eigenvalues.length) {
+      return this;
+    }
+    return new SpectralBasis(Arrays.copyOf(eigenvalues, k), Arrays.copyOf(vectors, k),
+        errorEstimate);
+  }
+
+  /**
+   * Get the number of eigenvalues that are zero, lamda_zero in visualize_map.
+   *
+   * @param tolerance eigenvalues with absolute value below tolerance are zero.
+   * @return number of zero eigenvalues.
+   */
+  public int getZeroEigenvaluesNumber(double tolerance) {
+    int zeros = 0;
+    for (double eigenvalue : eigenvalues) {
+      if (Math.abs(eigenvalue) < tolerance) {
+        zeros++;
+      }
+    }
+    return zeros;
+  }
+}
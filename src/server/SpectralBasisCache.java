@@ -0,0 +1,284 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the graph1 eigenbases keyed by a content hash of graph1, so changing the measure, k or
+ * graph2 skips the decomposition, e.g. when comparing one baseline against many snapshots. The
+ * least recently used bases are evicted once the cached bases exceed a number of bytes. If a spill
+ * directory is set, the evicted bases are written there with DataOutputStream and read back on a
+ * miss.
+ */
+public class SpectralBasisCache {
+
+  // Default max number of bytes of the bases kept in memory.
+  public static final long DEFAULT_MAX_BYTES = 256L << 20;
+  // First int of the spill files.
+  private static final int MAGIC = 0x53424332;
+  // Order of the edges hashed by getKey, by from node, to node, then value.
+  private static final Comparator<double[]> EDGE_ORDER = new Comparator<double[]>() {
+    @Override
+    public int compare(double[] edge1, double[] edge2) {
+      for (int i = 0; i < 3; i++) {
+        int order = Double.compare(edge1[i], edge2[i]);
+        if (order != 0) {
+          return order;
+        }
+      }
+      return 0;
+    }
+  };
+
+  // Max number of bytes of the bases kept in memory.
+  private long maxBytes;
+  // Directory of the evicted bases, or null to drop them.
+  private File spillDirectory;
+  // Bases by key, from the least to the most recently used.
+  private LinkedHashMap<String, SpectralBasis> bases =
+      new LinkedHashMap<String, SpectralBasis>(16, 0.75f, true);
+  // Number of bytes of the bases in memory.
+  private long bytes = 0;
+  // Number of lookups served from memory, from the spill directory, or missed.
+  private int memoryHits = 0;
+  private int spillHits = 0;
+  private int misses = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes max number of bytes of the bases kept in memory.
+   * @param spillDirectory directory of the evicted bases, created if needed, or null to drop them.
+   */
+  public SpectralBasisCache(long maxBytes, String spillDirectory) {
+    this.maxBytes = maxBytes;
+    if (spillDirectory != null) {
+      this.spillDirectory = new File(spillDirectory);
+      this.spillDirectory.mkdirs();
+    }
+  }
+
+  /**
+   * Get the key of a graph, the SHA-256 of its number of nodes and edges. The edges are hashed in
+   * sorted order, so the same graph read with its edges in another order gets the same key, as it
+   * gets the same adjacency matrix.
+   *
+   * @param graph graph edges where each index has from node id, to node id and edge value.
+   * @param nodesNumber number of nodes, the length of the eigenvectors.
+   * @return hex key of the graph.
+   */
+  public static String getKey(double[][] graph, int nodesNumber) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    byte[] buffer = new byte[8 * 3];
+    putLong(buffer, 0, nodesNumber);
+    digest.update(buffer, 0, 8);
+    double[][] edges = graph.clone();
+    Arrays.sort(edges, EDGE_ORDER);
+    for (double[] edge : edges) {
+      for (int i = 0; i < 3; i++) {
+        putLong(buffer, 8 * i, Double.doubleToLongBits(edge[i]));
+      }
+      digest.update(buffer);
+    }
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Get the basis of a graph with at least k eigenpairs.
+   *
+   * @param key key of the graph.
+   * @param k min number of eigenpairs.
+   * @return cached basis, or null if there is none with k eigenpairs.
+   */
+  public synchronized SpectralBasis get(String key, int k) {
+    SpectralBasis basis = bases.get(key);
+    if (basis != null && basis.getSize() >= k) {
+      memoryHits++;
+      return basis;
+    }
+    if (basis == null && spillDirectory != null) {
+      basis = read(getSpillFile(key));
+      if (basis != null && basis.getSize() >= k) {
+        spillHits++;
+        put(key, basis);
+        return basis;
+      }
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Cache the basis of a graph, replacing its previous basis.
+   *
+   * @param key key of the graph.
+   * @param basis basis of the graph.
+   */
+  public synchronized void put(String key, SpectralBasis basis) {
+    SpectralBasis previous = bases.put(key, basis);
+    if (previous != null) {
+      bytes -= getBytes(previous);
+    }
+    bytes += getBytes(basis);
+    // Evict the least recently used bases, the new basis last if it alone is too large.
+    Iterator<Map.Entry<String, SpectralBasis>> iterator = bases.entrySet().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, SpectralBasis> entry = iterator.next();
+      bytes -= getBytes(entry.getValue());
+      iterator.remove();
+      if (spillDirectory != null) {
+        write(getSpillFile(entry.getKey()), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Get the number of bytes of the bases in memory.
+   *
+   * @return number of bytes.
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Get the number of lookups served from memory.
+   *
+   * @return number of memory hits.
+   */
+  public synchronized int getMemoryHits() {
+    return memoryHits;
+  }
+
+  /**
+   * Get the number of lookups served from the spill directory.
+   *
+   * @return number of spill hits.
+   */
+  public synchronized int getSpillHits() {
+    return spillHits;
+  }
+
+  /**
+   * Get the number of lookups without a basis with enough eigenpairs.
+   *
+   * @return number of misses.
+   */
+  public synchronized int getMisses() {
+    return misses;
+  }
+
+  /**
+   * Approximate number of bytes of a basis, its eigenvalues and eigenvectors.
+   */
+  private static long getBytes(SpectralBasis basis) {
+    return 8L * basis.getSize() * (basis.getNodesNumber() + 1);
+  }
+
+  /**
+   * Spill file of a key.
+   */
+  private File getSpillFile(String key) {
+    return new File(spillDirectory, key + ".basis");
+  }
+
+  /**
+   * Write a basis to a spill file: MAGIC, the number of eigenpairs and of nodes, the error
+   * estimate, the eigenvalues, then the eigenvectors.
+   */
+  private static void write(File file, SpectralBasis basis) {
+    try {
+      DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        output.writeInt(MAGIC);
+        output.writeInt(basis.getSize());
+        output.writeInt(basis.getNodesNumber());
+        output.writeDouble(basis.getErrorEstimate());
+        for (double eigenvalue : basis.getEigenvalues()) {
+          output.writeDouble(eigenvalue);
+        }
+        for (double[] vector : basis.getVectors()) {
+          for (double value : vector) {
+            output.writeDouble(value);
+          }
+        }
+      } finally {
+        output.close();
+      }
+    } catch (IOException e) {
+      // The basis is recomputed if it is needed again.
+      System.out.println("Error in writing the basis " + e.getMessage());
+      file.delete();
+    }
+  }
+
+  /**
+   * Read a basis from a spill file, or return null if it is missing or invalid.
+   */
+  private static SpectralBasis read(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      DataInputStream input =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (input.readInt() != MAGIC) {
+          return null;
+        }
+        int size = input.readInt();
+        int nodesNumber = input.readInt();
+        double errorEstimate = input.readDouble();
+        double[] eigenvalues = new double[size];
+        for (int i = 0; i < size; i++) {
+          eigenvalues[i] = input.readDouble();
+        }
+        double[][] vectors = new double[size][nodesNumber];
+        for (int i = 0; i < size; i++) {
+          for (int j = 0; j < nodesNumber; j++) {
+            vectors[i][j] = input.readDouble();
+          }
+        }
+        return new SpectralBasis(eigenvalues, vectors, errorEstimate);
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      System.out.println("Error in reading the basis " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Store a long in 8 bytes, big endian.
+   */
+  private static void putLong(byte[] buffer, int offset, long value) {
+    for (int i = 7; i >= 0; i--) {
+      buffer[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+}
@@ -0,0 +1,703 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Java port of visualize_map.m, computing the distortion values of the nodes without MATLAB. The
+ * basis e1 of the smallest eigenpairs of F*L1 is computed on the sparse graph1 Laplacian: the null
+ * space, one vector per connected component, is known and deflated, and the remaining eigenpairs
+ * come from the thick restarted Lanczos method, or from the dense solver for small graphs. The
+ * basis of very large graphs can instead be approximated by randomized subspace iteration, or the
+ * whole run done on a coarsened graph pair and interpolated back to the nodes. Each
+ * measure then solves a small eigenproblem on the projection of a graph2 operator onto the basis.
+ * Like visualize_map, the graphs are expected to be undirected, with each edge in both directions.
+ */
+public class SpectralEngine {
+
+  // Distortion measures of visualize_map.
+  public static final String[] MEASURES = {"area-based", "conformal-based", "E1", "E2", "E3",
+      "E4"};
+  // Eigenvalues with absolute value below this value are zero, as lamda_zero in visualize_map.
+  private static final double ZERO_EIGENVALUE = 1e-5;
+  // Graphs with up to this number of nodes are decomposed with the dense solver.
+  static final int DENSE_MAX_NODES = 1000;
+  // Default max number of nodes of the coarsest graphs of the multilevel runs.
+  public static final int DEFAULT_COARSEST_NODES = 20000;
+  // Coarsening stops when a level removes less than this fraction of the nodes.
+  private static final double MIN_COARSENING = 0.1;
+  // Number of smoothing steps refining the interpolated distortion vectors at each level.
+  private static final int SMOOTHING_STEPS = 2;
+  // Weight of the smoothing steps, as in damped Jacobi.
+  private static final double SMOOTHING_WEIGHT = 2.0 / 3;
+
+  // Number of eigenpairs computed for a new graph1, so the smaller k are served from the prefix.
+  private int maxK = 0;
+  // Bases of the graph1 seen so far, by content, kept in memory up to spectral.cache.bytes bytes
+  // and the evicted ones written to spectral.cache.dir if it is set.
+  private SpectralBasisCache basisCache = new SpectralBasisCache(Long.getLong(
+      "spectral.cache.bytes", SpectralBasisCache.DEFAULT_MAX_BYTES), System
+      .getProperty("spectral.cache.dir"));
+  // Whether a new graph1 basis is computed starting from the basis of the last run.
+  private boolean warmStart = false;
+  // Basis of graph1 of the last full resolution run, computed or cached, the start of the next
+  // one if warmStart is set.
+  private SpectralBasis lastBasis = null;
+  // Number of restarts and operator products of the iterative solver for the basis of the last
+  // run, 0 if it was computed with the dense solver or read from the cache.
+  private int lastRestarts = 0;
+  private int lastProducts = 0;
+  // Graphs with at least this number of nodes get an approximate basis from randomized subspace
+  // iteration instead of the Lanczos method.
+  private int randomizedMinNodes = Integer.MAX_VALUE;
+  // Oversampling and power iterations of the randomized subspace iteration.
+  private int oversampling = RandomizedEigenSolver.DEFAULT_OVERSAMPLING;
+  private int powerIterations = RandomizedEigenSolver.DEFAULT_POWER_ITERATIONS;
+  // Largest residual norm of the eigenpairs of the last basis, 0 if it wasn't approximated.
+  private double lastErrorEstimate = 0;
+  // Graph pairs with at least this number of nodes are run on a coarsened pair.
+  private int multilevelMinNodes = Integer.MAX_VALUE;
+  // The graphs are coarsened until they have at most this number of nodes.
+  private int coarsestNodes = DEFAULT_COARSEST_NODES;
+  // Number of coarsening levels of the last multilevel run, 0 if the run was at full resolution.
+  private int lastLevels = 0;
+  // Coarsening levels of the last multilevel run and their key, the keys of both graphs and the
+  // min coarse size, reused by the next runs on the same pair.
+  private String cachedLevelsKey = null;
+  private ArrayList<GraphCoarsening> cachedLevels = null;
+
+  /**
+   * Set the largest k of the coming runs, e.g. the end of a k sweep. The basis of graph1 is then
+   * computed once with maxK eigenpairs, and each k only solves its k x k reduced problem.
+   *
+   * @param maxK largest k, or 0 to compute the basis for the requested k only.
+   */
+  public void setMaxK(int maxK) {
+    this.maxK = maxK;
+  }
+
+  /**
+   * Set the cache of the graph1 bases, e.g. to change its size or spill it to disk.
+   *
+   * @param basisCache cache of the bases.
+   */
+  public void setBasisCache(SpectralBasisCache basisCache) {
+    this.basisCache = basisCache;
+  }
+
+  /**
+   * Get the cache of the graph1 bases.
+   *
+   * @return cache of the bases.
+   */
+  public SpectralBasisCache getBasisCache() {
+    return basisCache;
+  }
+
+  /**
+   * Start the iterative solver of a new graph1 from the basis of the last run, e.g. when stepping
+   * through a timeline where graph1 of a pair is graph2 of the previous pair, as TimelineWalk
+   * does. The eigenpairs are the same up to the solver tolerance. The last basis is reused at the
+   * cost of one product per eigenvector when it is within the tolerance for the new graph,
+   * otherwise the solver starts from its eigenvectors instead of a random vector.
+   *
+   * @param warmStart whether to start from the basis of the last run.
+   */
+  public void setWarmStart(boolean warmStart) {
+    this.warmStart = warmStart;
+  }
+
+  /**
+   * Get the number of restarts of the iterative solver for the basis of the last run.
+   *
+   * @return number of restarts, 0 if it was computed with the dense solver or read from the
+   *         cache.
+   */
+  public int getLastRestarts() {
+    return lastRestarts;
+  }
+
+  /**
+   * Get the number of operator products of the iterative solver for the basis of the last run.
+   *
+   * @return number of products, 0 if it was computed with the dense solver or read from the
+   *         cache.
+   */
+  public int getLastProducts() {
+    return lastProducts;
+  }
+
+  /**
+   * Approximate the basis of large graphs with randomized subspace iteration, for interactive use
+   * on graphs where even the Lanczos method is too slow. Its cost is a fixed number of parallel
+   * block products, and its accuracy is reported by getLastErrorEstimate.
+   *
+   * @param minNodes min number of nodes of the approximated graphs, Integer.MAX_VALUE to always
+   *        compute the basis to the solver tolerance.
+   * @param oversampling number of extra vectors of the random block.
+   * @param powerIterations number of power iterations, more improve the accuracy.
+   */
+  public void setRandomized(int minNodes, int oversampling, int powerIterations) {
+    this.randomizedMinNodes = minNodes;
+    this.oversampling = oversampling;
+    this.powerIterations = powerIterations;
+  }
+
+  /**
+   * Get the error estimate of the basis of the last run, the largest residual norm
+   * |F*L1 x - lambda x| of its eigenpairs in the normalized problem. The distortion directions
+   * projected on the basis are off by about this value over the gap between the eigenvalues.
+   *
+   * @return largest residual norm, 0 if the basis wasn't approximated.
+   */
+  public double getLastErrorEstimate() {
+    return lastErrorEstimate;
+  }
+
+  /**
+   * Run the graph pairs with many nodes on coarsened graphs, for snapshots too large for the
+   * spectral method at full resolution. Both graphs are coarsened with the same heavy edge
+   * matching until they have at most coarsestNodes nodes, the distortion vectors are computed on
+   * the coarsest pair, then interpolated back level by level, each level smoothing them over its
+   * graph1. The time is about linear in the number of edges.
+   *
+   * @param minNodes min number of nodes of the coarsened pairs, Integer.MAX_VALUE to always run
+   *        at full resolution.
+   * @param coarsestNodes max number of nodes of the coarsest graphs, at least k are kept.
+   */
+  public void setMultilevel(int minNodes, int coarsestNodes) {
+    this.multilevelMinNodes = minNodes;
+    this.coarsestNodes = coarsestNodes;
+  }
+
+  /**
+   * Get the number of coarsening levels of the last run.
+   *
+   * @return number of levels, 0 if the last run was at full resolution.
+   */
+  public int getLastLevels() {
+    return lastLevels;
+  }
+
+  /**
+   * Compute the distortion values of the nodes, as nodes_values returned by visualize_map.
+   *
+   * @param graph1 graph1 edges where each index has from node id, to node id and edge value.
+   * @param graph2 graph2 edges in the same format.
+   * @param k number of eigenvectors of graph1 Laplacian, the smooth parameter.
+   * @param r number of distortion vectors to return.
+   * @param measure distortion measure, one of MEASURES.
+   * @return distortion values of the nodes of each distortion vector, stacked column wise as
+   *         nodesNumber x r, or an empty array if k exceeds the number of nodes, where visualize_map
+   *         fails.
+   */
+  public double[] getDistortionValues(double[][] graph1, double[][] graph2, int k, int r,
+      String measure) {
+    return getDistortionValues(graph1, graph2, k, r,
+        new DistortionMeasure[] {DistortionMeasure.fromName(measure)})[0];
+  }
+
+  /**
+   * Compute the distortion values of the nodes for several measures, sharing the basis and the
+   * projections of the graph operators between the measures.
+   *
+   * @param graph1 graph1 edges where each index has from node id, to node id and edge value.
+   * @param graph2 graph2 edges in the same format.
+   * @param k number of eigenvectors of graph1 Laplacian, the smooth parameter.
+   * @param r number of distortion vectors to return.
+   * @param measures distortion measures.
+   * @return distortion values of each measure, stacked column wise as nodesNumber x r, or empty
+   *         arrays if k exceeds the number of nodes.
+   */
+  public double[][] getDistortionValues(double[][] graph1, double[][] graph2, int k, int r,
+      DistortionMeasure[] measures) {
+    int nodesNumber = getNodesNumber(graph1, graph2);
+    if (k > nodesNumber) {
+      return new double[measures.length][0];
+    }
+    SparseMatrix adjacency1 = SparseMatrix.fromEdges(graph1, nodesNumber);
+    SparseMatrix adjacency2 = SparseMatrix.fromEdges(graph2, nodesNumber);
+    lastLevels = 0;
+    if (nodesNumber >= multilevelMinNodes) {
+      return getMultilevelDistortionValues(graph1, graph2, adjacency1, adjacency2, k, r,
+          measures);
+    }
+    // The basis of the same graph1 is reused when it has at least k eigenpairs.
+    String key = SpectralBasisCache.getKey(graph1, nodesNumber);
+    SpectralBasis basis = basisCache.get(key, k);
+    lastRestarts = 0;
+    lastProducts = 0;
+    if (basis == null) {
+      basis = computeBasis(adjacency1, Math.min(Math.max(k, maxK), nodesNumber),
+          warmStart ? lastBasis : null);
+      basisCache.put(key, basis);
+    }
+    // The next graph1 starts from this basis, also when it was read from the cache.
+    lastBasis = basis;
+    // A cached basis keeps the error estimate of its computation.
+    lastErrorEstimate = basis.getErrorEstimate();
+    return getDistortionValues(basis.getPrefix(k), adjacency1, adjacency2, r, measures);
+  }
+
+  /**
+   * Compute the distortion values of the nodes given the basis of graph1.
+   *
+   * @param basis smallest eigenpairs of graph1.
+   * @param adjacency1 graph1 adjacency matrix.
+   * @param adjacency2 graph2 adjacency matrix.
+   * @param r number of distortion vectors to return.
+   * @param measure distortion measure, one of MEASURES.
+   * @return distortion values stacked column wise as nodesNumber x r.
+   */
+  public double[] getDistortionValues(SpectralBasis basis, SparseMatrix adjacency1,
+      SparseMatrix adjacency2, int r, String measure) {
+    return getDistortionValues(basis, adjacency1, adjacency2, r,
+        new DistortionMeasure[] {DistortionMeasure.fromName(measure)})[0];
+  }
+
+  /**
+   * Compute the distortion values of the nodes for several measures given the basis of graph1.
+   * The zero eigenvalues are dropped from the basis as in visualize_map, then the projections
+   * needed by all the measures are computed in one pass.
+   *
+   * @param basis smallest eigenpairs of graph1.
+   * @param adjacency1 graph1 adjacency matrix.
+   * @param adjacency2 graph2 adjacency matrix.
+   * @param r number of distortion vectors to return.
+   * @param measures distortion measures.
+   * @return distortion values of each measure, stacked column wise as nodesNumber x r.
+   */
+  public double[][] getDistortionValues(SpectralBasis basis, SparseMatrix adjacency1,
+      SparseMatrix adjacency2, int r, DistortionMeasure[] measures) {
+    return square(getDistortionVectors(basis, adjacency1, adjacency2, r, measures));
+  }
+
+  /**
+   * Compute the distortion vectors over the nodes for several measures given the basis of graph1,
+   * whose squares are the distortion values.
+   *
+   * @param basis smallest eigenpairs of graph1.
+   * @param adjacency1 graph1 adjacency matrix.
+   * @param adjacency2 graph2 adjacency matrix.
+   * @param r number of distortion vectors to return.
+   * @param measures distortion measures.
+   * @return distortion vectors of each measure as rows, at most r of them.
+   */
+  public double[][][] getDistortionVectors(SpectralBasis basis, SparseMatrix adjacency1,
+      SparseMatrix adjacency2, int r, DistortionMeasure[] measures) {
+    int nodesNumber = adjacency1.getSize();
+    int k = basis.getSize();
+    int start = basis.getZeroEigenvaluesNumber(ZERO_EIGENVALUE);
+    int size = k - start;
+    double[][] x = new double[size][];
+    System.arraycopy(basis.getVectors(), start, x, 0, size);
+    double[] eigenvalues = new double[size];
+    System.arraycopy(basis.getEigenvalues(), start, eigenvalues, 0, size);
+    boolean[] requested = new boolean[BasisProjections.PROJECTIONS_NUMBER];
+    for (DistortionMeasure measure : measures) {
+      for (int projection : measure.getProjections()) {
+        requested[projection] = true;
+      }
+    }
+    BasisProjections projections =
+        new BasisProjections(x, eigenvalues, adjacency1, adjacency2, requested);
+    r = Math.min(Math.min(r, k), size);
+    double[][][] distortionVectors = new double[measures.length][r][nodesNumber];
+    for (int m = 0; m < measures.length; m++) {
+      // Distortion vectors in the basis, for the largest eigenvalues.
+      double[][] v = solveLargest(measures[m].getOperator(projections),
+          measures[m].getMetric(projections));
+      for (int c = 0; c < r; c++) {
+        for (int i = 0; i < nodesNumber; i++) {
+          double value = 0;
+          for (int j = 0; j < size; j++) {
+            value += x[j][i] * v[c][j];
+          }
+          distortionVectors[m][c][i] = value;
+        }
+      }
+    }
+    return distortionVectors;
+  }
+
+  /**
+   * Compute the distortion values on the coarsened graph pair, interpolated back to the nodes. The
+   * coarse graphs keep at least max(k, maxK) nodes, so the levels and the coarse basis of a pair
+   * are computed once for the k up to maxK. The matching depends on both graphs, so the levels
+   * and the coarse basis are keyed by the pair.
+   */
+  private double[][] getMultilevelDistortionValues(double[][] graph1, double[][] graph2,
+      SparseMatrix adjacency1, SparseMatrix adjacency2, int k, int r,
+      DistortionMeasure[] measures) {
+    int nodesNumber = adjacency1.getSize();
+    int coarseK = Math.max(k, maxK);
+    String key = SpectralBasisCache.getKey(graph1, nodesNumber)
+        + SpectralBasisCache.getKey(graph2, nodesNumber) + "-" + coarseK;
+    ArrayList<GraphCoarsening> levels = getLevels(key);
+    if (levels == null) {
+      levels = new ArrayList<GraphCoarsening>();
+      // Seeded to get the same results for the same input.
+      Random random = new Random(1);
+      while (adjacency1.getSize() > Math.max(coarsestNodes, coarseK)) {
+        GraphCoarsening level = new GraphCoarsening(adjacency1, adjacency2, random);
+        if (level.getCoarseSize() < coarseK
+            || level.getCoarseSize() > (1 - MIN_COARSENING) * adjacency1.getSize()) {
+          break;
+        }
+        levels.add(level);
+        adjacency1 = level.getCoarseAdjacency1();
+        adjacency2 = level.getCoarseAdjacency2();
+      }
+      setLevels(key, levels);
+    } else if (!levels.isEmpty()) {
+      GraphCoarsening coarsest = levels.get(levels.size() - 1);
+      adjacency1 = coarsest.getCoarseAdjacency1();
+      adjacency2 = coarsest.getCoarseAdjacency2();
+    }
+    lastLevels = levels.size();
+    // The coarse graph1 depends on the pair, so its basis is cached by the key of the levels.
+    SpectralBasis basis = basisCache.get(key, k);
+    if (basis == null) {
+      basis = computeBasis(adjacency1, Math.min(coarseK, adjacency1.getSize()));
+      basisCache.put(key, basis);
+    }
+    lastErrorEstimate = basis.getErrorEstimate();
+    double[][][] distortionVectors =
+        getDistortionVectors(basis.getPrefix(k), adjacency1, adjacency2, r, measures);
+    for (int l = levels.size() - 1; l >= 0; l--) {
+      GraphCoarsening level = levels.get(l);
+      SparseMatrix fine = level.getAdjacency1();
+      for (int m = 0; m < measures.length; m++) {
+        double[][] vectors = level.interpolate(distortionVectors[m]);
+        smooth(fine, vectors);
+        distortionVectors[m] = vectors;
+      }
+    }
+    return square(distortionVectors);
+  }
+
+  /**
+   * Smooth vectors over a graph with damped Jacobi steps on (D + I)^-1 L, removing the jumps
+   * between the aggregates of the interpolation while keeping the smooth components.
+   */
+  private static void smooth(SparseMatrix adjacency, double[][] vectors) {
+    int n = adjacency.getSize();
+    double[] degrees = adjacency.getRowSums();
+    double[] scale = new double[n];
+    Arrays.fill(scale, 1);
+    NormalizedLaplacianOperator laplacian =
+        new NormalizedLaplacianOperator(adjacency, degrees, scale);
+    double[][] products = new double[vectors.length][n];
+    for (int step = 0; step < SMOOTHING_STEPS; step++) {
+      laplacian.applyBlock(vectors, products);
+      for (int c = 0; c < vectors.length; c++) {
+        for (int i = 0; i < n; i++) {
+          vectors[c][i] -= SMOOTHING_WEIGHT * products[c][i] / (degrees[i] + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the coarsening levels of the last multilevel run if it has the same key.
+   */
+  private synchronized ArrayList<GraphCoarsening> getLevels(String key) {
+    return key.equals(cachedLevelsKey) ? cachedLevels : null;
+  }
+
+  /**
+   * Keep the coarsening levels of a multilevel run for the next runs.
+   */
+  private synchronized void setLevels(String key, ArrayList<GraphCoarsening> levels) {
+    cachedLevelsKey = key;
+    cachedLevels = levels;
+  }
+
+  /**
+   * Compute the k smallest eigenpairs of F*L1, the generalized eigenproblem L1 x = lambda (D+I) x.
+   * It is solved as the symmetric problem S^-1 L1 S^-1 y = lambda y with S = (D+I)^1/2 and
+   * x = S^-1 y scaled to unit norm.
+   *
+   * @param adjacency1 graph1 adjacency matrix.
+   * @param k number of eigenpairs, at most the number of nodes.
+   * @return basis of the k smallest eigenpairs.
+   */
+  public SpectralBasis computeBasis(SparseMatrix adjacency1, int k) {
+    return computeBasis(adjacency1, k, null);
+  }
+
+  /**
+   * Compute the k smallest eigenpairs of F*L1, starting the iterative solver from the eigenvectors
+   * of a previous basis, e.g. of the previous snapshot of graph1.
+   *
+   * @param adjacency1 graph1 adjacency matrix.
+   * @param k number of eigenpairs, at most the number of nodes.
+   * @param start basis approximating the wanted one, or null to start at random. It is ignored if
+   *        its number of nodes differs.
+   * @return basis of the k smallest eigenpairs.
+   */
+  public SpectralBasis computeBasis(SparseMatrix adjacency1, int k, SpectralBasis start) {
+    final int n = adjacency1.getSize();
+    final double[] degrees = adjacency1.getRowSums();
+    final double[] scale = new double[n];
+    for (int i = 0; i < n; i++) {
+      scale[i] = Math.sqrt(degrees[i] + 1);
+    }
+    NormalizedLaplacianOperator normalized =
+        new NormalizedLaplacianOperator(adjacency1, degrees, scale);
+    double[] eigenvalues;
+    double[][] vectors;
+    lastRestarts = 0;
+    lastProducts = 0;
+    lastErrorEstimate = 0;
+    if (n <= DENSE_MAX_NODES) {
+      SymmetricEigenDecomposition decomposition =
+          new SymmetricEigenDecomposition(normalized.toDense());
+      eigenvalues = new double[k];
+      vectors = new double[k][];
+      System.arraycopy(decomposition.getEigenvalues(), 0, eigenvalues, 0, k);
+      System.arraycopy(decomposition.getEigenvectors(), 0, vectors, 0, k);
+    } else {
+      double[][] nullSpace = getNullSpace(adjacency1, scale);
+      eigenvalues = new double[k];
+      vectors = new double[k][];
+      int zeros = Math.min(k, nullSpace.length);
+      System.arraycopy(nullSpace, 0, vectors, 0, zeros);
+      if (k > zeros && n >= randomizedMinNodes) {
+        // The eigenvalues of S^-1 L1 S^-1 are below 2.
+        RandomizedEigenSolver solver = new RandomizedEigenSolver(normalized, nullSpace, 2);
+        solver.setOversampling(oversampling);
+        solver.setPowerIterations(powerIterations);
+        solver.solve(k - zeros);
+        for (double residual : solver.getResiduals()) {
+          lastErrorEstimate = Math.max(lastErrorEstimate, residual);
+        }
+        System.arraycopy(solver.getEigenvalues(), 0, eigenvalues, zeros, k - zeros);
+        System.arraycopy(solver.getEigenvectors(), 0, vectors, zeros, k - zeros);
+      } else if (k > zeros) {
+        // The basis holds twice the wanted eigenpairs, with a minimum for small k.
+        int basisSize =
+            Math.min(n - nullSpace.length, Math.max(2 * (k - zeros) + 1, k - zeros + 32));
+        LanczosEigenSolver solver = new LanczosEigenSolver(normalized, nullSpace);
+        if (start != null && start.getNodesNumber() == n) {
+          // The start eigenvectors x of F*L1 are S x in the symmetric problem.
+          double[][] startVectors = new double[start.getSize()][n];
+          for (int j = 0; j < start.getSize(); j++) {
+            for (int i = 0; i < n; i++) {
+              startVectors[j][i] = start.getVectors()[j][i] * scale[i];
+            }
+          }
+          solver.setStartVectors(startVectors);
+        }
+        solver.solve(k - zeros, basisSize);
+        lastRestarts = solver.getRestarts();
+        lastProducts = solver.getProducts();
+        System.arraycopy(solver.getEigenvalues(), 0, eigenvalues, zeros, k - zeros);
+        System.arraycopy(solver.getEigenvectors(), 0, vectors, zeros, k - zeros);
+      }
+    }
+    // Back to the eigenvectors of F*L1, with unit norm as returned by eig.
+    for (double[] vector : vectors) {
+      double norm = 0;
+      for (int i = 0; i < n; i++) {
+        vector[i] /= scale[i];
+        norm += vector[i] * vector[i];
+      }
+      norm = Math.sqrt(norm);
+      for (int i = 0; i < n; i++) {
+        vector[i] /= norm;
+      }
+    }
+    return new SpectralBasis(eigenvalues, vectors, lastErrorEstimate);
+  }
+
+  /**
+   * Get the number of nodes as the max node id of the two graphs.
+   *
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @return number of nodes.
+   */
+  public static int getNodesNumber(double[][] graph1, double[][] graph2) {
+    int nodesNumber = 0;
+    for (double[][] graph : new double[][][] {graph1, graph2}) {
+      for (double[] edge : graph) {
+        nodesNumber = (int) Math.max(nodesNumber, Math.max(edge[0], edge[1]));
+      }
+    }
+    return nodesNumber;
+  }
+
+  /**
+   * Null space of the normalized Laplacian, the vectors S 1_c of each connected component c
+   * scaled to unit norm, ordered by the smallest node of the components.
+   */
+  private static double[][] getNullSpace(SparseMatrix adjacency, double[] scale) {
+    int n = adjacency.getSize();
+    int[] offsets = adjacency.getOffsets();
+    int[] columns = adjacency.getColumns();
+    double[] values = adjacency.getValues();
+    int[] component = new int[n];
+    Arrays.fill(component, -1);
+    int components = 0;
+    ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+    for (int seed = 0; seed < n; seed++) {
+      if (component[seed] >= 0) {
+        continue;
+      }
+      component[seed] = components;
+      queue.add(seed);
+      while (!queue.isEmpty()) {
+        int node = queue.poll();
+        for (int p = offsets[node]; p < offsets[node + 1]; p++) {
+          if (values[p] != 0 && component[columns[p]] < 0) {
+            component[columns[p]] = components;
+            queue.add(columns[p]);
+          }
+        }
+      }
+      components++;
+    }
+    double[][] nullSpace = new double[components][n];
+    double[] norms = new double[components];
+    for (int i = 0; i < n; i++) {
+      nullSpace[component[i]][i] = scale[i];
+      norms[component[i]] += scale[i] * scale[i];
+    }
+    for (int c = 0; c < components; c++) {
+      double norm = Math.sqrt(norms[c]);
+      for (int i = 0; i < n; i++) {
+        nullSpace[c][i] /= norm;
+      }
+    }
+    return nullSpace;
+  }
+
+  /**
+   * Eigenvectors of the eigenproblem projected v = s metric v, or projected v = s v if the metric
+   * is null, sorted by decreasing eigenvalue and scaled to unit norm as returned by eig.
+   */
+  private static double[][] solveLargest(double[][] projected, double[][] metric) {
+    int size = projected.length;
+    double[][] matrix = new double[size][size];
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j <= i; j++) {
+        matrix[i][j] = (projected[i][j] + projected[j][i]) / 2;
+      }
+    }
+    // Cholesky factor of the metric, the generalized problem becomes
+    // L^-1 projected L^-T z = s z with v = L^-T z.
+    double[][] cholesky = null;
+    if (metric != null) {
+      cholesky = new double[size][size];
+      for (int j = 0; j < size; j++) {
+        double sum = metric[j][j];
+        for (int p = 0; p < j; p++) {
+          sum -= cholesky[j][p] * cholesky[j][p];
+        }
+        if (sum <= 0) {
+          throw new IllegalStateException("The projected metric is not positive definite");
+        }
+        cholesky[j][j] = Math.sqrt(sum);
+        for (int i = j + 1; i < size; i++) {
+          double value = (metric[i][j] + metric[j][i]) / 2;
+          for (int p = 0; p < j; p++) {
+            value -= cholesky[i][p] * cholesky[j][p];
+          }
+          cholesky[i][j] = value / cholesky[j][j];
+        }
+      }
+      // matrix = L^-1 matrix L^-T, column by column then row by row.
+      double[][] full = new double[size][size];
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j <= i; j++) {
+          full[i][j] = matrix[i][j];
+          full[j][i] = matrix[i][j];
+        }
+      }
+      for (int j = 0; j < size; j++) {
+        solveLower(cholesky, full, j);
+      }
+      double[][] transposed = new double[size][size];
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          transposed[j][i] = full[i][j];
+        }
+      }
+      for (int j = 0; j < size; j++) {
+        solveLower(cholesky, transposed, j);
+      }
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j <= i; j++) {
+          matrix[i][j] = (transposed[i][j] + transposed[j][i]) / 2;
+        }
+      }
+    }
+    double[][] vectors = new SymmetricEigenDecomposition(matrix).getEigenvectors();
+    double[][] v = new double[size][];
+    for (int c = 0; c < size; c++) {
+      v[c] = vectors[size - 1 - c].clone();
+      if (cholesky != null) {
+        // v = L^-T z.
+        for (int i = size - 1; i >= 0; i--) {
+          double value = v[c][i];
+          for (int p = i + 1; p < size; p++) {
+            value -= cholesky[p][i] * v[c][p];
+          }
+          v[c][i] = value / cholesky[i][i];
+        }
+        double norm = Math.sqrt(dot(v[c], v[c]));
+        for (int i = 0; i < size; i++) {
+          v[c][i] /= norm;
+        }
+      }
+    }
+    return v;
+  }
+
+  /**
+   * Replace column j of matrix by L^-1 times it, where L is lower triangular.
+   */
+  private static void solveLower(double[][] lower, double[][] matrix, int j) {
+    int size = lower.length;
+    for (int i = 0; i < size; i++) {
+      double value = matrix[i][j];
+      for (int p = 0; p < i; p++) {
+        value -= lower[i][p] * matrix[p][j];
+      }
+      matrix[i][j] = value / lower[i][i];
+    }
+  }
+
+  /**
+   * Distortion values of each measure, the squares of its distortion vectors stacked column wise.
+   */
+  private static double[][] square(double[][][] distortionVectors) {
+    double[][] distortionValues = new double[distortionVectors.length][];
+    for (int m = 0; m < distortionVectors.length; m++) {
+      double[][] vectors = distortionVectors[m];
+      int nodesNumber = vectors.length == 0 ? 0 : vectors[0].length;
+      double[] values = new double[nodesNumber * vectors.length];
+      for (int c = 0; c < vectors.length; c++) {
+        for (int i = 0; i < nodesNumber; i++) {
+          values[c * nodesNumber + i] = vectors[c][i] * vectors[c][i];
+        }
+      }
+      distortionValues[m] = values;
+    }
+    return distortionValues;
+  }
+
+  /**
+   * Dot product of two vectors.
+   */
+  private static double dot(double[] x, double[] y) {
+    double sum = 0;
+    for (int i = 0; i < x.length; i++) {
+      sum += x[i] * y[i];
+    }
+    return sum;
+  }
+}
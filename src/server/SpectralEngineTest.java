@@ -0,0 +1,168 @@
+package server;
+
+import java.util.Random;
+
+/**
+ * Tests of the Java spectral engine, run with java server.SpectralEngineTest. The eigenvalues of
+ * the Lanczos and randomized solvers are checked against SymmetricEigenDecomposition on a graph
+ * above the dense solver size with several connected components, and the six measures are
+ * checked to return nodesNumber x r values that don't depend on the signs of the eigenvectors.
+ */
+public class SpectralEngineTest {
+
+  // Number of nodes of the test graph, above the size decomposed with the dense solver.
+  private static final int NODES_NUMBER = 1500;
+  // Number of connected components of the test graph.
+  private static final int COMPONENTS = 3;
+  // Number of eigenpairs compared, with the zero eigenvalues of the components.
+  private static final int K = 20;
+  // Max difference of the Lanczos eigenvalues with the dense ones.
+  private static final double LANCZOS_TOLERANCE = 1e-10;
+
+  /**
+   * Random graph of nodesNumber nodes split in components, each a random spanning tree with extra
+   * random edges, with each edge in both directions.
+   *
+   * @param nodesNumber number of nodes.
+   * @param components number of connected components.
+   * @param seed seed of the random edges.
+   * @return edges where each index has from node id, to node id and edge value.
+   */
+  static double[][] getGraph(int nodesNumber, int components, long seed) {
+    Random random = new Random(seed);
+    int size = nodesNumber / components;
+    double[][] edges = new double[2 * 3 * nodesNumber][];
+    int count = 0;
+    for (int i = 1; i < nodesNumber; i++) {
+      int component = Math.min(i / size, components - 1);
+      int first = component * size;
+      if (i == first) {
+        continue;
+      }
+      // A tree edge to an earlier node of the component, and an extra random edge in it.
+      int end = component == components - 1 ? nodesNumber : first + size;
+      int[] neighbors = {first + random.nextInt(i - first), first + random.nextInt(end - first)};
+      for (int neighbor : neighbors) {
+        if (neighbor != i) {
+          edges[count++] = new double[] {i + 1, neighbor + 1, 1};
+          edges[count++] = new double[] {neighbor + 1, i + 1, 1};
+        }
+      }
+    }
+    double[][] graph = new double[count][];
+    System.arraycopy(edges, 0, graph, 0, count);
+    return graph;
+  }
+
+  /**
+   * Smallest eigenvalues of F*L1 from the dense decomposition of the normalized Laplacian.
+   */
+  private static double[] getDenseEigenvalues(SparseMatrix adjacency, int k) {
+    double[] degrees = adjacency.getRowSums();
+    double[] scale = new double[degrees.length];
+    for (int i = 0; i < degrees.length; i++) {
+      scale[i] = Math.sqrt(degrees[i] + 1);
+    }
+    double[] eigenvalues =
+        new SymmetricEigenDecomposition(new NormalizedLaplacianOperator(adjacency, degrees, scale)
+            .toDense()).getEigenvalues();
+    double[] smallest = new double[k];
+    System.arraycopy(eigenvalues, 0, smallest, 0, k);
+    return smallest;
+  }
+
+  /**
+   * Check the eigenvalues of a basis against the dense ones.
+   */
+  private static void checkEigenvalues(String solver, SpectralBasis basis, double[] expected,
+      double tolerance) {
+    double maxDifference = 0;
+    for (int i = 0; i < expected.length; i++) {
+      maxDifference =
+          Math.max(maxDifference, Math.abs(basis.getEigenvalues()[i] - expected[i]));
+    }
+    check(maxDifference <= tolerance, solver + " eigenvalues differ from the dense ones by "
+        + maxDifference);
+    System.out.println(solver + " max eigenvalue difference " + maxDifference);
+  }
+
+  /**
+   * Check that the Lanczos and randomized eigenvalues match the dense ones.
+   */
+  static void testEigenvalues() {
+    check(NODES_NUMBER > SpectralEngine.DENSE_MAX_NODES, "the graph is decomposed densely");
+    SparseMatrix adjacency =
+        SparseMatrix.fromEdges(getGraph(NODES_NUMBER, COMPONENTS, 1), NODES_NUMBER);
+    double[] expected = getDenseEigenvalues(adjacency, K);
+    // The components give as many zero eigenvalues.
+    check(Math.abs(expected[COMPONENTS - 1]) < 1e-10 && expected[COMPONENTS] > 1e-5,
+        "the graph doesn't have " + COMPONENTS + " components");
+    SpectralBasis lanczos = new SpectralEngine().computeBasis(adjacency, K);
+    checkEigenvalues("Lanczos", lanczos, expected, LANCZOS_TOLERANCE);
+    SpectralEngine engine = new SpectralEngine();
+    engine.setRandomized(0, RandomizedEigenSolver.DEFAULT_OVERSAMPLING,
+        RandomizedEigenSolver.DEFAULT_POWER_ITERATIONS);
+    SpectralBasis randomized = engine.computeBasis(adjacency, K);
+    // Each approximate eigenvalue is within its residual norm of the eigenvalues of the matrix.
+    check(randomized.getErrorEstimate() > 0, "the randomized basis has no error estimate");
+    checkEigenvalues("Randomized", randomized, expected, randomized.getErrorEstimate());
+  }
+
+  /**
+   * Check that the six measures return nodesNumber x r values, which are the same when the signs
+   * of the eigenvectors are flipped.
+   */
+  static void testMeasures() {
+    int r = 10;
+    double[][] graph1 = getGraph(NODES_NUMBER, COMPONENTS, 1);
+    double[][] graph2 = getGraph(NODES_NUMBER, COMPONENTS, 2);
+    SparseMatrix adjacency1 = SparseMatrix.fromEdges(graph1, NODES_NUMBER);
+    SparseMatrix adjacency2 = SparseMatrix.fromEdges(graph2, NODES_NUMBER);
+    SpectralEngine engine = new SpectralEngine();
+    SpectralBasis basis = engine.computeBasis(adjacency1, K);
+    double[][] flipped = new double[basis.getSize()][];
+    for (int j = 0; j < flipped.length; j++) {
+      flipped[j] = basis.getVectors()[j].clone();
+      if (j % 2 == 1) {
+        for (int i = 0; i < NODES_NUMBER; i++) {
+          flipped[j][i] = -flipped[j][i];
+        }
+      }
+    }
+    SpectralBasis flippedBasis = new SpectralBasis(basis.getEigenvalues(), flipped);
+    for (String measure : SpectralEngine.MEASURES) {
+      double[] values = engine.getDistortionValues(basis, adjacency1, adjacency2, r, measure);
+      double[] flippedValues =
+          engine.getDistortionValues(flippedBasis, adjacency1, adjacency2, r, measure);
+      check(values.length == NODES_NUMBER * r, measure + " returns " + values.length
+          + " values instead of " + NODES_NUMBER * r);
+      double scale = 0;
+      double maxDifference = 0;
+      for (int i = 0; i < values.length; i++) {
+        scale = Math.max(scale, Math.abs(values[i]));
+        maxDifference = Math.max(maxDifference, Math.abs(values[i] - flippedValues[i]));
+      }
+      check(maxDifference <= 1e-8 * Math.max(scale, 1), measure
+          + " depends on the signs of the eigenvectors, max difference " + maxDifference);
+    }
+  }
+
+  /**
+   * Fail the test with a message if a condition doesn't hold.
+   */
+  static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new AssertionError(message);
+    }
+  }
+
+  /**
+   *
+   * @param args argument sent to the program.
+   */
+  public static void main(String[] args) {
+    testEigenvalues();
+    testMeasures();
+    System.out.println("SpectralEngineTest passed");
+  }
+}
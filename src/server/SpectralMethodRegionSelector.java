@@ -10,9 +10,6 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.PriorityQueue;
 import java.util.Queue;
 
@@ -35,6 +32,9 @@ public class SpectralMethodRegionSelector {
 	private double minDelta;
 	// Max delta change of a node.
 	private double maxDelta;
+	// Max Jaccard similarity allowed between the returned regions, 1 allows
+	// any overlap.
+	private double maxJaccard = 1.0;
 
 	/**
 	 * RegionSelector constructor which loads the nodes and their distortion
@@ -269,29 +269,33 @@ public class SpectralMethodRegionSelector {
 	}
 
 	/**
-	 * Given a graph, convert it to String[] format, where each String cell
-	 * represents an edge in the following format (edge_source,
-	 * edge_destination).
+	 * Convert a region given as its BFS graph to a RegionResult.
 	 * 
 	 * @param graph
-	 *            to be converted.
-	 * @return String[] of edges.
+	 *            BFS graph of the region, where each node maps to its
+	 *            neighbors within the region.
+	 * @param score
+	 *            used to rank the region.
+	 * @return region result.
 	 */
-	public String[] convertGraphToArray(HashMap<SpectralNode, HashSet<SpectralNode>> graph) {
-		ArrayList<String> edges = new ArrayList<String>();
+	public RegionResult convertGraphToResult(
+			HashMap<SpectralNode, HashSet<SpectralNode>> graph, double score) {
+		int[] vertices = new int[graph.size()];
+		int edgesNumber = 0;
+		for (HashSet<SpectralNode> neighbors : graph.values()) {
+			edgesNumber += neighbors.size();
+		}
+		int[] edges = new int[2 * edgesNumber];
+		int verticesIndex = 0;
+		int edgesIndex = 0;
 		for (SpectralNode node : graph.keySet()) {
-			HashSet<SpectralNode> neighbors = graph.get(node);
-			for (SpectralNode neighbor : neighbors) {
-				edges.add(node.getId() + "," + neighbor.getId());
+			vertices[verticesIndex++] = node.getId();
+			for (SpectralNode neighbor : graph.get(node)) {
+				edges[edgesIndex++] = node.getId();
+				edges[edgesIndex++] = neighbor.getId();
 			}
 		}
-		String[] edgesArray = new String[edges.size()];
-		int index = 0;
-		for (String edge : edges) {
-			edgesArray[index] = edge;
-			index++;
-		}
-		return edgesArray;
+		return new RegionResult(vertices, edges, score);
 	}
 
 	/**
@@ -301,48 +305,277 @@ public class SpectralMethodRegionSelector {
 	 *            Number of distortion regions to return.
 	 * @param maxNodes
 	 *            Max number of nodes in each region.
-	 * @param overlappingThreshold
-	 *            max overlapping in number of nodes between regions.
 	 * @param bfsSelection
 	 *            0 means BFS, 1 means Biased BFS and 2 means BFS with priority
 	 *            queue.
-	 * @return HashMap<Integer, String[]> where the key is the region number and
-	 *         the values are String array of edges in the following format
-	 *         (edge.source, edge.destination).
+	 * @return HashMap<Integer, RegionResult> where the key is the region
+	 *         number and the values are the regions, scored by the distortion
+	 *         value of the node they are grown from.
+	 */
+	public HashMap<Integer, RegionResult> getRegions(int regionNum,
+			int maxNodes, int bfsSelection) {
+		return getRegions(regionNum, new int[] { maxNodes }, bfsSelection).get(
+				maxNodes);
+	}
+
+	/**
+	 * Get the top-regionNum distortion regions, on a graph pair built by
+	 * getGraphPair.
+	 * 
+	 * @param regionNum
+	 *            Number of distortion regions to return.
+	 * @param maxNodes
+	 *            Max number of nodes in each region.
+	 * @param bfsSelection
+	 *            0 means BFS, 1 means Biased BFS and 2 means BFS with priority
+	 *            queue.
+	 * @param graphPair
+	 *            indexed snapshot of the graph of this selector, as graph2.
+	 * @return regions as returned by getRegions.
+	 */
+	public HashMap<Integer, RegionResult> getRegions(int regionNum,
+			int maxNodes, int bfsSelection,
+			IndexedGraphPair<SpectralNode> graphPair) {
+		return getRegions(regionNum, new int[] { maxNodes }, bfsSelection,
+				graphPair).get(maxNodes);
+	}
+
+	/**
+	 * Get the top-regionNum distortion regions of several sizes at once. The
+	 * region of size s grown from a node is made of the first s nodes admitted
+	 * by the traversal, so each node is traversed once up to the largest size
+	 * and its prefixes give the regions of the smaller sizes.
+	 * 
+	 * @param regionNum
+	 *            Number of distortion regions to return for each size.
+	 * @param maxNodes
+	 *            Numbers of nodes in each region to return the regions of.
+	 * @param bfsSelection
+	 *            0 means BFS, 1 means Biased BFS and 2 means BFS with priority
+	 *            queue.
+	 * @return HashMap<Integer, HashMap<Integer, RegionResult>> where the key
+	 *         is the number of nodes in each region and the values are the
+	 *         regions of this size as returned by getRegions.
+	 */
+	public HashMap<Integer, HashMap<Integer, RegionResult>> getRegions(
+			int regionNum, int[] maxNodes, int bfsSelection) {
+		return getRegions(regionNum, maxNodes, bfsSelection,
+				getGraphPair(graph, nodes));
+	}
+
+	/**
+	 * Get the top-regionNum distortion regions of several sizes at once, on
+	 * a graph pair built by getGraphPair.
+	 * 
+	 * @param regionNum
+	 *            Number of distortion regions to return for each size.
+	 * @param maxNodes
+	 *            Numbers of nodes in each region to return the regions of.
+	 * @param bfsSelection
+	 *            0 means BFS, 1 means Biased BFS and 2 means BFS with priority
+	 *            queue.
+	 * @param graphPair
+	 *            indexed snapshot of the graph of this selector, as graph2.
+	 * @return regions of each size as returned by getRegions.
 	 */
-	public HashMap<Integer, String[]> getRegions(int regionNum, int maxNodes,
-			int bfsSelection) {
-		HashMap<Integer, String[]> regions = new HashMap<Integer, String[]>();
+	public HashMap<Integer, HashMap<Integer, RegionResult>> getRegions(
+			int regionNum, int[] maxNodes, int bfsSelection,
+			IndexedGraphPair<SpectralNode> graphPair) {
+		return selectRegions(graphPair, new RegionTraversal(graphPair),
+				regionNum, maxNodes, bfsSelection, maxJaccard);
+	}
+
+	/**
+	 * Build the indexed snapshot of graph1 and of the graph of this selector
+	 * as graph2, seeded from the highest distortion value. The same snapshot
+	 * serves getRegions on this selector and getMapping on the graph1
+	 * selector, so the graphs are indexed once.
+	 * 
+	 * @param graph1
+	 *            adjacency list.
+	 * @param node1Mapping
+	 *            mapping between node ids and graph1 node objects.
+	 * @return indexed graph pair.
+	 */
+	public IndexedGraphPair<SpectralNode> getGraphPair(
+			HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph1,
+			HashMap<Integer, SpectralNode> node1Mapping) {
 		// Sort the nodes based on their distortion values descendingly.
 		Collections.sort(nodesList);
-		// Nodes selected in any region.
-		int index = 1; // Index of current region.
-		for (int i = 0; i < nodesList.size(); i++) {
-			SpectralNode node = nodesList.get(i);
-			// Start BFS from node i.
-			HashMap<SpectralNode, HashSet<SpectralNode>> bfsGraph = null;
-			if (bfsSelection == 0) {
-				bfsGraph = BFS(nodes.get(node.getId()), maxNodes);
-			} else if (bfsSelection == 1) {
-				bfsGraph = BFSBiased(nodes.get(node.getId()), maxNodes);
-			} else {
-				bfsGraph = BFSPriorityQueue(nodes.get(node.getId()), maxNodes);
-			}
-			if (bfsGraph.size() != maxNodes) { // Ensure that each returned
-												// region is exactly equal to
-												// the
-												// max nodes.
+		return IndexedGraphPair.fromSpectralGraphs(graph1, node1Mapping, graph,
+				nodes, nodesList);
+	}
+
+	/**
+	 * Select the top-regionNum distortion regions of several sizes, growing
+	 * them from the seeds of the graph pair in order and skipping the masked
+	 * seeds.
+	 * 
+	 * @param graphPair
+	 *            to grow the regions on, its seeds are ordered from the
+	 *            highest distortion value.
+	 * @param traversal
+	 *            over the graph pair, with the removed nodes masked.
+	 * @param regionNum
+	 *            Number of distortion regions to return for each size.
+	 * @param maxNodes
+	 *            Numbers of nodes in each region to return the regions of.
+	 * @param bfsSelection
+	 *            0 means BFS, 1 means Biased BFS and 2 means BFS with priority
+	 *            queue.
+	 * @param maxJaccard
+	 *            max Jaccard similarity allowed between the regions of a size.
+	 * @return regions of each size as returned by getRegions.
+	 */
+	static HashMap<Integer, HashMap<Integer, RegionResult>> selectRegions(
+			IndexedGraphPair<SpectralNode> graphPair, RegionTraversal traversal,
+			int regionNum, int[] maxNodes, int bfsSelection, double maxJaccard) {
+		TraversalMethods traversalMethod = bfsSelection == 0 ? TraversalMethods.BFS
+				: bfsSelection == 1 ? TraversalMethods.BiasedBFS
+						: TraversalMethods.BFSPriorityQueue;
+		int maxSize = 0;
+		HashMap<Integer, HashMap<Integer, RegionResult>> sizeRegions = new HashMap<Integer, HashMap<Integer, RegionResult>>();
+		ArrayList<Integer> sizes = new ArrayList<Integer>();
+		ArrayList<DiverseRegionSelector<SpectralNode>> selectors = new ArrayList<DiverseRegionSelector<SpectralNode>>();
+		for (int size : maxNodes) {
+			if (sizeRegions.containsKey(size)) {
 				continue;
 			}
-			// Convert BFSgraph into edges array format.
-			String[] edges = convertGraphToArray(bfsGraph);
-			regions.put(index, edges);
-			index++;
-			if (index > regionNum) { // Calculated all regions.
+			maxSize = Math.max(maxSize, size);
+			sizeRegions.put(size, new HashMap<Integer, RegionResult>());
+			sizes.add(size);
+			// Nodes selected in any region of this size.
+			selectors.add(new DiverseRegionSelector<SpectralNode>(regionNum,
+					maxJaccard));
+		}
+		boolean[] inRegion = new boolean[graphPair.getNodesNumber()];
+		int pendingSizes = sizes.size();
+		for (int seed : graphPair.getSeeds()) {
+			if (pendingSizes == 0 || regionNum <= 0) { // Calculated all regions.
 				break;
 			}
+			if (traversal.isMasked(seed)) { // Removed by the threshold.
+				continue;
+			}
+			// Start the traversal from the seed once for all the sizes.
+			int regionSize = traversal.traverse(seed, maxSize, traversalMethod,
+					(int) GraphServlet.getBiasedK());
+			int[] members = traversal.getMembers();
+			for (int s = 0; s < sizes.size(); s++) {
+				int size = sizes.get(s);
+				HashMap<Integer, RegionResult> regions = sizeRegions.get(size);
+				// Ensure that each returned region is exactly equal to the
+				// max nodes.
+				if (regions.size() == regionNum || regionSize < size
+						|| size <= 0) {
+					continue;
+				}
+				// Skip regions overlapping a higher region of this size.
+				if (!selectors.get(s).offer(members, size)) {
+					continue;
+				}
+				regions.put(regions.size() + 1, new RegionResult(getRegionIds(
+						graphPair, members, size), getRegionEdges(
+						graphPair.getOffsets2(), graphPair.getNeighbors2(),
+						graphPair, members, size, inRegion), graphPair
+						.getPriorities()[seed]));
+				if (regions.size() == regionNum) {
+					pendingSizes--;
+				}
+			}
 		}
-		return regions;
+		return sizeRegions;
+	}
+
+	/**
+	 * Get the edges within a region given as node indices, the same edges as
+	 * convertGraphToResult on the region subgraph.
+	 * 
+	 * @param offsets
+	 *            adjacency offsets of the graph to take the edges from.
+	 * @param neighbors
+	 *            adjacency of the graph to take the edges from.
+	 * @param graphPair
+	 *            containing the region nodes.
+	 * @param members
+	 *            indices of the region nodes.
+	 * @param membersNumber
+	 *            number of first members forming the region.
+	 * @param inRegion
+	 *            membership marks, all false before and after the call.
+	 * @return edges as (source, destination) node id pairs.
+	 */
+	static int[] getRegionEdges(int[] offsets, int[] neighbors,
+			IndexedGraphPair<SpectralNode> graphPair, int[] members,
+			int membersNumber, boolean[] inRegion) {
+		for (int i = 0; i < membersNumber; i++) {
+			inRegion[members[i]] = true;
+		}
+		IndexedGraphPair.IntList edges = new IndexedGraphPair.IntList();
+		for (int i = 0; i < membersNumber; i++) {
+			int member = members[i];
+			for (int j = offsets[member]; j < offsets[member + 1]; j++) {
+				if (inRegion[neighbors[j]]) {
+					edges.add(graphPair.getNode(member).getId());
+					edges.add(graphPair.getNode(neighbors[j]).getId());
+				}
+			}
+		}
+		for (int i = 0; i < membersNumber; i++) {
+			inRegion[members[i]] = false;
+		}
+		return edges.toArray();
+	}
+
+	/**
+	 * Get the node ids of the first members of a region.
+	 */
+	private static int[] getRegionIds(IndexedGraphPair<SpectralNode> graphPair,
+			int[] members, int membersNumber) {
+		int[] ids = new int[membersNumber];
+		for (int i = 0; i < membersNumber; i++) {
+			ids[i] = graphPair.getNode(members[i]).getId();
+		}
+		return ids;
+	}
+
+	/**
+	 * Get the indices of the nodes of a region.
+	 * 
+	 * @param region
+	 *            containing the node ids.
+	 * @param graphPair
+	 *            containing the region nodes.
+	 * @param nodeMapping
+	 *            mapping between node ids and the indexed node objects.
+	 * @return indices of the region nodes.
+	 */
+	static int[] getRegionMembers(RegionResult region,
+			IndexedGraphPair<SpectralNode> graphPair,
+			HashMap<Integer, SpectralNode> nodeMapping) {
+		int[] vertices = region.getVertices();
+		int[] members = new int[vertices.length];
+		int membersNumber = 0;
+		for (int vertex : vertices) {
+			int member = graphPair.getIndex(nodeMapping.get(vertex));
+			if (member >= 0) {
+				members[membersNumber++] = member;
+			}
+		}
+		return Arrays.copyOf(members, membersNumber);
+	}
+
+	/**
+	 * Get the change value of a region as the average delta change of its
+	 * nodes.
+	 */
+	private double getRegionChangeValue(
+			IndexedGraphPair<SpectralNode> graphPair, int[] members) {
+		double distortionValue = 0.0;
+		for (int member : members) {
+			distortionValue += graphPair.getDeltas()[member];
+		}
+		return distortionValue / members.length;
 	}
 
 	/**
@@ -352,13 +585,10 @@ public class SpectralMethodRegionSelector {
 	 *            Number of distortion regions to return.
 	 * @param maxNodes
 	 *            Max number of nodes in each region.
-	 * @param overlappingThreshold
-	 *            max overlapping in number of nodes between regions.
-	 * @return HashMap<Integer, String[]> where the key is the region number and
-	 *         the values are String array of edges in the following format
-	 *         (edge.source, edge.destination).
+	 * @return ArrayList of the regions from the highest distortion value to
+	 *         the lowest, each one scored by its distortion value.
 	 */
-	public HashMap<String, String[]> getRegionsExhastiveSearch(int regionNum,
+	public ArrayList<RegionResult> getRegionsExhastiveSearch(int regionNum,
 			int maxNodes, HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph1,
 			HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph2,
 			HashMap<Integer, SpectralNode> node1Mapping,
@@ -406,14 +636,17 @@ public class SpectralMethodRegionSelector {
 		// Sort the regions based on distortion values from the highest to the
 		// smallest.
 		Collections.sort(regionsList);
-		HashMap<String, String[]> regions = new HashMap<String, String[]>();
-		int index = 1; // Index of current region.
+		ArrayList<RegionResult> regions = new ArrayList<RegionResult>();
+		DiverseRegionSelector<SpectralNode> selector = new DiverseRegionSelector<SpectralNode>(
+				regionNum, maxJaccard);
 		for (SpectralRegion region : regionsList) {
-			// Convert BFSgraph into edges array format.
-			String[] edges = convertGraphToArray(region.getNodes());
-			regions.put(index + " " + region.getDistortionValues(), edges);
-			index++;
-			if (index > regionNum) {
+			if (!selector.offer(region.getNodes().keySet())) { // Overlaps a
+																// higher region.
+				continue;
+			}
+			regions.add(convertGraphToResult(region.getNodes(),
+					region.getDistortionValues()));
+			if (regions.size() >= regionNum) {
 				break;
 			}
 		}
@@ -425,83 +658,55 @@ public class SpectralMethodRegionSelector {
 	 * 
 	 * @param graph2Results
 	 *            region results of graph 2.
-	 * @return corresponding subgraphs in graph 1.
+	 * @return corresponding subgraphs in graph 1, as the region results of
+	 *         graph 2 with their graph 1 edges and evaluation measures set.
 	 */
-	public HashMap<Integer, String[]> getMapping(
-			HashMap<Integer, String[]> graph2Results,
+	public HashMap<Integer, RegionResult> getMapping(
+			HashMap<Integer, RegionResult> graph2Results,
 			HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph1,
 			HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph2,
 			HashMap<Integer, SpectralNode> node2Mapping, int regionMax) {
-		evaluationMeasures = new double[6];
-		HashMap<Integer, String[]> graph1Results = new HashMap<Integer, String[]>();
-		int regionCount = 1;
+		return getMapping(graph2Results, IndexedGraphPair.fromSpectralGraphs(
+				graph1, nodes, graph2, node2Mapping,
+				new ArrayList<SpectralNode>()), node2Mapping, regionMax);
+	}
+
+	/**
+	 * Get subgraphs of graph 1 that correspond to same subgraphs in graph 2,
+	 * on a graph pair built by getGraphPair on the graph2 selector.
+	 * 
+	 * @param graph2Results
+	 *            region results of graph 2.
+	 * @param graphPair
+	 *            indexed snapshot of graph1 and graph2.
+	 * @param node2Mapping
+	 *            mapping between node ids and graph2 node objects.
+	 * @param regionMax
+	 *            number of the highest regions to map.
+	 * @return corresponding subgraphs in graph 1, as the region results of
+	 *         graph 2 with their graph 1 edges and evaluation measures set.
+	 */
+	public HashMap<Integer, RegionResult> getMapping(
+			HashMap<Integer, RegionResult> graph2Results,
+			IndexedGraphPair<SpectralNode> graphPair,
+			HashMap<Integer, SpectralNode> node2Mapping, int regionMax) {
+		HashMap<Integer, RegionResult> graph1Results = new HashMap<Integer, RegionResult>();
+		// We only take the highest regions in each one of the singular
+		// vectors.
+		ArrayList<Integer> selectedRegions = new ArrayList<Integer>();
 		for (int region : graph2Results.keySet()) {
-			String[] edges = graph2Results.get(region);
-			// Retrieve the nodes that appeared in this subgraph2.
-			HashSet<SpectralNode> graph2Nodes = new HashSet<SpectralNode>();
-			for (String edge : edges) {
-				String[] edgeNodes = edge.split(",");
-				SpectralNode node1 = nodes.get(Integer.parseInt(edgeNodes[0]));
-				SpectralNode node2 = nodes.get(Integer.parseInt(edgeNodes[1]));
-				graph2Nodes.add(node1);
-				graph2Nodes.add(node2);
-			}
-			// Construct the corresponding subgraph 1.
-			HashMap<SpectralNode, HashSet<SpectralNode>> subgraph1 = new HashMap<SpectralNode, HashSet<SpectralNode>>();
-			double distortionValue = 0.0;
-			double edgesWithinRegionInGraph1 = 0.0;
-			double edgesWithinRegionInGraph2 = 0.0;
-			double regionNodesDegreeInGraph1 = 0.0;
-			double regionNodesDegreeInGraph2 = 0.0;
-			for (SpectralNode node : graph2Nodes) {
-				// Get the nodes that are connected to this node in graph2.
-				HashMap<SpectralNode, Integer> graph1Nodes = graph1.get(nodes.get(node
-						.getId()));
-				regionNodesDegreeInGraph1 += graph1Nodes.size();
-				HashMap<SpectralNode, Integer> graph2NodeNeibours = graph2
-						.get(node2Mapping.get(node.getId()));
-				regionNodesDegreeInGraph2 += graph2NodeNeibours.size();
-				// Only keep nodes that appear in subgraph1.
-				HashSet<SpectralNode> subNodes = new HashSet<SpectralNode>();
-				for (SpectralNode graph1Node : graph1Nodes.keySet()) {
-					if (graph2Nodes.contains(graph1Node)) {
-						subNodes.add(graph1Node);
-						edgesWithinRegionInGraph1++;
-					}
-				}
-				subgraph1.put(node, subNodes);
-				distortionValue = distortionValue + node.getDelta();
-				for (SpectralNode graph2Node : graph2NodeNeibours.keySet()) {
-					if (graph2Nodes.contains(nodes.get(graph2Node.getId()))) {
-						edgesWithinRegionInGraph2++;
-					}
-				}
-			}
-			if (regionCount <= regionMax) { // We only take the highest region
-											// in each one of the singular
-											// vectors.
-				regionChangeValue = distortionValue / graph2Nodes.size();
-				evaluationMeasures[0] += distortionValue
-						/ Math.max(1, edgesWithinRegionInGraph1);
-				evaluationMeasures[1] += distortionValue
-						/ Math.max(1, edgesWithinRegionInGraph2);
-				evaluationMeasures[2] += distortionValue
-						/ Math.min(Math.max(1, edgesWithinRegionInGraph1),
-								Math.max(1, edgesWithinRegionInGraph2));
-				evaluationMeasures[3] += distortionValue
-						/ Math.max(1, regionNodesDegreeInGraph1);
-				evaluationMeasures[4] += distortionValue
-						/ Math.max(1, regionNodesDegreeInGraph2);
-				evaluationMeasures[5] += distortionValue
-						/ Math.min(Math.max(1, regionNodesDegreeInGraph1),
-								Math.max(1, regionNodesDegreeInGraph2));
-			} else {
+			if (selectedRegions.size() >= regionMax) {
 				break;
 			}
-			regionCount++;
-			// Convert to the array format.
-			String[] subGraphArray = convertGraphToArray(subgraph1);
-			graph1Results.put(region, subGraphArray);
+			selectedRegions.add(region);
+		}
+		ArrayList<RegionResult> regions = new ArrayList<RegionResult>();
+		for (int region : selectedRegions) {
+			regions.add(graph2Results.get(region));
+		}
+		mapRegions(regions, graphPair, node2Mapping);
+		for (int i = 0; i < regions.size(); i++) {
+			graph1Results.put(selectedRegions.get(i), regions.get(i));
 		}
 		return graph1Results;
 	}
@@ -511,116 +716,86 @@ public class SpectralMethodRegionSelector {
 	 * 
 	 * @param graph2Results
 	 *            region results of graph 2.
-	 * @return corresponding subgraphs in graph 1.
+	 * @return corresponding subgraphs in graph 1, as the highest regionMax
+	 *         region results of graph 2 with their graph 1 edges and
+	 *         evaluation measures set. All the regionMax regions are
+	 *         returned, the same regions as the measures of
+	 *         getRegionMeasures, where the string version left out the
+	 *         subgraph of the last one.
 	 */
-	public HashMap<Double, String[]> getMappingExhastiveSearch(
-			HashMap<Double, String[]> graph2Results,
+	public ArrayList<RegionResult> getMappingExhastiveSearch(
+			ArrayList<RegionResult> graph2Results,
 			HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph1,
 			HashMap<SpectralNode, HashMap<SpectralNode, Integer>> graph2,
 			HashMap<Integer, SpectralNode> node2Mapping,
-			HashMap<Integer, SpectralNode> node1Mapping, int regionMax,
-			HashMap<Double, Double> grahResultMapping) {
-		evaluationMeasures = new double[6];
-		regionEvaluationMeasures = new ArrayList<Double[]>();
-		HashMap<Double, String[]> graph1Results = new HashMap<Double, String[]>();
-		// sort graph2results
-		List<Entry<Double, Double>> SortedGrahResultMapping = entriesSortedByValues(grahResultMapping);
-		int regionCount = 1;
-		for (Entry<Double, Double> regionPair : SortedGrahResultMapping) {
-			Double region = regionPair.getKey();
-			String[] edges = graph2Results.get(region);
-			// Retrieve the nodes that appeared in this subgraph2.
-			HashSet<SpectralNode> graph2Nodes = new HashSet<SpectralNode>();
-			for (String edge : edges) {
-				String[] edgeNodes = edge.split(",");
-				SpectralNode node1 = nodes.get(Integer.parseInt(edgeNodes[0]));
-				SpectralNode node2 = nodes.get(Integer.parseInt(edgeNodes[1]));
-				graph2Nodes.add(node1);
-				graph2Nodes.add(node2);
-			}
-			// Construct the corresponding subgraph 1.
-			HashMap<SpectralNode, HashSet<SpectralNode>> subgraph1 = new HashMap<SpectralNode, HashSet<SpectralNode>>();
-			double distortionValue = 0.0;
-			double edgesWithinRegionInGraph1 = 0.0;
-			double edgesWithinRegionInGraph2 = 0.0;
-			double regionNodesDegreeInGraph1 = 0.0;
-			double regionNodesDegreeInGraph2 = 0.0;
-			for (SpectralNode node : graph2Nodes) {
-				// Get the nodes that are connected to this node in graph2.
-
-				HashMap<SpectralNode, Integer> graph1Nodes = graph1.get(node1Mapping
-						.get(node.getId()));
-				regionNodesDegreeInGraph1 += graph1Nodes.size();
-				HashMap<SpectralNode, Integer> graph2NodeNeibours = graph2
-						.get(node2Mapping.get(node.getId()));
-				regionNodesDegreeInGraph2 += graph2NodeNeibours.size();
-				// Only keep nodes that appear in subgraph1.
-				HashSet<SpectralNode> subNodes = new HashSet<SpectralNode>();
-				for (SpectralNode graph1Node : graph1Nodes.keySet()) {
-					if (graph2Nodes.contains(graph1Node)) {
-						subNodes.add(graph1Node);
-						edgesWithinRegionInGraph1++;
-					}
-				}
-				subgraph1.put(node, subNodes);
-				distortionValue = distortionValue + node.getDelta();
-				for (SpectralNode graph2Node : graph2NodeNeibours.keySet()) {
-					if (graph2Nodes.contains(nodes.get(graph2Node.getId()))) {
-						edgesWithinRegionInGraph2++;
-					}
-				}
-			}
-			if (regionCount <= regionMax) { // We only take the highest region
-											// in each one of the singular
-											// vectors.
-				regionChangeValue = distortionValue / graph2Nodes.size();
-				Double[] measure = new Double[6];
-				measure[0] = distortionValue
-						/ Math.max(1, edgesWithinRegionInGraph1);
-				measure[1] = distortionValue
-						/ Math.max(1, edgesWithinRegionInGraph2);
-				measure[2] = distortionValue
-						/ Math.min(Math.max(1, edgesWithinRegionInGraph1),
-								Math.max(1, edgesWithinRegionInGraph2));
-				measure[3] = distortionValue
-						/ Math.max(1, regionNodesDegreeInGraph1);
-				measure[4] = distortionValue
-						/ Math.max(1, regionNodesDegreeInGraph2);
-				measure[5] = distortionValue
-						/ Math.min(Math.max(1, regionNodesDegreeInGraph1),
-								Math.max(1, regionNodesDegreeInGraph2));
-				for (int i = 0; i < measure.length; i++) {
-					evaluationMeasures[i] += measure[i];
-				}
-				regionEvaluationMeasures.add(measure);
+			HashMap<Integer, SpectralNode> node1Mapping, int regionMax) {
+		// Sort graph2 results by score, the sort is stable so ties keep the
+		// selection order.
+		ArrayList<RegionResult> regions = new ArrayList<RegionResult>(
+				graph2Results);
+		Collections.sort(regions, new Comparator<RegionResult>() {
+			@Override
+			public int compare(RegionResult region1, RegionResult region2) {
+				return Double.compare(region2.getScore(), region1.getScore());
 			}
-			regionCount++;
-			if (regionCount > regionMax) {
-				break;
+		});
+		// We only take the highest regions in each one of the singular
+		// vectors.
+		if (regions.size() > regionMax) {
+			regions = new ArrayList<RegionResult>(regions.subList(0,
+					Math.max(0, regionMax)));
+		}
+		mapRegions(regions, IndexedGraphPair.fromSpectralGraphs(graph1,
+				node1Mapping, graph2, node2Mapping, new ArrayList<SpectralNode>()),
+				node2Mapping);
+		regionEvaluationMeasures = new ArrayList<Double[]>();
+		for (RegionResult region : regions) {
+			Double[] measure = new Double[RegionEvaluator.MEASURES_NUMBER];
+			for (int j = 0; j < measure.length; j++) {
+				measure[j] = region.getMeasures()[j];
 			}
-			// Convert to the array format.
-			String[] subGraphArray = convertGraphToArray(subgraph1);
-			graph1Results.put(region, subGraphArray);
+			regionEvaluationMeasures.add(measure);
 		}
-		return graph1Results;
+		return regions;
 	}
 
-	static <K, V extends Comparable<? super V>> List<Entry<Double, Double>> entriesSortedByValues(
-			Map<Double, Double> map) {
-
-		List<Entry<Double, Double>> sortedEntries = new ArrayList<Entry<Double, Double>>(
-				map.entrySet());
-
-		Collections.sort(sortedEntries,
-				new Comparator<Entry<Double, Double>>() {
-					@Override
-					public int compare(Entry<Double, Double> e1,
-							Entry<Double, Double> e2) {
-						return (e2.getValue().compareTo(e1.getValue()));
-					}
-				});
-
-		return sortedEntries;
+	/**
+	 * Map regions of graph 2 to graph 1, setting the graph 1 edges and the
+	 * evaluation measures of each region and accumulating the measures in
+	 * evaluationMeasures.
+	 * 
+	 * @param regions
+	 *            region results of graph 2.
+	 * @param graphPair
+	 *            indexed snapshot of graph1 and graph2.
+	 * @param node2Mapping
+	 *            mapping between node ids and graph2 node objects.
+	 */
+	private void mapRegions(ArrayList<RegionResult> regions,
+			IndexedGraphPair<SpectralNode> graphPair,
+			HashMap<Integer, SpectralNode> node2Mapping) {
+		evaluationMeasures = new double[RegionEvaluator.MEASURES_NUMBER];
+		boolean[] inRegion = new boolean[graphPair.getNodesNumber()];
+		// Retrieve the nodes that appeared in each subgraph2.
+		int[][] regionsMembers = new int[regions.size()][];
+		for (int i = 0; i < regionsMembers.length; i++) {
+			regionsMembers[i] = getRegionMembers(regions.get(i), graphPair,
+					node2Mapping);
+		}
+		double[][] measures = new RegionEvaluator(graphPair)
+				.evaluate(regionsMembers);
+		for (int i = 0; i < regionsMembers.length; i++) {
+			regionChangeValue = getRegionChangeValue(graphPair,
+					regionsMembers[i]);
+			for (int j = 0; j < evaluationMeasures.length; j++) {
+				evaluationMeasures[j] += measures[i][j];
+			}
+			regions.get(i).setMeasures(measures[i]);
+			// Construct the corresponding subgraph 1.
+			regions.get(i).setEdges1(getRegionEdges(graphPair.getOffsets1(),
+					graphPair.getNeighbors1(), graphPair, regionsMembers[i],
+					regionsMembers[i].length, inRegion));
+		}
 	}
 
 	/**
@@ -799,6 +974,27 @@ public class SpectralMethodRegionSelector {
 		return maxDelta;
 	}
 
+	/**
+	 * Get the max Jaccard similarity allowed between the returned regions.
+	 * 
+	 * @return max Jaccard similarity.
+	 */
+	public double getMaxJaccard() {
+		return maxJaccard;
+	}
+
+	/**
+	 * Set the max Jaccard similarity allowed between the regions returned by
+	 * getRegions and getRegionsExhastiveSearch. Use a value lower than 1 to
+	 * return diverse regions instead of near duplicates of the top region.
+	 * 
+	 * @param maxJaccard
+	 *            max Jaccard similarity.
+	 */
+	public void setMaxJaccard(double maxJaccard) {
+		this.maxJaccard = maxJaccard;
+	}
+
 	/**
 	 * Get node list.
 	 * 
@@ -0,0 +1,301 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts the spectral regions of all the singular vectors returned for a value of k. The graphs
+ * and the delta changes of the nodes don't depend on the singular vector, so the graph pair is
+ * built once and shared, and the distortion values of each singular vector are an overlay on it:
+ * they order the seeds and the traversals, and select the nodes removed by the threshold, which
+ * are masked instead of removed from copies of the graphs. The singular vectors are processed in
+ * parallel, each one with its own traversal and mask.
+ */
+public class SpectralRegionEngine {
+
+  // Graph pair shared by all the singular vectors, the nodes are indexed in id order.
+  private IndexedGraphPair<SpectralNode> graphPair;
+  // Mapping between node ids and graph2 node objects.
+  private HashMap<Integer, SpectralNode> nodeMapping2;
+  // Indices of graph1 nodes in the order removeNodesBelowThreshold visits them before sorting
+  // them by distortion value.
+  private Integer[] thresholdOrder;
+  // Number of nodes of each singular vector in the distortion values.
+  private int nodesNumber;
+  // Max Jaccard similarity allowed between the returned regions, 1 allows any overlap.
+  private double maxJaccard = 1.0;
+
+  /**
+   * Constructor loads the graphs and calculates the delta change of the nodes.
+   *
+   * @param graph1Array graph1 data where each index corresponds to an edge.
+   * @param graph2Array graph2 data where each index corresponds to an edge.
+   * @param nodesNumber number of nodes in the graphs.
+   */
+  public SpectralRegionEngine(double[][] graph1Array, double[][] graph2Array, int nodesNumber) {
+    this.nodesNumber = nodesNumber;
+    double[] distortionValues = new double[nodesNumber];
+    SpectralMethodRegionSelector regionsGraph2 =
+        new SpectralMethodRegionSelector(distortionValues, graph2Array);
+    SpectralMethodRegionSelector regionsGraph1 =
+        new SpectralMethodRegionSelector(distortionValues, graph1Array);
+    regionsGraph2.calculateDeltaGraph(regionsGraph1.getGraph(), regionsGraph1.getNodeMapping(),
+        regionsGraph2.getGraph(), regionsGraph2.getNodeMapping());
+    nodeMapping2 = regionsGraph2.getNodeMapping();
+    // The nodes list is in id order, so the index of a node doesn't depend on the overlay.
+    graphPair =
+        IndexedGraphPair.fromSpectralGraphs(regionsGraph1.getGraph(),
+            regionsGraph1.getNodeMapping(), regionsGraph2.getGraph(), nodeMapping2,
+            regionsGraph2.getNodesList());
+    HashSet<SpectralNode> graph1Nodes = new HashSet<SpectralNode>();
+    graph1Nodes.addAll(regionsGraph1.getGraph().keySet());
+    thresholdOrder = new Integer[graph1Nodes.size()];
+    int index = 0;
+    for (SpectralNode node1 : graph1Nodes) {
+      thresholdOrder[index++] = graphPair.getIndex(nodeMapping2.get(node1.getId()));
+    }
+  }
+
+  /**
+   * Set the max Jaccard similarity allowed between the returned regions.
+   *
+   * @param maxJaccard max Jaccard similarity.
+   */
+  public void setMaxJaccard(double maxJaccard) {
+    this.maxJaccard = maxJaccard;
+  }
+
+  /**
+   * Get the top-regionNum distortion regions of a singular vector mapped to graph1, the same
+   * regions as SpectralMethodRegionSelector.getRegions followed by getMapping on the selectors
+   * returned by GraphServlet.getRegion.
+   *
+   * @param nodesDistortionValues distortion values of the nodes of all the singular vectors.
+   * @param selectedRegionNumber number of the singular vector, starting from 1.
+   * @param step fraction of the nodes with the lowest distortion values to remove.
+   * @param regionNum number of regions to return.
+   * @param maxNodes number of nodes in each region.
+   * @param bfsSelection 0 means BFS, 1 means Biased BFS and 2 means BFS with priority queue.
+   * @return regions with their graph1 edges and evaluation measures set, keyed by region number.
+   */
+  public HashMap<Integer, RegionResult> getMappedRegions(double[] nodesDistortionValues,
+      int selectedRegionNumber, double step, int regionNum, int maxNodes, int bfsSelection) {
+    return getMappedRegions(nodesDistortionValues, selectedRegionNumber, step, regionNum,
+        new int[] {maxNodes}, bfsSelection).get(maxNodes);
+  }
+
+  /**
+   * Get the top-regionNum distortion regions of a singular vector mapped to graph1 for several
+   * region sizes at once, from one traversal per seed up to the largest size as
+   * SpectralMethodRegionSelector.getRegions with several sizes.
+   *
+   * @param nodesDistortionValues distortion values of the nodes of all the singular vectors.
+   * @param selectedRegionNumber number of the singular vector, starting from 1.
+   * @param step fraction of the nodes with the lowest distortion values to remove.
+   * @param regionNum number of regions to return for each size.
+   * @param maxNodes numbers of nodes in each region to return the regions of.
+   * @param bfsSelection 0 means BFS, 1 means Biased BFS and 2 means BFS with priority queue.
+   * @return mapped regions of each size as returned by getMappedRegions, keyed by the size.
+   */
+  public HashMap<Integer, HashMap<Integer, RegionResult>> getMappedRegions(
+      double[] nodesDistortionValues, int selectedRegionNumber, double step, int regionNum,
+      int[] maxNodes, int bfsSelection) {
+    int nodesCount = graphPair.getNodesNumber();
+    double[] priorities = new double[nodesCount];
+    for (int i = 0; i < nodesCount; i++) {
+      SpectralNode node = graphPair.getNode(i);
+      priorities[i] =
+          nodesDistortionValues[(selectedRegionNumber - 1) * nodesNumber + node.getId() - 1];
+    }
+    IndexedGraphPair<SpectralNode> columnPair =
+        graphPair.withPriorities(priorities, graphPair.getSeeds());
+    RegionTraversal traversal = new RegionTraversal(columnPair);
+    Comparator<Integer> priorityComparator = traversal.getPriorityComparator();
+    // Mask the nodes with the lowest distortion values, as removeNodesBelowThreshold.
+    Integer[] maskingOrder = Arrays.copyOf(thresholdOrder, thresholdOrder.length);
+    Arrays.sort(maskingOrder, Collections.reverseOrder(priorityComparator));
+    for (int position = 1; position <= maskingOrder.length && position <= step * nodesNumber;
+        position++) {
+      traversal.setMasked(maskingOrder[position - 1], true);
+    }
+    // Seeds from the highest distortion value, ties in id order.
+    Integer[] sortedSeeds = new Integer[nodesCount];
+    for (int i = 0; i < nodesCount; i++) {
+      sortedSeeds[i] = i;
+    }
+    Arrays.sort(sortedSeeds, priorityComparator);
+    int[] seeds = new int[nodesCount];
+    for (int i = 0; i < nodesCount; i++) {
+      seeds[i] = sortedSeeds[i];
+    }
+    columnPair = graphPair.withPriorities(priorities, seeds);
+    HashMap<Integer, HashMap<Integer, RegionResult>> sizeRegions =
+        SpectralMethodRegionSelector.selectRegions(columnPair, traversal, regionNum, maxNodes,
+            bfsSelection, maxJaccard);
+    mapRegions(columnPair, traversal, sizeRegions);
+    return sizeRegions;
+  }
+
+  /**
+   * Get the mapped regions of the first singular vectors in parallel.
+   *
+   * @param nodesDistortionValues distortion values of the nodes of all the singular vectors.
+   * @param vectorsNumber number of singular vectors to get the regions of.
+   * @param step fraction of the nodes with the lowest distortion values to remove.
+   * @param regionNum number of regions to return for each singular vector.
+   * @param maxNodes number of nodes in each region.
+   * @param bfsSelection 0 means BFS, 1 means Biased BFS and 2 means BFS with priority queue.
+   * @return mapped regions of each singular vector as returned by getMappedRegions, in order.
+   */
+  public List<HashMap<Integer, RegionResult>> getAllMappedRegions(
+      double[] nodesDistortionValues, int vectorsNumber, double step, int regionNum, int maxNodes,
+      int bfsSelection) {
+    List<HashMap<Integer, HashMap<Integer, RegionResult>>> vectorsSizeRegions =
+        getAllMappedRegions(nodesDistortionValues, vectorsNumber, step, regionNum,
+            new int[] {maxNodes}, bfsSelection);
+    List<HashMap<Integer, RegionResult>> vectorsRegions =
+        new ArrayList<HashMap<Integer, RegionResult>>(vectorsNumber);
+    for (HashMap<Integer, HashMap<Integer, RegionResult>> sizeRegions : vectorsSizeRegions) {
+      vectorsRegions.add(sizeRegions.get(maxNodes));
+    }
+    return vectorsRegions;
+  }
+
+  /**
+   * Get the mapped regions of the first singular vectors in parallel, for several region sizes at
+   * once.
+   *
+   * @param nodesDistortionValues distortion values of the nodes of all the singular vectors.
+   * @param vectorsNumber number of singular vectors to get the regions of.
+   * @param step fraction of the nodes with the lowest distortion values to remove.
+   * @param regionNum number of regions to return for each singular vector and size.
+   * @param maxNodes numbers of nodes in each region to return the regions of.
+   * @param bfsSelection 0 means BFS, 1 means Biased BFS and 2 means BFS with priority queue.
+   * @return mapped regions of each singular vector as returned by getMappedRegions with several
+   *         sizes, in order.
+   */
+  public List<HashMap<Integer, HashMap<Integer, RegionResult>>> getAllMappedRegions(
+      final double[] nodesDistortionValues, final int vectorsNumber, final double step,
+      final int regionNum, final int[] maxNodes, final int bfsSelection) {
+    final List<HashMap<Integer, HashMap<Integer, RegionResult>>> vectorsRegions =
+        new ArrayList<HashMap<Integer, HashMap<Integer, RegionResult>>>(vectorsNumber);
+    for (int v = 0; v < vectorsNumber; v++) {
+      vectorsRegions.add(null);
+    }
+    final AtomicInteger nextVector = new AtomicInteger();
+    final RuntimeException[] failure = new RuntimeException[1];
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (int v = nextVector.getAndIncrement(); v < vectorsNumber; v =
+              nextVector.getAndIncrement()) {
+            // The threads set distinct positions of the list, which isn't resized.
+            vectorsRegions.set(v, getMappedRegions(nodesDistortionValues, v + 1, step,
+                regionNum, maxNodes, bfsSelection));
+          }
+        } catch (RuntimeException e) {
+          synchronized (failure) {
+            failure[0] = e;
+          }
+        }
+      }
+    };
+    Thread[] threads =
+        new Thread[Math.max(0,
+            Math.min(Runtime.getRuntime().availableProcessors(), vectorsNumber) - 1)];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(worker);
+      threads[t].start();
+    }
+    // The current thread processes singular vectors too.
+    worker.run();
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    return vectorsRegions;
+  }
+
+  /**
+   * Sum the evaluation measures of mapped regions, as
+   * SpectralMethodRegionSelector.getEvaluationMeasures after getMapping.
+   *
+   * @param regions mapped regions.
+   * @return sum of the evaluation measures of the regions.
+   */
+  public static double[] getEvaluationMeasures(HashMap<Integer, RegionResult> regions) {
+    double[] evaluationMeasures = new double[RegionEvaluator.MEASURES_NUMBER];
+    for (RegionResult region : regions.values()) {
+      for (int i = 0; i < evaluationMeasures.length; i++) {
+        evaluationMeasures[i] += region.getMeasures()[i];
+      }
+    }
+    return evaluationMeasures;
+  }
+
+  /**
+   * Set the graph1 edges and the evaluation measures of the regions of each size, using the
+   * degrees without the masked nodes.
+   */
+  private void mapRegions(IndexedGraphPair<SpectralNode> columnPair, RegionTraversal traversal,
+      HashMap<Integer, HashMap<Integer, RegionResult>> sizeRegions) {
+    int nodesCount = columnPair.getNodesNumber();
+    int[] offsets1 = columnPair.getOffsets1();
+    int[] neighbors1 = columnPair.getNeighbors1();
+    int[] offsets2 = columnPair.getOffsets2();
+    int[] neighbors2 = columnPair.getNeighbors2();
+    int[] degrees1 = Arrays.copyOf(columnPair.getDegrees1(), nodesCount);
+    int[] degrees2 = Arrays.copyOf(columnPair.getDegrees2(), nodesCount);
+    for (int node = 0; node < nodesCount; node++) {
+      if (!traversal.isMasked(node)) {
+        continue;
+      }
+      for (int i = offsets1[node]; i < offsets1[node + 1]; i++) {
+        degrees1[neighbors1[i]]--;
+      }
+      for (int i = offsets2[node]; i < offsets2[node + 1]; i++) {
+        degrees2[neighbors2[i]]--;
+      }
+    }
+    RegionEvaluator evaluator = new RegionEvaluator(columnPair, degrees1, degrees2);
+    boolean[] inRegion = new boolean[nodesCount];
+    for (HashMap<Integer, RegionResult> regions : sizeRegions.values()) {
+      RegionResult[] selectedRegions = new RegionResult[regions.size()];
+      int[][] regionsMembers = new int[selectedRegions.length][];
+      int index = 0;
+      for (int region : regions.keySet()) {
+        selectedRegions[index] = regions.get(region);
+        regionsMembers[index] =
+            SpectralMethodRegionSelector.getRegionMembers(selectedRegions[index], columnPair,
+                nodeMapping2);
+        index++;
+      }
+      double[][] measures = evaluator.evaluate(regionsMembers);
+      for (int i = 0; i < selectedRegions.length; i++) {
+        selectedRegions[i].setMeasures(measures[i]);
+        selectedRegions[i].setEdges1(SpectralMethodRegionSelector.getRegionEdges(offsets1,
+            neighbors1, columnPair, regionsMembers[i], regionsMembers[i].length, inRegion));
+      }
+    }
+  }
+}
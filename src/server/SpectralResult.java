@@ -0,0 +1,102 @@
+package server;
+
+/**
+ * Result of a run of the spectral method: the distortion values of the nodes, their colors, and
+ * the region selected from them once the region selection has run. It isn't changed once created,
+ * so it can be shared by concurrent requests.
+ */
+public class SpectralResult {
+
+  // Distortion values of the nodes, stacked column wise as nodesNumber x r.
+  private final double[] nodesDistortionValues;
+  // Colors of the nodes for each distortion vector.
+  private final NodesColors nodesColors;
+  // Error estimate of the approximate graph1 basis, 0 if the values weren't approximated.
+  private final double errorEstimate;
+  // Selected region, null until the region selection has run.
+  private final RegionResult region;
+
+  /**
+   * Constructor.
+   *
+   * @param nodesDistortionValues distortion values stacked column wise as nodesNumber x r.
+   * @param nodesColors colors of the nodes for each distortion vector.
+   */
+  public SpectralResult(double[] nodesDistortionValues, NodesColors nodesColors) {
+    this(nodesDistortionValues, nodesColors, 0);
+  }
+
+  /**
+   * Constructor of approximate distortion values.
+   *
+   * @param nodesDistortionValues distortion values stacked column wise as nodesNumber x r.
+   * @param nodesColors colors of the nodes for each distortion vector.
+   * @param errorEstimate largest residual norm of the graph1 basis, 0 if it wasn't approximated.
+   */
+  public SpectralResult(double[] nodesDistortionValues, NodesColors nodesColors,
+      double errorEstimate) {
+    this(nodesDistortionValues, nodesColors, errorEstimate, null);
+  }
+
+  /**
+   * Constructor of a result with its selected region.
+   *
+   * @param nodesDistortionValues distortion values stacked column wise as nodesNumber x r.
+   * @param nodesColors colors of the nodes for each distortion vector.
+   * @param errorEstimate largest residual norm of the graph1 basis, 0 if it wasn't approximated.
+   * @param region selected region, or null.
+   */
+  public SpectralResult(double[] nodesDistortionValues, NodesColors nodesColors,
+      double errorEstimate, RegionResult region) {
+    this.nodesDistortionValues = nodesDistortionValues;
+    this.nodesColors = nodesColors;
+    this.errorEstimate = errorEstimate;
+    this.region = region;
+  }
+
+  /**
+   * Get the distortion values of the nodes.
+   *
+   * @return distortion values stacked column wise as nodesNumber x r.
+   */
+  public double[] getNodesDistortionValues() {
+    return nodesDistortionValues;
+  }
+
+  /**
+   * Get the colors of the nodes.
+   *
+   * @return colors of the nodes for each distortion vector.
+   */
+  public NodesColors getNodesColors() {
+    return nodesColors;
+  }
+
+  /**
+   * Get the error estimate of the distortion values.
+   *
+   * @return largest residual norm of the graph1 basis, 0 if the values weren't approximated.
+   */
+  public double getErrorEstimate() {
+    return errorEstimate;
+  }
+
+  /**
+   * Get the selected region.
+   *
+   * @return selected region, or null if the region selection hasn't run.
+   */
+  public RegionResult getRegion() {
+    return region;
+  }
+
+  /**
+   * Get this result with a selected region.
+   *
+   * @param region selected region.
+   * @return new result with the same distortion values, colors and error estimate.
+   */
+  public SpectralResult withRegion(RegionResult region) {
+    return new SpectralResult(nodesDistortionValues, nodesColors, errorEstimate, region);
+  }
+}
@@ -0,0 +1,82 @@
+package server;
+
+/**
+ * Run of the spectral method on a pair of graphs, with its parameters and its result, kept by the
+ * servlets to re-use the result for the other regions of the same run. It isn't changed once
+ * created, so a request reading it sees the graphs and the result of the same run.
+ */
+public class SpectralRun {
+
+  // Edges of graph1 and graph2 of the run.
+  private final double[][] graph1;
+  private final double[][] graph2;
+  // Number of eigenvectors of graph1.
+  private final int k;
+  // Distortion measure.
+  private final String measure;
+  // Distortion values, colors and error estimate of the run.
+  private final SpectralResult result;
+
+  /**
+   * Constructor.
+   *
+   * @param graph1 graph1 edges.
+   * @param graph2 graph2 edges.
+   * @param k number of eigenvectors of graph1.
+   * @param measure distortion measure.
+   * @param result distortion values, colors and error estimate of the run.
+   */
+  public SpectralRun(double[][] graph1, double[][] graph2, int k, String measure,
+      SpectralResult result) {
+    this.graph1 = graph1;
+    this.graph2 = graph2;
+    this.k = k;
+    this.measure = measure;
+    this.result = result;
+  }
+
+  /**
+   * Get the graph1 edges of the run.
+   *
+   * @return graph1 edges.
+   */
+  public double[][] getGraph1() {
+    return graph1;
+  }
+
+  /**
+   * Get the graph2 edges of the run.
+   *
+   * @return graph2 edges.
+   */
+  public double[][] getGraph2() {
+    return graph2;
+  }
+
+  /**
+   * Get the number of eigenvectors of graph1.
+   *
+   * @return k value of the run.
+   */
+  public int getK() {
+    return k;
+  }
+
+  /**
+   * Get the distortion measure.
+   *
+   * @return distortion measure of the run.
+   */
+  public String getMeasure() {
+    return measure;
+  }
+
+  /**
+   * Get the result of the run.
+   *
+   * @return distortion values, colors and error estimate of the run.
+   */
+  public SpectralResult getResult() {
+    return result;
+  }
+}
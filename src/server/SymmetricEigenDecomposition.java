@@ -0,0 +1,268 @@
+package server;
+
+/**
+ * Eigenvalues and eigenvectors of a dense real symmetric matrix, by Householder reduction to
+ * tridiagonal form followed by the implicit QL algorithm (tred2 and tql2 of EISPACK, as adapted in
+ * JAMA). The eigenvalues are sorted in increasing order and the eigenvectors are orthonormal.
+ */
+public class SymmetricEigenDecomposition {
+
+  // Size of the matrix.
+  private int n;
+  // Eigenvalues in increasing order.
+  private double[] d;
+  // Off diagonal of the tridiagonal form, work array.
+  private double[] e;
+  // Eigenvectors as rows, vectors[j] belongs to d[j].
+  private double[][] vectors;
+
+  /**
+   * Constructor computes the decomposition. Only the lower triangle of the matrix is used, and the
+   * matrix is not modified.
+   *
+   * @param matrix symmetric matrix.
+   */
+  public SymmetricEigenDecomposition(double[][] matrix) {
+    n = matrix.length;
+    d = new double[n];
+    e = new double[n];
+    if (n == 0) {
+      vectors = new double[0][];
+      return;
+    }
+    double[][] v = new double[n][];
+    for (int i = 0; i < n; i++) {
+      v[i] = new double[n];
+      for (int j = 0; j <= i; j++) {
+        v[i][j] = matrix[i][j];
+        v[j][i] = matrix[i][j];
+      }
+    }
+    tred2(v);
+    // tql2 rotates pairs of eigenvectors, which are contiguous once stored as rows.
+    vectors = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        vectors[j][i] = v[i][j];
+      }
+    }
+    tql2();
+  }
+
+  /**
+   * Get the eigenvalues.
+   *
+   * @return eigenvalues in increasing order.
+   */
+  public double[] getEigenvalues() {
+    return d;
+  }
+
+  /**
+   * Get the eigenvectors.
+   *
+   * @return eigenvectors as rows, in the order of the eigenvalues.
+   */
+  public double[][] getEigenvectors() {
+    return vectors;
+  }
+
+  /**
+   * Symmetric Householder reduction to tridiagonal form, v holds the matrix and receives the
+   * accumulated transformations as columns.
+   */
+  private void tred2(double[][] v) {
+    for (int j = 0; j < n; j++) {
+      d[j] = v[n - 1][j];
+    }
+    for (int i = n - 1; i > 0; i--) {
+      // Scale to avoid under/overflow.
+      double scale = 0.0;
+      double h = 0.0;
+      for (int k = 0; k < i; k++) {
+        scale = scale + Math.abs(d[k]);
+      }
+      if (scale == 0.0) {
+        e[i] = d[i - 1];
+        for (int j = 0; j < i; j++) {
+          d[j] = v[i - 1][j];
+          v[i][j] = 0.0;
+          v[j][i] = 0.0;
+        }
+      } else {
+        // Generate Householder vector.
+        for (int k = 0; k < i; k++) {
+          d[k] /= scale;
+          h += d[k] * d[k];
+        }
+        double f = d[i - 1];
+        double g = Math.sqrt(h);
+        if (f > 0) {
+          g = -g;
+        }
+        e[i] = scale * g;
+        h = h - f * g;
+        d[i - 1] = f - g;
+        for (int j = 0; j < i; j++) {
+          e[j] = 0.0;
+        }
+        // Apply similarity transformation to remaining columns.
+        for (int j = 0; j < i; j++) {
+          f = d[j];
+          v[j][i] = f;
+          g = e[j] + v[j][j] * f;
+          for (int k = j + 1; k <= i - 1; k++) {
+            g += v[k][j] * d[k];
+            e[k] += v[k][j] * f;
+          }
+          e[j] = g;
+        }
+        f = 0.0;
+        for (int j = 0; j < i; j++) {
+          e[j] /= h;
+          f += e[j] * d[j];
+        }
+        double hh = f / (h + h);
+        for (int j = 0; j < i; j++) {
+          e[j] -= hh * d[j];
+        }
+        for (int j = 0; j < i; j++) {
+          f = d[j];
+          g = e[j];
+          for (int k = j; k <= i - 1; k++) {
+            v[k][j] -= (f * e[k] + g * d[k]);
+          }
+          d[j] = v[i - 1][j];
+          v[i][j] = 0.0;
+        }
+      }
+      d[i] = h;
+    }
+    // Accumulate transformations.
+    for (int i = 0; i < n - 1; i++) {
+      v[n - 1][i] = v[i][i];
+      v[i][i] = 1.0;
+      double h = d[i + 1];
+      if (h != 0.0) {
+        for (int k = 0; k <= i; k++) {
+          d[k] = v[k][i + 1] / h;
+        }
+        for (int j = 0; j <= i; j++) {
+          double g = 0.0;
+          for (int k = 0; k <= i; k++) {
+            g += v[k][i + 1] * v[k][j];
+          }
+          for (int k = 0; k <= i; k++) {
+            v[k][j] -= g * d[k];
+          }
+        }
+      }
+      for (int k = 0; k <= i; k++) {
+        v[k][i + 1] = 0.0;
+      }
+    }
+    for (int j = 0; j < n; j++) {
+      d[j] = v[n - 1][j];
+      v[n - 1][j] = 0.0;
+    }
+    v[n - 1][n - 1] = 1.0;
+    e[0] = 0.0;
+  }
+
+  /**
+   * Symmetric tridiagonal QL algorithm, rotating the eigenvectors stored as rows.
+   */
+  private void tql2() {
+    for (int i = 1; i < n; i++) {
+      e[i - 1] = e[i];
+    }
+    e[n - 1] = 0.0;
+    double f = 0.0;
+    double tst1 = 0.0;
+    double eps = Math.pow(2.0, -52.0);
+    for (int l = 0; l < n; l++) {
+      // Find small subdiagonal element.
+      tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+      int m = l;
+      while (m < n) {
+        if (Math.abs(e[m]) <= eps * tst1) {
+          break;
+        }
+        m++;
+      }
+      // If m == l, d[l] is an eigenvalue, otherwise iterate.
+      if (m > l) {
+        do {
+          // Compute implicit shift.
+          double g = d[l];
+          double p = (d[l + 1] - g) / (2.0 * e[l]);
+          double r = Math.hypot(p, 1.0);
+          if (p < 0) {
+            r = -r;
+          }
+          d[l] = e[l] / (p + r);
+          d[l + 1] = e[l] * (p + r);
+          double dl1 = d[l + 1];
+          double h = g - d[l];
+          for (int i = l + 2; i < n; i++) {
+            d[i] -= h;
+          }
+          f = f + h;
+          // Implicit QL transformation.
+          p = d[m];
+          double c = 1.0;
+          double c2 = c;
+          double c3 = c;
+          double el1 = e[l + 1];
+          double s = 0.0;
+          double s2 = 0.0;
+          for (int i = m - 1; i >= l; i--) {
+            c3 = c2;
+            c2 = c;
+            s2 = s;
+            g = c * e[i];
+            h = c * p;
+            r = Math.hypot(p, e[i]);
+            e[i + 1] = s * r;
+            s = e[i] / r;
+            c = p / r;
+            p = c * d[i] - s * g;
+            d[i + 1] = h + s * (c * g + s * d[i]);
+            // Accumulate transformation.
+            double[] vi = vectors[i];
+            double[] vi1 = vectors[i + 1];
+            for (int k = 0; k < n; k++) {
+              h = vi1[k];
+              vi1[k] = s * vi[k] + c * h;
+              vi[k] = c * vi[k] - s * h;
+            }
+          }
+          p = -s * s2 * c3 * el1 * e[l] / dl1;
+          e[l] = s * p;
+          d[l] = c * p;
+          // Check for convergence.
+        } while (Math.abs(e[l]) > eps * tst1);
+      }
+      d[l] = d[l] + f;
+      e[l] = 0.0;
+    }
+    // Sort eigenvalues and corresponding vectors.
+    for (int i = 0; i < n - 1; i++) {
+      int k = i;
+      double p = d[i];
+      for (int j = i + 1; j < n; j++) {
+        if (d[j] < p) {
+          k = j;
+          p = d[j];
+        }
+      }
+      if (k != i) {
+        d[k] = d[i];
+        d[i] = p;
+        double[] vector = vectors[i];
+        vectors[i] = vectors[k];
+        vectors[k] = vector;
+      }
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Threshold sweep of the exhaustive search. Instead of removing the nodes below each threshold from
+ * the graphs and running the whole search again, the nodes are ordered by delta change once and
+ * every threshold masks the next nodes of this order, so the thresholds are nested masks over the
+ * same indexed graphs. The region found from a seed only depends on the edges of the nodes its
+ * traversal discovered, so after masking new nodes only the traversals that discovered one of them
+ * are run again, the other regions and their scores are reused from the previous threshold.
+ */
+public class ThresholdSweep {
+
+  // Graph pair to sweep.
+  private IndexedGraphPair<?> graphPair;
+  // Traversal used to grow the regions, it also holds the mask.
+  private RegionTraversal traversal;
+  // Traversal methods to run from each seed.
+  private TraversalMethods[] traversalMethods;
+  // Number of nodes per region.
+  private int nodesNumPerRegion;
+  // Number of top distorted neighbors to expand in biased BFS.
+  private int biasedk;
+  // Order in which the nodes get masked.
+  private int[] maskingOrder;
+  // Number of nodes of the masking order masked so far.
+  private int maskedNumber;
+  // Node degrees in graph1 and graph2 without the masked nodes.
+  private int[] degrees1;
+  private int[] degrees2;
+  // Members of the region found by each traversal method from each seed, stored at
+  // methodIndex * seedsNumber + seed, or null if the region doesn't have nodesNumPerRegion nodes.
+  private int[][] cachedRegions;
+  // Score of each cached region.
+  private double[] cachedScores;
+  // dirty[entry] == true means the traversal of the entry must run again.
+  private boolean[] dirty;
+  // Entries whose traversal discovered each node.
+  private IndexedGraphPair.IntList[] dependents;
+
+  /**
+   * Constructor.
+   *
+   * @param graphPair to sweep.
+   * @param maskingOrder order in which the nodes get masked, i.e. from the lowest delta change.
+   * @param traversalMethods traversal methods to run from each seed.
+   * @param nodesNumPerRegion number of nodes per region.
+   * @param biasedk to be used if biased BFS is chosen.
+   */
+  public ThresholdSweep(IndexedGraphPair<?> graphPair, int[] maskingOrder,
+      TraversalMethods[] traversalMethods, int nodesNumPerRegion, int biasedk) {
+    this.graphPair = graphPair;
+    this.maskingOrder = maskingOrder;
+    this.traversalMethods = traversalMethods;
+    this.nodesNumPerRegion = nodesNumPerRegion;
+    this.biasedk = biasedk;
+    traversal = new RegionTraversal(graphPair);
+    degrees1 = Arrays.copyOf(graphPair.getDegrees1(), graphPair.getNodesNumber());
+    degrees2 = Arrays.copyOf(graphPair.getDegrees2(), graphPair.getNodesNumber());
+    int entriesNumber = traversalMethods.length * graphPair.getSeeds().length;
+    cachedRegions = new int[entriesNumber][];
+    cachedScores = new double[entriesNumber];
+    dirty = new boolean[entriesNumber];
+    Arrays.fill(dirty, true);
+    dependents = new IndexedGraphPair.IntList[graphPair.getNodesNumber()];
+  }
+
+  /**
+   * Order the nodes of graph1 by delta change from the lowest to the highest, which is the order
+   * GraphCalculator.removeNodesBelowThreshold removes them in, and map them to the graph pair
+   * indices.
+   *
+   * @param graphCalculator containing graph1 and the node mappings.
+   * @param graphPair built from the same graph calculator.
+   * @return indices of the nodes in masking order.
+   */
+  public static int[] getMaskingOrder(GraphCalculator graphCalculator,
+      IndexedGraphPair<Node> graphPair) {
+    HashMap<String, Node> nodeMapping2 = graphCalculator.getNodeMapping2();
+    ArrayList<Node> nodes = new ArrayList<Node>();
+    for (Node node1 : graphCalculator.getGraph1().keySet()) {
+      int index = graphPair.getIndex(nodeMapping2.get(node1.getId()));
+      if (index >= 0) {
+        nodes.add(graphPair.getNode(index));
+      }
+    }
+    Node[] sortedNodes = nodes.toArray(new Node[nodes.size()]);
+    // Stable sort from the lowest delta change, as the reverse of Node.compareTo.
+    Arrays.sort(sortedNodes, Collections.reverseOrder());
+    int[] maskingOrder = new int[sortedNodes.length];
+    for (int i = 0; i < sortedNodes.length; i++) {
+      maskingOrder[i] = graphPair.getIndex(sortedNodes[i]);
+    }
+    return maskingOrder;
+  }
+
+  /**
+   * Mask the next nodes of the masking order, update the degrees of their neighbors and mark the
+   * traversals that discovered them to run again. As in GraphCalculator.removeNodesBelowThreshold,
+   * the degree of a neighbor only decreases if the masked node is in its own adjacency, since the
+   * graphs can have edges in one direction only.
+   *
+   * @param count number of nodes to mask.
+   * @return number of nodes actually masked.
+   */
+  public int maskNext(int count) {
+    int[] offsets1 = graphPair.getOffsets1();
+    int[] neighbors1 = graphPair.getNeighbors1();
+    int[] offsets2 = graphPair.getOffsets2();
+    int[] neighbors2 = graphPair.getNeighbors2();
+    int maskedNow = 0;
+    while (maskedNow < count && maskedNumber < maskingOrder.length) {
+      int node = maskingOrder[maskedNumber++];
+      maskedNow++;
+      traversal.setMasked(node, true);
+      for (int i = offsets1[node]; i < offsets1[node + 1]; i++) {
+        if (isUnmaskedNeighbor(offsets1, neighbors1, neighbors1[i], node)) {
+          degrees1[neighbors1[i]]--;
+        }
+      }
+      for (int i = offsets2[node]; i < offsets2[node + 1]; i++) {
+        if (isUnmaskedNeighbor(offsets2, neighbors2, neighbors2[i], node)) {
+          degrees2[neighbors2[i]]--;
+        }
+      }
+      if (dependents[node] != null) {
+        int[] entries = dependents[node].toArray();
+        for (int entry : entries) {
+          dirty[entry] = true;
+        }
+        dependents[node] = null;
+      }
+    }
+    return maskedNow;
+  }
+
+  /**
+   * Whether a node is unmasked and has the given neighbor in its adjacency.
+   */
+  private boolean isUnmaskedNeighbor(int[] offsets, int[] neighbors, int node, int neighbor) {
+    if (traversal.isMasked(node)) {
+      return false;
+    }
+    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+      if (neighbors[i] == neighbor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find the top regions of each traversal method for the current mask. Only the dirty traversals
+   * run, and all the regions are offered in seed order so that the ties are broken as in the
+   * exhaustive search.
+   *
+   * @param regionNumber number of regions to return for each traversal method.
+   * @return top regions of each traversal method, in the order of the traversal methods.
+   */
+  public TopRegions[] search(int regionNumber) {
+    int[] seeds = graphPair.getSeeds();
+    int seedsNumber = seeds.length;
+    int unmaskedSeedsNumber = 0;
+    for (int seed : seeds) {
+      if (!traversal.isMasked(seed)) {
+        unmaskedSeedsNumber++;
+      }
+    }
+    regionNumber = Math.min(regionNumber, unmaskedSeedsNumber);
+    TopRegions[] topRegions = new TopRegions[traversalMethods.length];
+    for (int m = 0; m < traversalMethods.length; m++) {
+      topRegions[m] = new TopRegions(regionNumber);
+    }
+    for (int seed : seeds) {
+      if (traversal.isMasked(seed)) {
+        continue;
+      }
+      for (int m = 0; m < traversalMethods.length; m++) {
+        int entry = m * seedsNumber + seed;
+        if (dirty[entry]) {
+          updateEntry(entry, seed, m);
+        }
+        if (cachedRegions[entry] != null) {
+          topRegions[m].offer(cachedRegions[entry], nodesNumPerRegion, cachedScores[entry]);
+        }
+      }
+    }
+    return topRegions;
+  }
+
+  /**
+   * Run the traversal of an entry again and register it as a dependent of the discovered nodes.
+   */
+  private void updateEntry(int entry, int seed, int methodIndex) {
+    dirty[entry] = false;
+    cachedRegions[entry] = null;
+    int regionSize =
+        traversal.traverse(seed, nodesNumPerRegion, traversalMethods[methodIndex], biasedk);
+    int[] found = traversal.getFound();
+    for (int i = 0; i < traversal.getFoundNumber(); i++) {
+      if (dependents[found[i]] == null) {
+        dependents[found[i]] = new IndexedGraphPair.IntList();
+      }
+      dependents[found[i]].add(entry);
+    }
+    if (regionSize != nodesNumPerRegion) { // Ignore regions with different sizes.
+      return;
+    }
+    cachedRegions[entry] = traversal.copyMembers();
+    cachedScores[entry] = traversal.scoreRegion();
+  }
+
+  /**
+   * Calculate the six evaluation measures of GraphCalculator.evaluatetThreshoding for the given
+   * regions, using the degrees of the current mask.
+   *
+   * @param regions to evaluate, given as node indices.
+   * @return six evaluation measures for each region.
+   */
+  public double[][] evaluate(ArrayList<TopRegions.ScoredRegion> regions) {
+    int[][] regionsMembers = new int[regions.size()][];
+    for (int i = 0; i < regionsMembers.length; i++) {
+      regionsMembers[i] = regions.get(i).getMembers();
+    }
+    return new RegionEvaluator(graphPair, degrees1, degrees2).evaluate(regionsMembers);
+  }
+
+  /**
+   * Get the number of masked nodes.
+   *
+   * @return number of masked nodes.
+   */
+  public int getMaskedNumber() {
+    return maskedNumber;
+  }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Step through a timeline of graph snapshots, running the Java spectral engine on each pair of
+ * successive snapshots, day d against day d+1. graph1 of each pair is graph2 of the previous pair,
+ * so with warm start the graph1 eigensolve starts from the basis of the previous snapshot instead
+ * of a random vector. The restarts and operator products of each solve are printed, with their
+ * totals, to compare a warm walk with a cold one.
+ */
+public class TimelineWalk {
+
+  // Spectral engine running the pairs.
+  private SpectralEngine engine;
+  // Total number of restarts and operator products of the graph1 solves of the walk.
+  private int restarts = 0;
+  private long products = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param engine spectral engine running the pairs, with warm start set or not.
+   */
+  public TimelineWalk(SpectralEngine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * Read the snapshots of a timeline.
+   *
+   * @param inputFile timeline file, one snapshot per line in the format of the graph input files.
+   * @return edges of each snapshot, in timeline order.
+   * @throws IOException
+   */
+  public static ArrayList<double[][]> loadTimeline(String inputFile) throws IOException {
+    ArrayList<double[][]> snapshots = new ArrayList<double[][]>();
+    BufferedReader reader = new BufferedReader(new FileReader(inputFile));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.trim().length() > 0) {
+        snapshots.add(GraphServlet.loadGraph(line));
+      }
+    }
+    reader.close();
+    return snapshots;
+  }
+
+  /**
+   * Run the spectral method on each pair of successive snapshots, printing the restarts and
+   * operator products of the graph1 solve of each pair.
+   *
+   * @param snapshots edges of each snapshot, in timeline order.
+   * @param k number of eigenvectors of graph1.
+   * @param r number of distortion vectors of each pair.
+   * @param measure distortion measure, one of SpectralEngine.MEASURES.
+   * @return distortion values of each pair, stacked column wise as nodesNumber x r.
+   */
+  public ArrayList<double[]> walk(ArrayList<double[][]> snapshots, int k, int r, String measure) {
+    ArrayList<double[]> values = new ArrayList<double[]>();
+    for (int d = 0; d + 1 < snapshots.size(); d++) {
+      long start = System.currentTimeMillis();
+      values.add(engine.getDistortionValues(snapshots.get(d), snapshots.get(d + 1), k, r,
+          measure));
+      restarts += engine.getLastRestarts();
+      products += engine.getLastProducts();
+      System.out.println(d + "," + engine.getLastRestarts() + "," + engine.getLastProducts() + ","
+          + (System.currentTimeMillis() - start));
+    }
+    return values;
+  }
+
+  /**
+   * Get the total number of restarts of the graph1 solves of the walks.
+   *
+   * @return number of restarts.
+   */
+  public int getRestarts() {
+    return restarts;
+  }
+
+  /**
+   * Get the total number of operator products of the graph1 solves of the walks.
+   *
+   * @return number of products.
+   */
+  public long getProducts() {
+    return products;
+  }
+
+  /**
+   *
+   * @param args argument sent to the program.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.out.println("Java -jar timelineWalk.jar timelineFile k energyFunction [warm|cold]");
+      return;
+    }
+    ArrayList<double[][]> snapshots = loadTimeline(args[0]);
+    int k = Integer.parseInt(args[1]);
+    SpectralEngine engine = GraphServlet.createSpectralEngine();
+    // Warm start unless the walk is run cold for comparison.
+    engine.setWarmStart(args.length < 4 || !args[3].equals("cold"));
+    TimelineWalk timelineWalk = new TimelineWalk(engine);
+    System.out.println("pair,restarts,products,milliseconds");
+    timelineWalk.walk(snapshots, k, 10, args[2]);
+    System.out.println("Total restarts = " + timelineWalk.getRestarts());
+    System.out.println("Total products = " + timelineWalk.getProducts());
+  }
+}
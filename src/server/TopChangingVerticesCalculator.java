@@ -15,11 +15,8 @@ public class TopChangingVerticesCalculator {
   private String inputFile1;
   // Input file for graph2.
   private String inputFile2;
-
-  // Traversal methods.
-  private enum TraversalMethods {
-    BFS, BiasedBFS, BFSPriorityQueue
-  };
+  // Max Jaccard similarity allowed between the returned regions, 1 allows any overlap.
+  private double maxJaccard = 1.0;
 
   /**
    * Constructor.
@@ -43,6 +40,25 @@ public class TopChangingVerticesCalculator {
     graphCalculator = new GraphCalculator();
   }
 
+  /**
+   * Get the max Jaccard similarity allowed between the returned regions.
+   * 
+   * @return max Jaccard similarity.
+   */
+  public double getMaxJaccard() {
+    return maxJaccard;
+  }
+
+  /**
+   * Set the max Jaccard similarity allowed between the returned regions. Use a value lower than 1
+   * to return diverse regions instead of near duplicates of the top region.
+   * 
+   * @param maxJaccard max Jaccard similarity.
+   */
+  public void setMaxJaccard(double maxJaccard) {
+    this.maxJaccard = maxJaccard;
+  }
+
   /**
    * Get the distortion regions as the top changing vertices.
    * 
@@ -76,7 +92,8 @@ public class TopChangingVerticesCalculator {
 
   /**
    * Get the most distorted regions by started BFS or its variations from vertices with high delta
-   * values.
+   * values. If maxJaccard is lower than 1, a region overlapping a higher region more than maxJaccard
+   * is skipped and the BFS continues from the next vertex.
    * 
    * @param regionNumber number of regions to return.
    * @param nodesNumPerRegion number of nodes per region.
@@ -100,7 +117,8 @@ public class TopChangingVerticesCalculator {
     // Sort the nodes based on their distortion values from the highest to lowest.
     Arrays.sort(nodes);
     ArrayList<HashSet<Node>> highestDistortionRegions = new ArrayList<HashSet<Node>>();
-    for (int i = 0; i < regionNumber; i++) {
+    DiverseRegionSelector<Node> selector = new DiverseRegionSelector<Node>(regionNumber, maxJaccard);
+    for (int i = 0; i < nodes.length && highestDistortionRegions.size() < regionNumber; i++) {
       // Start from the nodes of high distortion value and do BFS or its variations to return the
       // ith region.
       HashSet<Node> regionI = null;
@@ -115,6 +133,9 @@ public class TopChangingVerticesCalculator {
           regionI = graphCalculator.BFSPriorityQueue(nodes[i], nodesNumPerRegion);
           break;
       }
+      if (!selector.offer(regionI)) {
+        continue;
+      }
       highestDistortionRegions.add(regionI);
     }
     return highestDistortionRegions;
@@ -137,18 +158,20 @@ public class TopChangingVerticesCalculator {
     System.out.println("Top Changing Vertcies BFS");
     ArrayList<HashSet<Node>> topChangingVertciesBFSRegions =
         getTopChangingVertcies(regionNumber, nodesNumPerRegion, 0, TraversalMethods.BFS);
-    graphCalculator.evaluateEdges(topChangingVertciesBFSRegions);
+    graphCalculator.evaluateEdges(topChangingVertciesBFSRegions, "TopChangingVertices BFS");
     System.out.println("==============================================================");
     System.out.println("Top Changing Vertcies Biased BFS");
     ArrayList<HashSet<Node>> topChangingVertciesBiasedBFSRegions =
         getTopChangingVertcies(regionNumber, nodesNumPerRegion, baisedk, TraversalMethods.BiasedBFS);
-    graphCalculator.evaluateEdges(topChangingVertciesBiasedBFSRegions);
+    graphCalculator.evaluateEdges(topChangingVertciesBiasedBFSRegions,
+        "TopChangingVertices BiasedBFS");
     System.out.println("==============================================================");
     System.out.println("Top Changing Vertcies BFS with Priority Queue");
     ArrayList<HashSet<Node>> topChangingVertciesBFSPriorityQueueRegions =
         getTopChangingVertcies(regionNumber, nodesNumPerRegion, 0,
             TraversalMethods.BFSPriorityQueue);
-    graphCalculator.evaluateEdges(topChangingVertciesBFSPriorityQueueRegions);
+    graphCalculator.evaluateEdges(topChangingVertciesBFSPriorityQueueRegions,
+        "TopChangingVertices BFSPriorityQueue");
     System.out.println("==============================================================");
   }
 
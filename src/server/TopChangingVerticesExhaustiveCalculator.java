@@ -3,23 +3,29 @@ package server;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 
 
 public class TopChangingVerticesExhaustiveCalculator {
 
+  // Candidate regions kept for each returned region when overlapping regions are skipped.
+  private static final int CANDIDATES_PER_REGION = 4;
+
   // GraphCalculator contains the graphs and common operation to do on them.
   private GraphCalculator graphCalculator;
   // Input file for graph1.
   private String inputFile1;
   // Input file for graph2.
   private String inputFile2;
-
-  // Traversal methods.
-  private enum TraversalMethods {
-    BFS, BiasedBFS, BFSPriorityQueue
-  };
+  // Max Jaccard similarity allowed between the returned regions, 1 allows any overlap.
+  private double maxJaccard = 1.0;
+  // Time budget of the search in milliseconds, 0 means no budget.
+  private long timeBudget = 0;
+  // Fraction of the seeds tried by the last search.
+  private double coverage = 0;
 
   /**
    * Constructor.
@@ -44,6 +50,54 @@ public class TopChangingVerticesExhaustiveCalculator {
     graphCalculator = new GraphCalculator();
   }
 
+  /**
+   * Get the max Jaccard similarity allowed between the returned regions.
+   * 
+   * @return max Jaccard similarity.
+   */
+  public double getMaxJaccard() {
+    return maxJaccard;
+  }
+
+  /**
+   * Set the max Jaccard similarity allowed between the returned regions. Use a value lower than 1
+   * to return diverse regions instead of near duplicates of the top region.
+   * 
+   * @param maxJaccard max Jaccard similarity.
+   */
+  public void setMaxJaccard(double maxJaccard) {
+    this.maxJaccard = maxJaccard;
+  }
+
+  /**
+   * Get the time budget of the search.
+   * 
+   * @return time budget in milliseconds, 0 means no budget.
+   */
+  public long getTimeBudget() {
+    return timeBudget;
+  }
+
+  /**
+   * Set the time budget of the search. With a budget, the seeds are tried from the highest delta
+   * change to the lowest and the search returns the best regions found when the budget expires.
+   * 
+   * @param timeBudget time budget in milliseconds, 0 means no budget.
+   */
+  public void setTimeBudget(long timeBudget) {
+    this.timeBudget = timeBudget;
+  }
+
+  /**
+   * Get the fraction of the seeds tried by the last search, which is 1 unless the time budget
+   * expired.
+   * 
+   * @return fraction of the seeds tried.
+   */
+  public double getCoverage() {
+    return coverage;
+  }
+
   /**
    * Start from every vertex, do BFS or its variations, then sort regions according to their
    * distortion measure and finally return the top regions with the highest distortion measure. The
@@ -59,79 +113,222 @@ public class TopChangingVerticesExhaustiveCalculator {
    */
   public ArrayList<HashSet<Node>> getTopChangingVertciesExhaustiveSearch(int regionNumber,
       int nodesNumPerRegion, int biasedk, TraversalMethods traversalMethod) {
-    // Get graph2 adjacency list.
-    HashMap<Node, HashMap<Node, Integer>> graph2 = graphCalculator.getGraph2();
-    // Get graph1 adjacency list.
-    HashMap<Node, HashMap<Node, Integer>> graph1 = graphCalculator.getGraph1();
-    // Get graph2 node mapping.
-    HashMap<String, Node> nodeMapping2 = graphCalculator.getNodeMapping2();
-    // Get graph1 node mapping.
-    HashMap<String, Node> nodeMapping1 = graphCalculator.getNodeMapping1();
-    regionNumber = Math.min(regionNumber, graph2.size());
-    Region[] regions = new Region[graph2.size()];
-    int index = 0;
-    for (Node node : graph2.keySet()) {
-      HashSet<Node> region = null;
-      switch (traversalMethod) {
-        case BFS:
-          region = graphCalculator.BFS(node, nodesNumPerRegion);
-          break;
-        case BiasedBFS:
-          region = graphCalculator.BFSBiased(node, nodesNumPerRegion, biasedk);
-          break;
-        case BFSPriorityQueue:
-          region = graphCalculator.BFSPriorityQueue(node, nodesNumPerRegion);
-          break;
+    return getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, biasedk,
+        new TraversalMethods[] {traversalMethod}).get(traversalMethod);
+  }
+
+  /**
+   * Sweep mode of the exhaustive search, which runs all the given traversal methods in one pass
+   * over the seeds. For each seed, the traversal methods run back to back on the same indexed
+   * graphs and scratch buffers, and each region is scored while it grows. The regions and their
+   * order are the same as calling
+   * the single traversal method search for each method. If maxJaccard is lower than 1, a region is
+   * skipped when it overlaps a higher region of the same method more than maxJaccard. If there is
+   * a time budget, the search stops when it expires and returns the best regions among the seeds
+   * tried so far.
+   * 
+   * @param regionNumber number of regions to return for each traversal method.
+   * @param nodesNumPerRegion number of nodes per region.
+   * @param biasedk to be used if biased BFS is chosen.
+   * @param traversalMethods traversal methods to run.
+   * @return HashMap between the traversal method and its regions, where each region is represented
+   *         by HashSet of nodes it contains.
+   */
+  public HashMap<TraversalMethods, ArrayList<HashSet<Node>>> getTopChangingVertciesExhaustiveSearch(
+      int regionNumber, int nodesNumPerRegion, int biasedk, TraversalMethods[] traversalMethods) {
+    HashMap<TraversalMethods, HashMap<Integer, ArrayList<HashSet<Node>>>> sizeRegions =
+        searchTopRegions(regionNumber, new int[] {nodesNumPerRegion}, biasedk, traversalMethods);
+    HashMap<TraversalMethods, ArrayList<HashSet<Node>>> highestDistortionRegions =
+        new HashMap<TraversalMethods, ArrayList<HashSet<Node>>>();
+    for (TraversalMethods traversalMethod : traversalMethods) {
+      highestDistortionRegions.put(traversalMethod,
+          sizeRegions.get(traversalMethod).get(nodesNumPerRegion));
+    }
+    return highestDistortionRegions;
+  }
+
+  /**
+   * Multi size mode of the exhaustive search. The region of size s grown from a seed is made of the
+   * first s nodes admitted by the traversal, so one traversal per seed up to the largest size gives
+   * the regions and scores of all the sizes. The regions of each size are the same as calling the
+   * single size search with this size.
+   * 
+   * @param regionNumber number of regions to return for each size.
+   * @param nodesNumPerRegion numbers of nodes per region to search.
+   * @param biasedk to be used if biased BFS is chosen.
+   * @param traversalMethod which method to use in constructing the regions, BFS, biased BFS or BFS
+   *        with priority Queue.
+   * @return HashMap between the number of nodes per region and its regions, where each region is
+   *         represented by HashSet of nodes it contains.
+   */
+  public HashMap<Integer, ArrayList<HashSet<Node>>> getTopChangingVertciesExhaustiveSearch(
+      int regionNumber, int[] nodesNumPerRegion, int biasedk, TraversalMethods traversalMethod) {
+    return searchTopRegions(regionNumber, nodesNumPerRegion, biasedk,
+        new TraversalMethods[] {traversalMethod}).get(traversalMethod);
+  }
+
+  /**
+   * Run the exhaustive search for all the given traversal methods and region sizes in one pass over
+   * the seeds.
+   * 
+   * @param regionNumber number of regions to return for each traversal method and size.
+   * @param sizes numbers of nodes per region.
+   * @param biasedk to be used if biased BFS is chosen.
+   * @param traversalMethods traversal methods to run.
+   * @return regions of each traversal method and size.
+   */
+  private HashMap<TraversalMethods, HashMap<Integer, ArrayList<HashSet<Node>>>> searchTopRegions(
+      int regionNumber, int[] sizes, int biasedk, TraversalMethods[] traversalMethods) {
+    IndexedGraphPair<Node> graphPair = graphCalculator.getGraphPair();
+    RegionTraversal traversal = new RegionTraversal(graphPair);
+    Integer[] seeds = getSeedsOrder(graphPair);
+    regionNumber = Math.min(regionNumber, seeds.length);
+    // Skipped overlapping regions are replaced by lower ones, so keep a pool of candidates in this
+    // case, with the score of each seed to refill it from the lower seeds if needed.
+    int keptRegionNumber = regionNumber;
+    double[][][] seedScores = null;
+    if (maxJaccard < 1) {
+      keptRegionNumber = (int) Math.min((long) regionNumber * CANDIDATES_PER_REGION, seeds.length);
+      seedScores = new double[traversalMethods.length][sizes.length][seeds.length];
+    }
+    int maxSize = 0;
+    for (int size : sizes) {
+      maxSize = Math.max(maxSize, size);
+    }
+    TopRegions[][] topRegions = new TopRegions[traversalMethods.length][sizes.length];
+    for (int m = 0; m < traversalMethods.length; m++) {
+      for (int s = 0; s < sizes.length; s++) {
+        topRegions[m][s] = new TopRegions(keptRegionNumber);
+        if (seedScores != null) {
+          // Seeds without a region of this size have no score.
+          Arrays.fill(seedScores[m][s], Double.NaN);
+        }
       }
-      // Get region size in graph 1.
-      double regionSizeGraph1 = 0;
-      double regionSizeGraph2 = 0;
-      double distortionValue = 0;
-      for (Node regionNode : region) {
-        distortionValue += regionNode.getDistortionValue();
-        // Get graph 1 region size.
-        HashMap<Node, Integer> regionNodeNeighborsG1 =
-            graph1.get(nodeMapping1.get(regionNode.getId()));
-        if (regionNodeNeighborsG1 != null) {
-          for (Node regionNodeNeighborG1 : regionNodeNeighborsG1.keySet()) {
-            if (region.contains(nodeMapping2.get(regionNodeNeighborG1.getId()))) {
-              regionSizeGraph1++;
-            }
+    }
+    long deadline = System.nanoTime() + timeBudget * 1000000L;
+    int triedSeeds = 0;
+    for (int seed : seeds) {
+      if (timeBudget > 0 && triedSeeds > 0 && System.nanoTime() > deadline) {
+        break;
+      }
+      triedSeeds++;
+      for (int m = 0; m < traversalMethods.length; m++) {
+        int regionSize = traversal.traverse(seed, maxSize, traversalMethods[m], biasedk);
+        for (int s = 0; s < sizes.length; s++) {
+          if (regionSize < sizes[s] || sizes[s] <= 0) { // Ignore regions with different sizes.
+            continue;
+          }
+          double score = traversal.scoreRegion(sizes[s]);
+          if (seedScores != null) {
+            seedScores[m][s][triedSeeds - 1] = score;
           }
+          // Ties are broken by the seed index, as if the seeds were tried in graph2 order.
+          topRegions[m][s].offer(traversal.getMembers(), sizes[s], score, seed);
         }
-        // Get graph 2 region size.
-        HashMap<Node, Integer> regionNodeNeighborsG2 =
-            graph2.get(nodeMapping2.get(regionNode.getId()));
-        if (regionNodeNeighborsG2 != null) {
-          for (Node regionNodeNeighborG2 : regionNodeNeighborsG2.keySet()) {
-            if (region.contains(regionNodeNeighborG2)) {
-              regionSizeGraph2++;
+      }
+    }
+    coverage = seeds.length == 0 ? 1 : (double) triedSeeds / seeds.length;
+    HashMap<TraversalMethods, HashMap<Integer, ArrayList<HashSet<Node>>>> highestDistortionRegions =
+        new HashMap<TraversalMethods, HashMap<Integer, ArrayList<HashSet<Node>>>>();
+    for (int m = 0; m < traversalMethods.length; m++) {
+      HashMap<Integer, ArrayList<HashSet<Node>>> methodRegions =
+          new HashMap<Integer, ArrayList<HashSet<Node>>>();
+      for (int s = 0; s < sizes.length; s++) {
+        ArrayList<HashSet<Node>> sizeRegions = new ArrayList<HashSet<Node>>();
+        DiverseRegionSelector<Node> selector =
+            new DiverseRegionSelector<Node>(regionNumber, maxJaccard);
+        ArrayList<TopRegions.ScoredRegion> sortedRegions = topRegions[m][s].getSortedRegions();
+        for (TopRegions.ScoredRegion region : sortedRegions) {
+          int[] members = region.getMembers();
+          if (!selector.offer(members, members.length)) {
+            continue;
+          }
+          sizeRegions.add(new HashSet<Node>(graphPair.toNodes(members)));
+          if (sizeRegions.size() == regionNumber) {
+            break;
+          }
+        }
+        if (sizeRegions.size() < regionNumber && sortedRegions.size() == keptRegionNumber
+            && seedScores != null) {
+          // Too many candidates overlap, so try the seeds below the pool, growing their regions
+          // again, in the order they would have had in the pool.
+          for (int t : getRefillOrder(seedScores[m][s], seeds, triedSeeds,
+              sortedRegions.get(sortedRegions.size() - 1))) {
+            traversal.traverse(seeds[t], maxSize, traversalMethods[m], biasedk);
+            if (!selector.offer(traversal.getMembers(), sizes[s])) {
+              continue;
+            }
+            sizeRegions.add(new HashSet<Node>(
+                graphPair.toNodes(Arrays.copyOf(traversal.getMembers(), sizes[s]))));
+            if (sizeRegions.size() == regionNumber) {
+              break;
             }
           }
         }
+        methodRegions.put(sizes[s], sizeRegions);
       }
-      // Store the region with its distortion value.
-      regions[index++] =
-          new Region(region, distortionValue
-              / Math.min(Math.max(1, regionSizeGraph1), Math.max(1, regionSizeGraph2)), 0,
-              region.size());
+      highestDistortionRegions.put(traversalMethods[m], methodRegions);
     }
-    // Sort the regions based on distortion values from the highest to the smallest.
-    Arrays.sort(regions);
-    ArrayList<HashSet<Node>> highestDistortionRegions = new ArrayList<HashSet<Node>>();
-    for (int i = 0; i < graph2.size(); i++) {
-      if (regions[i].getRegionSize() != nodesNumPerRegion) { // Ignore regions with different sizes.
-        continue;
-      }
-      highestDistortionRegions.add(regions[i].getNodes());
-      if (highestDistortionRegions.size() == regionNumber) { // Reached the desired regions number
-                                                             // to return.
-        break;
+    return highestDistortionRegions;
+  }
+
+  /**
+   * Get the tried seeds ranked below the worst region of a candidate pool, from the highest score
+   * to the lowest, ties broken by the seed index as in TopRegions.
+   * 
+   * @param scores score of the region of each tried seed, in trying order, NaN for no region.
+   * @param seeds seeds in trying order.
+   * @param triedSeeds number of seeds tried.
+   * @param worst worst region of the pool.
+   * @return positions of the seeds in trying order.
+   */
+  private ArrayList<Integer> getRefillOrder(final double[] scores, final Integer[] seeds,
+      int triedSeeds, TopRegions.ScoredRegion worst) {
+    ArrayList<Integer> refillOrder = new ArrayList<Integer>();
+    for (int t = 0; t < triedSeeds; t++) {
+      if (!Double.isNaN(scores[t]) && worst.compareTo(scores[t], seeds[t]) > 0) {
+        refillOrder.add(t);
       }
     }
-    return highestDistortionRegions;
+    Collections.sort(refillOrder, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer t1, Integer t2) {
+        if (scores[t1] > scores[t2]) {
+          return -1;
+        } else if (scores[t1] < scores[t2]) {
+          return 1;
+        }
+        return seeds[t1].compareTo(seeds[t2]);
+      }
+    });
+    return refillOrder;
   }
 
+  /**
+   * Get the order in which the seeds are tried. Without a time budget, it is the graph2 order. With
+   * a time budget, the seeds with the highest delta changes are tried first, as they are the most
+   * likely to grow the top regions.
+   * 
+   * @param graphPair containing the seeds.
+   * @return seeds in the order to try them.
+   */
+  private Integer[] getSeedsOrder(IndexedGraphPair<Node> graphPair) {
+    int[] seeds = graphPair.getSeeds();
+    Integer[] seedsOrder = new Integer[seeds.length];
+    for (int i = 0; i < seeds.length; i++) {
+      seedsOrder[i] = seeds[i];
+    }
+    if (timeBudget > 0) {
+      final double[] deltas = graphPair.getDeltas();
+      Arrays.sort(seedsOrder, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer seed1, Integer seed2) {
+          return Double.compare(deltas[seed2], deltas[seed1]);
+        }
+      });
+    }
+    return seedsOrder;
+  }
 
   /**
    * Run the different variations of top changing vertices exhaustive search with BFS, Biased BFS
@@ -143,29 +340,45 @@ public class TopChangingVerticesExhaustiveCalculator {
    * @throws IOException
    */
   public void run(int regionNumber, int nodesNumPerRegion, int baisedk) throws IOException {
+    run(regionNumber, new int[] {nodesNumPerRegion}, baisedk);
+  }
+
+  /**
+   * Run the different variations of top changing vertices exhaustive search with BFS, Biased BFS
+   * and BFS with priority queue for several region sizes, with one search over the seeds for all
+   * the methods and sizes.
+   * 
+   * @param regionNumber number of regions to return.
+   * @param nodesNumPerRegion numbers of nodes per region.
+   * @param baisedk used in biased BFS.
+   * @throws IOException
+   */
+  public void run(int regionNumber, int[] nodesNumPerRegion, int baisedk) throws IOException {
     // Read graph1 and graph2 data.
     graphCalculator.readGraphs(inputFile1, inputFile2);
     // Calculate delta change for each node.
     graphCalculator.calculateDeltaGraph();
-    System.out.println("Top Changing Vertcies Exhaustive Search BFS");
-    ArrayList<HashSet<Node>> bfsRegions =
-        getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, 0,
-            TraversalMethods.BFS);
-    graphCalculator.evaluateEdges(bfsRegions);
-    System.out.println("========================================");
-    System.out.println("Top Changing Vertcies Exhaustive Search Biased BFS");
-    ArrayList<HashSet<Node>> biasedBFSRegions =
-        getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, baisedk,
-            TraversalMethods.BiasedBFS);
-    graphCalculator.evaluateEdges(biasedBFSRegions);
-    System.out.println("========================================");
-    System.out.println("Top Changing Vertcies Exhaustive Search BFS with Priority Queue");
-    ArrayList<HashSet<Node>> bfsPriorityQueueRegions =
-        getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, 0,
-            TraversalMethods.BFSPriorityQueue);
-    graphCalculator.evaluateEdges(bfsPriorityQueueRegions);
-    System.out.println("========================================");
-
+    HashMap<TraversalMethods, HashMap<Integer, ArrayList<HashSet<Node>>>> regions =
+        searchTopRegions(regionNumber, nodesNumPerRegion, baisedk, TraversalMethods.values());
+    for (int size : nodesNumPerRegion) {
+      System.out.println("Top Changing Vertcies Exhaustive Search BFS, " + size + " nodes");
+      ArrayList<HashSet<Node>> bfsRegions = regions.get(TraversalMethods.BFS).get(size);
+      graphCalculator.evaluateEdges(bfsRegions, "TopChangingVerticesExhaustive BFS " + size);
+      System.out.println("========================================");
+      System.out.println("Top Changing Vertcies Exhaustive Search Biased BFS, " + size + " nodes");
+      ArrayList<HashSet<Node>> biasedBFSRegions =
+          regions.get(TraversalMethods.BiasedBFS).get(size);
+      graphCalculator.evaluateEdges(biasedBFSRegions,
+          "TopChangingVerticesExhaustive BiasedBFS " + size);
+      System.out.println("========================================");
+      System.out.println("Top Changing Vertcies Exhaustive Search BFS with Priority Queue, " + size
+          + " nodes");
+      ArrayList<HashSet<Node>> bfsPriorityQueueRegions =
+          regions.get(TraversalMethods.BFSPriorityQueue).get(size);
+      graphCalculator.evaluateEdges(bfsPriorityQueueRegions,
+          "TopChangingVerticesExhaustive BFSPriorityQueue " + size);
+      System.out.println("========================================");
+    }
   }
 
   /**
@@ -187,21 +400,23 @@ public class TopChangingVerticesExhaustiveCalculator {
     double maxStep = 10;
     int stepsNumber = 0;
     int numberOfNodes = graphCalculator.getGraph1().size();
+    // Thresholds are nested masks over one indexed snapshot, so each iteration only runs again the
+    // traversals affected by the newly removed nodes.
+    IndexedGraphPair<Node> graphPair = graphCalculator.getGraphPair();
+    TraversalMethods[] traversalMethods = TraversalMethods.values();
+    ThresholdSweep thresholdSweep =
+        new ThresholdSweep(graphPair, ThresholdSweep.getMaskingOrder(graphCalculator, graphPair),
+            traversalMethods, nodesNumPerRegion, baisedk);
     while (stepsNumber < maxStep) {
       System.out.println("Iteration = " + stepsNumber);
-      ArrayList<HashSet<Node>> bfsRegions =
-          getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, 0,
-              TraversalMethods.BFS);
-      graphCalculator.evaluatetThreshoding(bfsRegions, 1, step * stepsNumber);
-      ArrayList<HashSet<Node>> biasedBFSRegions =
-          getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, baisedk,
-              TraversalMethods.BiasedBFS);
-      graphCalculator.evaluatetThreshoding(biasedBFSRegions, 2, step * stepsNumber);
-      ArrayList<HashSet<Node>> bfsPriorityQueueRegions =
-          getTopChangingVertciesExhaustiveSearch(regionNumber, nodesNumPerRegion, 0,
-              TraversalMethods.BFSPriorityQueue);
-      graphCalculator.evaluatetThreshoding(bfsPriorityQueueRegions, 3, step * stepsNumber);
-      graphCalculator.removeNodesBelowThreshold(step, numberOfNodes);
+      TopRegions[] topRegions = thresholdSweep.search(regionNumber);
+      for (int m = 0; m < traversalMethods.length; m++) {
+        // Method ids are 1 for BFS, 2 for biased BFS and 3 for BFS with priority queue.
+        graphCalculator.updateBestThresholdingValues(
+            thresholdSweep.evaluate(topRegions[m].getSortedRegions()), m + 1, step * stepsNumber);
+      }
+      // Same number of nodes as removeNodesBelowThreshold removes in each call.
+      thresholdSweep.maskNext((int) Math.floor(step * numberOfNodes));
       stepsNumber++;
     }
     // Print the best threshoding results of the three methods.
@@ -308,19 +523,25 @@ public class TopChangingVerticesExhaustiveCalculator {
   public static void main(String[] args) throws IOException {
     //Scanner scanner = new Scanner(System.in);
     if(args.length < 5) {
-      System.out.println("Java -jar TopChangingVerticesExhaustiveSearchCalculator.jar graph1File graph2File regionsNumber nodesNumPerRegion baisedk");
+      System.out.println("Java -jar TopChangingVerticesExhaustiveSearchCalculator.jar graph1File graph2File regionsNumber nodesNumPerRegion[,nodesNumPerRegion...] baisedk");
       return;
     }
     String inputFile1 = args[0];
     String inputFile2 = args[1];
     int regionNumber = Integer.parseInt(args[2]);
-    int nodesNumPerRegion = Integer.parseInt(args[3]);
+    // Comma separated list of sizes, searched together.
+    int[] nodesNumPerRegion = GraphServlet.getRegionSizes(args[3]);
     int baisedk = Integer.parseInt(args[4]);
     TopChangingVerticesExhaustiveCalculator calculator =
         new TopChangingVerticesExhaustiveCalculator(inputFile1, inputFile2);
     calculator.run(regionNumber, nodesNumPerRegion, baisedk);
-    System.out.println("==================Run with Thresholding======================");
-    calculator.runWithThresholding(regionNumber, nodesNumPerRegion, baisedk);
+    for (int size : nodesNumPerRegion) {
+      System.out.println("==================Run with Thresholding, " + size
+          + " nodes======================");
+      // A new calculator for each size, so the best thresholding values aren't mixed.
+      new TopChangingVerticesExhaustiveCalculator(inputFile1, inputFile2).runWithThresholding(
+          regionNumber, size, baisedk);
+    }
     //scanner.close();
   }
 
@@ -0,0 +1,161 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the top scoring regions seen so far, without storing all the candidate regions. Regions
+ * with equal scores keep their offering order, which gives the same result as sorting all the
+ * regions with a stable sort and taking the first ones.
+ */
+public class TopRegions {
+
+  // Max number of regions to keep.
+  private int capacity;
+  // Kept regions, where the head is the worst kept region.
+  private PriorityQueue<ScoredRegion> regions;
+  // Number of regions offered so far, used to break ties.
+  private long offeredNumber;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity max number of regions to keep.
+   */
+  public TopRegions(int capacity) {
+    this.capacity = capacity;
+    regions = new PriorityQueue<ScoredRegion>(Math.max(1, capacity + 1));
+  }
+
+  /**
+   * Check whether a region with this score would be kept if it is offered now.
+   *
+   * @param score of the region.
+   * @return true if the region would be kept.
+   */
+  public boolean accepts(double score) {
+    if (capacity <= 0) {
+      return false;
+    }
+    return regions.size() < capacity || score > regions.peek().score;
+  }
+
+  /**
+   * Offer a region. The members are copied only if the region is kept.
+   *
+   * @param members buffer containing the region members.
+   * @param membersNumber number of valid members in the buffer.
+   * @param score of the region.
+   * @return true if the region is kept.
+   */
+  public boolean offer(int[] members, int membersNumber, double score) {
+    return offer(members, membersNumber, score, offeredNumber);
+  }
+
+  /**
+   * Offer a region with an explicit order used to break ties, so that regions offered out of order
+   * are ranked as if they were offered by increasing order.
+   *
+   * @param members buffer containing the region members.
+   * @param membersNumber number of valid members in the buffer.
+   * @param score of the region.
+   * @param order of the region, lower orders win ties.
+   * @return true if the region is kept.
+   */
+  public boolean offer(int[] members, int membersNumber, double score, long order) {
+    offeredNumber = Math.max(offeredNumber, order + 1);
+    if (capacity <= 0) {
+      return false;
+    }
+    if (regions.size() == capacity && regions.peek().compareTo(score, order) >= 0) {
+      return false;
+    }
+    regions.add(new ScoredRegion(Arrays.copyOf(members, membersNumber), score, order));
+    if (regions.size() > capacity) {
+      regions.poll();
+    }
+    return true;
+  }
+
+  /**
+   * Get the number of kept regions.
+   *
+   * @return number of kept regions.
+   */
+  public int size() {
+    return regions.size();
+  }
+
+  /**
+   * Get the kept regions sorted from the highest score to the lowest.
+   *
+   * @return sorted regions.
+   */
+  public ArrayList<ScoredRegion> getSortedRegions() {
+    ArrayList<ScoredRegion> sortedRegions = new ArrayList<ScoredRegion>(regions);
+    Collections.sort(sortedRegions, Collections.reverseOrder());
+    return sortedRegions;
+  }
+
+  /**
+   * Region members with their score. The natural order puts the better region last, i.e. a lower
+   * score or, for equal scores, a later offer.
+   */
+  public static class ScoredRegion implements Comparable<ScoredRegion> {
+    // Indices of the region members.
+    private int[] members;
+    // Score of the region.
+    private double score;
+    // Offering order of the region.
+    private long order;
+
+    ScoredRegion(int[] members, double score, long order) {
+      this.members = members;
+      this.score = score;
+      this.order = order;
+    }
+
+    /**
+     * Get the region members.
+     *
+     * @return indices of the region members.
+     */
+    public int[] getMembers() {
+      return members;
+    }
+
+    /**
+     * Get the region score.
+     *
+     * @return score of the region.
+     */
+    public double getScore() {
+      return score;
+    }
+
+    /**
+     * Compare two regions by score, then by offering order.
+     */
+    public int compareTo(ScoredRegion region) {
+      return compareTo(region.score, region.order);
+    }
+
+    /**
+     * Compare this region with a region of the given score and order.
+     */
+    int compareTo(double otherScore, long otherOrder) {
+      if (score < otherScore) {
+        return -1;
+      } else if (score > otherScore) {
+        return 1;
+      } else if (order > otherOrder) {
+        return -1;
+      } else if (order < otherOrder) {
+        return 1;
+      }
+      return 0;
+    }
+  }
+}
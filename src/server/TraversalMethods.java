@@ -0,0 +1,6 @@
+package server;
+
+// Traversal methods used to grow a region starting from a seed node.
+public enum TraversalMethods {
+  BFS, BiasedBFS, BFSPriorityQueue
+}
@@ -0,0 +1,26 @@
+%{
+% distortion_colors computes the nodes colors returned by visualize_map, scaling the distortion
+% values of each distortion area between their min and max into the jet(100) colormap.
+% The method parameters are:
+% distortion_values is a matrix nv x r with the distortion values of the nodes for each area.
+% The method output is:
+% colors_nodes is a cell array nv x r where each entry is the hex color of a node for an area.
+%}
+function colors_nodes = distortion_colors(distortion_values)
+[nv, r] = size(distortion_values);
+colors_nodes = cell(nv, r);
+
+colors = jet(100);
+for i=1:r
+    distortion_value_i = distortion_values(:,i);
+	for k=1:nv
+	    pos = (distortion_value_i(k)-min(distortion_value_i))/(max(distortion_value_i)-min(distortion_value_i));
+	    pos = real(ceil(pos*100));
+	    if(pos>100 || isnan(pos))
+	        pos = 100;
+	    elseif(pos<=0)
+	        pos = 1;
+        end
+	    colors_nodes{k,i} = rgb2hex(colors(pos,:));
+	end
+end
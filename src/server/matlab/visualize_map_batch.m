@@ -0,0 +1,29 @@
+%{
+% visualize_map_batch runs visualize_map_prepared for a list of configurations and returns
+% all the distortion values in one vector, so a parameter sweep needs one call and one transfer.
+% The method parameters are:
+% P is the struct returned by visualize_map_prepare for G1 and G2.
+% ks is a vector with the smooth parameter k of each configuration.
+% r is the number of distortion areas to return for each configuration.
+% measure_methods is a cell array with the distortion measure of each configuration.
+% The method output is:
+% batch_values is a vector [c; lengths; values] where c is the number of configurations,
+% lengths(i) is the number of distortion values of configuration i, 0 if visualize_map fails
+% (e.g. k exceeds the number of nodes), and values stacks the distortion values of all the
+% configurations, each one stacked column wise as returned by visualize_map.
+%}
+function batch_values = visualize_map_batch(P, ks, r, measure_methods)
+c = numel(ks);
+lengths = zeros(c, 1);
+values = cell(c, 1);
+for i=1:c
+    try
+        distortion_values = visualize_map_prepared(P, ks(i), r, measure_methods{i});
+        values{i} = distortion_values(:);
+    catch
+        values{i} = zeros(0, 1);
+    end
+    lengths(i) = numel(values{i});
+end
+batch_values = [c; lengths; vertcat(values{:})];
+end
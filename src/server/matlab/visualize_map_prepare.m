@@ -0,0 +1,24 @@
+%{
+% visualize_map_prepare builds the sparse operators of a pair of graphs used by
+% visualize_map_prepared, so they can be kept in the workspace between runs.
+% The method parameters are:
+% G1 is the first graph in the following format node1,node2,edge_value.
+% G2 is the second graph in the following format node1,node2,edge_value.
+% The method output is:
+% P is a struct with the number of nodes nv, the adjacency matrices M and N of G1 and G2,
+% the diagonal matrices F and G, and the laplacians L1 and L2.
+%}
+function P = visualize_map_prepare(G1, G2)
+% get number of nodes as the max node id.
+nv = max(max(max(G1(:,1)), max(G1(:,2))), max(max(G2(:,1)), max(G2(:,2))));
+% convert graph adjacency list to sparse matrix.
+M = sparse(G1(:,1), G1(:,2), G1(:,3), nv, nv);
+N = sparse(G2(:,1), G2(:,2), G2(:,3), nv, nv);
+% Calculate F and G where F and G are a diagonal matrix where each entry represents the
+% degree of the nodes of M and N respectively. 
+F = spdiags(1./(sum(M,2)+1),0, nv, nv);
+G = spdiags(sum(N,2),0, nv, nv);
+L1 = spdiags(sum(M,2), 0, nv, nv) - M;
+L2 = spdiags(sum(N,2), 0, nv, nv) - N;
+P = struct('nv', nv, 'M', M, 'N', N, 'F', F, 'G', G, 'L1', L1, 'L2', L2);
+end
@@ -12,6 +12,7 @@ var GRAPH_SERVLET_URL = "http://localhost:8080/Dynamic_Graph_Visualization_Juno/
 var MAX_NUM_NODES = 50; // If the graph has nodes less than MAX_NUM_NODES, then
 // draw the whole graph.
 var MAX_K = 1000; // Max value for the k parameter.
+var COVERAGE_SPAN_NAME = "coverage"; // Span showing the searched seeds.
 var graph1_data; // Graph 1 content.
 var graph2_data; // Graph 2 content.
 var svg1; // Drawing object for graph 1.
@@ -246,6 +247,18 @@ function colorGraph() {
 	var url = GRAPH_SERVLET_URL;
 	var params = "graph1file=" + graph1_data + "&graph2file=" + graph2_data
 			+ "&k=" + k + "&measure=" + measure + "&region=" + region;
+	// Time budget in milliseconds for the top changing regions search, empty
+	// means no budget.
+	var budget = document.getElementById("budget").value;
+	if (budget.length > 0) {
+		params = params + "&budget=" + budget;
+	}
+	// Max Jaccard similarity allowed between the returned regions, empty means
+	// any overlap.
+	var maxJaccard = document.getElementById("maxJaccard").value;
+	if (maxJaccard.length > 0) {
+		params = params + "&maxJaccard=" + maxJaccard;
+	}
 	var http;
 	if (window.XMLHttpRequest) {
 		// Code for IE7+, Firefox, Chrome, Opera, Safari.
@@ -333,6 +346,21 @@ function parseResponse(response) {
 	for ( var i = 0; i < num_nodes; i++) {
 		colors[i + 1] = colors_array[i];
 	}
+	// Show how much of the seeds the search covered within the time budget,
+	// returned by the top changing regions methods, or the error estimate of
+	// approximate distortion values, returned by the spectral methods.
+	var coverage = "";
+	if (distorition.length > 3 && distorition[3].length > 0) {
+		if (measure.indexOf("Top-changing-regions") == 0) {
+			coverage = "Searched "
+					+ Math.round(parseFloat(distorition[3]) * 100)
+					+ "% of the vertices";
+		} else if (parseFloat(distorition[3]) > 0) {
+			coverage = "Approximate distortion values, basis residual "
+					+ distorition[3];
+		}
+	}
+	document.getElementById(COVERAGE_SPAN_NAME).innerHTML = coverage;
 }
 
 /**